@@ -0,0 +1,46 @@
+package au.edu.wehi.idsv.benchmark;
+
+import au.edu.wehi.idsv.SequentialIdGenerator;
+import au.edu.wehi.idsv.debruijn.positional.PositionalAssembler;
+import htsjdk.samtools.SAMRecord;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Positional de Bruijn graph assembly of soft clipped reads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@State(Scope.Benchmark)
+public class AssemblyBenchmark {
+	@Param({ "SIMPLE", "CHROMOTHRIPSIS" })
+	public SimulatedDataSet.Simulator simulator;
+	@Param({ "10" })
+	public int readsPerBreakend;
+	@Param({ "1000000" })
+	public int contigLength;
+	private SimulatedDataSet data;
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		data = new SimulatedDataSet(simulator, contigLength, readsPerBreakend, 1);
+	}
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		data.close();
+	}
+	@Benchmark
+	public void assemble(RecordCounter counter, Blackhole bh) {
+		PositionalAssembler pa = new PositionalAssembler(data.getContext(), data.getAssemblyEvidenceSource(), new SequentialIdGenerator("asm"), data.getSoftClipEvidence().iterator(), null, null);
+		while (pa.hasNext()) {
+			SAMRecord r = pa.next();
+			bh.consume(r);
+		}
+		counter.records += data.getSoftClipEvidence().size();
+	}
+}
@@ -0,0 +1,87 @@
+package au.edu.wehi.idsv.benchmark;
+
+import au.edu.wehi.idsv.debruijn.KmerEncodingHelper;
+import htsjdk.samtools.SAMRecord;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read kmer encoding as performed when adding evidence to the de Bruijn graph.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class KmerEncodingBenchmark {
+	@Param({ "SIMPLE" })
+	public SimulatedDataSet.Simulator simulator;
+	@Param({ "25" })
+	public int k;
+	private byte[][] bases;
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		try (SimulatedDataSet data = new SimulatedDataSet(simulator, 1000000, 10, 1)) {
+			List<SAMRecord> reads = data.getSoftClippedReads();
+			bases = new byte[reads.size()][];
+			for (int i = 0; i < bases.length; i++) {
+				bases[i] = reads.get(i).getReadBases();
+			}
+		}
+	}
+	/**
+	 * Encodes every read kmer independently
+	 */
+	@Benchmark
+	public long encodeKmers(RecordCounter counter) {
+		long hash = 0;
+		for (byte[] b : bases) {
+			for (int i = 0; i + k <= b.length; i++) {
+				hash ^= KmerEncodingHelper.picardBaseToEncoded(k, Arrays.copyOfRange(b, i, i + k));
+			}
+		}
+		counter.records += bases.length;
+		return hash;
+	}
+	/**
+	 * Encodes read kmers using a rolling kmer state
+	 */
+	@Benchmark
+	public long rollingEncodeKmers(RecordCounter counter) {
+		long hash = 0;
+		for (byte[] b : bases) {
+			if (b.length < k) continue;
+			long state = KmerEncodingHelper.picardBaseToEncoded(k, b);
+			hash ^= state;
+			for (int i = k; i < b.length; i++) {
+				state = KmerEncodingHelper.nextState(k, state, b[i]);
+				hash ^= state;
+			}
+		}
+		counter.records += bases.length;
+		return hash;
+	}
+	/**
+	 * Encodes read kmers and their reverse complement
+	 */
+	@Benchmark
+	public long reverseComplementKmers(RecordCounter counter) {
+		long hash = 0;
+		for (byte[] b : bases) {
+			if (b.length < k) continue;
+			long state = KmerEncodingHelper.picardBaseToEncoded(k, b);
+			hash ^= KmerEncodingHelper.reverseComplement(k, state);
+			for (int i = k; i < b.length; i++) {
+				state = KmerEncodingHelper.nextState(k, state, b[i]);
+				hash ^= KmerEncodingHelper.reverseComplement(k, state);
+			}
+		}
+		counter.records += bases.length;
+		return hash;
+	}
+}
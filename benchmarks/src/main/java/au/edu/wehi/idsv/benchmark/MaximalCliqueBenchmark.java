@@ -0,0 +1,71 @@
+package au.edu.wehi.idsv.benchmark;
+
+import au.edu.wehi.idsv.BreakpointSummary;
+import au.edu.wehi.idsv.LinearGenomicCoordinate;
+import au.edu.wehi.idsv.graph.ArrayRectangleGraphMaximalCliqueCalculator;
+import au.edu.wehi.idsv.graph.RectangleGraphCliqueCalculator;
+import au.edu.wehi.idsv.graph.RectangleGraphMaximalCliqueCalculator;
+import au.edu.wehi.idsv.graph.RectangleGraphNode;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Maximal clique calling of breakpoint evidence.
+ *
+ * Each simulated breakpoint is supported by evidence with randomly positioned and sized
+ * breakpoint intervals, as occurs for discordant read pairs.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@State(Scope.Benchmark)
+public class MaximalCliqueBenchmark {
+	@Param({ "SIMPLE", "CHROMOTHRIPSIS" })
+	public SimulatedDataSet.Simulator simulator;
+	@Param({ "50" })
+	public int evidencePerBreakpoint;
+	@Param({ "300" })
+	public int maxIntervalWidth;
+	/**
+	 * Use the primitive array scanline
+	 */
+	@Param({ "false", "true" })
+	public boolean arrayScanline;
+	private List<RectangleGraphNode> nodes;
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		try (SimulatedDataSet data = new SimulatedDataSet(simulator, 1000000, 0, 1)) {
+			LinearGenomicCoordinate lgc = data.getContext().getLinear();
+			Random rng = data.getRandom();
+			nodes = new ArrayList<>();
+			for (BreakpointSummary bp : data.getBreakpoints()) {
+				long x = lgc.getLinearCoordinate(bp.referenceIndex, bp.start);
+				long y = lgc.getLinearCoordinate(bp.referenceIndex2, bp.start2);
+				for (int i = 0; i < evidencePerBreakpoint; i++) {
+					int width = 1 + rng.nextInt(maxIntervalWidth);
+					long startX = x - rng.nextInt(width);
+					long startY = y - rng.nextInt(width);
+					nodes.add(new RectangleGraphNode(startX, startX + width, startY, startY + width, 1 + rng.nextInt(10)));
+				}
+			}
+			nodes.sort(RectangleGraphNode.ByStartXY);
+		}
+	}
+	@Benchmark
+	public void calculateMaximalCliques(RecordCounter counter, Blackhole bh) {
+		RectangleGraphCliqueCalculator calc = arrayScanline ? new ArrayRectangleGraphMaximalCliqueCalculator() : new RectangleGraphMaximalCliqueCalculator();
+		for (RectangleGraphNode node : nodes) {
+			bh.consume(calc.next(node));
+		}
+		bh.consume(calc.complete());
+		counter.records += nodes.size();
+	}
+}
@@ -0,0 +1,20 @@
+package au.edu.wehi.idsv.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Reports the number of records processed per second alongside the per-invocation throughput.
+ */
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+@State(Scope.Thread)
+public class RecordCounter {
+	public long records;
+	@Setup(Level.Iteration)
+	public void reset() {
+		records = 0;
+	}
+}
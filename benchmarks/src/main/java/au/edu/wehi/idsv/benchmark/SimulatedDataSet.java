@@ -0,0 +1,304 @@
+package au.edu.wehi.idsv.benchmark;
+
+import au.edu.wehi.idsv.*;
+import au.edu.wehi.idsv.configuration.GridssConfiguration;
+import au.edu.wehi.idsv.metrics.IdsvSamFileMetrics;
+import au.edu.wehi.idsv.picard.ReferenceLookup;
+import au.edu.wehi.idsv.sam.SAMRecordUtil;
+import au.edu.wehi.idsv.sim.FragmentedChromosome;
+import au.edu.wehi.idsv.sim.RandomBaseGenerator;
+import au.edu.wehi.idsv.sim.SimpleVariantChromosome;
+import au.edu.wehi.idsv.vcf.SvType;
+import au.edu.wehi.idsv.vcf.VcfSvConstants;
+import com.google.common.collect.ImmutableList;
+import gridss.analysis.IdsvMetrics;
+import gridss.analysis.InsertSizeDistribution;
+import gridss.analysis.MapqMetrics;
+import htsjdk.samtools.Cigar;
+import htsjdk.samtools.CigarElement;
+import htsjdk.samtools.CigarOperator;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.reference.FastaSequenceIndexCreator;
+import htsjdk.samtools.util.IOUtil;
+import htsjdk.samtools.util.SequenceUtil;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.vcf.VCFFileReader;
+import org.apache.commons.configuration.ConfigurationException;
+import picard.analysis.InsertSizeMetrics;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Reproducible synthetic benchmark input.
+ *
+ * A random reference contig is written to a temporary directory and one of the
+ * GRIDSS simulators is run against it. Reads supporting each simulated breakpoint
+ * are then generated directly from the reference sequence so the benchmark input
+ * depends only on the simulator, contig length, read depth and seed.
+ */
+public class SimulatedDataSet implements Closeable {
+	public static final String CHR = "chr1";
+	public static final int READ_LENGTH = 100;
+	public static final int MIN_ALIGNED_LENGTH = 20;
+	private static final int PADDING = 2 * READ_LENGTH + 100;
+	private static final int FRAGMENT_SIZE = 300;
+	private static final int CHROMOTHRIPSIS_FRAGMENT_SIZE = 2000;
+	public enum Simulator {
+		/**
+		 * Deletions generated by {@link SimpleVariantChromosome} (GenerateSimpleVariants)
+		 */
+		SIMPLE,
+		/**
+		 * Chromothriptic rearrangements generated by {@link FragmentedChromosome} (GenerateChromothripsis)
+		 */
+		CHROMOTHRIPSIS,
+	}
+	private final File directory;
+	private final ProcessingContext context;
+	private final SAMEvidenceSource ses;
+	private final AssemblyEvidenceSource aes;
+	private final List<BreakpointSummary> breakpoints = new ArrayList<>();
+	private final List<List<SAMRecord>> templates = new ArrayList<>();
+	private final List<SAMRecord> softClippedReads = new ArrayList<>();
+	private final List<DirectedEvidence> softClipEvidence = new ArrayList<>();
+	private final Random rng;
+	private final byte[] ref;
+	/**
+	 * @param simulator variant simulator
+	 * @param contigLength length of the random reference contig
+	 * @param readsPerBreakend number of split reads supporting each side of each breakpoint
+	 * @param seed random seed
+	 */
+	public SimulatedDataSet(Simulator simulator, int contigLength, int readsPerBreakend, int seed) throws IOException {
+		this.rng = new Random(seed);
+		this.directory = Files.createTempDirectory("gridss.benchmark.").toFile();
+		File reference = new File(directory, "reference.fa");
+		File fasta = new File(directory, "simulated.fa");
+		File vcf = new File(directory, "simulated.vcf");
+		this.ref = new RandomBaseGenerator(seed).getBases(contigLength);
+		Files.write(reference.toPath(), (">" + CHR + "\n" + new String(ref, StandardCharsets.US_ASCII) + "\n").getBytes(StandardCharsets.US_ASCII));
+		FastaSequenceIndexCreator.create(reference.toPath(), true);
+		GridssConfiguration config;
+		try {
+			config = new GridssConfiguration(GridssConfiguration.LoadConfiguration(null), directory);
+		} catch (ConfigurationException e) {
+			throw new IOException(e);
+		}
+		this.context = new ProcessingContext(new FileSystemContext(directory, 500000), reference, null, new ArrayList<>(), config);
+		switch (simulator) {
+			case SIMPLE:
+				new SimpleVariantChromosome(context, CHR, PADDING, seed)
+						.assemble(fasta, vcf, false, ImmutableList.of(SvType.DEL), ImmutableList.of(50, 200, 1000, 5000), Integer.MAX_VALUE);
+				break;
+			case CHROMOTHRIPSIS:
+				new FragmentedChromosome(context, CHR, PADDING, CHROMOTHRIPSIS_FRAGMENT_SIZE, seed)
+						.assemble(fasta, vcf, contigLength / (5 * CHROMOTHRIPSIS_FRAGMENT_SIZE), false);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown simulator " + simulator);
+		}
+		this.ses = new SimulatedSAMEvidenceSource(context, new File(directory, "input.bam"));
+		this.aes = new AssemblyEvidenceSource(context, ImmutableList.of(ses), new File(directory, "assembly.bam"));
+		loadBreakpoints(vcf);
+		generateReads(readsPerBreakend);
+	}
+	private void loadBreakpoints(File vcf) {
+		try (VCFFileReader reader = new VCFFileReader(vcf, false)) {
+			for (VariantContext vc : reader) {
+				if (vc.isFiltered()) continue;
+				int referenceIndex = context.getDictionary().getSequenceIndex(vc.getContig());
+				if (vc.getAlternateAlleles().size() == 1 && vc.getAlternateAllele(0).getDisplayString().equals("<DEL>")) {
+					// symbolic deletion
+					int size = Math.abs(vc.getAttributeAsInt(VcfSvConstants.SV_LENGTH_KEY, 0));
+					BreakpointSummary bp = new BreakpointSummary(referenceIndex, BreakendDirection.Forward, vc.getStart(), referenceIndex, BreakendDirection.Backward, vc.getStart() + size + 1);
+					breakpoints.add(bp);
+					breakpoints.add(bp.remoteBreakpoint());
+				} else {
+					IdsvVariantContext ivc = IdsvVariantContext.create(context.getDictionary(), null, vc);
+					if (ivc instanceof VariantContextDirectedBreakpoint) {
+						breakpoints.add(((VariantContextDirectedBreakpoint)ivc).getBreakendSummary());
+					}
+				}
+			}
+		}
+	}
+	private void generateReads(int readsPerBreakend) {
+		SAMFileHeader header = context.getBasicSamHeader();
+		int readNumber = 0;
+		for (BreakpointSummary bp : breakpoints) {
+			for (int i = 0; i < readsPerBreakend; i++) {
+				String readName = String.format("r%d", readNumber++);
+				int anchorLength = MIN_ALIGNED_LENGTH + rng.nextInt(READ_LENGTH - 2 * MIN_ALIGNED_LENGTH + 1);
+				int clipLength = READ_LENGTH - anchorLength;
+				byte[] anchor;
+				byte[] clip;
+				SAMRecord primary = createRecord(header, readName, bp.referenceIndex);
+				if (bp.direction == BreakendDirection.Forward) {
+					anchor = ref(bp.start - anchorLength + 1, anchorLength);
+					clip = bp.direction2 == BreakendDirection.Backward ? ref(bp.start2, clipLength) : reverseComplement(ref(bp.start2 - clipLength + 1, clipLength));
+					primary.setReadBases(concat(anchor, clip));
+					primary.setAlignmentStart(bp.start - anchorLength + 1);
+					primary.setCigar(new Cigar(ImmutableList.of(new CigarElement(anchorLength, CigarOperator.M), new CigarElement(clipLength, CigarOperator.S))));
+				} else {
+					anchor = ref(bp.start, anchorLength);
+					clip = bp.direction2 == BreakendDirection.Forward ? ref(bp.start2 - clipLength + 1, clipLength) : reverseComplement(ref(bp.start2, clipLength));
+					primary.setReadBases(concat(clip, anchor));
+					primary.setAlignmentStart(bp.start);
+					primary.setCigar(new Cigar(ImmutableList.of(new CigarElement(clipLength, CigarOperator.S), new CigarElement(anchorLength, CigarOperator.M))));
+				}
+				primary.setBaseQualities(quals(READ_LENGTH));
+				softClippedReads.add(primary);
+				SoftClipEvidence sce = SoftClipEvidence.create(ses, bp.direction, primary);
+				if (sce != null) {
+					softClipEvidence.add(sce);
+				}
+				templates.add(createTemplate(header, primary, bp, anchorLength, clipLength));
+			}
+		}
+		softClipEvidence.sort(DirectedEvidenceOrder.ByStartEnd);
+	}
+	/**
+	 * Creates a queryname grouped read pair in which the first read is split across the breakpoint.
+	 * Mate information and SA tags are not populated.
+	 */
+	private List<SAMRecord> createTemplate(SAMFileHeader header, SAMRecord primary, BreakpointSummary bp, int anchorLength, int clipLength) {
+		SAMRecord r1 = SAMRecordUtil.clone(primary);
+		r1.setReadPairedFlag(true);
+		r1.setFirstOfPairFlag(true);
+		// split read alignment of the soft clipped bases
+		boolean negative = bp.direction == bp.direction2;
+		SAMRecord supp = createRecord(header, r1.getReadName(), bp.referenceIndex2);
+		supp.setReadPairedFlag(true);
+		supp.setFirstOfPairFlag(true);
+		supp.setSupplementaryAlignmentFlag(true);
+		supp.setReadNegativeStrandFlag(negative);
+		supp.setAlignmentStart(bp.direction2 == BreakendDirection.Backward ? bp.start2 : bp.start2 - clipLength + 1);
+		byte[] bases = r1.getReadBases().clone();
+		byte[] quals = r1.getBaseQualities().clone();
+		if (negative) {
+			SequenceUtil.reverseComplement(bases);
+			SequenceUtil.reverseQualities(quals);
+		}
+		supp.setReadBases(bases);
+		supp.setBaseQualities(quals);
+		if ((bp.direction == BreakendDirection.Forward) != negative) {
+			supp.setCigar(new Cigar(ImmutableList.of(new CigarElement(anchorLength, CigarOperator.S), new CigarElement(clipLength, CigarOperator.M))));
+		} else {
+			supp.setCigar(new Cigar(ImmutableList.of(new CigarElement(clipLength, CigarOperator.M), new CigarElement(anchorLength, CigarOperator.S))));
+		}
+		// concordant mate on the anchored side of the breakpoint
+		SAMRecord r2 = createRecord(header, r1.getReadName(), bp.referenceIndex);
+		r2.setReadPairedFlag(true);
+		r2.setSecondOfPairFlag(true);
+		r2.setReadNegativeStrandFlag(!r1.getReadNegativeStrandFlag());
+		int mateStart = bp.direction == BreakendDirection.Forward ? r1.getAlignmentStart() - FRAGMENT_SIZE + READ_LENGTH : r1.getAlignmentStart() + FRAGMENT_SIZE - READ_LENGTH;
+		r2.setAlignmentStart(mateStart);
+		r2.setReadBases(ref(mateStart, READ_LENGTH));
+		r2.setBaseQualities(quals(READ_LENGTH));
+		r2.setCigar(new Cigar(ImmutableList.of(new CigarElement(READ_LENGTH, CigarOperator.M))));
+		List<SAMRecord> template = new ArrayList<>(3);
+		template.add(r1);
+		template.add(supp);
+		template.add(r2);
+		return template;
+	}
+	private static SAMRecord createRecord(SAMFileHeader header, String readName, int referenceIndex) {
+		SAMRecord r = new SAMRecord(header);
+		r.setReadName(readName);
+		r.setReferenceIndex(referenceIndex);
+		r.setMappingQuality(60);
+		return r;
+	}
+	private byte[] ref(int start, int length) {
+		return Arrays.copyOfRange(ref, start - 1, start - 1 + length);
+	}
+	private static byte[] reverseComplement(byte[] bases) {
+		SequenceUtil.reverseComplement(bases);
+		return bases;
+	}
+	private static byte[] concat(byte[] a, byte[] b) {
+		byte[] result = Arrays.copyOf(a, a.length + b.length);
+		System.arraycopy(b, 0, result, a.length, b.length);
+		return result;
+	}
+	private static byte[] quals(int length) {
+		byte[] quals = new byte[length];
+		Arrays.fill(quals, (byte)30);
+		return quals;
+	}
+	public ProcessingContext getContext() {
+		return context;
+	}
+	public ReferenceLookup getReference() {
+		return context.getReference();
+	}
+	public AssemblyEvidenceSource getAssemblyEvidenceSource() {
+		return aes;
+	}
+	/**
+	 * Simulated breakpoints. Each breakpoint is included from the perspective of both breakends.
+	 */
+	public List<BreakpointSummary> getBreakpoints() {
+		return breakpoints;
+	}
+	/**
+	 * Soft clipped reads supporting the simulated breakpoints
+	 */
+	public List<SAMRecord> getSoftClippedReads() {
+		return softClippedReads;
+	}
+	/**
+	 * Soft clip evidence in breakend position order
+	 */
+	public List<DirectedEvidence> getSoftClipEvidence() {
+		return softClipEvidence;
+	}
+	/**
+	 * Read pairs in which the first read is split across a breakpoint
+	 */
+	public List<List<SAMRecord>> getSplitReadTemplates() {
+		return templates;
+	}
+	public Random getRandom() {
+		return rng;
+	}
+	@Override
+	public void close() {
+		IOUtil.recursiveDelete(directory.toPath());
+	}
+	/**
+	 * Evidence source with fixed library metrics.
+	 */
+	private static class SimulatedSAMEvidenceSource extends SAMEvidenceSource {
+		private final IdsvSamFileMetrics metrics = new IdsvSamFileMetrics(
+				new InsertSizeMetrics() {{
+					MEAN_INSERT_SIZE = FRAGMENT_SIZE;
+					MEDIAN_INSERT_SIZE = FRAGMENT_SIZE;
+					MIN_INSERT_SIZE = FRAGMENT_SIZE - 100;
+					MAX_INSERT_SIZE = FRAGMENT_SIZE + 100;
+					MEDIAN_ABSOLUTE_DEVIATION = 30;
+				}}, new IdsvMetrics() {{
+					MAX_READ_LENGTH = READ_LENGTH;
+					MAX_PROPER_PAIR_FRAGMENT_LENGTH = FRAGMENT_SIZE + 100;
+					MIN_PROPER_PAIR_FRAGMENT_LENGTH = FRAGMENT_SIZE - 100;
+				}}, new MapqMetrics(),
+				new InsertSizeDistribution(new int[] { FRAGMENT_SIZE }, new double[] { 1 }),
+				new ArrayList<>());
+		public SimulatedSAMEvidenceSource(ProcessingContext processContext, File file) {
+			super(processContext, file, null, 0);
+		}
+		@Override
+		public IdsvSamFileMetrics getMetrics() {
+			return metrics;
+		}
+	}
+}
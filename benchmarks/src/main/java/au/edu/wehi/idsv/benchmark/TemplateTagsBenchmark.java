@@ -0,0 +1,55 @@
+package au.edu.wehi.idsv.benchmark;
+
+import au.edu.wehi.idsv.sam.SAMRecordUtil;
+import com.google.common.collect.ImmutableSet;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMTag;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Template tag calculation as performed by ComputeSamTags on split read pairs.
+ *
+ * calculateTemplateTags updates records in-place so each invocation operates on
+ * a copy of the input. The copy is included in the measured time.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TemplateTagsBenchmark {
+	private static final Set<String> TAGS = ImmutableSet.of(
+			SAMTag.NM.name(),
+			SAMTag.SA.name(),
+			SAMTag.R2.name(),
+			SAMTag.MC.name(),
+			SAMTag.MQ.name());
+	@Param({ "SIMPLE", "CHROMOTHRIPSIS" })
+	public SimulatedDataSet.Simulator simulator;
+	private List<List<SAMRecord>> templates;
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		try (SimulatedDataSet data = new SimulatedDataSet(simulator, 1000000, 10, 1)) {
+			templates = data.getSplitReadTemplates();
+		}
+	}
+	@Benchmark
+	public void calculateTemplateTags(RecordCounter counter, Blackhole bh) {
+		for (List<SAMRecord> template : templates) {
+			List<SAMRecord> records = new ArrayList<>(template.size());
+			for (SAMRecord r : template) {
+				records.add(SAMRecordUtil.clone(r));
+			}
+			bh.consume(SAMRecordUtil.calculateTemplateTags(records, TAGS, true, true, true, true, true, true));
+			counter.records += records.size();
+		}
+	}
+}
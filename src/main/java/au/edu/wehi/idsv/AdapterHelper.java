@@ -1,7 +1,7 @@
 package au.edu.wehi.idsv;
 
 import au.edu.wehi.idsv.debruijn.KmerEncodingHelper;
-import au.edu.wehi.idsv.debruijn.PackedKmerList;
+import au.edu.wehi.idsv.debruijn.PackedSequence;
 import com.google.common.collect.ImmutableList;
 import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.util.SequenceUtil;
@@ -39,9 +39,8 @@ public class AdapterHelper {
 	public boolean containsAdapter(SAMRecord record) {
 		if (!hasAdapters()) return false;
 		if (record.getReadLength() < k) return false;
-		PackedKmerList list = new PackedKmerList(k, record.getReadBases(), null, false, false);
-		for (int i = 0; i < list.length(); i++) {
-			long kmer = list.kmer(i);
+		long[] readKmers = new PackedSequence(record.getReadBases(), false, false).getKmers(k);
+		for (long kmer : readKmers) {
 			for (int j = 0; j < kmers.length; j++) {
 				if (kmer == kmers[j]) {
 					return true;
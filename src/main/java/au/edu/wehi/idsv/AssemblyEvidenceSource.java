@@ -2,6 +2,7 @@ package au.edu.wehi.idsv;
 
 import au.edu.wehi.idsv.bed.IntervalBed;
 import au.edu.wehi.idsv.configuration.AssemblyConfiguration;
+import au.edu.wehi.idsv.configuration.GridssConfiguration;
 import au.edu.wehi.idsv.debruijn.positional.PositionalAssembler;
 import au.edu.wehi.idsv.sam.CigarUtil;
 import au.edu.wehi.idsv.sam.SAMFileUtil;
@@ -11,6 +12,7 @@ import au.edu.wehi.idsv.util.FileHelper;
 import au.edu.wehi.idsv.visualisation.AssemblyTelemetry;
 import com.google.common.base.Stopwatch;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import gridss.SoftClipsToSplitReads;
 import gridss.cmdline.CommandLineProgramHelper;
 import htsjdk.samtools.*;
@@ -22,7 +24,9 @@ import htsjdk.samtools.util.RuntimeIOException;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
@@ -47,6 +51,11 @@ public class AssemblyEvidenceSource extends SAMEvidenceSource {
 	private int cachedMaxReadLength = -1;
 	private int cachedMaxReadMappedLength = -1;
 	private AssemblyTelemetry telemetry;
+	/**
+	 * Worker threads shared by the partition assembly of all chunks.
+	 * Null when chunks are not partitioned.
+	 */
+	private ExecutorService partitionThreadpool;
 	private SAMFileHeader header;
 	protected List<String> assembledCategories;
 	private int[] assemblyOrdinalToProcessingCategoryLookup;
@@ -75,6 +84,18 @@ public class AssemblyEvidenceSource extends SAMEvidenceSource {
 	 * @throws IOException 
 	 */
 	public void assembleBreakends(ExecutorService threadpool, int jobNodeIndex, int jobNodes) throws IOException {
+		assembleBreakends(threadpool, jobNodeIndex, jobNodes, null);
+	}
+	/**
+	 * Perform breakend assembly
+	 * @param threadpool
+	 * @param workQueue work queue shared by all jobs. If supplied, chunks are dynamically
+	 *                  allocated to jobs through the work queue instead of being statically
+	 *                  allocated by job index, and the assembly is gathered by the first
+	 *                  job to see all chunks completed.
+	 * @throws IOException
+	 */
+	public void assembleBreakends(ExecutorService threadpool, int jobNodeIndex, int jobNodes, ChunkWorkQueue workQueue) throws IOException {
 		IntervalBed excludedRegions = new IntervalBed(getContext().getLinear());
 		IntervalBed safetyRegions = new IntervalBed(getContext().getLinear());
 		IntervalBed downsampledRegions = new IntervalBed(getContext().getLinear());
@@ -83,44 +104,80 @@ public class AssemblyEvidenceSource extends SAMEvidenceSource {
 			threadpool = MoreExecutors.newDirectExecutorService();
 		}
 		invalidateSummaryCache();
+		// jobs sharing a work queue all have the same job index
+		String jobName = workQueue == null ? Integer.toString(jobNodeIndex) : "queue_" + workQueue.getJobId();
 		if (getContext().getConfig().getVisualisation().assemblyTelemetry) {
-			telemetry = new AssemblyTelemetry(getContext().getFileSystemContext().getAssemblyTelemetry(getFile(), jobNodeIndex), getContext().getDictionary());
+			telemetry = new AssemblyTelemetry(getContext().getFileSystemContext().getAssemblyTelemetry(getFile(), jobName), getContext().getDictionary());
 		}
 		List<QueryInterval[]> chunks = getContext().getReference().getIntervals(getContext().getConfig().chunkSize, getContext().getConfig().chunkSequenceChangePenalty);
-		List<File> assembledChunk = new ArrayList<>();
-		List<Future<Void>> tasks = new ArrayList<>();
-		for (int i = 0; i < chunks.size(); i++) {
-			if (i % jobNodes == jobNodeIndex) {
-				QueryInterval[] chunk = chunks.get(i);
-				File f = getContext().getFileSystemContext().getAssemblyChunkBam(getFile(), i);
-				int chunkNumber = i;
-				assembledChunk.add(f);
-				if (!f.exists()) {
+		// Schedule the most evidence-dense chunks first so they are not left running after all other chunks have completed
+		ChunkScheduler scheduler = ChunkScheduler.create(getContext(), chunks, source);
+		List<Integer> chunkOrder = workQueue == null ? scheduler.getProcessingOrder(jobNodeIndex, jobNodes) : scheduler.getProcessingOrder();
+		List<File> assembledChunk = chunkOrder.stream()
+				.sorted()
+				.map(i -> getContext().getFileSystemContext().getAssemblyChunkBam(getFile(), i))
+				.collect(Collectors.toList());
+		String fingerprint = getAssemblyFingerprint();
+		int partitionThreads = getContext().getAssemblyParameters().positional.partitionThreads;
+		if (partitionThreads > 1) {
+			partitionThreadpool = Executors.newFixedThreadPool(partitionThreads, new ThreadFactoryBuilder().setDaemon(true).setNameFormat("AssemblyPartition-%d").build());
+		}
+		try {
+			if (workQueue == null) {
+				List<Future<Void>> tasks = new ArrayList<>();
+				for (int i : chunkOrder) {
 					tasks.add(threadpool.submit(() -> {
-						assembleChunk(f, chunkNumber, chunk, excludedRegions, safetyRegions, downsampledRegions);
+						assembleChunk(chunks, i, fingerprint, excludedRegions, safetyRegions, downsampledRegions);
 						return null;
 					}));
 				}
+				runTasks(tasks);
+			} else {
+				workQueue.process(
+						chunkOrder.stream().map(i -> "chunk" + i).collect(Collectors.toList()),
+						threadpool,
+						task -> assembleChunk(chunks, Integer.parseInt(task.substring("chunk".length())), fingerprint, excludedRegions, safetyRegions, downsampledRegions));
+			}
+		} finally {
+			if (partitionThreadpool != null) {
+				partitionThreadpool.shutdownNow();
+				partitionThreadpool = null;
 			}
 		}
-		runTasks(tasks);
 		if (telemetry != null) {
 			telemetry.close();
 			telemetry = null;
 		}
-		excludedRegions.write(getContext().getFileSystemContext().getAssemblyExcludedRegions(getFile(), jobNodeIndex), "excludedDueToGraphComplexity");
-		safetyRegions.write(getContext().getFileSystemContext().getAssemblySafetyRegions(getFile(), jobNodeIndex), "subsetOfContigsCalledDueToGraphComplexity");
-		downsampledRegions.write(getContext().getFileSystemContext().getAssemblyDownsampledRegions(getFile(), jobNodeIndex), "subsetOfReadsAssembled");
+		excludedRegions.write(getContext().getFileSystemContext().getAssemblyExcludedRegions(getFile(), jobName), "excludedDueToGraphComplexity");
+		safetyRegions.write(getContext().getFileSystemContext().getAssemblySafetyRegions(getFile(), jobName), "subsetOfContigsCalledDueToGraphComplexity");
+		downsampledRegions.write(getContext().getFileSystemContext().getAssemblyDownsampledRegions(getFile(), jobName), "subsetOfReadsAssembled");
 		log.info(String.format("Breakend assembly complete (node %d, %d total)", jobNodeIndex, jobNodes));
-		List<File> deduplicatedChunks = assembledChunk;
 		long secondaryNotSplit = source.stream().mapToLong(ses -> ses.getMetrics().getIdsvMetrics().SECONDARY_NOT_SPLIT).sum();
 		if (secondaryNotSplit > 0) {
 			log.warn(String.format("Found %d secondary alignments that were not split read alignments. GRIDSS no longer supports multi-mapping alignment. These reads will be ignored.", secondaryNotSplit));
 		}
+		if (workQueue != null) {
+			try (ChunkWorkQueue.Lease lease = workQueue.tryAcquire("gather")) {
+				if (lease == null) {
+					if (workQueue.isComplete("gather") && !getFile().exists()) {
+						throw new IllegalStateException(String.format("Work queue %s records assembly as complete but %s does not exist. Delete the work queue directory to reassemble.", workQueue.getDirectory(), getFile()));
+					}
+					log.info("Not merging assembly files since assembly files are being merged by another job.");
+					return;
+				}
+				gatherChunks(assembledChunk, fingerprint);
+				lease.complete();
+			}
+			return;
+		}
 		if (jobNodes > 1) {
 			log.info("Not merging assembly files since not all chunks were assembled.");
 			return;
 		}
+		gatherChunks(assembledChunk, fingerprint);
+	}
+	private void gatherChunks(List<File> assembledChunk, String fingerprint) throws IOException {
+		List<File> deduplicatedChunks = assembledChunk;
 		log.info("Merging assembly files");
 		// Merge chunk files
 		File out = getFile();
@@ -151,7 +208,7 @@ public class AssemblyEvidenceSource extends SAMEvidenceSource {
 				FileHelper.delete(tmpout, true);
 			}
 			for (File f : assembledChunk) {
-				FileHelper.delete(f, true);
+				new ChunkCheckpoint(f, fingerprint).invalidate();
 			}
 			for (File f : deduplicatedChunks) {
 				FileHelper.delete(f, true);
@@ -176,26 +233,85 @@ public class AssemblyEvidenceSource extends SAMEvidenceSource {
 		}
 		log.info("Breakend assembly complete.");
 	}
-	private void assembleChunk(File output, int chunkNumber, QueryInterval[] qi, IntervalBed excludedRegions, IntervalBed safetyRegions, IntervalBed downsampledRegions) throws IOException {
-		AssemblyIdGenerator assemblyNameGenerator = new SequentialIdGenerator(String.format(getContext().getConfig().getAssembly().contigNamePrefix, chunkNumber));
+	private void assembleChunk(List<QueryInterval[]> chunks, int chunkNumber, String fingerprint, IntervalBed excludedRegions, IntervalBed safetyRegions, IntervalBed downsampledRegions) throws IOException {
+		QueryInterval[] chunk = chunks.get(chunkNumber);
+		File f = getContext().getFileSystemContext().getAssemblyChunkBam(getFile(), chunkNumber);
+		ChunkCheckpoint checkpoint = new ChunkCheckpoint(f, ChunkCheckpoint.fingerprint(fingerprint, chunk));
+		if (checkpoint.isComplete()) {
+			log.debug(String.format("Skipping assembly of chunk %d as %s is already complete", chunkNumber, f));
+		} else {
+			assembleChunk(checkpoint, chunkNumber, chunk, excludedRegions, safetyRegions, downsampledRegions);
+		}
+	}
+	/**
+	 * Fingerprint of the inputs and configuration affecting assembly.
+	 * Assembly chunks are only reused if their fingerprint matches.
+	 */
+	public String getAssemblyFingerprint() {
+		GridssConfiguration config = getContext().getConfig();
+		List<Object> components = new ArrayList<>();
+		components.add(getContext().getDictionary().md5());
+		for (SAMEvidenceSource ses : source) {
+			components.add(ses.getSVFile());
+			components.add(ses.getSourceCategory());
+		}
+		components.addAll(Arrays.asList(
+				config.getAssembly(),
+				config.getSoftClip(),
+				config.getScoring(),
+				config.minMapq,
+				config.fallbackMapq,
+				config.fallbackBaseq,
+				config.minAnchorShannonEntropy,
+				config.maxCoverage,
+				config.dovetailMargin,
+				config.chunkSize,
+				config.chunkSequenceChangePenalty,
+				config.useReadGroupSampleNameCategoryLabel,
+				config.hashEvidenceID));
+		return ChunkCheckpoint.fingerprint(components.toArray());
+	}
+	private static final String CHECKPOINT_LAST_CONTIG_ID = "lastContigId";
+	/**
+	 * Assembles the given chunk.
+	 *
+	 * Each assembly direction is checkpointed separately so a restarted
+	 * assembly only needs to reassemble the incomplete direction.
+	 */
+	private void assembleChunk(ChunkCheckpoint checkpoint, int chunkNumber, QueryInterval[] qi, IntervalBed excludedRegions, IntervalBed safetyRegions, IntervalBed downsampledRegions) throws IOException {
+		File output = checkpoint.getOutput();
 		String chuckName = String.format("chunk %d (%s:%d-%s:%d)", chunkNumber,
 			getContext().getDictionary().getSequence(qi[0].referenceIndex).getSequenceName(), qi[0].start,
 			getContext().getDictionary().getSequence(qi[qi.length-1].referenceIndex).getSequenceName(), qi[qi.length-1].end);
 		log.info(String.format("Starting assembly on %s", chuckName));
 		Stopwatch timer = Stopwatch.createStarted();
-		File filteredout = FileSystemContext.getWorkingFileFor(output, "filtered.");
-		File tmpout = FileSystemContext.getWorkingFileFor(output, "gridss.tmp.");
-		try (SAMFileWriter writer = new SAMFileWriterFactory().makeSAMOrBAMWriter(getHeader(), false, tmpout)) {
-			if (getContext().getAssemblyParameters().writeFiltered) {
-				try (SAMFileWriter filteredWriter = new SAMFileWriterFactory().makeSAMOrBAMWriter(getHeader(), false, filteredout)) {
-					for (BreakendDirection direction : BreakendDirection.values()) {
-						assembleChunk(writer, filteredWriter, chunkNumber, qi, direction, assemblyNameGenerator, excludedRegions, safetyRegions, downsampledRegions);
-					}
+		List<ChunkCheckpoint> directionCheckpoints = new ArrayList<>();
+		try {
+			int lastContigId = 0;
+			boolean reassembled = false;
+			// partitions of both directions are found in a single pass over the chunk evidence
+			Map<BreakendDirection, List<QueryInterval[]>> partitions = null;
+			for (BreakendDirection direction : BreakendDirection.values()) {
+				ChunkCheckpoint directionCheckpoint = new ChunkCheckpoint(
+						getContext().getFileSystemContext().getAssemblyChunkBam(getFile(), chunkNumber, direction),
+						ChunkCheckpoint.fingerprint(checkpoint.getFingerprint(), direction));
+				directionCheckpoints.add(directionCheckpoint);
+				// contig names depend on the contigs assembled previously
+				String checkpointedLastContigId = reassembled ? null : directionCheckpoint.getAttribute(CHECKPOINT_LAST_CONTIG_ID);
+				if (checkpointedLastContigId != null) {
+					log.info(String.format("Resuming assembly on %s: %s assembly already complete", chuckName, direction));
+					lastContigId = Integer.parseInt(checkpointedLastContigId);
+					continue;
 				}
-			} else {
-				for (BreakendDirection direction : BreakendDirection.values()) {
-					assembleChunk(writer, null, chunkNumber, qi, direction, assemblyNameGenerator, excludedRegions, safetyRegions, downsampledRegions);
+				reassembled = true;
+				directionCheckpoint.invalidate();
+				SequentialIdGenerator assemblyNameGenerator = new SequentialIdGenerator(String.format(getContext().getConfig().getAssembly().contigNamePrefix, chunkNumber), "", lastContigId);
+				if (partitionThreadpool != null && partitions == null) {
+					partitions = getAssemblyPartitions(getExpanded(qi));
 				}
+				assembleChunk(directionCheckpoint.getOutput(), chunkNumber, qi, direction, partitions == null ? null : partitions.get(direction), assemblyNameGenerator, excludedRegions, safetyRegions, downsampledRegions);
+				lastContigId = assemblyNameGenerator.getLastId();
+				directionCheckpoint.markComplete(Collections.singletonMap(CHECKPOINT_LAST_CONTIG_ID, Integer.toString(lastContigId)));
 			}
 		} catch (Exception e) {
 			log.error(e, "Error assembling ", chuckName);
@@ -207,10 +323,16 @@ public class AssemblyEvidenceSource extends SAMEvidenceSource {
 			timer.stop();
 			log.info(String.format("Completed assembly on %s in %ds (%s)", chuckName, timer.elapsed(TimeUnit.SECONDS), timer.toString()));
 		}
-		SAMFileUtil.sort(getContext().getFileSystemContext(), tmpout, output, SortOrder.coordinate);
+		checkpoint.invalidate();
+		// another job could have taken over our lease so we can't write directly to the shared output file
+		File mergedOut = FileSystemContext.getUniqueWorkingFileFor(output, "gridss.tmp.");
+		SAMFileUtil.merge(directionCheckpoints.stream().map(ChunkCheckpoint::getOutput).collect(Collectors.toList()), mergedOut);
+		FileHelper.move(mergedOut, output, true);
+		checkpoint.markComplete();
 		if (gridss.Defaults.DELETE_TEMPORARY_FILES) {
-			tmpout.delete();
-			filteredout.delete();
+			for (ChunkCheckpoint cp : directionCheckpoints) {
+				cp.invalidate();
+			}
 		}
 		if (gridss.Defaults.DEFENSIVE_GC) {
 			log.info("Requesting defensive GC to ensure OS file handles are closed");
@@ -218,6 +340,30 @@ public class AssemblyEvidenceSource extends SAMEvidenceSource {
 			System.runFinalization();
 		}
 	}
+	/**
+	 * @param partitions independently assembled partitions of the chunk. Null if the chunk is not partitioned.
+	 */
+	private void assembleChunk(File output, int chunkNumber, QueryInterval[] qi, BreakendDirection direction, List<QueryInterval[]> partitions, AssemblyIdGenerator assemblyNameGenerator,
+							   IntervalBed excludedRegions, IntervalBed safetyRegions, IntervalBed downsampledRegions) throws IOException {
+		File filteredout = FileSystemContext.getWorkingFileFor(output, "filtered.");
+		File tmpout = FileSystemContext.getUniqueWorkingFileFor(output, "gridss.tmp.");
+		File sortedout = FileSystemContext.getUniqueWorkingFileFor(output, "gridss.tmp.sorted.");
+		try (SAMFileWriter writer = new SAMFileWriterFactory().makeSAMOrBAMWriter(getHeader(), false, tmpout)) {
+			if (getContext().getAssemblyParameters().writeFiltered) {
+				try (SAMFileWriter filteredWriter = new SAMFileWriterFactory().makeSAMOrBAMWriter(getHeader(), false, filteredout)) {
+					assembleChunk(writer, filteredWriter, chunkNumber, qi, direction, partitions, assemblyNameGenerator, excludedRegions, safetyRegions, downsampledRegions);
+				}
+			} else {
+				assembleChunk(writer, null, chunkNumber, qi, direction, partitions, assemblyNameGenerator, excludedRegions, safetyRegions, downsampledRegions);
+			}
+		}
+		SAMFileUtil.sort(getContext().getFileSystemContext(), tmpout, sortedout, SortOrder.coordinate);
+		FileHelper.move(sortedout, output, true);
+		if (gridss.Defaults.DELETE_TEMPORARY_FILES) {
+			tmpout.delete();
+			filteredout.delete();
+		}
+	}
 
 	private QueryInterval[] getExpanded(QueryInterval[] intervals) {
 		QueryInterval[] expanded = QueryIntervalUtil.padIntervals(
@@ -227,9 +373,13 @@ public class AssemblyEvidenceSource extends SAMEvidenceSource {
 				(int)(2 * getMaxConcordantFragmentSize() * getContext().getConfig().getAssembly().maxExpectedBreakendLengthMultiple) + 1);
 		return expanded;
 	}
-	private void assembleChunk(SAMFileWriter writer, SAMFileWriter filteredWriter, int chunkNumber, QueryInterval[] intervals, BreakendDirection direction, AssemblyIdGenerator assemblyNameGenerator,
+	private void assembleChunk(SAMFileWriter writer, SAMFileWriter filteredWriter, int chunkNumber, QueryInterval[] intervals, BreakendDirection direction, List<QueryInterval[]> partitions, AssemblyIdGenerator assemblyNameGenerator,
 							   IntervalBed excludedRegions, IntervalBed safetyRegions, IntervalBed downsampledRegions) {
 		QueryInterval[] expanded = getExpanded(intervals);
+		if (partitions != null && partitions.size() > 1) {
+			assemblePartitions(writer, filteredWriter, chunkNumber, intervals, partitions, direction, assemblyNameGenerator, excludedRegions, safetyRegions, downsampledRegions);
+			return;
+		}
 		try (CloseableIterator<DirectedEvidence> input = mergedIterator(source, expanded, EvidenceSortOrder.SAMRecordStartPosition)) {
 			Iterator<DirectedEvidence> throttledIt = throttled(input, downsampledRegions);
 			PositionalAssembler assembler = new PositionalAssembler(getContext(), AssemblyEvidenceSource.this, assemblyNameGenerator, throttledIt, direction, excludedRegions, safetyRegions);
@@ -252,6 +402,98 @@ public class AssemblyEvidenceSource extends SAMEvidenceSource {
 			}
 		}
 	}
+	/**
+	 * Splits the given intervals at positions that are far enough from any evidence
+	 * that no assembly graph can span the split.
+	 * @return partitions for each breakend direction
+	 */
+	private Map<BreakendDirection, List<QueryInterval[]>> getAssemblyPartitions(QueryInterval[] expanded) {
+		// kmers can be placed up to a fragment and read length either side of the breakend
+		int margin = 2 * (getMaxConcordantFragmentSize() + getMaxReadLength()) + getMaxAssemblyLength();
+		Map<BreakendDirection, QuietRegionPartitioner> partitioners = new EnumMap<>(BreakendDirection.class);
+		for (BreakendDirection direction : BreakendDirection.values()) {
+			partitioners.put(direction, new QuietRegionPartitioner(margin));
+		}
+		try (CloseableIterator<DirectedEvidence> it = mergedIterator(source, expanded, EvidenceSortOrder.EvidenceStartPosition)) {
+			while (it.hasNext()) {
+				BreakendSummary bs = it.next().getBreakendSummary();
+				if (bs != null) {
+					partitioners.get(bs.direction).add(bs.referenceIndex, bs.start, bs.end);
+				}
+			}
+		}
+		Map<BreakendDirection, List<QueryInterval[]>> partitions = new EnumMap<>(BreakendDirection.class);
+		for (BreakendDirection direction : BreakendDirection.values()) {
+			partitions.put(direction, partitioners.get(direction).partition(expanded, getContext().getAssemblyParameters().positional.partitionMinEvidence));
+		}
+		return partitions;
+	}
+	private static class AssembledPartition {
+		private final DeferredAssemblyIdGenerator names = new DeferredAssemblyIdGenerator();
+		private final List<SAMRecord> contigs = new ArrayList<>();
+		private final List<SAMRecord> filteredContigs = new ArrayList<>();
+	}
+	/**
+	 * Assembles each partition concurrently on the shared partition thread pool.
+	 * Contigs are named and written in partition order.
+	 */
+	private void assemblePartitions(SAMFileWriter writer, SAMFileWriter filteredWriter, int chunkNumber, QueryInterval[] intervals, List<QueryInterval[]> partitions, BreakendDirection direction, AssemblyIdGenerator assemblyNameGenerator,
+									IntervalBed excludedRegions, IntervalBed safetyRegions, IntervalBed downsampledRegions) {
+		log.debug(String.format("Assembling chunk %d %s in %d partitions", chunkNumber, direction, partitions.size()));
+		List<Future<AssembledPartition>> tasks = new ArrayList<>();
+		try {
+			for (QueryInterval[] partition : partitions) {
+				tasks.add(partitionThreadpool.submit(() -> assemblePartition(chunkNumber, intervals, partition, direction, excludedRegions, safetyRegions, downsampledRegions)));
+			}
+			for (Future<AssembledPartition> task : tasks) {
+				AssembledPartition result = task.get();
+				result.names.resolve(assemblyNameGenerator);
+				for (SAMRecord asm : result.contigs) {
+					asm.setReadName(result.names.getResolvedId(asm.getReadName()));
+					writer.addAlignment(asm);
+				}
+				for (SAMRecord asm : result.filteredContigs) {
+					asm.setReadName(result.names.getResolvedId(asm.getReadName()));
+					if (filteredWriter != null) {
+						filteredWriter.addAlignment(asm);
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			// the thread pool is shared so only cancel our own outstanding partitions
+			for (Future<AssembledPartition> task : tasks) {
+				task.cancel(true);
+			}
+		}
+	}
+	private AssembledPartition assemblePartition(int chunkNumber, QueryInterval[] intervals, QueryInterval[] partition, BreakendDirection direction,
+												 IntervalBed excludedRegions, IntervalBed safetyRegions, IntervalBed downsampledRegions) {
+		AssembledPartition result = new AssembledPartition();
+		try (CloseableIterator<DirectedEvidence> input = mergedIterator(source, partition, EvidenceSortOrder.SAMRecordStartPosition)) {
+			Iterator<DirectedEvidence> throttledIt = throttled(input, downsampledRegions);
+			PositionalAssembler assembler = new PositionalAssembler(getContext(), AssemblyEvidenceSource.this, result.names, throttledIt, direction, excludedRegions, safetyRegions);
+			if (telemetry != null) {
+				assembler.setTelemetry(telemetry.getTelemetry(chunkNumber, direction));
+			}
+			while (assembler.hasNext()) {
+				SAMRecord asm = assembler.next();
+				asm = transformAssembly(asm);
+				if (QueryIntervalUtil.overlaps(intervals, asm.getReferenceIndex(), asm.getAlignmentStart())) {
+					if (shouldFilterAssembly(asm)) {
+						result.filteredContigs.add(asm);
+					} else {
+						result.contigs.add(asm);
+					}
+				}
+			}
+		}
+		return result;
+	}
 	@Override
 	public synchronized void ensureExtracted() throws IOException {
 		ensureMetrics();
@@ -0,0 +1,198 @@
+package au.edu.wehi.idsv;
+
+import au.edu.wehi.idsv.util.FileHelper;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import htsjdk.samtools.QueryInterval;
+import htsjdk.samtools.util.Log;
+
+import java.io.*;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Completion marker for a chunk output file.
+ *
+ * A checkpoint records the fingerprint of the inputs and configuration used
+ * to generate the chunk, as well as the size and checksum of the chunk output.
+ * On restart, chunks are only considered complete if the checkpoint fingerprint
+ * matches the current fingerprint and the output file has not been modified.
+ * This ensures that output files that were partially written when a process
+ * was killed are regenerated instead of being treated as complete.
+ *
+ * The checkpoint is written to a file alongside the chunk output so chunks
+ * processed by different processes or job nodes never write to the same checkpoint.
+ */
+public class ChunkCheckpoint {
+	private static final Log log = Log.getInstance(ChunkCheckpoint.class);
+	private static final String CHECKPOINT_SUFFIX = ".checkpoint";
+	private static final String KEY_FINGERPRINT = "fingerprint";
+	private static final String KEY_LENGTH = "length";
+	private static final String KEY_CHECKSUM = "crc32";
+	private final File output;
+	private final File checkpoint;
+	private final String fingerprint;
+	public ChunkCheckpoint(File output, String fingerprint) {
+		this.output = output;
+		this.checkpoint = new File(output.getPath() + CHECKPOINT_SUFFIX);
+		this.fingerprint = fingerprint;
+	}
+	public File getOutput() {
+		return output;
+	}
+	public String getFingerprint() {
+		return fingerprint;
+	}
+	public File getCheckpointFile() {
+		return checkpoint;
+	}
+	/**
+	 * Determines whether the chunk output is complete and matches the current fingerprint
+	 */
+	public boolean isComplete() {
+		return getValidatedCheckpoint() != null;
+	}
+	/**
+	 * Gets an attribute recorded when the chunk was marked as complete
+	 * @return attribute value, null if the chunk is not complete.
+	 */
+	public String getAttribute(String key) {
+		Properties p = getValidatedCheckpoint();
+		return p == null ? null : p.getProperty(key);
+	}
+	private Properties getValidatedCheckpoint() {
+		if (!checkpoint.exists() || !output.exists()) {
+			return null;
+		}
+		Properties p = new Properties();
+		try (Reader reader = new InputStreamReader(new FileInputStream(checkpoint), StandardCharsets.UTF_8)) {
+			p.load(reader);
+		} catch (IOException e) {
+			log.warn(e, "Unable to read ", checkpoint);
+			return null;
+		}
+		if (!fingerprint.equals(p.getProperty(KEY_FINGERPRINT))) {
+			log.info(String.format("Ignoring %s as inputs or configuration have changed.", output));
+			return null;
+		}
+		try {
+			if (!Long.toString(output.length()).equals(p.getProperty(KEY_LENGTH)) || !checksum(output).equals(p.getProperty(KEY_CHECKSUM))) {
+				log.warn(String.format("Ignoring %s as file does not match checkpoint.", output));
+				return null;
+			}
+		} catch (IOException e) {
+			log.warn(e, "Unable to read ", output);
+			return null;
+		}
+		return p;
+	}
+	/**
+	 * Records the chunk output as complete
+	 * @param attributes additional attributes to record
+	 */
+	public void markComplete(Map<String, String> attributes) throws IOException {
+		Properties p = new Properties();
+		p.putAll(attributes);
+		p.setProperty(KEY_FINGERPRINT, fingerprint);
+		p.setProperty(KEY_LENGTH, Long.toString(output.length()));
+		p.setProperty(KEY_CHECKSUM, checksum(output));
+		File tmp = FileSystemContext.getUniqueWorkingFileFor(checkpoint, "gridss.tmp.");
+		try (Writer writer = new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8)) {
+			p.store(writer, null);
+		}
+		FileHelper.move(tmp, checkpoint, false);
+	}
+	public void markComplete() throws IOException {
+		markComplete(Collections.emptyMap());
+	}
+	/**
+	 * Removes the chunk output and checkpoint
+	 */
+	public void invalidate() throws IOException {
+		if (checkpoint.exists()) {
+			FileHelper.delete(checkpoint, false);
+		}
+		if (output.exists()) {
+			FileHelper.delete(output, true);
+		}
+	}
+	private static String checksum(File file) throws IOException {
+		return Files.asByteSource(file).hash(Hashing.crc32()).toString();
+	}
+	/**
+	 * Fingerprint of the given components.
+	 *
+	 * Files are fingerprinted by path and size (and modification time
+	 * unless file timestamps are ignored), and configuration objects
+	 * by the values of their fields.
+	 */
+	public static String fingerprint(Object... components) {
+		Hasher hasher = Hashing.murmur3_128().newHasher();
+		for (Object o : components) {
+			put(hasher, o);
+		}
+		return hasher.hash().toString();
+	}
+	private static void put(Hasher hasher, Object o) {
+		if (o == null) {
+			hasher.putString("null", StandardCharsets.UTF_8);
+		} else if (o instanceof File) {
+			File f = (File)o;
+			hasher.putString(f.getAbsolutePath(), StandardCharsets.UTF_8);
+			hasher.putLong(f.length());
+			if (!gridss.Defaults.IGNORE_FILE_TIMESTAMPS) {
+				hasher.putLong(f.lastModified());
+			}
+		} else if (o instanceof QueryInterval) {
+			QueryInterval qi = (QueryInterval)o;
+			hasher.putInt(qi.referenceIndex).putInt(qi.start).putInt(qi.end);
+		} else if (o instanceof CharSequence || o instanceof Number || o instanceof Boolean || o instanceof Character || o instanceof Enum) {
+			hasher.putString(o.toString(), StandardCharsets.UTF_8);
+		} else if (o instanceof Iterable) {
+			for (Object child : (Iterable<?>)o) {
+				put(hasher, child);
+			}
+		} else if (o.getClass().isArray()) {
+			for (int i = 0; i < java.lang.reflect.Array.getLength(o); i++) {
+				put(hasher, java.lang.reflect.Array.get(o, i));
+			}
+		} else {
+			putFields(hasher, o);
+		}
+		// delimiter between components
+		hasher.putByte((byte)0);
+	}
+	/**
+	 * Hashes the instance fields of configuration objects
+	 */
+	private static void putFields(Hasher hasher, Object o) {
+		hasher.putString(o.getClass().getName(), StandardCharsets.UTF_8);
+		List<Field> fields = new ArrayList<>();
+		for (Class<?> c = o.getClass(); c != null && c != Object.class; c = c.getSuperclass()) {
+			fields.addAll(Arrays.asList(c.getDeclaredFields()));
+		}
+		fields.sort(Comparator.comparing(Field::getName));
+		for (Field f : fields) {
+			if (Modifier.isStatic(f.getModifiers()) || Modifier.isTransient(f.getModifiers()) || f.isSynthetic()) {
+				continue;
+			}
+			Class<?> type = f.getType();
+			if (!(type.isPrimitive() || type.isEnum() || type.isArray() || type == String.class
+					|| Number.class.isAssignableFrom(type) || type == Boolean.class
+					|| type.getPackage() == o.getClass().getPackage())) {
+				// only consider values and nested configuration objects
+				continue;
+			}
+			try {
+				f.setAccessible(true);
+				hasher.putString(f.getName(), StandardCharsets.UTF_8);
+				put(hasher, f.get(o));
+			} catch (IllegalAccessException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+}
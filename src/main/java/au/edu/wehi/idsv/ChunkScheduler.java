@@ -0,0 +1,139 @@
+package au.edu.wehi.idsv;
+
+import htsjdk.samtools.BAMFileSpan;
+import htsjdk.samtools.BAMIndex;
+import htsjdk.samtools.Chunk;
+import htsjdk.samtools.QueryInterval;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.util.BlockCompressedFilePointerUtil;
+import htsjdk.samtools.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Orders and distributes genomic processing chunks based on their expected processing cost.
+ *
+ * Processing time is dominated by evidence density, not chunk size. A handful of chunks
+ * containing centromeric or amplified regions can take orders of magnitude longer than
+ * the rest of the genome. Submitting the most expensive chunks first ensures idle workers
+ * pull the remaining (cheap) chunks from the shared executor queue while the expensive
+ * chunks are being processed, instead of the expensive chunk being the last task started.
+ */
+public class ChunkScheduler {
+	private static final Log log = Log.getInstance(ChunkScheduler.class);
+	private final long[] cost;
+	public ChunkScheduler(long[] cost) {
+		this.cost = cost;
+	}
+	/**
+	 * Creates a scheduler using the evidence density of the given sources to estimate chunk cost.
+	 * @param context processing context
+	 * @param chunks genomic chunks
+	 * @param sources evidence sources. Sources are expected to be preprocessed.
+	 */
+	public static ChunkScheduler create(GenomicProcessingContext context, List<QueryInterval[]> chunks, List<? extends SAMEvidenceSource> sources) {
+		return new ChunkScheduler(estimateCost(context, chunks, sources));
+	}
+	/**
+	 * Estimates the relative processing cost of each chunk.
+	 *
+	 * The number of compressed bytes of the extracted SV BAM overlapping the chunk is used
+	 * as a proxy for evidence density. Since every job node must derive the same schedule,
+	 * the cost of all chunks falls back to the number of bases in the chunk if the index
+	 * of any source is unavailable.
+	 * @return relative cost of each chunk
+	 */
+	public static long[] estimateCost(GenomicProcessingContext context, List<QueryInterval[]> chunks, List<? extends SAMEvidenceSource> sources) {
+		long[] cost = new long[chunks.size()];
+		boolean useIndex = !sources.isEmpty();
+		for (SAMEvidenceSource ses : sources) {
+			File file = ses.getSVFile();
+			if (file == null || !file.exists()) {
+				log.warn("Unable to estimate chunk cost from " + file + ": file not found. Falling back to chunk size for all chunks.");
+				useIndex = false;
+				break;
+			}
+			try (SamReader reader = context.getSamReader(file)) {
+				if (!reader.hasIndex() || reader.type() != SamReader.Type.BAM_TYPE) {
+					log.warn("Unable to estimate chunk cost from " + file + ": BAM index not found. Falling back to chunk size for all chunks.");
+					useIndex = false;
+					break;
+				}
+				BAMIndex index = reader.indexing().getIndex();
+				for (int i = 0; i < chunks.size(); i++) {
+					for (QueryInterval qi : chunks.get(i)) {
+						cost[i] += compressedSize(index.getSpanOverlapping(qi.referenceIndex, qi.start, qi.end));
+					}
+				}
+			} catch (IOException | RuntimeException e) {
+				log.warn(e, "Unable to estimate chunk cost from " + file + ". Falling back to chunk size for all chunks.");
+				useIndex = false;
+				break;
+			}
+		}
+		if (!useIndex) {
+			Arrays.fill(cost, 0);
+			for (int i = 0; i < chunks.size(); i++) {
+				for (QueryInterval qi : chunks.get(i)) {
+					cost[i] += qi.end - qi.start + 1;
+				}
+			}
+		}
+		return cost;
+	}
+	private static long compressedSize(BAMFileSpan span) {
+		if (span == null) return 0;
+		long size = 0;
+		for (Chunk c : span.getChunks()) {
+			size += BlockCompressedFilePointerUtil.getBlockAddress(c.getChunkEnd()) - BlockCompressedFilePointerUtil.getBlockAddress(c.getChunkStart()) + 1;
+		}
+		return size;
+	}
+	public long getCost(int chunk) {
+		return cost[chunk];
+	}
+	/**
+	 * Chunk processing order. Chunks are ordered by decreasing cost
+	 * with ties broken by chunk index.
+	 * @return chunk indices in processing order
+	 */
+	public List<Integer> getProcessingOrder() {
+		return IntStream.range(0, cost.length)
+				.boxed()
+				.sorted(Comparator.<Integer>comparingLong(i -> -cost[i]).thenComparingInt(i -> i))
+				.collect(Collectors.toList());
+	}
+	/**
+	 * Deterministically distributes chunks across job nodes such that each node
+	 * has approximately the same total cost. Every node must use the same cost
+	 * estimates for the chunk assignment to be a partition.
+	 * @param jobNodeIndex job node
+	 * @param jobNodes total number of job nodes
+	 * @return chunks to process on the given node in processing order
+	 */
+	public List<Integer> getProcessingOrder(int jobNodeIndex, int jobNodes) {
+		if (jobNodes <= 1) return getProcessingOrder();
+		// Longest processing time first greedy assignment
+		long[] load = new long[jobNodes];
+		PriorityQueue<Integer> nodes = new PriorityQueue<>(Comparator.<Integer>comparingLong(n -> load[n]).thenComparingInt(n -> n));
+		IntStream.range(0, jobNodes).forEach(nodes::add);
+		List<Integer> assigned = new ArrayList<>();
+		for (int chunk : getProcessingOrder()) {
+			int node = nodes.poll();
+			load[node] += Math.max(1, cost[chunk]);
+			nodes.add(node);
+			if (node == jobNodeIndex) {
+				assigned.add(chunk);
+			}
+		}
+		return assigned;
+	}
+}
@@ -0,0 +1,299 @@
+package au.edu.wehi.idsv;
+
+import au.edu.wehi.idsv.util.FileHelper;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import htsjdk.samtools.util.Log;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Work queue shared between any number of processes through a shared working directory.
+ *
+ * Processes claim a task by atomically creating a lease file for the task. Leases are
+ * renewed in the background whilst the task is being processed. A lease that has not
+ * been renewed within the lease timeout is considered abandoned and can be taken over
+ * by any other process. Lease files are numbered by generation: a process takes over a
+ * task by creating the next generation lease file. Since file creation is atomic, at most
+ * one process can obtain each generation and the holder of the highest generation
+ * owns the task.
+ *
+ * Lease expiry is based on file modification times so all processes sharing the
+ * work queue should have approximately synchronised clocks.
+ *
+ * Completion markers record the fingerprint of the inputs and configuration of the
+ * process that completed the task. Markers written with a different fingerprint are
+ * ignored so changing the inputs or configuration causes all tasks to be reprocessed.
+ */
+public class ChunkWorkQueue implements Closeable {
+	private static final Log log = Log.getInstance(ChunkWorkQueue.class);
+	private static final String LEASE_INFIX = ".lease.";
+	private static final String DONE_SUFFIX = ".done";
+	private final File directory;
+	private final long leaseTimeoutMs;
+	private final long pollIntervalMs;
+	private final String fingerprint;
+	private final String jobId = UUID.randomUUID().toString();
+	private final String owner;
+	private final Set<Lease> activeLeases = ConcurrentHashMap.newKeySet();
+	private final ScheduledExecutorService leaseRenewal;
+	public interface Task {
+		void process(String task) throws Exception;
+	}
+	/**
+	 * @param directory shared work queue directory
+	 * @param leaseTimeoutMs time after which a lease that has not been renewed is considered abandoned
+	 */
+	public ChunkWorkQueue(File directory, long leaseTimeoutMs) {
+		this(directory, "", leaseTimeoutMs);
+	}
+	/**
+	 * @param directory shared work queue directory
+	 * @param fingerprint fingerprint of the inputs and configuration of the tasks
+	 * @param leaseTimeoutMs time after which a lease that has not been renewed is considered abandoned
+	 */
+	public ChunkWorkQueue(File directory, String fingerprint, long leaseTimeoutMs) {
+		this(directory, fingerprint, leaseTimeoutMs, Math.max(1, leaseTimeoutMs / 4));
+	}
+	/**
+	 * @param directory shared work queue directory
+	 * @param leaseTimeoutMs time after which a lease that has not been renewed is considered abandoned
+	 * @param pollIntervalMs time to wait before checking whether tasks leased by other processes are complete
+	 */
+	public ChunkWorkQueue(File directory, long leaseTimeoutMs, long pollIntervalMs) {
+		this(directory, "", leaseTimeoutMs, pollIntervalMs);
+	}
+	/**
+	 * @param directory shared work queue directory
+	 * @param fingerprint fingerprint of the inputs and configuration of the tasks
+	 * @param leaseTimeoutMs time after which a lease that has not been renewed is considered abandoned
+	 * @param pollIntervalMs time to wait before checking whether tasks leased by other processes are complete
+	 */
+	public ChunkWorkQueue(File directory, String fingerprint, long leaseTimeoutMs, long pollIntervalMs) {
+		if (leaseTimeoutMs <= 0) throw new IllegalArgumentException("Lease timeout must be positive");
+		directory.mkdirs();
+		if (!directory.isDirectory()) throw new IllegalArgumentException(String.format("Unable to create work queue directory %s", directory));
+		this.directory = directory;
+		this.fingerprint = fingerprint;
+		this.leaseTimeoutMs = leaseTimeoutMs;
+		this.pollIntervalMs = pollIntervalMs;
+		this.owner = ManagementFactory.getRuntimeMXBean().getName() + "-" + jobId;
+		this.leaseRenewal = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setDaemon(true).setNameFormat("leaseRenewal").build());
+		long renewalInterval = Math.max(1, leaseTimeoutMs / 4);
+		this.leaseRenewal.scheduleAtFixedRate(this::renewLeases, renewalInterval, renewalInterval, TimeUnit.MILLISECONDS);
+	}
+	public File getDirectory() {
+		return directory;
+	}
+	/**
+	 * Identifier unique to this process.
+	 * Used to name output files written by each job sharing the work queue.
+	 */
+	public String getJobId() {
+		return jobId;
+	}
+	private void renewLeases() {
+		for (Lease lease : activeLeases) {
+			lease.renew();
+		}
+	}
+	private File doneFile(String task) {
+		return new File(directory, task + DONE_SUFFIX);
+	}
+	private File leaseFile(String task, int generation) {
+		return new File(directory, task + LEASE_INFIX + generation);
+	}
+	/**
+	 * @return highest lease generation of the given task, -1 if the task has never been leased.
+	 */
+	private int currentGeneration(String task) {
+		String prefix = task + LEASE_INFIX;
+		int generation = -1;
+		String[] files = directory.list();
+		if (files != null) {
+			for (String name : files) {
+				if (name.startsWith(prefix)) {
+					try {
+						generation = Math.max(generation, Integer.parseInt(name.substring(prefix.length())));
+					} catch (NumberFormatException e) {
+						// not a lease file
+					}
+				}
+			}
+		}
+		return generation;
+	}
+	/**
+	 * Determines whether the given task has been completed with the current fingerprint
+	 */
+	public boolean isComplete(String task) {
+		File done = doneFile(task);
+		if (!done.exists()) return false;
+		try {
+			return fingerprint.equals(new String(Files.readAllBytes(done.toPath()), StandardCharsets.UTF_8));
+		} catch (IOException e) {
+			// marker removed or still being written
+			return false;
+		}
+	}
+	/**
+	 * Attempts to lease the given task.
+	 * @return lease on the task, null if the task is complete or currently leased by another process.
+	 */
+	public Lease tryAcquire(String task) throws IOException {
+		if (isComplete(task)) return null;
+		int generation = currentGeneration(task);
+		if (generation >= 0) {
+			File current = leaseFile(task, generation);
+			long lastRenewed = current.lastModified();
+			if (lastRenewed == 0) {
+				// lease file removed whilst we were looking at it. Retry later.
+				return null;
+			}
+			if (System.currentTimeMillis() - lastRenewed < leaseTimeoutMs) {
+				return null;
+			}
+			log.info(String.format("Recovering abandoned lease %s", current));
+		}
+		File next = leaseFile(task, generation + 1);
+		try {
+			Files.write(next.toPath(), owner.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+		} catch (FileAlreadyExistsException e) {
+			// another process beat us to it
+			return null;
+		}
+		Lease lease = new Lease(task, generation + 1);
+		if (isComplete(task)) {
+			// Task was completed by the previous lease holder between our checks
+			lease.close();
+			return null;
+		}
+		activeLeases.add(lease);
+		return lease;
+	}
+	/**
+	 * Processes all the given tasks in conjunction with any other processes sharing the work queue.
+	 * Tasks are leased in the given order as threads in the given thread pool become available.
+	 * This method returns once all tasks have been completed by any process.
+	 * @param tasks tasks to process
+	 * @param threadpool thread pool to process tasks
+	 * @param processor task processor
+	 */
+	public void process(List<String> tasks, ExecutorService threadpool, Task processor) throws IOException {
+		Set<String> pending = new LinkedHashSet<>(tasks);
+		while (true) {
+			pending.removeIf(this::isComplete);
+			if (pending.isEmpty()) {
+				break;
+			}
+			List<Future<Boolean>> futures = new ArrayList<>();
+			for (String task : pending) {
+				futures.add(threadpool.submit(() -> {
+					Lease lease = tryAcquire(task);
+					if (lease == null) return false;
+					try {
+						processor.process(task);
+						lease.complete();
+					} finally {
+						lease.close();
+					}
+					return true;
+				}));
+			}
+			Exception firstException = null;
+			boolean processed = false;
+			for (Future<Boolean> f : futures) {
+				try {
+					processed |= f.get();
+				} catch (Exception e) {
+					if (firstException == null) {
+						firstException = e;
+					}
+				}
+			}
+			if (firstException != null) {
+				log.error(firstException, "Fatal error processing work queue ", directory);
+				throw new RuntimeException(firstException);
+			}
+			pending.removeIf(this::isComplete);
+			if (!processed && !pending.isEmpty()) {
+				log.debug(String.format("Waiting for %d tasks leased by other processes", pending.size()));
+				try {
+					Thread.sleep(pollIntervalMs);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new RuntimeException(e);
+				}
+			}
+		}
+	}
+	/**
+	 * Releases all outstanding leases
+	 */
+	@Override
+	public void close() {
+		leaseRenewal.shutdown();
+		for (Lease lease : new ArrayList<>(activeLeases)) {
+			lease.close();
+		}
+	}
+	public class Lease implements Closeable {
+		private final String task;
+		private final int generation;
+		private final File file;
+		private Lease(String task, int generation) {
+			this.task = task;
+			this.generation = generation;
+			this.file = leaseFile(task, generation);
+		}
+		public String getTask() {
+			return task;
+		}
+		/**
+		 * Determines whether this lease is still held.
+		 * The lease is lost if it was not renewed before timing out and
+		 * was taken over by another process.
+		 */
+		public boolean isValid() {
+			return file.exists() && currentGeneration(task) == generation;
+		}
+		private void renew() {
+			if (!file.setLastModified(System.currentTimeMillis())) {
+				log.warn("Unable to renew lease ", file);
+			}
+		}
+		/**
+		 * Marks the task as complete.
+		 */
+		public void complete() throws IOException {
+			if (!isValid()) {
+				log.warn(String.format("Lease %s was lost before task %s was completed. Task may have been processed by multiple processes.", file, task));
+			}
+			// write then rename so other processes never see a partially written marker
+			File tmp = FileSystemContext.getWorkingFileFor(doneFile(task), "gridss.tmp." + jobId + ".");
+			Files.write(tmp.toPath(), fingerprint.getBytes(StandardCharsets.UTF_8));
+			Files.move(tmp.toPath(), doneFile(task).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		/**
+		 * Releases the lease
+		 */
+		@Override
+		public void close() {
+			activeLeases.remove(this);
+			try {
+				FileHelper.delete(file, false);
+			} catch (IOException e) {
+				log.warn(e, "Unable to release lease ", file);
+			}
+		}
+	}
+}
@@ -17,6 +17,10 @@ public class Defaults {
 	public static final boolean ATTEMPT_ASSEMBLY_RECOVERY;
 	public static final boolean USE_OPTIMISED_ASSEMBLY_DATA_STRUCTURES;
     public static final boolean EXPORT_INPROCESS_ALIGNMENTS;
+	public static final boolean USE_OFF_HEAP_SORT;
+	public static final long OFF_HEAP_SORT_BUFFER_SIZE;
+	public static final boolean PARALLEL_EVIDENCE_ALLOCATION;
+	public static final boolean USE_ARRAY_CLIQUE_CALCULATOR;
 
     static {
 		SANITY_CHECK_ASSEMBLY_GRAPH = Boolean.valueOf(System.getProperty("sanitycheck.assembly", "false"));
@@ -33,5 +37,9 @@ public class Defaults {
 		ATTEMPT_ASSEMBLY_RECOVERY = Boolean.valueOf(System.getProperty("assembly.recover", "true"));
 		USE_OPTIMISED_ASSEMBLY_DATA_STRUCTURES = Boolean.valueOf(System.getProperty("assembly.optimised_data_structures", "true"));
 		EXPORT_INPROCESS_ALIGNMENTS = Boolean.valueOf(System.getProperty("bwa.export", "false"));
+		USE_OFF_HEAP_SORT = Boolean.valueOf(System.getProperty("sort.offheap", "false"));
+		OFF_HEAP_SORT_BUFFER_SIZE = Long.parseLong(System.getProperty("sort.offheap.buffersize", Long.toString(512L * 1024 * 1024)));
+		PARALLEL_EVIDENCE_ALLOCATION = Boolean.valueOf(System.getProperty("allocate.parallel", "false"));
+		USE_ARRAY_CLIQUE_CALCULATOR = Boolean.valueOf(System.getProperty("clique.array", "false"));
 	}
 }
\ No newline at end of file
@@ -0,0 +1,58 @@
+package au.edu.wehi.idsv;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records assembly identifier requests and returns placeholder identifiers.
+ *
+ * This allows assemblies generated concurrently to be named in a deterministic
+ * order by replaying the recorded requests against the actual generator once
+ * assembly is complete.
+ */
+public class DeferredAssemblyIdGenerator implements AssemblyIdGenerator {
+	private static final String PLACEHOLDER_PREFIX = "deferred_asm_";
+	private static class Request {
+		private final BreakendSummary breakpoint;
+		private final byte[] baseCalls;
+		private final int startAnchoredBaseCount;
+		private final int endAnchoredBaseCount;
+		public Request(BreakendSummary breakpoint, byte[] baseCalls, int startAnchoredBaseCount, int endAnchoredBaseCount) {
+			this.breakpoint = breakpoint;
+			this.baseCalls = baseCalls;
+			this.startAnchoredBaseCount = startAnchoredBaseCount;
+			this.endAnchoredBaseCount = endAnchoredBaseCount;
+		}
+	}
+	private final List<Request> requests = new ArrayList<>();
+	private List<String> resolved = null;
+	@Override
+	public String generate(BreakendSummary breakpoint, byte[] baseCalls, int startAnchoredBaseCount, int endAnchoredBaseCount) {
+		if (resolved != null) throw new IllegalStateException("Identifiers already resolved");
+		requests.add(new Request(breakpoint, baseCalls, startAnchoredBaseCount, endAnchoredBaseCount));
+		return PLACEHOLDER_PREFIX + (requests.size() - 1);
+	}
+	/**
+	 * Generates the actual identifiers for all requests in the order they were made.
+	 * @param generator generator to generate identifiers with
+	 */
+	public void resolve(AssemblyIdGenerator generator) {
+		resolved = new ArrayList<>(requests.size());
+		for (Request r : requests) {
+			resolved.add(generator.generate(r.breakpoint, r.baseCalls, r.startAnchoredBaseCount, r.endAnchoredBaseCount));
+		}
+		requests.clear();
+	}
+	/**
+	 * Looks up the actual identifier corresponding to a placeholder identifier
+	 * @param placeholder placeholder identifier returned by this generator
+	 * @return resolved identifier
+	 */
+	public String getResolvedId(String placeholder) {
+		if (resolved == null) throw new IllegalStateException("Identifiers not yet resolved");
+		if (placeholder == null || !placeholder.startsWith(PLACEHOLDER_PREFIX)) {
+			throw new IllegalArgumentException(placeholder + " not generated by this generator");
+		}
+		return resolved.get(Integer.parseInt(placeholder.substring(PLACEHOLDER_PREFIX.length())));
+	}
+}
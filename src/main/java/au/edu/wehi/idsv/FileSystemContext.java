@@ -5,6 +5,7 @@ import gridss.analysis.*;
 import java.io.File;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.UUID;
 
 public class FileSystemContext {
 	private final File tempDir;
@@ -36,6 +37,12 @@ public class FileSystemContext {
 	public static File getWorkingFileFor(File file, String workingPrefix) {
 		return new File(file.getParent(), workingPrefix + file.getName());
 	}
+	/**
+	 * Gets a working file that is not shared with any other process writing the same file
+	 */
+	public static File getUniqueWorkingFileFor(File file, String workingPrefix) {
+		return getWorkingFileFor(file, workingPrefix + UUID.randomUUID() + ".");
+	}
 	public File getTemporaryDirectory() {
 		return tempDir;
 	}
@@ -63,11 +70,13 @@ public class FileSystemContext {
 	private static final String FORMAT_REALIGN_SAM = "%1$s/%2$s.realign.%3$d" + SAM_SUFFIX;
 	private static final String FORMAT_BREAKPOINT_VCF = "%1$s/%2$s.breakpoint" + VCF_SUFFIX;
 	private static final String FORMAT_ASSEMBLY_CHUNK_SAM = "%1$s/%2$s.assembly.chunk%3$d" + SAM_SUFFIX;
-	private static final String FORMAT_ASSEMBLY_TELEMETRY = "%1$s/%2$s.events_%3$d.csv";
-	private static final String FORMAT_ASSEMBLY_EXCLUDED_REGIONS = "%1$s/%2$s.excluded_%3$d.bed";
-	private static final String FORMAT_ASSEMBLY_SAFETY_REGIONS = "%1$s/%2$s.subsetCalled_%3$d.bed";
-	private static final String FORMAT_ASSEMBLY_DOWNSAMPLED_REGIONS = "%1$s/%2$s.downsampled_%3$d.bed";
+	private static final String FORMAT_ASSEMBLY_CHUNK_DIRECTION_SAM = "%1$s/%2$s.assembly.chunk%3$d.%4$s" + SAM_SUFFIX;
+	private static final String FORMAT_ASSEMBLY_TELEMETRY = "%1$s/%2$s.events_%3$s.csv";
+	private static final String FORMAT_ASSEMBLY_EXCLUDED_REGIONS = "%1$s/%2$s.excluded_%3$s.bed";
+	private static final String FORMAT_ASSEMBLY_SAFETY_REGIONS = "%1$s/%2$s.subsetCalled_%3$s.bed";
+	private static final String FORMAT_ASSEMBLY_DOWNSAMPLED_REGIONS = "%1$s/%2$s.downsampled_%3$s.bed";
 	private static final String FORMAT_VARIANT_CALL_CHUNK_VCF = "%1$s/%2$s.breakpoint.chunk%3$d" + VCF_SUFFIX;
+	private static final String FORMAT_WORK_QUEUE = "%1$s/%2$s.queue";
 	/**
 	 * Gets the idsv intermediate working directory for the given input
 	 */
@@ -149,19 +158,40 @@ public class FileSystemContext {
 	public File getAssemblyChunkBam(File input, int chunk) {
 		return getFile(String.format(FORMAT_ASSEMBLY_CHUNK_SAM, getIntermediateDirectory(input), getSource(input).getName(), chunk));
 	}
+	public File getAssemblyChunkBam(File input, int chunk, BreakendDirection direction) {
+		return getFile(String.format(FORMAT_ASSEMBLY_CHUNK_DIRECTION_SAM, getIntermediateDirectory(input), getSource(input).getName(), chunk, direction.toChar()));
+	}
 	public File getAssemblyTelemetry(File assembly, int nodeIndex) {
-		return getFile(String.format(FORMAT_ASSEMBLY_TELEMETRY, getIntermediateDirectory(assembly), getSource(assembly).getName(), nodeIndex));
+		return getAssemblyTelemetry(assembly, Integer.toString(nodeIndex));
+	}
+	public File getAssemblyTelemetry(File assembly, String jobName) {
+		return getFile(String.format(FORMAT_ASSEMBLY_TELEMETRY, getIntermediateDirectory(assembly), getSource(assembly).getName(), jobName));
 	}
 	public File getAssemblyExcludedRegions(File assembly, int nodeIndex) {
-		return getFile(String.format(FORMAT_ASSEMBLY_EXCLUDED_REGIONS, getIntermediateDirectory(assembly), getSource(assembly).getName(), nodeIndex));
+		return getAssemblyExcludedRegions(assembly, Integer.toString(nodeIndex));
+	}
+	public File getAssemblyExcludedRegions(File assembly, String jobName) {
+		return getFile(String.format(FORMAT_ASSEMBLY_EXCLUDED_REGIONS, getIntermediateDirectory(assembly), getSource(assembly).getName(), jobName));
 	}
 	public File getAssemblySafetyRegions(File assembly, int nodeIndex) {
-		return getFile(String.format(FORMAT_ASSEMBLY_SAFETY_REGIONS, getIntermediateDirectory(assembly), getSource(assembly).getName(), nodeIndex));
+		return getAssemblySafetyRegions(assembly, Integer.toString(nodeIndex));
+	}
+	public File getAssemblySafetyRegions(File assembly, String jobName) {
+		return getFile(String.format(FORMAT_ASSEMBLY_SAFETY_REGIONS, getIntermediateDirectory(assembly), getSource(assembly).getName(), jobName));
 	}
 	public File getAssemblyDownsampledRegions(File assembly, int nodeIndex) {
-		return getFile(String.format(FORMAT_ASSEMBLY_DOWNSAMPLED_REGIONS, getIntermediateDirectory(assembly), getSource(assembly).getName(), nodeIndex));
+		return getAssemblyDownsampledRegions(assembly, Integer.toString(nodeIndex));
+	}
+	public File getAssemblyDownsampledRegions(File assembly, String jobName) {
+		return getFile(String.format(FORMAT_ASSEMBLY_DOWNSAMPLED_REGIONS, getIntermediateDirectory(assembly), getSource(assembly).getName(), jobName));
 	}
 	public File getVariantCallChunkVcf(File input, int chunk) {
 		return getFile(String.format(FORMAT_VARIANT_CALL_CHUNK_VCF, getIntermediateDirectory(input), getSource(input).getName(), chunk));
 	}
+	/**
+	 * Gets the work queue directory shared by all jobs generating the given output
+	 */
+	public File getWorkQueueDirectory(File output) {
+		return new File(String.format(FORMAT_WORK_QUEUE, getIntermediateDirectory(output), getSource(output).getName()));
+	}
 }
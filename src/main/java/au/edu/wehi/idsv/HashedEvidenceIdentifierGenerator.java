@@ -2,12 +2,10 @@ package au.edu.wehi.idsv;
 
 import com.google.common.hash.HashCode;
 import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
 import com.google.common.hash.Hashing;
 import htsjdk.samtools.SAMRecord;
 
-import java.nio.charset.StandardCharsets;
-import java.util.Base64;
-
 /**
  * Generates evidence ID using hashes to reduce evidenceID size
  * 
@@ -16,19 +14,25 @@ import java.util.Base64;
  * The second block is the alignment unique hash for that segment (typically 6 bytes = 36 bits)
  * The final block is the overall evidenceid hash for that alignment (typically 6 bytes = 36 bits)
  * 
+ * Each block is the truncated encoding of a 128-bit murmur3 hash of the corresponding
+ * {@link StringEvidenceIdentifierGenerator} identifier. All three hashes are calculated
+ * from a single identifier buffer without materialising the intermediate identifier strings.
+ * 
  * 
  * @author Daniel Cameron
  *
  */
 public class HashedEvidenceIdentifierGenerator implements EvidenceIdentifierGenerator {
-	private final StringEvidenceIdentifierGenerator gen = new StringEvidenceIdentifierGenerator();
-	private final Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
-	//private final Base64.Decoder decoder = Base64.getUrlDecoder();
+	private static final char[] URL_SAFE_BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+	private static final int MAX_ENCODED_LENGTH = (128 + 5) / 6;
 	private HashFunction hf = Hashing.murmur3_128();
 	private final int segmentUniqueBytes;
 	private final int alignmentUniqueBytes;
 	private final int evidenceidUniqueBytes;
 	public HashedEvidenceIdentifierGenerator(int segmentUniqueBytes, int alignmentUniqueBytes, int evidenceidUniqueBytes) {
+		if (segmentUniqueBytes > MAX_ENCODED_LENGTH || alignmentUniqueBytes > MAX_ENCODED_LENGTH || evidenceidUniqueBytes > MAX_ENCODED_LENGTH) {
+			throw new IllegalArgumentException("Hash encoding cannot exceed " + MAX_ENCODED_LENGTH + " bytes");
+		}
 		this.segmentUniqueBytes = segmentUniqueBytes;
 		this.alignmentUniqueBytes = alignmentUniqueBytes;
 		this.evidenceidUniqueBytes = evidenceidUniqueBytes;
@@ -37,18 +41,54 @@ public class HashedEvidenceIdentifierGenerator implements EvidenceIdentifierGene
 		this(20, 6, 6);
 	}
 	/**
-	 * Hashes the given string, returning a string that does not contain any SAM or VCF special characters.
-	 * @param s
-	 * @return string encoding hash
+	 * Hashes the first length characters of the given string.
+	 * 
+	 * The characters are fed directly into the hash function so no intermediate String is required.
+	 * The result is identical to hashing the US-ASCII encoding of the prefix.
+	 */
+	private HashCode hash(CharSequence s, int length) {
+		Hasher hasher = hf.newHasher(length);
+		for (int i = 0; i < length; i++) {
+			char c = s.charAt(i);
+			hasher.putByte((byte)(c < 0x80 ? c : '?'));
+		}
+		return hasher.hash();
+	}
+	/**
+	 * Appends the leading characters of the url-safe Base64 encoding of the given hash.
+	 * The encoding does not contain any SAM or VCF special characters.
 	 */
 	// SAM read name regex: \*|[!-()+-<>-~][!-~]*
 	// !"#$%&'()+,-./0123456789:;<>?@ABCDEFGHIJKLMNOPQRSTUVWXYZ[\]^_`abcdefghijklmnopqrstuvwxyz{|}~
 	// * = disallowed
-	private String hash(String s, int bytes) {
-		HashCode hc = hf.hashString(s, StandardCharsets.US_ASCII);
-		String encoded = encoder.encodeToString(hc.asBytes());
-		String truncated = encoded.substring(0, bytes);
-		return truncated;
+	private static void appendEncoded(StringBuilder out, HashCode hc, int chars) {
+		byte[] b = hc.asBytes();
+		for (int i = 0; i < chars; i++) {
+			int bitOffset = 6 * i;
+			int byteOffset = bitOffset / 8;
+			int window = (b[byteOffset] & 0xFF) << 8;
+			if (byteOffset + 1 < b.length) {
+				window |= b[byteOffset + 1] & 0xFF;
+			}
+			out.append(URL_SAFE_BASE64[(window >>> (10 - bitOffset % 8)) & 0x3F]);
+		}
+	}
+	/**
+	 * Converts a string identifier into its hashed form
+	 * @param name string identifier
+	 * @param segmentLength length of the segment unique prefix of the identifier
+	 * @param alignmentLength length of the alignment unique prefix of the identifier
+	 * @param isEvidenceID name is a full evidenceID
+	 * @return hashed identifier
+	 */
+	private String toHashedID(StringBuilder name, int segmentLength, int alignmentLength, boolean isEvidenceID) {
+		StringBuilder sb = new StringBuilder(segmentUniqueBytes + alignmentUniqueBytes + evidenceidUniqueBytes);
+		appendEncoded(sb, hash(name, segmentLength), segmentUniqueBytes);
+		appendEncoded(sb, hash(name, alignmentLength), alignmentUniqueBytes);
+		if (isEvidenceID) {
+			appendEncoded(sb, hash(name, name.length()), evidenceidUniqueBytes);
+		}
+		return sb.toString();
 	}
 	@Override
 	public String extractAlignmentUniqueName(String evidenceId) {
@@ -60,32 +100,52 @@ public class HashedEvidenceIdentifierGenerator implements EvidenceIdentifierGene
 	}
 	@Override
 	public String getAlignmentUniqueName(SAMRecord record) {
-		String aun = gen.getAlignmentUniqueName(record);
-		return getSegmentUniqueName(record) + hash(aun, alignmentUniqueBytes);
+		StringBuilder sb = StringEvidenceIdentifierGenerator.buildSegmentUniqueName(record);
+		int segmentLength = sb.length();
+		StringEvidenceIdentifierGenerator.appendAlignmentUniqueSuffix(sb, record);
+		return toHashedID(sb, segmentLength, sb.length(), false);
 	}
 	@Override
 	public String getSegmentUniqueName(SAMRecord record) {
-		String sun = gen.getSegmentUniqueName(record);
-		return hash(sun, segmentUniqueBytes);
+		StringBuilder sb = StringEvidenceIdentifierGenerator.buildSegmentUniqueName(record);
+		StringBuilder out = new StringBuilder(segmentUniqueBytes);
+		appendEncoded(out, hash(sb, sb.length()), segmentUniqueBytes);
+		return out.toString();
 	}
 	@Override
 	public String getEvidenceID(NonReferenceReadPair e) {
-		String id = gen.getEvidenceID(e);
-		return getAlignmentUniqueName(e.getLocalledMappedRead()) + hash(id, evidenceidUniqueBytes);
+		StringBuilder sb = StringEvidenceIdentifierGenerator.buildSegmentUniqueName(e.getLocalledMappedRead());
+		int segmentLength = sb.length();
+		StringEvidenceIdentifierGenerator.appendAlignmentUniqueSuffix(sb, e.getLocalledMappedRead());
+		int alignmentLength = sb.length();
+		StringEvidenceIdentifierGenerator.appendEvidenceSuffix(sb, e);
+		return toHashedID(sb, segmentLength, alignmentLength, true);
 	}
 	@Override
 	public String getEvidenceID(SoftClipEvidence e) {
-		String id = gen.getEvidenceID(e);
-		return getAlignmentUniqueName(e.getSAMRecord()) + hash(id, evidenceidUniqueBytes);
+		StringBuilder sb = StringEvidenceIdentifierGenerator.buildSegmentUniqueName(e.getSAMRecord());
+		int segmentLength = sb.length();
+		StringEvidenceIdentifierGenerator.appendAlignmentUniqueSuffix(sb, e.getSAMRecord());
+		int alignmentLength = sb.length();
+		StringEvidenceIdentifierGenerator.appendEvidenceSuffix(sb, e);
+		return toHashedID(sb, segmentLength, alignmentLength, true);
 	}
 	@Override
 	public String getEvidenceID(SplitReadEvidence e) {
-		String id = gen.getEvidenceID(e);
-		return getAlignmentUniqueName(e.getSAMRecord()) + hash(id, evidenceidUniqueBytes);
+		StringBuilder sb = StringEvidenceIdentifierGenerator.buildSegmentUniqueName(e.getSAMRecord());
+		int segmentLength = sb.length();
+		StringEvidenceIdentifierGenerator.appendAlignmentUniqueSuffix(sb, e.getSAMRecord());
+		int alignmentLength = sb.length();
+		StringEvidenceIdentifierGenerator.appendEvidenceSuffix(sb, e);
+		return toHashedID(sb, segmentLength, alignmentLength, true);
 	}
 	@Override
 	public String getEvidenceID(IndelEvidence e) {
-		String id = gen.getEvidenceID(e);
-		return getAlignmentUniqueName(e.getSAMRecord()) + hash(id, evidenceidUniqueBytes);
+		StringBuilder sb = StringEvidenceIdentifierGenerator.buildSegmentUniqueName(e.getSAMRecord());
+		int segmentLength = sb.length();
+		StringEvidenceIdentifierGenerator.appendAlignmentUniqueSuffix(sb, e.getSAMRecord());
+		int alignmentLength = sb.length();
+		StringEvidenceIdentifierGenerator.appendEvidenceSuffix(sb, e);
+		return toHashedID(sb, segmentLength, alignmentLength, true);
 	}
 }
@@ -0,0 +1,122 @@
+package au.edu.wehi.idsv;
+
+import htsjdk.samtools.QueryInterval;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Partitions genomic intervals at positions with no nearby evidence.
+ *
+ * Evidence further apart than the margin cannot contribute to the same
+ * assembly graph so intervals split at such quiet positions can be assembled
+ * independently of each other.
+ *
+ * Evidence must be added in genomic coordinate order of breakend start position.
+ */
+public class QuietRegionPartitioner {
+	private final int margin;
+	/**
+	 * Candidate cut positions. Cuts are placed after the given position.
+	 */
+	private final IntArrayList cutReferenceIndex = new IntArrayList();
+	private final IntArrayList cutPosition = new IntArrayList();
+	/**
+	 * Number of evidence before each candidate cut
+	 */
+	private final LongArrayList cutEvidenceCount = new LongArrayList();
+	private int currentReferenceIndex = -1;
+	private int maxEnd;
+	private int lastStart;
+	private long evidenceCount = 0;
+	/**
+	 * @param margin minimum distance between evidence on either side of a cut
+	 */
+	public QuietRegionPartitioner(int margin) {
+		this.margin = margin;
+	}
+	/**
+	 * Adds evidence
+	 * @param referenceIndex reference index of breakend
+	 * @param start breakend start position
+	 * @param end breakend end position
+	 */
+	public void add(int referenceIndex, int start, int end) {
+		if (referenceIndex < currentReferenceIndex || (referenceIndex == currentReferenceIndex && start < lastStart)) {
+			throw new IllegalArgumentException("Evidence must be added in coordinate order");
+		}
+		if (evidenceCount > 0) {
+			if (referenceIndex != currentReferenceIndex) {
+				addCut(currentReferenceIndex, Integer.MAX_VALUE);
+			} else if ((long)start - maxEnd > margin) {
+				addCut(referenceIndex, maxEnd + (start - maxEnd) / 2);
+			}
+		}
+		if (referenceIndex != currentReferenceIndex) {
+			currentReferenceIndex = referenceIndex;
+			maxEnd = end;
+		}
+		maxEnd = Math.max(maxEnd, end);
+		lastStart = start;
+		evidenceCount++;
+	}
+	private void addCut(int referenceIndex, int position) {
+		cutReferenceIndex.add(referenceIndex);
+		cutPosition.add(position);
+		cutEvidenceCount.add(evidenceCount);
+	}
+	public long getEvidenceCount() {
+		return evidenceCount;
+	}
+	/**
+	 * Number of positions at which the intervals could be split
+	 */
+	public int getCandidateCutCount() {
+		return cutPosition.size();
+	}
+	/**
+	 * Splits the given intervals into independent partitions
+	 * @param intervals intervals covering all added evidence, in coordinate order
+	 * @param minEvidencePerPartition minimum number of evidence in each partition.
+	 * Adjacent candidate partitions are merged until this size is reached.
+	 * @return intervals of each partition, in coordinate order
+	 */
+	public List<QueryInterval[]> partition(QueryInterval[] intervals, long minEvidencePerPartition) {
+		IntArrayList cutRef = new IntArrayList();
+		IntArrayList cutPos = new IntArrayList();
+		long lastCutCount = 0;
+		for (int i = 0; i < cutPosition.size(); i++) {
+			long count = cutEvidenceCount.getLong(i);
+			if (count - lastCutCount >= minEvidencePerPartition && evidenceCount - count >= minEvidencePerPartition) {
+				cutRef.add(cutReferenceIndex.getInt(i));
+				cutPos.add(cutPosition.getInt(i));
+				lastCutCount = count;
+			}
+		}
+		List<QueryInterval[]> partitions = new ArrayList<>();
+		List<QueryInterval> current = new ArrayList<>();
+		int cut = 0;
+		for (QueryInterval qi : intervals) {
+			int start = qi.start;
+			while (cut < cutRef.size() && (cutRef.getInt(cut) < qi.referenceIndex || (cutRef.getInt(cut) == qi.referenceIndex && cutPos.getInt(cut) < qi.end))) {
+				if (cutRef.getInt(cut) == qi.referenceIndex && cutPos.getInt(cut) >= start) {
+					current.add(new QueryInterval(qi.referenceIndex, start, cutPos.getInt(cut)));
+					start = cutPos.getInt(cut) + 1;
+				}
+				flush(partitions, current);
+				cut++;
+			}
+			current.add(new QueryInterval(qi.referenceIndex, start, qi.end));
+		}
+		flush(partitions, current);
+		return partitions;
+	}
+	private static void flush(List<QueryInterval[]> partitions, List<QueryInterval> current) {
+		if (!current.isEmpty()) {
+			partitions.add(current.toArray(new QueryInterval[0]));
+			current.clear();
+		}
+	}
+}
@@ -214,6 +214,7 @@ public class SAMEvidenceSource extends EvidenceSource {
 	}
 	public CloseableIterator<DirectedEvidence> iterator(final QueryInterval[] intervals, EvidenceSortOrder eso) {
 		SamReader reader = getReader();
+		BAMFileReader.setRecordFilter(reader, r -> !shouldFilterPreDecode(r));
 		// expand query bounds as the alignment for a discordant read pair could fall before or after the breakend interval we are extracting
 		QueryInterval[] expandedIntervals = QueryIntervalUtil.padIntervals(getContext().getDictionary(), intervals, getMaxConcordantFragmentSize() + 1);
 		// ignore blacklisted regions
@@ -249,11 +250,36 @@ public class SAMEvidenceSource extends EvidenceSource {
 		return it;
 	}
 	public CloseableIterator<DirectedEvidence> iterator(EvidenceSortOrder eso) {
+		return iterator(eso, false);
+	}
+	/**
+	 * Iterates over all evidence in this source
+	 * @param eso evidence sort order
+	 * @param parallel perform BAM decoding and evidence construction on separate
+	 * background threads. Records are handed off between stages in batches.
+	 * @return evidence iterator
+	 */
+	public CloseableIterator<DirectedEvidence> iterator(EvidenceSortOrder eso, boolean parallel) {
 		SamReader reader = getReader();
+		BAMFileReader.setRecordFilter(reader, r -> !shouldFilterPreDecode(r));
 		SAMRecordIterator it = reader.iterator();
 		it.assertSorted(SortOrder.coordinate);
-		Iterator<DirectedEvidence> eit = asEvidence(it, eso);
-		return new AutoClosingIterator<>(eit, reader, it);
+		if (!parallel) {
+			Iterator<DirectedEvidence> eit = asEvidence(it, eso);
+			return new AutoClosingIterator<>(eit, reader, it);
+		}
+		String name = getFile() == null ? "" : getFile().getName();
+		// Force decoding of the lazily parsed BAM fields on the decoding thread
+		Iterator<SAMRecord> eagerIt = Iterators.transform(it, r -> {
+			r.getCigar();
+			r.getReadBases();
+			r.getBaseQualities();
+			r.getAttribute(SAMTag.NM.name());
+			return r;
+		});
+		AsyncBufferedIterator<SAMRecord> decodedIt = new AsyncBufferedIterator<>(new AutoClosingIterator<>(eagerIt, it), name + "-decode");
+		Iterator<DirectedEvidence> eit = asEvidence(decodedIt, eso);
+		return new AsyncBufferedIterator<>(new AutoClosingIterator<>(eit, decodedIt, reader), name);
 	}
 	protected SamReader getReader() {
 		File svFile = getSVFile();
@@ -276,10 +302,13 @@ public class SAMEvidenceSource extends EvidenceSource {
 	private Iterator<DirectedEvidence> asEvidence(Iterator<SAMRecord> it, EvidenceSortOrder eso) {
 		it = new BufferedIterator<>(it, 2); // TODO: remove when https://github.com/samtools/htsjdk/issues/760 is resolved
 		it = Iterators.filter(it, r -> !shouldFilterPreTransform(r));
-		it = Iterators.transform(it, r -> transform(r));
+		// Records are in coordinate order so blacklist lookups can use a sequential cursor
+		IntervalBed.Cursor alignmentBlacklist = getBlacklistedRegions().cursor();
+		IntervalBed.Cursor breakendBlacklist = getBlacklistedRegions().cursor();
+		it = Iterators.transform(it, r -> transform(r, alignmentBlacklist));
 		it = Iterators.filter(it, r -> !shouldFilter(r));		
 		Iterator<DirectedEvidence> eit = new DirectedEvidenceIterator(it, this, minIndelSize());
-		eit = Iterators.filter(eit, e -> !shouldFilter(e));
+		eit = Iterators.filter(eit, e -> !shouldFilter(e, breakendBlacklist));
 		switch (eso) {
 			case SAMRecordStartPosition:
 				// already sorted by coordinate
@@ -305,10 +334,18 @@ public class SAMEvidenceSource extends EvidenceSource {
 		return total / values.length;
 	}
 	public SAMRecord transform(SAMRecord r) {
+		return transform(r, null);
+	}
+	/**
+	 * @param alignmentBlacklist blacklist cursor for lookups of the record alignment location.
+	 */
+	private SAMRecord transform(SAMRecord r, IntervalBed.Cursor alignmentBlacklist) {
 		SAMRecordUtil.lowMapqToUnmapped(r, getContext().getConfig().minMapq);
 		// Converts overlaps of blacklisted regions to unmapped
 		if (!r.getReadUnmappedFlag()) {
-			if (getBlacklistedRegions().overlaps(r.getReferenceIndex(), r.getAlignmentStart(), r.getAlignmentEnd())) {
+			if (alignmentBlacklist != null
+					? alignmentBlacklist.overlaps(r.getReferenceIndex(), r.getAlignmentStart(), r.getAlignmentEnd())
+					: getBlacklistedRegions().overlaps(r.getReferenceIndex(), r.getAlignmentStart(), r.getAlignmentEnd())) {
 				r.setReadUnmappedFlag(true);
 			}
 		}
@@ -375,6 +412,26 @@ public class SAMEvidenceSource extends EvidenceSource {
 		}
 		return false;
 	}
+	private static final CigarOperator[] INDEL_OR_CLIP_OPERATORS = { CigarOperator.S, CigarOperator.H, CigarOperator.D, CigarOperator.I, CigarOperator.N };
+	/**
+	 * Subset of the {@link #shouldFilterPreTransform(SAMRecord)} filtering logic that can be evaluated
+	 * directly on the BAM encoding of the record. Records filtered here are never decoded.
+	 * @param r BAM record
+	 * @return true if the record would be filtered by shouldFilterPreTransform
+	 */
+	public boolean shouldFilterPreDecode(BAMRecordView r) {
+		if (r.getReadUnmappedFlag() || r.getMappingQuality() < getContext().getConfig().minMapq) {
+			return true;
+		}
+		if (getContext().isFilterDuplicates() && r.getDuplicateReadFlag()) {
+			return true;
+		}
+		// read pair concordance requires the decoded record
+		if (!r.getReadPairedFlag() && !r.hasCigarOperator(INDEL_OR_CLIP_OPERATORS)) {
+			return true;
+		}
+		return false;
+	}
 	private boolean isIndelOrClipped(SAMRecord r) {
 		for (CigarElement ce : r.getCigar()) {
 			switch (ce.getOperator()) {
@@ -440,8 +497,16 @@ public class SAMEvidenceSource extends EvidenceSource {
 		return Math.min(getContext().getConfig().getSoftClip().minLength, getContext().getVariantCallingParameters().minSize);
 	}
 	public boolean shouldFilter(DirectedEvidence e) {
+		return shouldFilter(e, null);
+	}
+	/**
+	 * @param breakendBlacklist blacklist cursor for lookups of the local breakend location.
+	 */
+	private boolean shouldFilter(DirectedEvidence e, IntervalBed.Cursor breakendBlacklist) {
 		BreakendSummary bs = e.getBreakendSummary();
-		if (getBlacklistedRegions().overlaps(bs.referenceIndex, bs.start - 1, bs.end + 1)) {
+		if (breakendBlacklist != null
+				? breakendBlacklist.overlaps(bs.referenceIndex, bs.start - 1, bs.end + 1)
+				: getBlacklistedRegions().overlaps(bs.referenceIndex, bs.start - 1, bs.end + 1)) {
 			return true;
 		}
 		GridssConfiguration config = getContext().getConfig();
@@ -545,10 +610,7 @@ public class SAMEvidenceSource extends EvidenceSource {
 	public static CloseableIterator<DirectedEvidence> mergedIterator(List<SAMEvidenceSource> source, boolean parallel, EvidenceSortOrder eso) {
 		List<CloseableIterator<DirectedEvidence>> toMerge = Lists.newArrayList();
 		for (SAMEvidenceSource bam : source) {
-			CloseableIterator<DirectedEvidence> it = bam.iterator(eso);
-			if (parallel) {
-				it = new AsyncBufferedIterator<>(it, bam.getFile() == null ? "" : bam.getFile().getName());
-			}
+			CloseableIterator<DirectedEvidence> it = bam.iterator(eso, parallel);
 			toMerge.add(it);
 		}
 		CloseableIterator<DirectedEvidence> merged = new AutoClosingMergedIterator<DirectedEvidence>(toMerge, eso == EvidenceSortOrder.EvidenceStartPosition ? DirectedEvidenceOrder.ByNatural : DirectedEvidenceOrder.BySAMStart);
@@ -59,6 +59,12 @@ public class SequentialEvidenceAllocator implements Iterator<SequentialEvidenceA
 			this.startLocation = context.getLinear().getStartLinearCoordinate(this.location);
 			//this.endLocation = context.getLinear().getEndLinearCoordinate(this.location);
 		}
+		/**
+		 * Linear genomic coordinate of the start of the variant breakend
+		 */
+		public long getStartLocation() {
+			return startLocation;
+		}
 		private void attributeEvidence(DirectedEvidence e) {
 			support.add(e);
 		}
@@ -3,15 +3,28 @@ package au.edu.wehi.idsv;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class SequentialIdGenerator implements VariantIdGenerator, AssemblyIdGenerator {
-	private final AtomicInteger id = new AtomicInteger(0);
+	private final AtomicInteger id;
 	private final String prefix;
 	private final String suffix;
 	public SequentialIdGenerator(String prefix) {
 		this(prefix, "");
 	}
 	public SequentialIdGenerator(String prefix, String suffix) {
+		this(prefix, suffix, 0);
+	}
+	/**
+	 * @param lastId last identifier generated. Identifiers are generated starting from lastId + 1.
+	 */
+	public SequentialIdGenerator(String prefix, String suffix, int lastId) {
 		this.prefix = prefix;
 		this.suffix = suffix;
+		this.id = new AtomicInteger(lastId);
+	}
+	/**
+	 * @return last identifier generated
+	 */
+	public int getLastId() {
+		return id.get();
 	}
 	public String generate() {
 		return String.format("%s%d%s", prefix, id.incrementAndGet(), suffix);
@@ -21,11 +21,21 @@ public abstract class SingleReadEvidence implements DirectedEvidence {
 	protected final SAMEvidenceSource source;
 	private final SAMRecord record;
 	private final BreakendSummary location;
-	private final byte[] anchorBases;
-	private final byte[] anchorQuals;
-	private final String untemplated;
-	private final byte[] breakendBases;
-	private final byte[] breakendQuals;
+	/**
+	 * Read offsets of the anchoring, untemplated, and breakend bases.
+	 * Sequences and qualities are only extracted from the read when first requested.
+	 */
+	private final int anchorStart;
+	private final int anchorEnd;
+	private final int untemplatedStart;
+	private final int untemplatedEnd;
+	private final int breakendStart;
+	private final int breakendEnd;
+	private byte[] anchorBases;
+	private byte[] anchorQuals;
+	private String untemplated;
+	private byte[] breakendBases;
+	private byte[] breakendQuals;
 	private final boolean isUnanchored;
 	/**
 	 * Offset in the read alignment of the nominal anchoring base flanking the breakend.
@@ -185,16 +195,12 @@ public abstract class SingleReadEvidence implements DirectedEvidence {
 		if (offsetUnmappedEnd != offsetRemoteStart && offsetUnmappedStart != offsetRemoteEnd) throw new IllegalArgumentException();
 		this.source = source;
 		this.record = record;
-		this.untemplated = new String(Arrays.copyOfRange(record.getReadBases(), offsetUnmappedStart, offsetUnmappedEnd), StandardCharsets.US_ASCII);
-		this.anchorBases = Arrays.copyOfRange(record.getReadBases(), offsetLocalStart, offsetLocalEnd);
-		this.breakendBases = Arrays.copyOfRange(record.getReadBases(), Math.min(offsetRemoteStart, offsetUnmappedStart), Math.max(offsetRemoteEnd, offsetUnmappedEnd));
-		if (record.getBaseQualities() != SAMRecord.NULL_QUALS && record.getBaseQualities() != null) {
-			this.anchorQuals = Arrays.copyOfRange(record.getBaseQualities(), offsetLocalStart, offsetLocalEnd);
-			this.breakendQuals = Arrays.copyOfRange(record.getBaseQualities(), Math.min(offsetRemoteStart, offsetUnmappedStart), Math.max(offsetRemoteEnd, offsetUnmappedEnd));
-		} else {
-			this.anchorQuals = null;
-			this.breakendQuals = null;
-		}
+		this.anchorStart = offsetLocalStart;
+		this.anchorEnd = offsetLocalEnd;
+		this.untemplatedStart = offsetUnmappedStart;
+		this.untemplatedEnd = offsetUnmappedEnd;
+		this.breakendStart = Math.min(offsetRemoteStart, offsetUnmappedStart);
+		this.breakendEnd = Math.max(offsetRemoteEnd, offsetUnmappedEnd);
 		this.isUnanchored = localInexactMargin > 0 || remoteInexactMargin > 0;
 		location = withExactHomology(location);
 		if (source != null && source.getContext() != null && source.getContext().getReference() != null && source.getContext().getReference().getSequenceDictionary() != null) {
@@ -212,27 +218,29 @@ public abstract class SingleReadEvidence implements DirectedEvidence {
 		// If there's inserted sequence that hasn't been aligned to either side then we don't have a homology.
 		// Edge case: technically this isn't correct. Sequences such as
 		// tandem repeats can have both inserted sequence and sequence homology.
-		if (untemplated.length() > 0) return location;
+		if (untemplatedEnd > untemplatedStart) return location;
 		if (location instanceof BreakpointSummary) {
 			if (source != null && source.getContext() != null && source.getContext().getReference() !=  null) {
 				ReferenceLookup lookup = source.getContext().getReference();
 				BreakpointSummary bp = (BreakpointSummary) location;
+				// homology is calculated directly on the read bases to avoid extracting the anchor and breakend sequences
+				byte[] bases = record.getReadBases();
 				int localBasesMatchingRemoteReference;
 				int remoteBasesMatchingLocalReference;
 				if (bp.direction == BreakendDirection.Forward) {
 					// anchor -> breakend
-					remoteBasesMatchingLocalReference = homologyLength(lookup, bp.referenceIndex, bp.nominal + 1, 1, breakendBases, 0, 1);
+					remoteBasesMatchingLocalReference = homologyLength(lookup, bp.referenceIndex, bp.nominal + 1, 1, bases, breakendStart, breakendEnd, breakendStart, 1);
 					if (bp.direction2  == BreakendDirection.Backward) {
-						localBasesMatchingRemoteReference = homologyLength(lookup, bp.referenceIndex2, bp.nominal2 - 1, -1, anchorBases, anchorBases.length - 1, -1);
+						localBasesMatchingRemoteReference = homologyLength(lookup, bp.referenceIndex2, bp.nominal2 - 1, -1, bases, anchorStart, anchorEnd, anchorEnd - 1, -1);
 					} else {
-						localBasesMatchingRemoteReference = homologyLength(lookup, bp.referenceIndex2, bp.nominal2 + 1,  1, anchorBases, anchorBases.length - 1, -1);
+						localBasesMatchingRemoteReference = homologyLength(lookup, bp.referenceIndex2, bp.nominal2 + 1,  1, bases, anchorStart, anchorEnd, anchorEnd - 1, -1);
 					}
 				} else {
-					remoteBasesMatchingLocalReference = homologyLength(lookup, bp.referenceIndex, bp.nominal - 1, -1, breakendBases, breakendBases.length - 1, -1);
+					remoteBasesMatchingLocalReference = homologyLength(lookup, bp.referenceIndex, bp.nominal - 1, -1, bases, breakendStart, breakendEnd, breakendEnd - 1, -1);
 					if (bp.direction2  == BreakendDirection.Forward) {
-						localBasesMatchingRemoteReference = homologyLength(lookup, bp.referenceIndex2, bp.nominal2 + 1,  1, anchorBases, 0, 1);
+						localBasesMatchingRemoteReference = homologyLength(lookup, bp.referenceIndex2, bp.nominal2 + 1,  1, bases, anchorStart, anchorEnd, anchorStart, 1);
 					} else {
-						localBasesMatchingRemoteReference = homologyLength(lookup, bp.referenceIndex2, bp.nominal2 - 1, -1, anchorBases, 0, 1);
+						localBasesMatchingRemoteReference = homologyLength(lookup, bp.referenceIndex2, bp.nominal2 - 1, -1, bases, anchorStart, anchorEnd, anchorStart, 1);
 					}
 				}
 				BreakpointSummary adjusted = bp.adjustPosition(localBasesMatchingRemoteReference, remoteBasesMatchingLocalReference, false);
@@ -253,11 +261,14 @@ public abstract class SingleReadEvidence implements DirectedEvidence {
 			return location;
 		}
 	}
-	private static int homologyLength(ReferenceLookup lookup, int referenceIndex, int referencePosition, int referenceStep, byte[] seq, int seqPosition, int seqStep) {
+	/**
+	 * Determines the number of bases of seq[seqStart, seqEnd) matching the reference
+	 */
+	private static int homologyLength(ReferenceLookup lookup, int referenceIndex, int referencePosition, int referenceStep, byte[] seq, int seqStart, int seqEnd, int seqPosition, int seqStep) {
 		SAMSequenceRecord refSeq = lookup.getSequenceDictionary().getSequence(referenceIndex);
 		int homlen = 0;
 		boolean complement = referenceStep != seqStep;
-		while (seqPosition >= 0 && seqPosition < seq.length &&
+		while (seqPosition >= seqStart && seqPosition < seqEnd &&
 				// next step must still be on the contig
 				referencePosition >= 1 && referencePosition <= refSeq.getSequenceLength()) {
 			byte base = seq[seqPosition];
@@ -287,25 +298,41 @@ public abstract class SingleReadEvidence implements DirectedEvidence {
 	
 	@Override
 	public byte[] getBreakendSequence() {
+		if (breakendBases == null) {
+			breakendBases = Arrays.copyOfRange(record.getReadBases(), breakendStart, breakendEnd);
+		}
 		return breakendBases;
 	}
 
 	@Override
 	public byte[] getBreakendQuality() {
+		if (breakendQuals == null && hasBaseQualities()) {
+			breakendQuals = Arrays.copyOfRange(record.getBaseQualities(), breakendStart, breakendEnd);
+		}
 		return breakendQuals;
 	}
 	
 
 	@Override
 	public byte[] getAnchorSequence() {
+		if (anchorBases == null) {
+			anchorBases = Arrays.copyOfRange(record.getReadBases(), anchorStart, anchorEnd);
+		}
 		return anchorBases;
 	}
 
 	@Override
 	public byte[] getAnchorQuality() {
+		if (anchorQuals == null && hasBaseQualities()) {
+			anchorQuals = Arrays.copyOfRange(record.getBaseQualities(), anchorStart, anchorEnd);
+		}
 		return anchorQuals;
 	}
 
+	private boolean hasBaseQualities() {
+		return record.getBaseQualities() != SAMRecord.NULL_QUALS && record.getBaseQualities() != null;
+	}
+
 	@Override
 	public SAMEvidenceSource getEvidenceSource() {
 		return source;
@@ -322,6 +349,9 @@ public abstract class SingleReadEvidence implements DirectedEvidence {
 	}
 
 	public String getUntemplatedSequence() {
+		if (untemplated == null) {
+			untemplated = new String(record.getReadBases(), untemplatedStart, untemplatedEnd - untemplatedStart, StandardCharsets.US_ASCII);
+		}
 		return untemplated;
 	}
 	
@@ -341,8 +371,8 @@ public abstract class SingleReadEvidence implements DirectedEvidence {
 		int homlen = location.end - location.start;
 		int locallen = getHomologyAnchoredBaseCount();
 		int remotelen = homlen - locallen;
-		String strAnchor = new String(anchorBases, StandardCharsets.US_ASCII);
-		String strBreakend = new String(breakendBases, StandardCharsets.US_ASCII);
+		String strAnchor = new String(getAnchorSequence(), StandardCharsets.US_ASCII);
+		String strBreakend = new String(getBreakendSequence(), StandardCharsets.US_ASCII);
 		try {
 			if (location.direction == BreakendDirection.Forward) {
 				// end of anchor + start of breakend
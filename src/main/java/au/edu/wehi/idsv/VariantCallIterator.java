@@ -18,57 +18,59 @@ import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
-import java.util.concurrent.BlockingDeque;
-import java.util.concurrent.LinkedBlockingDeque;
 /**
  * Calls breakpoints from the given evidence
  * 
+ * Each direction combination is called concurrently on a separate thread.
+ * Calls are merged in a deterministic order: each call is tagged with the
+ * number of evidence batches its caller had consumed when the call was made,
+ * and calls are ordered by tag then by caller.
+ * 
  * @author Daniel Cameron
  */
 public class VariantCallIterator implements CloseableIterator<VariantContextDirectedEvidence> {
 	private static final Log log = Log.getInstance(VariantCallIterator.class);
 	private static final int ITERATOR_BUFFER_SIZE = 256;
-	private final VariantContextDirectedEvidence endOfStream;
 	private final ProcessingContext processContext;
 	private final DuplicatingIterable<List<DirectedEvidence>> iterable;
 	private final QueryInterval[] filterInterval;
-	private final BlockingDeque<VariantContextDirectedEvidence> outBuffer = new LinkedBlockingDeque<>(ITERATOR_BUFFER_SIZE);
+	/**
+	 * Guards the call buffers and progress of all callers
+	 */
+	private final Object lock = new Object();
 	private VariantContextDirectedEvidence outBufferHeadNextValidRecord = null;
 	private final List<AsyncDirectionalIterator> async = new ArrayList<>();
-	private int activeIterators;
 	private volatile Exception workerThreadException;
 	private VariantCallIterator(ProcessingContext processContext, Iterator<DirectedEvidence> evidence, QueryInterval[] interval, int intervalNumber) {
-		this.endOfStream = (VariantContextDirectedEvidence)new IdsvVariantContextBuilder(processContext)
-				.id("sentinel")
-				.chr(processContext.getReference().getSequenceDictionary().getSequence(0).getSequenceName())
-				.start(1)
-				.stop(1)
-				.alleles("N", "N.")
-				.make();
 		this.processContext = processContext;
 		boolean callBreakends = processContext.getVariantCallingParameters().callBreakends;
-		this.activeIterators = callBreakends ? 6 : 4;
-		this.iterable = new DuplicatingIterable<>(activeIterators, new BatchingIterator<>(evidence, ITERATOR_BUFFER_SIZE), 2);
+		int callerCount = callBreakends ? 6 : 4;
+		this.iterable = new DuplicatingIterable<>(callerCount, new BatchingIterator<>(evidence, ITERATOR_BUFFER_SIZE), 2);
 		this.filterInterval = interval;
 		for (BreakendDirection localDir : BreakendDirection.values()) {
 			for (BreakendDirection remoteDir : BreakendDirection.values()) {
+				BatchCountingIterator input = new BatchCountingIterator(this.iterable.iterator());
 				MaximalEvidenceCliqueIterator it = new MaximalEvidenceCliqueIterator(
 						processContext,
-						new FlatMapIterator<>(this.iterable.iterator()),
+						new FlatMapIterator<>(input),
 						localDir,
 						remoteDir,
 						new SequentialIdGenerator(String.format("gridss%d%s%s_", Math.max(intervalNumber, 0), localDir.toChar(), remoteDir.toChar())));
-				async.add(new AsyncDirectionalIterator(it, localDir, remoteDir));
+				async.add(new AsyncDirectionalIterator(async.size(), input, it, localDir, remoteDir));
 			}
 			if (callBreakends) {
+				BatchCountingIterator input = new BatchCountingIterator(this.iterable.iterator());
 				BreakendMaximalEvidenceCliqueIterator it = new BreakendMaximalEvidenceCliqueIterator(
 						processContext,
-						new FlatMapIterator<>(this.iterable.iterator()),
+						new FlatMapIterator<>(input),
 						localDir,
 						new SequentialIdGenerator(String.format("gridss%d%s_", Math.max(intervalNumber, 0), localDir.toChar())));
-				async.add(new AsyncDirectionalIterator(it, localDir, null));
+				async.add(new AsyncDirectionalIterator(async.size(), input, it, localDir, null));
 			}
 		}
+		for (AsyncDirectionalIterator adi : async) {
+			adi.start();
+		}
 	}
 	public VariantCallIterator(ProcessingContext processContext, Iterator<DirectedEvidence> evidence) {
 		this(processContext, evidence, null, -1);
@@ -82,14 +84,60 @@ public class VariantCallIterator implements CloseableIterator<VariantContextDire
 				QueryIntervalUtil.padIntervals(source.getContext().getDictionary(), interval, source.getMaxConcordantFragmentSize() + 1),
 				intervalNumber);
 	}
+	/**
+	 * Tracks the number of evidence batches consumed by a caller
+	 */
+	private class BatchCountingIterator implements Iterator<List<DirectedEvidence>> {
+		private final Iterator<List<DirectedEvidence>> it;
+		/**
+		 * Number of batches consumed. Guarded by lock.
+		 */
+		private long batchesRead = 0;
+		public BatchCountingIterator(Iterator<List<DirectedEvidence>> it) {
+			this.it = it;
+		}
+		@Override
+		public boolean hasNext() {
+			return it.hasNext();
+		}
+		@Override
+		public List<DirectedEvidence> next() {
+			List<DirectedEvidence> batch = it.next();
+			synchronized (lock) {
+				batchesRead++;
+				lock.notifyAll();
+			}
+			return batch;
+		}
+	}
+	private static class TaggedCall {
+		private final long batch;
+		private final VariantContextDirectedEvidence call;
+		public TaggedCall(long batch, VariantContextDirectedEvidence call) {
+			this.batch = batch;
+			this.call = call;
+		}
+	}
 	public class AsyncDirectionalIterator<T extends VariantContextDirectedEvidence> implements TrackedState, Closeable {
+		private final int callerIndex;
+		private final BatchCountingIterator input;
+		/**
+		 * Calls not yet returned. Guarded by lock.
+		 */
+		private final Queue<TaggedCall> buffer = new ArrayDeque<>(ITERATOR_BUFFER_SIZE);
+		/**
+		 * Caller has completed. Guarded by lock.
+		 */
+		private boolean finished = false;
 		private Iterator<T> it;
 		private StateTracker currentTracker = null;
 		private Collection<TrackedState> currentTrackedObjects = null;
 		private T lastElement = null;
 		private Thread thread;
 		private volatile boolean shouldAbortImmediately = false;
-		public AsyncDirectionalIterator(Iterator<T> iterator, BreakendDirection dir1, BreakendDirection dir2) {
+		public AsyncDirectionalIterator(int callerIndex, BatchCountingIterator input, Iterator<T> iterator, BreakendDirection dir1, BreakendDirection dir2) {
+			this.callerIndex = callerIndex;
+			this.input = input;
 			this.it = iterator;
 			String positionComponent = (filterInterval == null || filterInterval.length == 0) ? "" : String.format("_%s_%d",
 					processContext.getDictionary().getSequence(filterInterval[0].referenceIndex).getSequenceName(),
@@ -110,6 +158,8 @@ public class VariantCallIterator implements CloseableIterator<VariantContextDire
 			this.thread = new Thread(() -> run());
 			this.thread.setDaemon(true);
 			this.thread.setName("CallVariants " + positionComponent + dir1.toChar() + (dir2 == null ? "" : dir2.toChar()));
+		}
+		private void start() {
 			this.thread.start();
 		}
 		private Iterator<T> wrapFilter(QueryInterval[] filterInterval, Iterator<T> it) {
@@ -128,7 +178,13 @@ public class VariantCallIterator implements CloseableIterator<VariantContextDire
 			try {
 				while (it.hasNext() && !shouldAbortImmediately) {
 					lastElement = it.next();
-					outBuffer.putLast(lastElement);
+					synchronized (lock) {
+						while (buffer.size() >= ITERATOR_BUFFER_SIZE && !shouldAbortImmediately) {
+							lock.wait();
+						}
+						buffer.add(new TaggedCall(input.batchesRead, lastElement));
+						lock.notifyAll();
+					}
 					if (currentTracker != null) {
 						try {
 							currentTracker.track(currentTrackedObjects);
@@ -137,7 +193,6 @@ public class VariantCallIterator implements CloseableIterator<VariantContextDire
 						}
 					}
 				}
-				outBuffer.putLast(endOfStream);
 				if (currentTracker != null) {
 					try {
 						currentTracker.close();
@@ -147,13 +202,21 @@ public class VariantCallIterator implements CloseableIterator<VariantContextDire
 				}
 			} catch (Exception e) {
 				workerThreadException = e;
-				try {
-					outBuffer.putLast(endOfStream);
-				} catch (InterruptedException ex) {
-					log.error("Interrupted writing end of stream");
+			} finally {
+				synchronized (lock) {
+					finished = true;
+					lock.notifyAll();
 				}
 			}
 		}
+		/**
+		 * Determines whether this caller could still return a call ordered before the given call
+		 */
+		private boolean canPrecede(long batch, int index) {
+			if (finished || !buffer.isEmpty()) return false;
+			// any subsequent call will be tagged with at least the current batch count
+			return input.batchesRead < batch || (input.batchesRead == batch && callerIndex < index);
+		}
 		@Override
 		public String[] trackedNames() {
 			return new String[] {
@@ -177,20 +240,41 @@ public class VariantCallIterator implements CloseableIterator<VariantContextDire
 
 		@Override
 		public void close() {
-			shouldAbortImmediately = true;
+			synchronized (lock) {
+				shouldAbortImmediately = true;
+				lock.notifyAll();
+			}
 		}
 	}
 
 	private void ensureNext() {
 		if (outBufferHeadNextValidRecord == null) {
 			try {
-				while (activeIterators > 0 && workerThreadException == null) {
-					VariantContextDirectedEvidence nextElement = outBuffer.takeFirst();
-					if (nextElement != endOfStream) {
-						outBufferHeadNextValidRecord = nextElement;
-						return;
-					} else {
-						activeIterators--;
+				synchronized (lock) {
+					while (workerThreadException == null) {
+						AsyncDirectionalIterator<?> next = null;
+						boolean allFinished = true;
+						for (AsyncDirectionalIterator<?> adi : async) {
+							allFinished &= adi.finished && adi.buffer.isEmpty();
+							// ties are broken by caller order
+							if (!adi.buffer.isEmpty() && (next == null || adi.buffer.peek().batch < next.buffer.peek().batch)) {
+								next = adi;
+							}
+						}
+						if (allFinished) break;
+						if (next != null) {
+							long batch = next.buffer.peek().batch;
+							boolean ready = true;
+							for (AsyncDirectionalIterator<?> adi : async) {
+								ready &= !adi.canPrecede(batch, next.callerIndex);
+							}
+							if (ready) {
+								outBufferHeadNextValidRecord = next.buffer.poll().call;
+								lock.notifyAll();
+								return;
+							}
+						}
+						lock.wait();
 					}
 				}
 				if (workerThreadException != null) {
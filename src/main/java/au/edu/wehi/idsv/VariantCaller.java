@@ -14,6 +14,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 
 
 /**
@@ -33,6 +34,17 @@ public class VariantCaller {
 		this.assemblyEvidence = assemblyEvidence;
 	}
 	public void callBreakends(File vcf, ExecutorService threadpool) throws IOException {
+		callBreakends(vcf, threadpool, null);
+	}
+	/**
+	 * Calls structural variants
+	 * @param vcf output VCF
+	 * @param threadpool
+	 * @param workQueue work queue shared by all jobs. If supplied, chunks are dynamically
+	 *                  allocated to jobs through the work queue and the output is gathered
+	 *                  by the first job to see all chunks completed.
+	 */
+	public void callBreakends(File vcf, ExecutorService threadpool, ChunkWorkQueue workQueue) throws IOException {
 		samEvidence.stream().forEach(ses -> ses.assertPreprocessingComplete());
 		for (AssemblyEvidenceSource aes : assemblyEvidence) {
 			aes.assertPreprocessingComplete();
@@ -45,18 +57,72 @@ public class VariantCaller {
 		List<QueryInterval[]> chunks = processContext.getReference().getIntervals(processContext.getConfig().chunkSize, processContext.getConfig().chunkSequenceChangePenalty);
 		List<File> calledChunk = new ArrayList<>();
 		List<Future<Void>> tasks = new ArrayList<>();
-		
 		for (int i = 0; i < chunks.size(); i++) {
-			QueryInterval[] chunk = chunks.get(i);
-			File f = processContext.getFileSystemContext().getVariantCallChunkVcf(vcf, i);
-			int chunkNumber = i;
-			calledChunk.add(f);
-			if (!f.exists()) {
-				tasks.add(threadpool.submit(() -> { callChunk(f, es, chunkNumber, chunk); return null; }));
+			calledChunk.add(processContext.getFileSystemContext().getVariantCallChunkVcf(vcf, i));
+		}
+		List<SAMEvidenceSource> allEvidence = new ArrayList<>(samEvidence);
+		allEvidence.addAll(assemblyEvidence);
+		List<Integer> chunkOrder = ChunkScheduler.create(processContext, chunks, allEvidence).getProcessingOrder();
+		String fingerprint = getFingerprint();
+		List<ChunkCheckpoint> checkpoints = new ArrayList<>();
+		for (int i = 0; i < chunks.size(); i++) {
+			checkpoints.add(new ChunkCheckpoint(calledChunk.get(i), ChunkCheckpoint.fingerprint(fingerprint, chunks.get(i))));
+		}
+		if (workQueue == null) {
+			for (int i : chunkOrder) {
+				QueryInterval[] chunk = chunks.get(i);
+				ChunkCheckpoint checkpoint = checkpoints.get(i);
+				int chunkNumber = i;
+				if (!checkpoint.isComplete()) {
+					tasks.add(threadpool.submit(() -> { callChunk(checkpoint, es, chunkNumber, chunk); return null; }));
+				}
+			}
+			runTasks(tasks);
+			gatherChunks(vcf, checkpoints);
+		} else {
+			workQueue.process(
+					chunkOrder.stream().map(i -> "chunk" + i).collect(Collectors.toList()),
+					threadpool,
+					task -> {
+						int chunkNumber = Integer.parseInt(task.substring("chunk".length()));
+						ChunkCheckpoint checkpoint = checkpoints.get(chunkNumber);
+						if (!checkpoint.isComplete()) {
+							callChunk(checkpoint, es, chunkNumber, chunks.get(chunkNumber));
+						}
+					});
+			try (ChunkWorkQueue.Lease lease = workQueue.tryAcquire("gather")) {
+				if (lease == null) {
+					if (workQueue.isComplete("gather") && !vcf.exists()) {
+						throw new IllegalStateException(String.format("Work queue %s records variant calling as complete but %s does not exist. Delete the work queue directory to call variants again.", workQueue.getDirectory(), vcf));
+					}
+					log.info("Not merging identified breakpoints since they are being merged by another job.");
+					return;
+				}
+				gatherChunks(vcf, checkpoints);
+				lease.complete();
 			}
 		}
-		runTasks(tasks);
-		
+	}
+	/**
+	 * Fingerprint of the inputs and configuration affecting variant calling.
+	 * Called chunks are only reused if their fingerprint matches.
+	 */
+	public String getFingerprint() {
+		List<Object> components = new ArrayList<>();
+		components.add(processContext.getDictionary().md5());
+		for (SAMEvidenceSource ses : samEvidence) {
+			components.add(ses.getSVFile());
+			components.add(ses.getSourceCategory());
+		}
+		for (AssemblyEvidenceSource aes : assemblyEvidence) {
+			components.add(aes.getFile());
+			components.add(aes.getSVFile());
+		}
+		components.add(processContext.getConfig());
+		return ChunkCheckpoint.fingerprint(components.toArray());
+	}
+	private void gatherChunks(File vcf, List<ChunkCheckpoint> checkpoints) throws IOException {
+		List<File> calledChunk = checkpoints.stream().map(ChunkCheckpoint::getOutput).collect(Collectors.toList());
 		log.info("Merging identified breakpoints");
 		File mergedOut = FileSystemContext.getWorkingFileFor(vcf, "gridss.merged.");
 		VcfFileUtil.concat(processContext.getReference().getSequenceDictionary(), calledChunk, mergedOut);
@@ -65,8 +131,8 @@ public class VariantCaller {
 		VcfFileUtil.sort(processContext, mergedOut, vcf);
 		// clean up chunked
 		if (gridss.Defaults.DELETE_TEMPORARY_FILES) {
-			for (File f : calledChunk) {
-				FileHelper.delete(f, true);
+			for (ChunkCheckpoint checkpoint : checkpoints) {
+				checkpoint.invalidate();
 			}
 			FileHelper.delete(mergedOut, true);
 		}
@@ -88,13 +154,16 @@ public class VariantCaller {
 			throw new RuntimeException(firstException);
 		}
 	}
-	private void callChunk(File output, AggregateEvidenceSource es, int chunkNumber, QueryInterval[] chunk) {
+	private void callChunk(ChunkCheckpoint checkpoint, AggregateEvidenceSource es, int chunkNumber, QueryInterval[] chunk) throws IOException {
+		File output = checkpoint.getOutput();
 		try {
 			String chunkMsg = String.format("chunk %d (%s:%d-%s:%d)", chunkNumber,
 					processContext.getDictionary().getSequence(chunk[0].referenceIndex).getSequenceName(), chunk[0].start,
 					processContext.getDictionary().getSequence(chunk[chunk.length - 1].referenceIndex).getSequenceName(), chunk[chunk.length - 1].end);
 			String msg = "calling maximal cliques in " + chunkMsg;
-			File tmp = new File(output.getParent(), "gridss.tmp." + output.getName());
+			// unique temporary file since another job could have taken over our lease on this chunk
+			File tmp = FileSystemContext.getUniqueWorkingFileFor(output, "gridss.tmp.");
+			checkpoint.invalidate();
 			try (VariantCallIterator rawit = new VariantCallIterator(es, chunk, chunkNumber)) {
 				try (VariantContextWriter vcfWriter = processContext.getVariantContextWriter(tmp, false)) {
 					log.info("Start ", msg);
@@ -110,11 +179,8 @@ public class VariantCaller {
 					}
 				}
 			}
-			try {
-				FileHelper.move(tmp, output, true);
-			} catch (IOException e) {
-				throw new RuntimeException(e);
-			}
+			FileHelper.move(tmp, output, true);
+			checkpoint.markComplete();
 			log.info("Complete ", msg);
 			if (gridss.Defaults.DEFENSIVE_GC) {
 				log.info("Requesting defensive GC to ensure OS file handles are closed");
@@ -0,0 +1,213 @@
+package au.edu.wehi.idsv;
+
+import au.edu.wehi.idsv.SequentialEvidenceAllocator.VariantEvidenceSupport;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.PeekingIterator;
+import htsjdk.samtools.QueryInterval;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.CloserUtil;
+import htsjdk.samtools.util.Log;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Allocates evidence to variant calls by independently allocating each genomic window.
+ *
+ * Evidence allocation only depends on the variant calls and evidence in the immediate
+ * vicinity of the variant. Each window is allocated by a {@link SequentialEvidenceAllocator}
+ * that additionally processes the calls and evidence in a flanking halo around the window.
+ * The halo is large enough to ensure that every call within the window receives exactly
+ * the same evidence as it would when allocating the entire genome sequentially. Calls
+ * in the halo are allocated by both windows but only returned by the window containing
+ * the call. Since every window allocates the evidence in the overlapping halo identically,
+ * evidence is still uniquely allocated.
+ *
+ * Windows are allocated concurrently and the variants are returned in window order.
+ *
+ * Invariant: the allocation of evidence to a call must not depend on any call or evidence
+ * more than {@link #getHaloSize(ProcessingContext, int)} bases away. This holds for the
+ * current {@link SequentialEvidenceAllocator} look-ahead and evidence overlap rules,
+ * and the halo size must be updated whenever those rules change. If it is violated,
+ * calls near window boundaries can be allocated different evidence to a sequential
+ * allocation, and evidence can be allocated to more than one call.
+ * This allocator is therefore opt-in (allocate.parallel system property).
+ */
+public class WindowedEvidenceAllocator implements CloseableIterator<VariantEvidenceSupport> {
+	private static final Log log = Log.getInstance(WindowedEvidenceAllocator.class);
+	private final ProcessingContext context;
+	private final PeekingIterator<? extends VariantContextDirectedEvidence> callIt;
+	private final List<QueryInterval[]> windows;
+	private final Function<QueryInterval[], ? extends Iterator<? extends DirectedEvidence>> readSource;
+	private final Function<QueryInterval[], ? extends Iterator<? extends DirectedEvidence>> assemblySource;
+	private final int maxCallWindowSize;
+	private final boolean assignEvidenceToSingleBreakpoint;
+	private final ExecutorService threadpool;
+	private final int maxWindowsInFlight;
+	private final int halo;
+	/**
+	 * Last linear genomic coordinate of each window
+	 */
+	private final long[] windowEnd;
+	/**
+	 * Variant calls that could be in the halo of windows not yet dispatched
+	 */
+	private final ArrayDeque<VariantContextDirectedEvidence> callBuffer = new ArrayDeque<>();
+	private final ArrayDeque<Future<List<VariantEvidenceSupport>>> inFlight = new ArrayDeque<>();
+	private int nextWindow = 0;
+	private Iterator<VariantEvidenceSupport> current = Collections.emptyIterator();
+	/**
+	 * @param context processing context
+	 * @param calls variant calls ordered by breakend start position
+	 * @param windows genomic windows in genomic order. Windows must cover the entire genome.
+	 * @param readSource read evidence overlapping the given intervals ordered by breakend start position
+	 * @param assemblySource assembly evidence overlapping the given intervals ordered by breakend start position
+	 * @param maxCallWindowSize see {@link SequentialEvidenceAllocator}
+	 * @param assignEvidenceToSingleBreakpoint see {@link SequentialEvidenceAllocator}
+	 * @param threadpool thread pool to allocate windows on
+	 * @param maxWindowsInFlight maximum number of windows to allocate concurrently
+	 */
+	public WindowedEvidenceAllocator(
+			ProcessingContext context,
+			Iterator<? extends VariantContextDirectedEvidence> calls,
+			List<QueryInterval[]> windows,
+			Function<QueryInterval[], ? extends Iterator<? extends DirectedEvidence>> readSource,
+			Function<QueryInterval[], ? extends Iterator<? extends DirectedEvidence>> assemblySource,
+			int maxCallWindowSize,
+			boolean assignEvidenceToSingleBreakpoint,
+			ExecutorService threadpool,
+			int maxWindowsInFlight) {
+		if (maxWindowsInFlight < 1) throw new IllegalArgumentException("maxWindowsInFlight must be positive");
+		this.context = context;
+		this.callIt = Iterators.peekingIterator(calls);
+		this.windows = windows;
+		this.readSource = readSource;
+		this.assemblySource = assemblySource;
+		this.maxCallWindowSize = maxCallWindowSize;
+		this.assignEvidenceToSingleBreakpoint = assignEvidenceToSingleBreakpoint;
+		this.threadpool = threadpool;
+		this.maxWindowsInFlight = maxWindowsInFlight;
+		this.halo = getHaloSize(context, maxCallWindowSize);
+		this.windowEnd = new long[windows.size()];
+		for (int i = 0; i < windows.size(); i++) {
+			QueryInterval[] w = windows.get(i);
+			QueryInterval last = w[w.length - 1];
+			windowEnd[i] = context.getLinear().getLinearCoordinate(last.referenceIndex, last.end);
+		}
+	}
+	/**
+	 * Number of flanking bases either side of each window required to ensure that
+	 * the allocation of evidence within the window is independent of the
+	 * calls and evidence outside of the halo.
+	 *
+	 * The sequential allocator loads calls up to 3 call windows ahead of the current
+	 * call, and evidence can overlap calls up to a call window (plus margin) away.
+	 * The allocation state is dependent on calls and evidence up to one such look-ahead
+	 * further away so a halo of twice that distance is sufficient.
+	 */
+	public static int getHaloSize(ProcessingContext context, int maxCallWindowSize) {
+		return 8 * (maxCallWindowSize + 1) + 4 * context.getVariantCallingParameters().breakendMargin;
+	}
+	private long getStartLocation(VariantContextDirectedEvidence call) {
+		return context.getLinear().getStartLinearCoordinate(call.getBreakendSummary());
+	}
+	private long ownedStart(int window) {
+		return window == 0 ? Long.MIN_VALUE : windowEnd[window - 1] + 1;
+	}
+	private long ownedEnd(int window) {
+		return window == windowEnd.length - 1 ? Long.MAX_VALUE : windowEnd[window];
+	}
+	/**
+	 * Dispatches windows for allocation until the maximum number of windows are in flight
+	 */
+	private void dispatch() {
+		while (inFlight.size() < maxWindowsInFlight && nextWindow < windows.size()) {
+			int window = nextWindow++;
+			long ownedStart = ownedStart(window);
+			long ownedEnd = ownedEnd(window);
+			long haloStart = ownedStart == Long.MIN_VALUE ? Long.MIN_VALUE : ownedStart - halo;
+			long haloEnd = ownedEnd == Long.MAX_VALUE ? Long.MAX_VALUE : ownedEnd + halo;
+			// calls before the halo of this window are also before the halo of all subsequent windows
+			while (!callBuffer.isEmpty() && getStartLocation(callBuffer.peekFirst()) < haloStart) {
+				callBuffer.pollFirst();
+			}
+			while (callIt.hasNext() && getStartLocation(callIt.peek()) <= haloEnd) {
+				VariantContextDirectedEvidence call = callIt.next();
+				if (getStartLocation(call) >= haloStart) {
+					callBuffer.addLast(call);
+				}
+			}
+			List<VariantContextDirectedEvidence> calls = new ArrayList<>();
+			boolean hasOwnedCall = false;
+			for (VariantContextDirectedEvidence call : callBuffer) {
+				long start = getStartLocation(call);
+				if (start > haloEnd) break;
+				calls.add(call);
+				hasOwnedCall |= start >= ownedStart && start <= ownedEnd;
+			}
+			if (!hasOwnedCall) {
+				// Nothing to allocate
+				continue;
+			}
+			QueryInterval[] intervals = QueryIntervalUtil.padIntervals(context.getDictionary(), windows.get(window), halo);
+			inFlight.add(threadpool.submit(() -> allocate(window, calls, intervals, ownedStart, ownedEnd)));
+		}
+	}
+	private List<VariantEvidenceSupport> allocate(int window, List<VariantContextDirectedEvidence> calls, QueryInterval[] intervals, long ownedStart, long ownedEnd) {
+		Iterator<? extends DirectedEvidence> reads = null;
+		Iterator<? extends DirectedEvidence> assemblies = null;
+		try {
+			reads = readSource.apply(intervals);
+			assemblies = assemblySource.apply(intervals);
+			SequentialEvidenceAllocator allocator = new SequentialEvidenceAllocator(context, calls.iterator(), reads, assemblies, maxCallWindowSize, assignEvidenceToSingleBreakpoint);
+			List<VariantEvidenceSupport> result = new ArrayList<>();
+			while (allocator.hasNext()) {
+				VariantEvidenceSupport ves = allocator.next();
+				if (ves.getStartLocation() >= ownedStart && ves.getStartLocation() <= ownedEnd) {
+					result.add(ves);
+				}
+			}
+			if (log.isEnabled(Log.LogLevel.DEBUG)) {
+				log.debug(String.format("Allocated evidence to %d variants in window %d", result.size(), window));
+			}
+			return result;
+		} finally {
+			CloserUtil.close(reads);
+			CloserUtil.close(assemblies);
+		}
+	}
+	@Override
+	public boolean hasNext() {
+		while (!current.hasNext()) {
+			dispatch();
+			if (inFlight.isEmpty()) {
+				return false;
+			}
+			try {
+				current = inFlight.poll().get().iterator();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			} catch (ExecutionException e) {
+				log.error(e, "Fatal error during evidence allocation");
+				throw new RuntimeException(e.getCause());
+			}
+		}
+		return true;
+	}
+	@Override
+	public VariantEvidenceSupport next() {
+		if (!hasNext()) throw new NoSuchElementException();
+		return current.next();
+	}
+	@Override
+	public void close() {
+		for (Future<List<VariantEvidenceSupport>> f : inFlight) {
+			f.cancel(true);
+		}
+		inFlight.clear();
+	}
+}
@@ -1,11 +1,30 @@
 package au.edu.wehi.idsv.alignment;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public interface Aligner {
 	/**
-	 * Performs Smith-Waterman alignment of the given sequence against the given reference 
+	 * Performs Smith-Waterman alignment of the given sequence against the given reference
 	 * @param seq sequence to align
 	 * @param ref reference sequence
 	 * @return Alignment of sequence relative to reference
 	 */
 	public Alignment align_smith_waterman(byte[] seq, byte[] ref);
+	/**
+	 * Performs Smith-Waterman alignment of each sequence against the corresponding reference
+	 * @param seqs sequences to align
+	 * @param refs reference sequences
+	 * @return Alignment of each sequence relative to its reference
+	 */
+	public default List<Alignment> align_smith_waterman(List<byte[]> seqs, List<byte[]> refs) {
+		if (seqs.size() != refs.size()) {
+			throw new IllegalArgumentException("Sequence and reference counts must match");
+		}
+		List<Alignment> result = new ArrayList<>(seqs.size());
+		for (int i = 0; i < seqs.size(); i++) {
+			result.add(align_smith_waterman(seqs.get(i), refs.get(i)));
+		}
+		return result;
+	}
 }
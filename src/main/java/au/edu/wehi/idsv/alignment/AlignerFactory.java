@@ -79,7 +79,7 @@ public class AlignerFactory {
 				}
 			}
 			if (!sswjniLoaded) {
-				log.error("Unable to use GKL or sswjni libraries - realignment and inexact homology steps will be very slow. Please ensure Intel GKL and/or libsswjni for your OS and architecture can be found on java.library.path");
+				log.error("Unable to use GKL or sswjni libraries - falling back to java alignment. Realignment and inexact homology steps will be slow. Please ensure Intel GKL and/or libsswjni for your OS and architecture can be found on java.library.path");
 			}
 		}
 		// defaultAligner = create(2, -6, -1, 5, 3); // bowtie2 defaults
@@ -108,7 +108,7 @@ public class AlignerFactory {
 		} else if (sswjniLoaded) {
 			return new SswJniAligner(match, mismatch, ambiguous, gapOpen, gapExtend);
 		} else {
-			return new JAlignerAligner(match, mismatch, ambiguous, gapOpen, gapExtend);
+			return new JavaSmithWatermanAligner(match, mismatch, ambiguous, gapOpen, gapExtend);
 		}
 	}
 	public static Aligner create() {
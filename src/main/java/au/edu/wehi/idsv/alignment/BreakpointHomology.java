@@ -9,6 +9,9 @@ import htsjdk.samtools.TextCigarCodec;
 import htsjdk.samtools.util.SequenceUtil;
 
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -36,71 +39,132 @@ public class BreakpointHomology {
 	 * @return breakpoint homology length
 	 */
 	public static BreakpointHomology calculate(ReferenceLookup lookup, BreakpointSummary bs, String insertedSequence, int maxBreakendLength, int margin) {
-		if (bs.start - bs.end != 0 || bs.start2 - bs.end2 != 0) {
-			throw new IllegalArgumentException("Breakpoint position must be exact");
-		}
-		if (insertedSequence == null) {
-			insertedSequence = "";
-		}
-		if (bs.direction == BreakendDirection.Backward) {
-			insertedSequence = SequenceUtil.reverseComplement(insertedSequence);
-		}
-		int seqLength = maxBreakendLength;
-		int refLength = maxBreakendLength + insertedSequence.length() + margin;
-		if (bs.getEventSize() != null) {
-			seqLength = Math.min(seqLength, bs.getEventSize());
-			refLength = Math.min(refLength, bs.getEventSize());
+		return calculate(lookup, Collections.singletonList(bs), Collections.singletonList(insertedSequence), maxBreakendLength, margin).get(0);
+	}
+	/**
+	 * Calculates the sequence homology length at each of the given breakpoint positions.
+	 * All alignments are performed in a single aligner batch.
+	 * @param lookup reference genome
+	 * @param breakpoints breakpoints
+	 * @param insertedSequences inserted sequence of each breakpoint
+	 * @param maxBreakendLength maximum homology length to report
+	 * @param margin additional reference bases to include to accommodate indels
+	 * @return breakpoint homology length of each breakpoint
+	 */
+	public static List<BreakpointHomology> calculate(ReferenceLookup lookup, List<BreakpointSummary> breakpoints, List<String> insertedSequences, int maxBreakendLength, int margin) {
+		List<HomologyAlignments> tasks = new ArrayList<>(breakpoints.size());
+		List<byte[]> seqs = new ArrayList<>(2 * breakpoints.size());
+		List<byte[]> refs = new ArrayList<>(2 * breakpoints.size());
+		for (int i = 0; i < breakpoints.size(); i++) {
+			HomologyAlignments task = new HomologyAlignments(lookup, breakpoints.get(i), insertedSequences.get(i), maxBreakendLength, margin);
+			if (task.breakend.length > 0) {
+				if (task.local.length > 0) {
+					task.localAlignmentIndex = seqs.size();
+					seqs.add(task.breakend);
+					refs.add(task.local);
+				}
+				if (task.remote.length > 0) {
+					// #344 rev-comp remote so we always have the anchor on the same side
+					// This ensures that we'll choose the same alignment on both sides if there
+					// are multiple equally good alignments
+					byte[] breakend = Arrays.copyOf(task.breakend, task.breakend.length);
+					SequenceUtil.reverseComplement(breakend);
+					SequenceUtil.reverseComplement(task.remote);
+					task.remoteAlignmentIndex = seqs.size();
+					seqs.add(breakend);
+					refs.add(task.remote);
+				}
+			}
+			tasks.add(task);
 		}
-		// local           remote
-		// ACGTACGT        CCTTAAGG
-		//    >                <
-		// >>>>                >>>>
-		// localSeq           remoteSeq
-		//      >>>>       >>>>
-		//      localRef   remoteRef
-		String localSeq = bs.getAnchorSequence(lookup, refLength);
-		String localBsSeq = bs.getAnchorSequence(lookup, seqLength);
-		String localRef = bs.advance(refLength).getAnchorSequence(lookup, refLength);
-		String remoteSeq = SequenceUtil.reverseComplement(bs.remoteBreakend().getAnchorSequence(lookup, refLength));
-		String remoteBsSeq = SequenceUtil.reverseComplement(bs.remoteBreakend().getAnchorSequence(lookup, seqLength));
-		String remoteRef = SequenceUtil.reverseComplement(bs.remoteBreakend().advance(refLength).getAnchorSequence(lookup, refLength));
-		String strBreakend = localBsSeq + insertedSequence + remoteBsSeq;
-		String strLocal = localSeq + localRef;
-		String strRemote = remoteRef + remoteSeq;
-		byte[] breakend = strBreakend.getBytes(StandardCharsets.US_ASCII);
-		byte[] local = strLocal.getBytes(StandardCharsets.US_ASCII);
-		byte[] remote = strRemote.getBytes(StandardCharsets.US_ASCII);
-		Aligner aligner = AlignerFactory.create();
-		int localHomologyBaseCount = 0;
-		int remoteHomologyBaseCount = 0;
-		if (breakend != null && breakend.length > 0) {
-			if (local != null && local.length > 0) {
-				Alignment localAlignment = aligner.align_smith_waterman(breakend, local);
-				List<CigarElement> cigar = TextCigarCodec.decode(localAlignment.getCigar()).getCigarElements();
+		List<Alignment> alignments = seqs.isEmpty() ? Collections.emptyList() : AlignerFactory.create().align_smith_waterman(seqs, refs);
+		List<BreakpointHomology> result = new ArrayList<>(tasks.size());
+		for (HomologyAlignments task : tasks) {
+			int localHomologyBaseCount = 0;
+			int remoteHomologyBaseCount = 0;
+			if (task.localAlignmentIndex >= 0) {
+				List<CigarElement> cigar = TextCigarCodec.decode(alignments.get(task.localAlignmentIndex).getCigar()).getCigarElements();
 				// We are defining a homology as the number of bases mapped on the other side
 				// inserted sequence means the number of bases consumed can be negative
-				remoteHomologyBaseCount = Math.max(0, remoteBsSeq.length() - SAMRecordUtil.getEndSoftClipLength(cigar));
+				remoteHomologyBaseCount = Math.max(0, task.remoteBsSeqLength - SAMRecordUtil.getEndSoftClipLength(cigar));
 				if (SAMRecordUtil.getStartSoftClipLength(cigar) > 0) {
 					// anchor is not aligned - something went wrong
 					remoteHomologyBaseCount = 0;
 				}
 			}
-			if (remote != null && remote.length > 0) {
-				// #344 rev-comp remote so we always have the anchor on the same side
-				// This ensures that we'll choose the same alignment on both sides if there
-				// are multiple equally good alignments
-				SequenceUtil.reverseComplement(breakend);
-				SequenceUtil.reverseComplement(remote);
-				Alignment remoteAlignment = aligner.align_smith_waterman(breakend, remote);
-				List<CigarElement> cigar = TextCigarCodec.decode(remoteAlignment.getCigar()).getCigarElements();
-				localHomologyBaseCount = Math.max(0, localBsSeq.length() - SAMRecordUtil.getEndSoftClipLength(cigar));
+			if (task.remoteAlignmentIndex >= 0) {
+				List<CigarElement> cigar = TextCigarCodec.decode(alignments.get(task.remoteAlignmentIndex).getCigar()).getCigarElements();
+				localHomologyBaseCount = Math.max(0, task.localBsSeqLength - SAMRecordUtil.getEndSoftClipLength(cigar));
 				if (SAMRecordUtil.getStartSoftClipLength(cigar) > 0) {
 					// anchor is not aligned - something went wrong
 					localHomologyBaseCount = 0;
 				}
 			}
+			result.add(new BreakpointHomology(localHomologyBaseCount, remoteHomologyBaseCount));
 		}
-		return new BreakpointHomology(localHomologyBaseCount, remoteHomologyBaseCount);
+		return result;
+	}
+	/**
+	 * Sequences to align to determine the homology of a single breakpoint
+	 */
+	private static class HomologyAlignments {
+		private final byte[] breakend;
+		private final byte[] local;
+		private final byte[] remote;
+		private final int localBsSeqLength;
+		private final int remoteBsSeqLength;
+		private int localAlignmentIndex = -1;
+		private int remoteAlignmentIndex = -1;
+		public HomologyAlignments(ReferenceLookup lookup, BreakpointSummary bs, String insertedSequence, int maxBreakendLength, int margin) {
+			if (bs.start - bs.end != 0 || bs.start2 - bs.end2 != 0) {
+				throw new IllegalArgumentException("Breakpoint position must be exact");
+			}
+			if (insertedSequence == null) {
+				insertedSequence = "";
+			}
+			if (bs.direction == BreakendDirection.Backward) {
+				insertedSequence = SequenceUtil.reverseComplement(insertedSequence);
+			}
+			int seqLength = maxBreakendLength;
+			int refLength = maxBreakendLength + insertedSequence.length() + margin;
+			if (bs.getEventSize() != null) {
+				seqLength = Math.min(seqLength, bs.getEventSize());
+				refLength = Math.min(refLength, bs.getEventSize());
+			}
+			// local           remote
+			// ACGTACGT        CCTTAAGG
+			//    >                <
+			// >>>>                >>>>
+			// localSeq           remoteSeq
+			//      >>>>       >>>>
+			//      localRef   remoteRef
+			BreakendSummary remoteBreakend = bs.remoteBreakend();
+			String localAnchor = bs.getAnchorSequence(lookup, refLength);
+			String remoteAnchor = remoteBreakend.getAnchorSequence(lookup, refLength);
+			String localSeq = localAnchor;
+			// the shorter anchor is contained in the longer one so we don't need to fetch it separately
+			String localBsSeq = anchorSubsequence(localAnchor, seqLength);
+			String localRef = bs.advance(refLength).getAnchorSequence(lookup, refLength);
+			String remoteSeq = SequenceUtil.reverseComplement(remoteAnchor);
+			String remoteBsSeq = SequenceUtil.reverseComplement(anchorSubsequence(remoteAnchor, seqLength));
+			String remoteRef = SequenceUtil.reverseComplement(remoteBreakend.advance(refLength).getAnchorSequence(lookup, refLength));
+			String strBreakend = localBsSeq + insertedSequence + remoteBsSeq;
+			String strLocal = localSeq + localRef;
+			String strRemote = remoteRef + remoteSeq;
+			this.breakend = strBreakend.getBytes(StandardCharsets.US_ASCII);
+			this.local = strLocal.getBytes(StandardCharsets.US_ASCII);
+			this.remote = strRemote.getBytes(StandardCharsets.US_ASCII);
+			this.localBsSeqLength = localBsSeq.length();
+			this.remoteBsSeqLength = remoteBsSeq.length();
+		}
+	}
+	/**
+	 * Gets the anchor sequence of the given length from a longer anchor sequence.
+	 * Anchor sequences are oriented such that the breakend is always at the end of the sequence.
+	 */
+	private static String anchorSubsequence(String anchor, int length) {
+		if (length >= anchor.length()) return anchor;
+		return anchor.substring(anchor.length() - length);
 	}
 	public int getLocalHomologyLength() {
 		return localHomologyLength;
@@ -109,14 +173,47 @@ public class BreakpointHomology {
 		return remoteHomologyLength;
 	}
 	public static VariantContextDirectedBreakpoint annotate(ProcessingContext context, VariantContextDirectedBreakpoint bp) {
-		if (!bp.isBreakendExact()) return bp;
-		IdsvVariantContextBuilder builder = new IdsvVariantContextBuilder(context, bp);
-		BreakpointHomology bh = BreakpointHomology.calculate(
+		return (VariantContextDirectedBreakpoint)annotate(context, Collections.<VariantContextDirectedEvidence>singletonList(bp)).get(0);
+	}
+	/**
+	 * Annotates the inexact homology of all exact breakpoints in the given calls
+	 * @param context processing context
+	 * @param calls calls to annotate
+	 * @return annotated calls, in the same order as the input
+	 */
+	public static List<VariantContextDirectedEvidence> annotate(ProcessingContext context, List<VariantContextDirectedEvidence> calls) {
+		List<VariantContextDirectedBreakpoint> toAnnotate = new ArrayList<>();
+		List<BreakpointSummary> breakpoints = new ArrayList<>();
+		List<String> insertedSequences = new ArrayList<>();
+		for (VariantContextDirectedEvidence call : calls) {
+			if (call instanceof VariantContextDirectedBreakpoint && call.isBreakendExact()) {
+				VariantContextDirectedBreakpoint bp = (VariantContextDirectedBreakpoint)call;
+				toAnnotate.add(bp);
+				breakpoints.add(bp.getBreakendSummary().getNominalPosition());
+				insertedSequences.add(bp.getUntemplatedSequence());
+			}
+		}
+		if (toAnnotate.isEmpty()) return calls;
+		List<BreakpointHomology> homology = calculate(
 				context.getReference(),
-				bp.getBreakendSummary().getNominalPosition(),
-				bp.getUntemplatedSequence(),
+				breakpoints,
+				insertedSequences,
 				context.getVariantCallingParameters().maxBreakendHomologyLength,
 				context.getVariantCallingParameters().breakendHomologyAlignmentMargin);
+		List<VariantContextDirectedEvidence> result = new ArrayList<>(calls.size());
+		int offset = 0;
+		for (VariantContextDirectedEvidence call : calls) {
+			if (offset < toAnnotate.size() && call == toAnnotate.get(offset)) {
+				result.add(annotate(context, toAnnotate.get(offset), homology.get(offset)));
+				offset++;
+			} else {
+				result.add(call);
+			}
+		}
+		return result;
+	}
+	private static VariantContextDirectedBreakpoint annotate(ProcessingContext context, VariantContextDirectedBreakpoint bp, BreakpointHomology bh) {
+		IdsvVariantContextBuilder builder = new IdsvVariantContextBuilder(context, bp);
 		int[] bounds;
 		if (bp.getBreakendSummary().direction == BreakendDirection.Forward) {
 			bounds = new int[] { -bh.getLocalHomologyLength(), bh.getRemoteHomologyLength() };
@@ -32,22 +32,51 @@ public class BwaAligner implements Closeable {
     private final SAMSequenceDictionary dict;
     private final SAMFileHeader header;
     private final AtomicInteger exportId = new AtomicInteger();
+    /**
+     * Shared index handle owned by this aligner. Null if the index is owned by the caller.
+     */
+    private final BwaIndexRegistry.Handle indexHandle;
 
     public BwaMemAligner getAligner() {
         return this.aligner;
     }
 
+    public BwaMemIndex getIndex() {
+        return this.index;
+    }
+
+    /**
+     * Creates an aligner using the process-wide shared index for the given reference.
+     * The index is loaded if it is not already in use by another aligner.
+     */
     public BwaAligner(File reference, SAMSequenceDictionary dict, int threads) {
-        this.index = getBwaIndexFor(reference);
+        this(BwaIndexRegistry.acquire(reference), dict, threads);
+    }
+
+    private BwaAligner(BwaIndexRegistry.Handle indexHandle, SAMSequenceDictionary dict, int threads) {
+        this(indexHandle.getIndex(), indexHandle, dict, threads);
+    }
+
+    /**
+     * Creates an aligner using an already loaded index.
+     * Multiple aligners can concurrently align using the same index.
+     */
+    public BwaAligner(BwaMemIndex index, SAMSequenceDictionary dict, int threads) {
+        this(index, null, dict, threads);
+    }
+
+    private BwaAligner(BwaMemIndex index, BwaIndexRegistry.Handle indexHandle, SAMSequenceDictionary dict, int threads) {
+        this.index = index;
+        this.indexHandle = indexHandle;
         this.dict = dict;
-        this.header = getMinimalHeader(dict);
-        this.aligner = new BwaMemAligner(this.index);
-        this.aligner.setNThreadsOption(threads);
-        this.aligner.setClip3PenaltyOption(0);
-        this.aligner.setClip5PenaltyOption(0);
         try {
+            this.header = getMinimalHeader(dict);
+            this.aligner = new BwaMemAligner(this.index);
+            this.aligner.setNThreadsOption(threads);
+            this.aligner.setClip3PenaltyOption(0);
+            this.aligner.setClip5PenaltyOption(0);
             ensureMatchingReferences(this.index, dict);
-        } catch (IllegalArgumentException e) {
+        } catch (RuntimeException e) {
             // don't leak the index since it's huge
             close();
             throw e;
@@ -191,8 +220,10 @@ public class BwaAligner implements Closeable {
 
     @Override
     public void close() {
-        // TODO: work out why we get Exception in thread "feedAligner" java.lang.IllegalStateException: Index image hg19.fa.img can't be closed:  it's in use.
-        // this.aligner.close();
-        // this.index.close();
+        // The index is shared so we only release our reference to it.
+        // It is unloaded when the last aligner using it is closed.
+        if (indexHandle != null) {
+            indexHandle.close();
+        }
     }
 }
@@ -0,0 +1,100 @@
+package au.edu.wehi.idsv.alignment;
+
+import htsjdk.samtools.util.Log;
+import org.broadinstitute.hellbender.utils.bwa.BwaMemIndex;
+
+import java.io.Closeable;
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Process-wide registry of loaded bwa index images.
+ *
+ * Each index image is loaded at most once per JVM irrespective of how many
+ * aligners or GRIDSS steps concurrently use it. Callers acquire a reference-counted
+ * handle and the index is unloaded when the last handle is closed.
+ */
+public class BwaIndexRegistry {
+    private static final Log log = Log.getInstance(BwaIndexRegistry.class);
+    private static final Map<String, Entry> loaded = new HashMap<>();
+
+    private static class Entry {
+        private final String key;
+        private final BwaMemIndex index;
+        private int references = 0;
+        public Entry(String key, BwaMemIndex index) {
+            this.key = key;
+            this.index = index;
+        }
+    }
+
+    /**
+     * Reference to a shared bwa index. The index remains loaded until all
+     * handles to it have been closed.
+     */
+    public static class Handle implements Closeable {
+        private Entry entry;
+        private Handle(Entry entry) {
+            this.entry = entry;
+        }
+
+        public BwaMemIndex getIndex() {
+            if (entry == null) {
+                throw new IllegalStateException("Handle already closed");
+            }
+            return entry.index;
+        }
+
+        @Override
+        public void close() {
+            synchronized (loaded) {
+                if (entry != null) {
+                    release(entry);
+                    entry = null;
+                }
+            }
+        }
+    }
+
+    private BwaIndexRegistry() { }
+
+    /**
+     * Acquires a handle to the bwa index for the given reference genome,
+     * loading the index image if it is not already loaded.
+     * @param reference reference genome
+     * @return index handle. The handle must be closed once the index is no longer required.
+     */
+    public static Handle acquire(File reference) {
+        String key = BwaAligner.getBwaIndexFileFor(reference).toPath().normalize().toString();
+        synchronized (loaded) {
+            Entry entry = loaded.get(key);
+            if (entry == null) {
+                entry = new Entry(key, BwaAligner.getBwaIndexFor(reference));
+                loaded.put(key, entry);
+            } else {
+                log.debug("Reusing loaded bwa mem index image " + key);
+            }
+            entry.references++;
+            return new Handle(entry);
+        }
+    }
+
+    /**
+     * Number of distinct bwa indexes currently loaded through the registry.
+     */
+    public static int loadedIndexCount() {
+        synchronized (loaded) {
+            return loaded.size();
+        }
+    }
+
+    private static void release(Entry entry) {
+        entry.references--;
+        if (entry.references == 0) {
+            loaded.remove(entry.key);
+            log.info("Unloading bwa mem index image " + entry.key);
+            entry.index.close();
+        }
+    }
+}
@@ -16,22 +16,30 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Runs bwa mem through a JNI interface.
+ *
+ * Alignment batches are distributed across one or more bwa lanes. Each lane is
+ * an independent bwa mem aligner sharing the same in-memory index. Results are
+ * returned in the same order as the input records irrespective of the order in
+ * which lanes complete their batches.
  */
 public class BwaStreamingAligner implements StreamingAligner {
     private static final Log log = Log.getInstance(BwaStreamingAligner.class);
-    private ThreadPoolExecutor bwaDriver = new ThreadPoolExecutor(1, 1,
-            0L, TimeUnit.MILLISECONDS,
-            new AlwaysBlockingQueue<Runnable>(1),
-            new ThreadFactoryBuilder().setDaemon(true).setNameFormat("bwaDriver").build());
+    private final ThreadPoolExecutor bwaDriver;
     private final int bufferSizeInBytes;
     private Queue<FastqRecord> bwaInputBuffer;
     private final Queue<SAMRecord> bwaOutputBuffer = new LinkedBlockingDeque<>();
-    private final BwaAligner aligner;
+    /**
+     * Batches submitted to bwa in submission order
+     */
+    private final Queue<InFlightBatch> inFlight = new ConcurrentLinkedQueue<>();
+    private final BwaIndexRegistry.Handle index;
+    private final List<BwaAligner> aligners;
+    private final BlockingQueue<BwaAligner> idleAligners;
     private AtomicInteger outstandingRecords = new AtomicInteger(0);
     private AtomicInteger outstandingBases = new AtomicInteger(0);
     private AtomicInteger queuedBases = new AtomicInteger(0);
     public BwaAligner getAligner() {
-        return this.aligner;
+        return this.aligners.get(0);
     }
 
     /**
@@ -54,6 +62,17 @@ public class BwaStreamingAligner implements StreamingAligner {
         }
     }
 
+    private static class InFlightBatch {
+        private final int records;
+        private final int bases;
+        private final Future<List<SAMRecord>> result;
+        public InFlightBatch(int records, int bases, Future<List<SAMRecord>> result) {
+            this.records = records;
+            this.bases = bases;
+            this.result = result;
+        }
+    }
+
     /**
      *
      * @param reference Reference genome
@@ -64,9 +83,42 @@ public class BwaStreamingAligner implements StreamingAligner {
      *                          Actual invocations to bwa will be with a buffer half this size.
      */
     public BwaStreamingAligner(File reference, SAMSequenceDictionary dict, int threads, int bufferSizeInBases) {
+        this(reference, dict, threads, bufferSizeInBases, 1);
+    }
+
+    /**
+     *
+     * @param reference Reference genome
+     * @param dict sequence dictionary for reference genome
+     * @param threads total number of bwa threads. Threads are evenly split across lanes.
+     * @param bufferSizeInBases number of base pairs of sequence to buffer.
+     *                          This buffer is evenly split across the input buffer and the batches in flight in each lane.
+     * @param lanes number of concurrent bwa aligners. All lanes share a single copy of the bwa index.
+     *              Multiple lanes allow the next batch to be aligned whilst bwa is finishing
+     *              the long tail of the previous batch.
+     *              The index is also shared with any other bwa aligners for the same reference in this process.
+     */
+    public BwaStreamingAligner(File reference, SAMSequenceDictionary dict, int threads, int bufferSizeInBases, int lanes) {
+        lanes = Math.max(1, lanes);
+        int threadsPerLane = Math.max(1, threads / lanes);
         this.bwaInputBuffer = new LinkedBlockingDeque<>();
-        this.aligner = new BwaAligner(reference, dict, threads);
-        this.bufferSizeInBytes = bufferSizeInBases / 2 + 1;
+        this.index = BwaIndexRegistry.acquire(reference);
+        List<BwaAligner> laneAligners = new ArrayList<>(lanes);
+        try {
+            for (int i = 0; i < lanes; i++) {
+                laneAligners.add(new BwaAligner(index.getIndex(), dict, threadsPerLane));
+            }
+        } catch (RuntimeException e) {
+            index.close();
+            throw e;
+        }
+        this.aligners = laneAligners;
+        this.idleAligners = new ArrayBlockingQueue<>(lanes, false, laneAligners);
+        this.bufferSizeInBytes = bufferSizeInBases / (lanes + 1) + 1;
+        this.bwaDriver = new ThreadPoolExecutor(lanes, lanes,
+                0L, TimeUnit.MILLISECONDS,
+                new AlwaysBlockingQueue<Runnable>(1),
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("bwaDriver-%d").build());
     }
 
     /**
@@ -87,7 +139,7 @@ public class BwaStreamingAligner implements StreamingAligner {
     }
 
     // synchronized to ensure record ordering is stable
-    private synchronized Future<List<SAMRecord>> processInput() {
+    private synchronized void processInput() {
         final ArrayList<FastqRecord> inFlightBuffer = new ArrayList<>(bwaInputBuffer.size() + 16);
         int basesSent = 0;
         while (!bwaInputBuffer.isEmpty()) {
@@ -97,25 +149,29 @@ public class BwaStreamingAligner implements StreamingAligner {
             basesSent += fq.getReadBases().length;
         }
         if (inFlightBuffer.size() > 0) {
-            final int actualBasesSent = basesSent;
             Future<List<SAMRecord>> result = bwaDriver.submit(() -> {
-                List<SAMRecord> results = getAligner().align(inFlightBuffer);
-                bwaOutputBuffer.addAll(results);
-                outstandingBases.addAndGet(-actualBasesSent);
-                outstandingRecords.addAndGet(-inFlightBuffer.size());
-                return results;
+                BwaAligner aligner = idleAligners.take();
+                try {
+                    return aligner.align(inFlightBuffer);
+                } finally {
+                    idleAligners.put(aligner);
+                }
             });
-            return result;
+            inFlight.add(new InFlightBatch(inFlightBuffer.size(), basesSent, result));
         }
-        return null;
     }
 
-    @Override
-    public void flush() {
-        Future<List<SAMRecord>> future = processInput();
-        if (future != null) {
+    /**
+     * Moves the results of completed batches to the output buffer.
+     * Batches are processed in submission order so a batch is only
+     * returned once all previously submitted batches have completed.
+     * @param block wait for all in flight batches to complete
+     */
+    private synchronized void drainCompletedBatches(boolean block) {
+        InFlightBatch batch;
+        while ((batch = inFlight.peek()) != null && (block || batch.result.isDone())) {
             try {
-                future.get();
+                bwaOutputBuffer.addAll(batch.result.get());
             } catch (InterruptedException e) {
                 log.error(e, "Exception flushing bwa results.");
                 throw new RuntimeException(e);
@@ -123,21 +179,35 @@ public class BwaStreamingAligner implements StreamingAligner {
                 log.error(e, "Exception flushing bwa results.");
                 throw new RuntimeException(e);
             }
+            inFlight.poll();
+            outstandingBases.addAndGet(-batch.bases);
+            outstandingRecords.addAndGet(-batch.records);
         }
     }
 
+    @Override
+    public void flush() {
+        processInput();
+        drainCompletedBatches(true);
+    }
+
     @Override
     public int processedAlignmentRecords() {
+        drainCompletedBatches(false);
         return bwaOutputBuffer.size();
     }
 
     @Override
     public int outstandingAlignmentRecord() {
+        drainCompletedBatches(false);
         return outstandingRecords.get();
     }
 
     @Override
     public SAMRecord getAlignment() {
+        if (bwaOutputBuffer.isEmpty()) {
+            drainCompletedBatches(false);
+        }
         SAMRecord result = bwaOutputBuffer.poll();
         if (result == null) {
             throw new IllegalStateException("Call flush() or check processedAlignmentRecords() to ensure records are available.");
@@ -149,6 +219,9 @@ public class BwaStreamingAligner implements StreamingAligner {
     public void close() throws IOException {
         flush();
         this.bwaDriver.shutdown();
-        this.aligner.close();
+        for (BwaAligner aligner : aligners) {
+            aligner.close();
+        }
+        index.close();
     }
 }
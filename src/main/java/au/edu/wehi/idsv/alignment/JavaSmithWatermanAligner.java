@@ -0,0 +1,248 @@
+package au.edu.wehi.idsv.alignment;
+
+import htsjdk.samtools.util.SequenceUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pure java affine gap Smith-Waterman aligner.
+ *
+ * Dynamic programming matrices are stored as flat primitive arrays. Batch alignment
+ * sizes these once for the largest sequence pair in the batch so the inner loop
+ * performs no allocation.
+ *
+ * A gap of length n has a penalty of gapOpen + (n - 1) * gapExtend.
+ */
+public class JavaSmithWatermanAligner implements Aligner {
+	private static final int MATRIX_SIZE = 128;
+	private static final int NEG_INF = Integer.MIN_VALUE / 2;
+	// traceback flags
+	private static final byte H_FROM_DIAGONAL = 1;
+	private static final byte H_FROM_DELETION = 2;
+	private static final byte H_FROM_INSERTION = 3;
+	private static final byte H_SOURCE_MASK = 3;
+	private static final byte DELETION_EXTENDED = 4;
+	private static final byte INSERTION_EXTENDED = 8;
+	private final int gapOpen;
+	private final int gapExtend;
+	private final int[] matrix;
+	public JavaSmithWatermanAligner(int match, int mismatch, int ambiguous, int gapOpen, int gapExtend) {
+		this.gapOpen = gapOpen;
+		this.gapExtend = gapExtend;
+		this.matrix = createMatrix(match, mismatch, ambiguous);
+	}
+	private static int[] createMatrix(int match, int mismatch, int ambiguous) {
+		int[] scores = new int[MATRIX_SIZE * MATRIX_SIZE];
+		for (int i = 0; i < MATRIX_SIZE; i++) {
+			for (int j = 0; j < MATRIX_SIZE; j++) {
+				int score;
+				if (Character.toUpperCase(i) == Character.toUpperCase(j)) {
+					score = match;
+				} else if (SequenceUtil.isValidBase((byte) i) && SequenceUtil.isValidBase((byte) j)) {
+					score = mismatch;
+				} else {
+					score = ambiguous;
+				}
+				scores[i * MATRIX_SIZE + j] = score;
+			}
+		}
+		return scores;
+	}
+	/**
+	 * Reusable dynamic programming buffers
+	 */
+	private static class Workspace {
+		private int[] h = new int[0];
+		private int[] insertion = new int[0];
+		private byte[] traceback = new byte[0];
+		private int[] code = new int[0];
+		private void ensureCapacity(int seqLength, int refLength) {
+			if (h.length < refLength + 1) {
+				h = new int[refLength + 1];
+				insertion = new int[refLength + 1];
+			}
+			if (code.length < seqLength) {
+				code = new int[seqLength];
+			}
+			long cells = (long)(seqLength + 1) * (refLength + 1);
+			if (cells > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("Sequences too long for alignment");
+			}
+			if (traceback.length < cells) {
+				traceback = new byte[(int)cells];
+			}
+		}
+	}
+	@Override
+	public Alignment align_smith_waterman(byte[] seq, byte[] ref) {
+		Workspace ws = new Workspace();
+		ws.ensureCapacity(seq.length, ref.length);
+		return align(ws, seq, ref);
+	}
+	@Override
+	public List<Alignment> align_smith_waterman(List<byte[]> seqs, List<byte[]> refs) {
+		if (seqs.size() != refs.size()) {
+			throw new IllegalArgumentException("Sequence and reference counts must match");
+		}
+		Workspace ws = new Workspace();
+		int maxSeqLength = 0;
+		int maxRefLength = 0;
+		for (int i = 0; i < seqs.size(); i++) {
+			maxSeqLength = Math.max(maxSeqLength, seqs.get(i).length);
+			maxRefLength = Math.max(maxRefLength, refs.get(i).length);
+		}
+		ws.ensureCapacity(maxSeqLength, maxRefLength);
+		List<Alignment> result = new ArrayList<>(seqs.size());
+		for (int i = 0; i < seqs.size(); i++) {
+			result.add(align(ws, seqs.get(i), refs.get(i)));
+		}
+		return result;
+	}
+	private static int toIndex(byte b) {
+		return b < 0 ? 'N' : b;
+	}
+	private Alignment align(Workspace ws, byte[] seq, byte[] ref) {
+		if (seq == null || seq.length == 0) {
+			throw new IllegalArgumentException("seq must be non-zero size");
+		}
+		if (ref == null || ref.length == 0) {
+			throw new IllegalArgumentException("ref must be non-zero size");
+		}
+		final int m = seq.length;
+		final int n = ref.length;
+		final int width = n + 1;
+		final int[] h = ws.h;
+		final int[] insertion = ws.insertion;
+		final byte[] tb = ws.traceback;
+		final int[] code = ws.code;
+		for (int i = 0; i < m; i++) {
+			code[i] = toIndex(seq[i]) * MATRIX_SIZE;
+		}
+		for (int j = 0; j <= n; j++) {
+			h[j] = 0;
+			insertion[j] = NEG_INF;
+		}
+		int bestScore = 0;
+		int bestI = 0;
+		int bestJ = 0;
+		// Rows are sequence positions, columns are reference positions.
+		// h[] and insertion[] hold the previous row until overwritten
+		for (int i = 1; i <= m; i++) {
+			final int rowOffset = i * width;
+			final int seqCode = code[i - 1];
+			int diagonal = 0;
+			int hLeft = 0;
+			// gap in the sequence ending at the current cell
+			int deletion = NEG_INF;
+			for (int j = 1; j <= n; j++) {
+				final int hUp = h[j];
+				byte flags = 0;
+				int deletionOpen = hLeft - gapOpen;
+				int deletionExtend = deletion - gapExtend;
+				if (deletionExtend > deletionOpen) {
+					deletion = deletionExtend;
+					flags |= DELETION_EXTENDED;
+				} else {
+					deletion = deletionOpen;
+				}
+				int insertionOpen = hUp - gapOpen;
+				int insertionExtend = insertion[j] - gapExtend;
+				if (insertionExtend > insertionOpen) {
+					insertion[j] = insertionExtend;
+					flags |= INSERTION_EXTENDED;
+				} else {
+					insertion[j] = insertionOpen;
+				}
+				int score = diagonal + matrix[seqCode + toIndex(ref[j - 1])];
+				byte source = H_FROM_DIAGONAL;
+				if (deletion > score) {
+					score = deletion;
+					source = H_FROM_DELETION;
+				}
+				if (insertion[j] > score) {
+					score = insertion[j];
+					source = H_FROM_INSERTION;
+				}
+				if (score <= 0) {
+					score = 0;
+					source = 0;
+				}
+				tb[rowOffset + j] = (byte)(flags | source);
+				diagonal = hUp;
+				h[j] = score;
+				hLeft = score;
+				if (score > bestScore || (score == bestScore && score > 0 && j < bestJ)) {
+					bestScore = score;
+					bestI = i;
+					bestJ = j;
+				}
+			}
+		}
+		if (bestScore == 0) {
+			return new Alignment(0, m + "S");
+		}
+		return traceback(tb, width, bestI, bestJ, m);
+	}
+	private static Alignment traceback(byte[] tb, int width, int endI, int endJ, int seqLength) {
+		// CIGAR elements in reverse order
+		List<String> elements = new ArrayList<>();
+		if (seqLength - endI > 0) {
+			elements.add((seqLength - endI) + "S");
+		}
+		int i = endI;
+		int j = endJ;
+		char op = 0;
+		int length = 0;
+		char state = 'M';
+		while (i > 0 && j > 0) {
+			byte flags = tb[i * width + j];
+			if (state == 'M') {
+				int source = flags & H_SOURCE_MASK;
+				if (source == 0) break;
+				if (source == H_FROM_DELETION) {
+					state = 'D';
+				} else if (source == H_FROM_INSERTION) {
+					state = 'I';
+				}
+			}
+			if (state != op) {
+				if (length > 0) {
+					elements.add(Integer.toString(length) + op);
+				}
+				op = state;
+				length = 0;
+			}
+			length++;
+			switch (state) {
+				case 'M':
+					i--;
+					j--;
+					break;
+				case 'D':
+					if ((flags & DELETION_EXTENDED) == 0) {
+						state = 'M';
+					}
+					j--;
+					break;
+				default:
+					if ((flags & INSERTION_EXTENDED) == 0) {
+						state = 'M';
+					}
+					i--;
+					break;
+			}
+		}
+		if (length > 0) {
+			elements.add(Integer.toString(length) + op);
+		}
+		if (i > 0) {
+			elements.add(i + "S");
+		}
+		StringBuilder sb = new StringBuilder();
+		for (int k = elements.size() - 1; k >= 0; k--) {
+			sb.append(elements.get(k));
+		}
+		return new Alignment(j, sb.toString());
+	}
+}
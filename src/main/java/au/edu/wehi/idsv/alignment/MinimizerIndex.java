@@ -0,0 +1,608 @@
+package au.edu.wehi.idsv.alignment;
+
+import au.edu.wehi.idsv.debruijn.KmerEncodingHelper;
+import au.edu.wehi.idsv.picard.ReferenceLookup;
+import com.google.common.io.CountingInputStream;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.reference.ReferenceSequenceFile;
+import htsjdk.samtools.util.Log;
+import htsjdk.samtools.util.SequenceUtil;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Minimizer index of the reference genome used to find exact matches of short sequences
+ * without invoking a full aligner.
+ *
+ * For every window of w consecutive kmers in the reference, the kmer with the smallest
+ * hash is indexed. Since any exact occurrence of a sequence in the reference contains
+ * the same windows as the sequence itself, looking up the minimizer of the first window
+ * of the sequence is guaranteed to find every exact occurrence of that sequence.
+ *
+ * Loaded indexes are memory mapped rather than read onto the heap.
+ */
+public class MinimizerIndex {
+	private static final Log log = Log.getInstance(MinimizerIndex.class);
+	private static final byte[] INDEX_MAGIC = "GRIDSSMI".getBytes(StandardCharsets.US_ASCII);
+	private static final int INDEX_FORMAT_VERSION = 1;
+	public static final int DEFAULT_K = 16;
+	public static final int DEFAULT_W = 8;
+	private static final int ENTRY_BYTES = 16;
+	/**
+	 * Number of index entries in each memory mapped block. Blocks are limited to 2GB by the nio API.
+	 */
+	private static final int MAPPED_BLOCK_ENTRIES_BITS = 26;
+	private static final int MAPPED_BLOCK_ENTRIES = 1 << MAPPED_BLOCK_ENTRIES_BITS;
+	// bwa mem default scoring used to determine the alignment bwa would report
+	private static final int BWA_MATCH_SCORE = 1;
+	private static final int BWA_MISMATCH_PENALTY = 4;
+	private static final int BWA_AMBIGUOUS_PENALTY = 1;
+	private static final int BWA_GAP_OPEN_PENALTY = 6;
+	private static final int BWA_GAP_EXTEND_PENALTY = 1;
+	private static final int BWA_MIN_SEED_LENGTH = 19;
+	private static final int BWA_MAPQ_COEF_LENGTH = 50;
+	private static final int BWA_MAPQ_MAX = 60;
+	private static final double BWA_XA_DROP_RATIO = 0.8;
+	/**
+	 * Maximum indel size considered when scoring alternate alignments
+	 */
+	private static final int ALTERNATE_ALIGNMENT_BAND = 16;
+	private static final int NEGATIVE_INFINITY = -1000000;
+	private final int k;
+	private final int w;
+	private final String[] contigs;
+	private final int size;
+	/**
+	 * Indexed kmers in ascending order. null if the index is memory mapped.
+	 */
+	private final long[] kmers;
+	/**
+	 * Reference position of each indexed kmer encoded as (referenceIndex << 32) | zero-based offset.
+	 * null if the index is memory mapped.
+	 */
+	private final long[] positions;
+	/**
+	 * Memory mapped (kmer, position) index entries
+	 */
+	private final ByteBuffer[] mapped;
+	private MinimizerIndex(int k, int w, String[] contigs, long[] kmers, long[] positions) {
+		this.k = k;
+		this.w = w;
+		this.contigs = contigs;
+		this.size = kmers.length;
+		this.kmers = kmers;
+		this.positions = positions;
+		this.mapped = null;
+	}
+	private MinimizerIndex(int k, int w, String[] contigs, int size, ByteBuffer[] mapped) {
+		this.k = k;
+		this.w = w;
+		this.contigs = contigs;
+		this.size = size;
+		this.kmers = null;
+		this.positions = null;
+		this.mapped = mapped;
+	}
+	private long kmer(int i) {
+		if (kmers != null) return kmers[i];
+		return mapped[i >>> MAPPED_BLOCK_ENTRIES_BITS].getLong((i & (MAPPED_BLOCK_ENTRIES - 1)) * ENTRY_BYTES);
+	}
+	private long position(int i) {
+		if (positions != null) return positions[i];
+		return mapped[i >>> MAPPED_BLOCK_ENTRIES_BITS].getLong((i & (MAPPED_BLOCK_ENTRIES - 1)) * ENTRY_BYTES + 8);
+	}
+	public int getK() {
+		return k;
+	}
+	public int getW() {
+		return w;
+	}
+	/**
+	 * Minimum sequence length that can be looked up
+	 */
+	public int getMinSequenceLength() {
+		return k + w - 1;
+	}
+	public static File getIndexFileFor(File reference) {
+		return new File(reference.getAbsolutePath() + ".gridssminimizer");
+	}
+	/**
+	 * Exact match of a sequence to the reference genome
+	 */
+	public static class ExactMatch {
+		public final int referenceIndex;
+		/**
+		 * One-based reference position of the first matching base
+		 */
+		public final int start;
+		public final boolean negativeStrand;
+		public ExactMatch(int referenceIndex, int start, boolean negativeStrand) {
+			this.referenceIndex = referenceIndex;
+			this.start = start;
+			this.negativeStrand = negativeStrand;
+		}
+		@Override
+		public String toString() {
+			return String.format("%d:%d%s", referenceIndex, start, negativeStrand ? "-" : "+");
+		}
+	}
+	/**
+	 * Unique exact match of a sequence to the reference genome
+	 */
+	public static class UniqueExactMatch extends ExactMatch {
+		/**
+		 * Lower bound of the mapping quality bwa mem would report for this alignment
+		 */
+		public final int mapq;
+		public UniqueExactMatch(int referenceIndex, int start, boolean negativeStrand, int mapq) {
+			super(referenceIndex, start, negativeStrand);
+			this.mapq = mapq;
+		}
+	}
+	/**
+	 * Hash used to order kmers within a window. Ordering by hash instead of by
+	 * kmer avoids low complexity kmers such as poly-A dominating the index.
+	 */
+	private static long hash(long kmer) {
+		kmer ^= kmer >>> 33;
+		kmer *= 0xff51afd7ed558ccdL;
+		kmer ^= kmer >>> 33;
+		kmer *= 0xc4ceb9fe1a85ec53L;
+		kmer ^= kmer >>> 33;
+		return kmer;
+	}
+	private static boolean isAmbiguous(byte base) {
+		return base < 0 || KmerEncodingHelper.isAmbiguous(base);
+	}
+	/**
+	 * Creates a minimizer index of the given reference genome.
+	 *
+	 * The reference is read twice: once to count the minimizers and once to
+	 * populate exactly sized arrays. Peak heap usage is 16 bytes per minimizer
+	 * plus the largest contig.
+	 * @param reference reference genome
+	 * @param k kmer size
+	 * @param w number of consecutive kmers in each minimizer window
+	 * @return minimizer index
+	 */
+	public static MinimizerIndex create(ReferenceSequenceFile reference, int k, int w) {
+		if (k < 1 || k > KmerEncodingHelper.MAX_K) throw new IllegalArgumentException("Invalid kmer size");
+		if (w < 1) throw new IllegalArgumentException("Invalid window size");
+		SAMSequenceDictionary dict = reference.getSequenceDictionary();
+		String[] contigs = new String[dict.size()];
+		long count = 0;
+		for (int referenceIndex = 0; referenceIndex < dict.size(); referenceIndex++) {
+			SAMSequenceRecord ssr = dict.getSequence(referenceIndex);
+			contigs[referenceIndex] = ssr.getSequenceName();
+			log.info("Counting minimizers of " + ssr.getSequenceName());
+			count += scanMinimizers(reference.getSequence(ssr.getSequenceName()).getBases(), referenceIndex, k, w, null, null, 0);
+		}
+		if (count > Integer.MAX_VALUE - 8) {
+			throw new IllegalArgumentException(String.format("Reference genome has %d minimizers. At most %d are supported.", count, Integer.MAX_VALUE - 8));
+		}
+		long[] kmerArray = new long[(int)count];
+		long[] positionArray = new long[(int)count];
+		int offset = 0;
+		for (int referenceIndex = 0; referenceIndex < dict.size(); referenceIndex++) {
+			log.info("Indexing minimizers of " + contigs[referenceIndex]);
+			offset += scanMinimizers(reference.getSequence(contigs[referenceIndex]).getBases(), referenceIndex, k, w, kmerArray, positionArray, offset);
+		}
+		if (offset != count) {
+			throw new IllegalStateException("Reference genome changed during minimizer indexing");
+		}
+		LongArrays.radixSort(kmerArray, positionArray);
+		log.info(String.format("Indexed %d minimizers", kmerArray.length));
+		return new MinimizerIndex(k, w, contigs, kmerArray, positionArray);
+	}
+	/**
+	 * Finds the minimizers of the given contig
+	 * @param kmers minimizer kmers are written to this array starting at the given offset.
+	 *              Minimizers are only counted if null.
+	 * @param positions minimizer positions are written to this array starting at the given offset.
+	 * @return number of minimizers in the contig
+	 */
+	private static int scanMinimizers(byte[] bases, int referenceIndex, int k, int w, long[] kmers, long[] positions, int offset) {
+		long[] windowKmer = new long[w];
+		long[] windowHash = new long[w];
+		int[] windowOffset = new int[w];
+		long mask = k == KmerEncodingHelper.MAX_K ? -1L : (1L << (2 * k)) - 1;
+		long kmer = 0;
+		int validBases = 0;
+		// monotone deque of the kmers in the current window with strictly increasing hashes
+		int head = 0;
+		int size = 0;
+		long lastEmitted = -1;
+		int count = 0;
+		for (int i = 0; i < bases.length; i++) {
+			if (isAmbiguous(bases[i])) {
+				validBases = 0;
+				size = 0;
+				continue;
+			}
+			kmer = ((kmer << 2) | KmerEncodingHelper.picardBaseToEncoded(bases[i])) & mask;
+			validBases++;
+			if (validBases < k) continue;
+			int kmerOffset = i - k + 1;
+			long h = hash(kmer);
+			if (size > 0 && windowOffset[head] <= kmerOffset - w) {
+				head = (head + 1) % w;
+				size--;
+			}
+			// keep the leftmost kmer on ties
+			while (size > 0 && windowHash[(head + size - 1) % w] > h) {
+				size--;
+			}
+			int slot = (head + size) % w;
+			windowKmer[slot] = kmer;
+			windowHash[slot] = h;
+			windowOffset[slot] = kmerOffset;
+			size++;
+			if (validBases >= k + w - 1) {
+				long position = ((long)referenceIndex << 32) | windowOffset[head];
+				if (position != lastEmitted) {
+					if (kmers != null) {
+						kmers[offset + count] = windowKmer[head];
+						positions[offset + count] = position;
+					}
+					count++;
+					lastEmitted = position;
+				}
+			}
+		}
+		return count;
+	}
+	/**
+	 * Finds all exact matches of the given sequence to the reference genome
+	 * @param reference reference genome
+	 * @param seq sequence to find
+	 * @param maxCandidates maximum number of reference positions to consider
+	 * @return exact matches of the sequence, or null if exact matches could not be determined,
+	 * either because the sequence is too short, contains ambiguous bases, or is too repetitive.
+	 */
+	public List<ExactMatch> findExactMatches(ReferenceLookup reference, byte[] seq, int maxCandidates) {
+		if (seq.length < getMinSequenceLength()) return null;
+		for (byte b : seq) {
+			if (isAmbiguous(b)) return null;
+		}
+		List<ExactMatch> result = new ArrayList<>();
+		if (!findExactMatches(reference, seq, false, maxCandidates, result)) return null;
+		byte[] rc = Arrays.copyOf(seq, seq.length);
+		SequenceUtil.reverseComplement(rc);
+		if (!findExactMatches(reference, rc, true, maxCandidates, result)) return null;
+		return result;
+	}
+	private boolean findExactMatches(ReferenceLookup reference, byte[] seq, boolean negativeStrand, int maxCandidates, List<ExactMatch> result) {
+		// minimizer of the first window
+		long kmer = KmerEncodingHelper.picardBaseToEncoded(k, seq);
+		long minKmer = kmer;
+		long minHash = hash(kmer);
+		int minOffset = 0;
+		for (int offset = 1; offset < w; offset++) {
+			kmer = KmerEncodingHelper.nextState(k, kmer, seq[offset + k - 1]);
+			long h = hash(kmer);
+			if (h < minHash) {
+				minKmer = kmer;
+				minHash = h;
+				minOffset = offset;
+			}
+		}
+		int first = lowerBound(minKmer);
+		int last = first;
+		while (last < size && kmer(last) == minKmer) {
+			last++;
+		}
+		if (last - first > maxCandidates) return false;
+		for (int i = first; i < last; i++) {
+			int referenceIndex = (int)(position(i) >>> 32);
+			int start = (int)position(i) - minOffset;
+			if (matches(reference, seq, referenceIndex, start)) {
+				result.add(new ExactMatch(referenceIndex, start + 1, negativeStrand));
+			}
+		}
+		return true;
+	}
+	private static boolean matches(ReferenceLookup reference, byte[] seq, int referenceIndex, int start) {
+		if (start < 0 || start + seq.length > reference.getSequenceDictionary().getSequence(referenceIndex).getSequenceLength()) {
+			return false;
+		}
+		for (int i = 0; i < seq.length; i++) {
+			byte refBase = reference.getBase(referenceIndex, start + i + 1);
+			if (isAmbiguous(refBase) || KmerEncodingHelper.picardBaseToEncoded(refBase) != KmerEncodingHelper.picardBaseToEncoded(seq[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+	/**
+	 * Finds the alignment bwa mem would report for a sequence with a unique exact match to the reference.
+	 *
+	 * Every window of the sequence is looked up so every reference location sharing an exact match
+	 * of at least k + w - 1 bases with the sequence is considered as an alternate alignment.
+	 * The sequence is only resolved if it has a single exact match and no alternate alignment scores
+	 * high enough for bwa to report it in the XA tag. The reported mapping quality follows the bwa mem
+	 * mapping quality model using the best alternate alignment score, or the best score possible
+	 * for an alignment that does not share such an exact match with the sequence.
+	 *
+	 * @param reference reference genome
+	 * @param seq sequence to find
+	 * @param maxCandidates maximum number of reference positions to consider for each minimizer
+	 * @return unique exact match, or null if the sequence must be aligned by bwa
+	 */
+	public UniqueExactMatch findUniqueExactMatch(ReferenceLookup reference, byte[] seq, int maxCandidates) {
+		if (seq.length < getMinSequenceLength()) return null;
+		for (byte b : seq) {
+			if (isAmbiguous(b)) return null;
+		}
+		byte[] rc = Arrays.copyOf(seq, seq.length);
+		SequenceUtil.reverseComplement(rc);
+		LongOpenHashSet forwardCandidates = findCandidates(seq, maxCandidates);
+		if (forwardCandidates == null) return null;
+		LongOpenHashSet reverseCandidates = findCandidates(rc, maxCandidates);
+		if (reverseCandidates == null) return null;
+		ExactMatch exact = null;
+		for (int strand = 0; strand < 2; strand++) {
+			boolean negativeStrand = strand == 1;
+			for (long candidate : negativeStrand ? reverseCandidates : forwardCandidates) {
+				int referenceIndex = (int)(candidate >>> 32);
+				int start = (int)candidate;
+				if (matches(reference, negativeStrand ? rc : seq, referenceIndex, start)) {
+					if (exact != null) return null;
+					exact = new ExactMatch(referenceIndex, start + 1, negativeStrand);
+				}
+			}
+		}
+		if (exact == null) return null;
+		int alternateScore = 0;
+		for (int strand = 0; strand < 2; strand++) {
+			boolean negativeStrand = strand == 1;
+			for (long candidate : negativeStrand ? reverseCandidates : forwardCandidates) {
+				int referenceIndex = (int)(candidate >>> 32);
+				int start = (int)candidate;
+				if (referenceIndex == exact.referenceIndex && negativeStrand == exact.negativeStrand && Math.abs(start + 1 - exact.start) <= ALTERNATE_ALIGNMENT_BAND) {
+					// the band would include the exact match itself
+					if (start + 1 != exact.start) {
+						alternateScore = Math.max(alternateScore, ungappedLocalScore(reference, negativeStrand ? rc : seq, referenceIndex, start));
+					}
+				} else {
+					alternateScore = Math.max(alternateScore, bandedLocalScore(reference, negativeStrand ? rc : seq, referenceIndex, start, ALTERNATE_ALIGNMENT_BAND));
+				}
+			}
+		}
+		int score = seq.length * BWA_MATCH_SCORE;
+		if (alternateScore >= BWA_XA_DROP_RATIO * score) {
+			// bwa would report the alternate alignment
+			return null;
+		}
+		int sub = Math.max(Math.max(alternateScore, unseededScoreBound(seq.length)), BWA_MIN_SEED_LENGTH * BWA_MATCH_SCORE);
+		return new UniqueExactMatch(exact.referenceIndex, exact.start, exact.negativeStrand, bwaMapq(seq.length, score, sub));
+	}
+	/**
+	 * Maximum score of a local alignment not containing an exact match of k + w - 1 bases.
+	 *
+	 * An alignment of length l with x mismatches and runs of at most r matching bases
+	 * scores at most min(l - (1 + 4)x, r + (r - 4)x) which is maximised at x = (l - r) / (r + 1).
+	 */
+	private int unseededScoreBound(int length) {
+		int r = getMinSequenceLength() - 1;
+		return Math.min(length, (length * (r - BWA_MISMATCH_PENALTY) + (BWA_MATCH_SCORE + BWA_MISMATCH_PENALTY) * r) / (r + 1));
+	}
+	/**
+	 * bwa mem mapping quality of an ungapped alignment with the given score and sub-optimal score
+	 */
+	private static int bwaMapq(int length, int score, int sub) {
+		if (sub >= score) return 0;
+		double tmp = length < BWA_MAPQ_COEF_LENGTH ? 1 : Math.log(BWA_MAPQ_COEF_LENGTH) / Math.log(length);
+		int mapq = (int)(6.02 * (score - sub) / BWA_MATCH_SCORE * tmp * tmp + .499);
+		return Math.max(0, Math.min(BWA_MAPQ_MAX, mapq));
+	}
+	/**
+	 * Reference positions sharing a minimizer with the sequence
+	 * @return candidate alignment start positions encoded as (referenceIndex << 32) | zero-based offset,
+	 * null if any minimizer has more than maxCandidates positions
+	 */
+	private LongOpenHashSet findCandidates(byte[] seq, int maxCandidates) {
+		long[] hashes = new long[seq.length - k + 1];
+		long[] seqKmers = new long[hashes.length];
+		long kmer = KmerEncodingHelper.picardBaseToEncoded(k, seq);
+		for (int offset = 0; offset < hashes.length; offset++) {
+			if (offset > 0) {
+				kmer = KmerEncodingHelper.nextState(k, kmer, seq[offset + k - 1]);
+			}
+			seqKmers[offset] = kmer;
+			hashes[offset] = hash(kmer);
+		}
+		LongOpenHashSet candidates = new LongOpenHashSet();
+		int lastOffset = -1;
+		for (int windowStart = 0; windowStart + w <= hashes.length; windowStart++) {
+			int minOffset = windowStart;
+			for (int offset = windowStart + 1; offset < windowStart + w; offset++) {
+				if (hashes[offset] < hashes[minOffset]) {
+					minOffset = offset;
+				}
+			}
+			if (minOffset == lastOffset) continue;
+			lastOffset = minOffset;
+			int first = lowerBound(seqKmers[minOffset]);
+			int last = first;
+			while (last < size && kmer(last) == seqKmers[minOffset]) {
+				last++;
+			}
+			if (last - first > maxCandidates) return null;
+			for (int i = first; i < last; i++) {
+				long position = position(i);
+				candidates.add((position & 0xFFFFFFFF00000000L) | (((int)position - minOffset) & 0xFFFFFFFFL));
+			}
+		}
+		return candidates;
+	}
+	private static int score(byte base, byte refBase) {
+		if (isAmbiguous(refBase)) return -BWA_AMBIGUOUS_PENALTY;
+		return KmerEncodingHelper.picardBaseToEncoded(refBase) == KmerEncodingHelper.picardBaseToEncoded(base) ? BWA_MATCH_SCORE : -BWA_MISMATCH_PENALTY;
+	}
+	/**
+	 * Best local alignment score of the sequence aligned without indels starting at the given position
+	 */
+	private static int ungappedLocalScore(ReferenceLookup reference, byte[] seq, int referenceIndex, int start) {
+		int contigLength = reference.getSequenceDictionary().getSequence(referenceIndex).getSequenceLength();
+		int best = 0;
+		int current = 0;
+		for (int i = Math.max(0, -start); i < seq.length && start + i < contigLength; i++) {
+			current = Math.max(0, current + score(seq[i], reference.getBase(referenceIndex, start + i + 1)));
+			best = Math.max(best, current);
+		}
+		return best;
+	}
+	/**
+	 * Best local alignment score of the sequence aligned within the given number
+	 * of bases of the diagonal starting at the given position
+	 */
+	private static int bandedLocalScore(ReferenceLookup reference, byte[] seq, int referenceIndex, int start, int band) {
+		int contigLength = reference.getSequenceDictionary().getSequence(referenceIndex).getSequenceLength();
+		int refStart = Math.max(0, start - band);
+		int refEnd = Math.min(contigLength, start + seq.length + band);
+		if (refEnd <= refStart) return 0;
+		byte[] ref = new byte[refEnd - refStart];
+		for (int j = 0; j < ref.length; j++) {
+			ref[j] = reference.getBase(referenceIndex, refStart + j + 1);
+		}
+		// Gotoh local alignment restricted to the band. Column j is reference base j - 1.
+		// Columns to the right of the band have never been written so retain their initial values.
+		int[] h = new int[ref.length + 1];
+		int[] f = new int[ref.length + 1];
+		Arrays.fill(f, NEGATIVE_INFINITY);
+		int best = 0;
+		for (int i = 0; i < seq.length; i++) {
+			int diagonal = start + i - refStart + 1;
+			int jmin = Math.max(1, diagonal - band);
+			int jmax = Math.min(ref.length, diagonal + band);
+			if (jmin > jmax) continue;
+			int hDiagonal = h[jmin - 1];
+			int hLeft = 0;
+			int e = NEGATIVE_INFINITY;
+			for (int j = jmin; j <= jmax; j++) {
+				e = Math.max(hLeft - BWA_GAP_OPEN_PENALTY - BWA_GAP_EXTEND_PENALTY, e - BWA_GAP_EXTEND_PENALTY);
+				f[j] = Math.max(h[j] - BWA_GAP_OPEN_PENALTY - BWA_GAP_EXTEND_PENALTY, f[j] - BWA_GAP_EXTEND_PENALTY);
+				int hj = Math.max(0, Math.max(hDiagonal + score(seq[i], ref[j - 1]), Math.max(e, f[j])));
+				hDiagonal = h[j];
+				h[j] = hj;
+				hLeft = hj;
+				best = Math.max(best, hj);
+			}
+		}
+		return best;
+	}
+	private int lowerBound(long kmer) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (kmer(mid) < kmer) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+	/**
+	 * Determines whether the given index matches the given reference genome
+	 */
+	public boolean matchesReference(SAMSequenceDictionary dict) {
+		if (dict.size() != contigs.length) return false;
+		for (int i = 0; i < contigs.length; i++) {
+			if (!dict.getSequence(i).getSequenceName().equals(contigs[i])) return false;
+		}
+		return true;
+	}
+	/**
+	 * Writes the index to the given file.
+	 *
+	 * File format (big-endian):
+	 * - magic "GRIDSSMI"
+	 * - int format version
+	 * - int k
+	 * - int w
+	 * - int contig count
+	 * - per contig: UTF-8 name
+	 * - int minimizer count
+	 * - per minimizer: long kmer, long position. Minimizers are sorted by kmer.
+	 *
+	 * The index is written to a temporary file and atomically moved into place.
+	 * @param file index file
+	 */
+	public void save(File file) throws IOException {
+		if (file.exists()) {
+			throw new IllegalArgumentException(file + " already exists");
+		}
+		File tmp = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+		try {
+			try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+				dos.write(INDEX_MAGIC);
+				dos.writeInt(INDEX_FORMAT_VERSION);
+				dos.writeInt(k);
+				dos.writeInt(w);
+				dos.writeInt(contigs.length);
+				for (String contig : contigs) {
+					dos.writeUTF(contig);
+				}
+				dos.writeInt(size);
+				for (int i = 0; i < size; i++) {
+					dos.writeLong(kmer(i));
+					dos.writeLong(position(i));
+				}
+			}
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tmp.toPath());
+		}
+	}
+	/**
+	 * Memory maps the index in the given file
+	 * @param file index file
+	 * @return minimizer index
+	 */
+	public static MinimizerIndex load(File file) throws IOException {
+		try (FileInputStream fis = new FileInputStream(file)) {
+			CountingInputStream header = new CountingInputStream(new BufferedInputStream(fis));
+			DataInputStream dis = new DataInputStream(header);
+			byte[] magic = new byte[INDEX_MAGIC.length];
+			dis.readFully(magic);
+			if (!Arrays.equals(INDEX_MAGIC, magic)) {
+				throw new IOException(file + " is not a GRIDSS minimizer index");
+			}
+			int version = dis.readInt();
+			if (version != INDEX_FORMAT_VERSION) {
+				throw new IOException(String.format("%s is not a version %d GRIDSS minimizer index", file, INDEX_FORMAT_VERSION));
+			}
+			int k = dis.readInt();
+			int w = dis.readInt();
+			String[] contigs = new String[dis.readInt()];
+			for (int i = 0; i < contigs.length; i++) {
+				contigs[i] = dis.readUTF();
+			}
+			int n = dis.readInt();
+			long offset = header.getCount();
+			if (file.length() < offset + (long)n * ENTRY_BYTES) {
+				throw new IOException(file + " is truncated");
+			}
+			FileChannel channel = fis.getChannel();
+			ByteBuffer[] mapped = new ByteBuffer[(int)(((long)n + MAPPED_BLOCK_ENTRIES - 1) / MAPPED_BLOCK_ENTRIES)];
+			for (int i = 0; i < mapped.length; i++) {
+				long blockEntries = Math.min(MAPPED_BLOCK_ENTRIES, n - (long)i * MAPPED_BLOCK_ENTRIES);
+				mapped[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset + (long)i * MAPPED_BLOCK_ENTRIES * ENTRY_BYTES, blockEntries * ENTRY_BYTES);
+			}
+			return new MinimizerIndex(k, w, contigs, n, mapped);
+		}
+	}
+}
@@ -1,6 +1,7 @@
 package au.edu.wehi.idsv.bed;
 
 import au.edu.wehi.idsv.LinearGenomicCoordinate;
+import com.google.common.collect.BoundType;
 import com.google.common.collect.Range;
 import com.google.common.collect.RangeSet;
 import com.google.common.collect.TreeRangeSet;
@@ -10,52 +11,140 @@ import htsjdk.tribble.AbstractFeatureReader;
 import htsjdk.tribble.bed.BEDCodec;
 import htsjdk.tribble.bed.BEDFeature;
 import htsjdk.tribble.readers.LineIterator;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrays;
 
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.util.stream.Collectors;
 
 /**
  * Minimal bed wrapper retaining only interval information
+ *
+ * Intervals are stored as sorted arrays of non-overlapping half-open
+ * linear genomic coordinate intervals. Lookups are O(log n) and sequential
+ * lookups through a {@link Cursor} are amortised O(1).
+ *
+ * Intervals added are buffered and merged into the sorted arrays on the next lookup.
  * @author Daniel Cameron
  *
  */
 public class IntervalBed {
 	private static final Log log = Log.getInstance(IntervalBed.class);
 	private final LinearGenomicCoordinate linear;
-	private final RangeSet<Long> intervals;
+	/**
+	 * Current set of intervals. null if intervals have been added since the last lookup.
+	 */
+	private volatile Intervals intervals;
+	/**
+	 * Merged intervals not including pending intervals
+	 */
+	private Intervals merged;
+	private final LongArrayList pendingStart = new LongArrayList();
+	private final LongArrayList pendingEnd = new LongArrayList();
+	/**
+	 * Immutable sorted set of non-overlapping, non-adjacent half-open intervals
+	 */
+	private static class Intervals {
+		private static final Intervals EMPTY = new Intervals(new long[0], new long[0], 0);
+		private final long[] start;
+		private final long[] end;
+		private final int size;
+		private Intervals(long[] start, long[] end, int size) {
+			this.start = start;
+			this.end = end;
+			this.size = size;
+		}
+		/**
+		 * Creates an interval set from the given unordered, possibly overlapping intervals.
+		 * The input arrays are sorted in place.
+		 */
+		private static Intervals create(long[] start, long[] end, int size) {
+			if (size == 0) return EMPTY;
+			LongArrays.radixSort(start, end, 0, size);
+			long[] mergedStart = new long[size];
+			long[] mergedEnd = new long[size];
+			int n = 0;
+			for (int i = 0; i < size; i++) {
+				if (start[i] >= end[i]) continue;
+				if (n > 0 && start[i] <= mergedEnd[n - 1]) {
+					mergedEnd[n - 1] = Math.max(mergedEnd[n - 1], end[i]);
+				} else {
+					mergedStart[n] = start[i];
+					mergedEnd[n] = end[i];
+					n++;
+				}
+			}
+			if (n < size / 2) {
+				// don't waste memory on merged intervals
+				mergedStart = LongArrays.trim(mergedStart, n);
+				mergedEnd = LongArrays.trim(mergedEnd, n);
+			}
+			return new Intervals(mergedStart, mergedEnd, n);
+		}
+		/**
+		 * Gets the index of the first interval ending after the given position,
+		 * searching only the intervals in the range [from, to).
+		 * @return index of interval, to if no such interval exists
+		 */
+		private int firstEndingAfter(long position, int from, int to) {
+			int lo = from;
+			int hi = to;
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if (end[mid] <= position) {
+					lo = mid + 1;
+				} else {
+					hi = mid;
+				}
+			}
+			return lo;
+		}
+		/**
+		 * Determines whether the half-open interval [queryStart, queryEnd) overlaps any interval
+		 */
+		private boolean overlaps(long queryStart, long queryEnd) {
+			if (queryStart >= queryEnd) return false;
+			int i = firstEndingAfter(queryStart, 0, size);
+			return i < size && start[i] < queryEnd;
+		}
+	}
 	public int size() {
-		return intervals.asRanges().size();
+		return getIntervals().size;
 	}
 	public IntervalBed(LinearGenomicCoordinate linear, File bed) throws IOException {
-		this(linear, toRangeSet(linear, bed));
+		this(linear, load(linear, bed));
 	}
 	public IntervalBed(LinearGenomicCoordinate linear) {
-		this(linear, TreeRangeSet.<Long>create());
+		this(linear, Intervals.EMPTY);
 	}
 	public IntervalBed(LinearGenomicCoordinate linear, QueryInterval[] intervals) {
-		this(linear, TreeRangeSet.<Long>create());
+		this(linear, Intervals.EMPTY);
 		for (QueryInterval qi : intervals) {
 			addInterval(qi);
 		}
 	}
-	private IntervalBed(LinearGenomicCoordinate linear, RangeSet<Long> intervals) {
+	private IntervalBed(LinearGenomicCoordinate linear, Intervals intervals) {
 		this.linear = linear;
+		this.merged = intervals;
 		this.intervals = intervals;
 	}
 	public static IntervalBed merge(LinearGenomicCoordinate linear, Iterable<IntervalBed> list) {
-		RangeSet<Long> blacklisted = TreeRangeSet.create();
+		LongArrayList start = new LongArrayList();
+		LongArrayList end = new LongArrayList();
 		for (IntervalBed bed : list) {
 			// TODO assert dictionaries and linear coordinates match
-			blacklisted.addAll(bed.intervals);
+			Intervals bi = bed.getIntervals();
+			start.addElements(start.size(), bi.start, 0, bi.size);
+			end.addElements(end.size(), bi.end, 0, bi.size);
 		}
-		return new IntervalBed(linear, blacklisted);
+		return new IntervalBed(linear, Intervals.create(start.elements(), end.elements(), start.size()));
 	}
-	private static RangeSet<Long> toRangeSet(LinearGenomicCoordinate linear, File bed) throws IOException {
-		RangeSet<Long> rs = TreeRangeSet.create();
+	private static Intervals load(LinearGenomicCoordinate linear, File bed) throws IOException {
+		LongArrayList startList = new LongArrayList();
+		LongArrayList endList = new LongArrayList();
 		BEDCodec codec = new BEDCodec();
 	    try (AbstractFeatureReader<BEDFeature, LineIterator> reader = AbstractFeatureReader.getFeatureReader(bed.getPath(), codec, false)) {
 	    	int lineno = 0;
@@ -70,19 +159,45 @@ public class IntervalBed {
 					log.error(msg);
 					throw new IllegalArgumentException(msg);
 				}
-				rs.add(Range.closedOpen(linear.getLinearCoordinate(referenceIndex, start), linear.getLinearCoordinate(referenceIndex, end) + 1));
+				startList.add(linear.getLinearCoordinate(referenceIndex, start));
+				endList.add(linear.getLinearCoordinate(referenceIndex, end) + 1);
 			}
         }
-		return rs;
+		return Intervals.create(startList.elements(), endList.elements(), startList.size());
 	}
 	public static void addInterval(LinearGenomicCoordinate linear, RangeSet<Long> blacklisted, int referenceIndex, int start, int end) {
 		blacklisted.add(Range.closedOpen(linear.getLinearCoordinate(referenceIndex, start), linear.getLinearCoordinate(referenceIndex, end) + 1));
 	}
 	public synchronized void addInterval(int referenceIndex, int start, int end) {
-		addInterval(linear, intervals, referenceIndex, start, end);
+		pendingStart.add(linear.getLinearCoordinate(referenceIndex, start));
+		pendingEnd.add(linear.getLinearCoordinate(referenceIndex, end) + 1);
+		intervals = null;
 	}
-	public synchronized void addInterval(QueryInterval qi) {
-		addInterval(linear, intervals, qi.referenceIndex, qi.start, qi.end);
+	public void addInterval(QueryInterval qi) {
+		addInterval(qi.referenceIndex, qi.start, qi.end);
+	}
+	private Intervals getIntervals() {
+		Intervals current = intervals;
+		if (current == null) {
+			current = flushPending();
+		}
+		return current;
+	}
+	private synchronized Intervals flushPending() {
+		if (intervals == null) {
+			int size = merged.size + pendingStart.size();
+			long[] start = new long[size];
+			long[] end = new long[size];
+			System.arraycopy(merged.start, 0, start, 0, merged.size);
+			System.arraycopy(merged.end, 0, end, 0, merged.size);
+			pendingStart.getElements(0, start, merged.size, pendingStart.size());
+			pendingEnd.getElements(0, end, merged.size, pendingEnd.size());
+			pendingStart.clear();
+			pendingEnd.clear();
+			merged = Intervals.create(start, end, size);
+			intervals = merged;
+		}
+		return intervals;
 	}
 	/**
 	 * Determines whether any of the intervals overlap the given interval
@@ -95,28 +210,112 @@ public class IntervalBed {
 		return overlaps(linear.getLinearCoordinate(referenceIndex, start), linear.getLinearCoordinate(referenceIndex, end));
 	}
 	public boolean overlaps(long start, long end) {
-		Range<Long> r = Range.closedOpen(start, end + 1);
-		return overlaps(r);
+		if (end < start) return false;
+		return getIntervals().overlaps(start, end + 1);
 	}
 	public boolean overlaps(Range<Long> interval) {
 		if (interval == null) {
 			return false;
 		}
-		return intervals.intersects(interval);
+		long start = Long.MIN_VALUE;
+		long end = Long.MAX_VALUE;
+		if (interval.hasLowerBound()) {
+			start = interval.lowerEndpoint() + (interval.lowerBoundType() == BoundType.OPEN ? 1 : 0);
+		}
+		if (interval.hasUpperBound()) {
+			end = interval.upperEndpoint() + (interval.upperBoundType() == BoundType.CLOSED ? 1 : 0);
+		}
+		return getIntervals().overlaps(start, end);
+	}
+	/**
+	 * Creates a cursor for efficient lookups by callers querying in coordinate order.
+	 *
+	 * Cursors are not thread-safe and each thread should use its own cursor.
+	 */
+	public Cursor cursor() {
+		return new Cursor();
+	}
+	/**
+	 * Overlap lookup optimised for queries in ascending start coordinate order.
+	 * Out of order queries are supported but fall back to a binary search.
+	 */
+	public class Cursor {
+		private Intervals cursorIntervals = null;
+		/**
+		 * Index of the first interval ending after the start position of the previous query
+		 */
+		private int index = 0;
+		private Cursor() { }
+		public boolean overlaps(int referenceIndex, int start, int end) {
+			return overlaps(linear.getLinearCoordinate(referenceIndex, start), linear.getLinearCoordinate(referenceIndex, end));
+		}
+		/**
+		 * Determines whether any of the intervals overlap the given interval
+		 * @param start start linear coordinate
+		 * @param end inclusive end linear coordinate
+		 */
+		public boolean overlaps(long start, long end) {
+			if (end < start) return false;
+			Intervals s = getIntervals();
+			if (s != cursorIntervals) {
+				cursorIntervals = s;
+				index = s.firstEndingAfter(start, 0, s.size);
+			} else if (index > 0 && s.end[index - 1] > start) {
+				// query is before the previous query
+				index = s.firstEndingAfter(start, 0, index);
+			} else if (index < s.size && s.end[index] <= start) {
+				// exponential search forward from our current position
+				int lo = index + 1;
+				int step = 1;
+				while (lo + step - 1 < s.size && s.end[lo + step - 1] <= start) {
+					lo += step;
+					step <<= 1;
+				}
+				index = s.firstEndingAfter(start, lo, Math.min(s.size, lo + step));
+			}
+			return index < s.size && s.start[index] <= end;
+		}
 	}
 	/**
 	 * Removes the given set of intervals
 	 * @param toRemove intervals to remove
 	 */
-	public void remove(IntervalBed toRemove) {
-		intervals.removeAll(toRemove.intervals.asRanges());
+	public synchronized void remove(IntervalBed toRemove) {
+		Intervals a = getIntervals();
+		Intervals b = toRemove.getIntervals();
+		LongArrayList start = new LongArrayList(a.size);
+		LongArrayList end = new LongArrayList(a.size);
+		int j = 0;
+		for (int i = 0; i < a.size; i++) {
+			long currentStart = a.start[i];
+			long currentEnd = a.end[i];
+			while (j < b.size && b.end[j] <= currentStart) {
+				j++;
+			}
+			int k = j;
+			while (k < b.size && b.start[k] < currentEnd) {
+				if (b.start[k] > currentStart) {
+					start.add(currentStart);
+					end.add(b.start[k]);
+				}
+				currentStart = Math.max(currentStart, b.end[k]);
+				k++;
+			}
+			if (currentStart < currentEnd) {
+				start.add(currentStart);
+				end.add(currentEnd);
+			}
+		}
+		merged = new Intervals(start.toLongArray(), end.toLongArray(), start.size());
+		intervals = merged;
 	}
 	public void write(File bed, String name) throws IOException {
+		Intervals s = getIntervals();
 		try (BufferedWriter writer = Files.newBufferedWriter(bed.toPath(), StandardCharsets.US_ASCII)) {
 			writer.write(String.format("track name=\"%s\" description=\"%s\" useScore=0\n", name, name));
-			for (Range<Long> r : intervals.asRanges()) {
-				long lower = r.lowerEndpoint();
-				long upper = r.upperEndpoint();
+			for (int i = 0; i < s.size; i++) {
+				long lower = s.start[i];
+				long upper = s.end[i];
 				int referenceIndex = linear.getReferenceIndex(lower);
 				int referenceIndex2 = linear.getReferenceIndex(upper);
 				assert(referenceIndex == referenceIndex2);
@@ -127,12 +326,12 @@ public class IntervalBed {
 		}
 	}
 	public QueryInterval[] asQueryInterval() {
-		QueryInterval[] qis = new QueryInterval[intervals.asRanges().size()];
-		int i = 0;
-		for (Range<Long> r : intervals.asRanges()) {
-			QueryInterval qi = new QueryInterval(linear.getReferenceIndex(r.lowerEndpoint()), linear.getReferencePosition(r.lowerEndpoint()), linear.getReferencePosition(r.upperEndpoint() - 1));
-			qis[i++] = qi;
-			if (linear.getReferenceIndex(r.upperEndpoint() - 1) != qi.referenceIndex) {
+		Intervals s = getIntervals();
+		QueryInterval[] qis = new QueryInterval[s.size];
+		for (int i = 0; i < s.size; i++) {
+			QueryInterval qi = new QueryInterval(linear.getReferenceIndex(s.start[i]), linear.getReferencePosition(s.start[i]), linear.getReferencePosition(s.end[i] - 1));
+			qis[i] = qi;
+			if (linear.getReferenceIndex(s.end[i] - 1) != qi.referenceIndex) {
 				throw new RuntimeException("Not Yet Implemented: support for interval spaning chromosomes and unpadded LinearGenomicCoordinate lookups. This should not happen. Please raise an issue at https://github.com/PapenfussLab/gridss/issues");
 			}
 		}
@@ -144,22 +343,26 @@ public class IntervalBed {
 	 * Expanded intervals are truncated at reference contig bounds.
 	 */
 	public IntervalBed expandIntervals(int startBases, int endBases) {
-		TreeRangeSet<Long> expanded = TreeRangeSet.create(intervals
-				.asRanges()
-				.stream()
-				.map(r -> expand(r, startBases, endBases))
-				.collect(Collectors.toList()));
-		return new IntervalBed(linear, expanded);
-	}
-	private Range<Long> expand(Range<Long> range, int startBases, int endBases) {
-		int referenceIndex = linear.getReferenceIndex(range.lowerEndpoint());
-		int start = linear.getReferencePosition(range.lowerEndpoint());
-		int end = linear.getReferencePosition(range.upperEndpoint());
-		start = Math.max(1, start - startBases);
-		end = Math.min(linear.getDictionary().getSequence(referenceIndex).getSequenceLength() + 1, end + endBases);
-		return Range.closedOpen(linear.getLinearCoordinate(referenceIndex, start), linear.getLinearCoordinate(referenceIndex, end));
+		Intervals s = getIntervals();
+		long[] start = new long[s.size];
+		long[] end = new long[s.size];
+		for (int i = 0; i < s.size; i++) {
+			int referenceIndex = linear.getReferenceIndex(s.start[i]);
+			int startPosition = linear.getReferencePosition(s.start[i]);
+			int endPosition = linear.getReferencePosition(s.end[i]);
+			startPosition = Math.max(1, startPosition - startBases);
+			endPosition = Math.min(linear.getDictionary().getSequence(referenceIndex).getSequenceLength() + 1, endPosition + endBases);
+			start[i] = linear.getLinearCoordinate(referenceIndex, startPosition);
+			end[i] = linear.getLinearCoordinate(referenceIndex, endPosition);
+		}
+		return new IntervalBed(linear, Intervals.create(start, end, s.size));
 	}
 	public RangeSet<Long> asRangeSet() {
-		return TreeRangeSet.create(intervals);
+		Intervals s = getIntervals();
+		RangeSet<Long> rs = TreeRangeSet.create();
+		for (int i = 0; i < s.size; i++) {
+			rs.add(Range.closedOpen(s.start[i], s.end[i]));
+		}
+		return rs;
 	}
 }
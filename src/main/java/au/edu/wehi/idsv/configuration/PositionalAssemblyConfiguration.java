@@ -14,6 +14,10 @@ public class PositionalAssemblyConfiguration {
 		forceFullMemoizationRecalculationAt = config.getFloat("forceFullMemoizationRecalculationAt");
 		safetyModePathCountThreshold = config.getInt("safetyModePathCountThreshold");
 		safetyModeContigsToCall = config.getInt("safetyModeContigsToCall");
+		maxMemoizedPaths = config.getInt("maxMemoizedPaths", 0);
+		pipelineStages = config.getBoolean("pipelineStages", false);
+		partitionThreads = config.getInt("partitionThreads", 1);
+		partitionMinEvidence = config.getInt("partitionMinEvidence", 10000);
 		if (retainWidthMultiple < 1) {
 			throw new IllegalArgumentException("retainWidthMultiple must be at least 1");
 		}
@@ -23,6 +27,9 @@ public class PositionalAssemblyConfiguration {
 		if (maximumNodeDensity <= 0) {
 			throw new IllegalArgumentException("maximumNodeDensity must be positive");
 		}
+		if (partitionThreads < 1) {
+			throw new IllegalArgumentException("partitionThreads must be positive");
+		}
 	}
 	/**
 	 * Maximum length of a single path node. Leaves longer that this length will not be collapsed.
@@ -75,4 +82,35 @@ public class PositionalAssemblyConfiguration {
 	 * Number of memoized paths to enter safety mode
 	 */
 	public final int safetyModePathCountThreshold;
+	/**
+	 * Maximum number of memoized paths retained by incremental memoization updates.
+	 *
+	 * Incremental updates split the intervals of memoized paths but never merge them.
+	 * When this limit is exceeded after contig removal, the memoization is discarded
+	 * and recalculated from the loaded graph. To prevent repeated recalculation of
+	 * graphs with more paths than this limit, the memoization is only discarded once
+	 * it has also doubled in size since it was last recalculated. Set to 0 to disable.
+	 */
+	public final int maxMemoizedPaths;
+	/**
+	 * Run kmer support node generation and aggregation on background threads, each
+	 * stage handing batches of nodes to the next through a bounded queue.
+	 * Path node construction, error correction and contig calling remain on the
+	 * assembly thread. Each assembler uses two additional threads when enabled.
+	 */
+	public boolean pipelineStages;
+	/**
+	 * Number of threads used to assemble chunk partitions.
+	 *
+	 * When greater than 1, each chunk is split at positions with no nearby evidence
+	 * and the resultant partitions assembled concurrently. A single thread pool of
+	 * this size is shared by all chunks and breakend directions. Contig names are
+	 * assigned in partition order so are independent of thread scheduling.
+	 */
+	public final int partitionThreads;
+	/**
+	 * Minimum number of breakends in each independently assembled chunk partition.
+	 * Only evidence supporting a breakend in the direction being assembled is counted.
+	 */
+	public final int partitionMinEvidence;
 }
\ No newline at end of file
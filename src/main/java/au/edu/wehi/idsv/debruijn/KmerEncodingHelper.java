@@ -108,6 +108,64 @@ public class KmerEncodingHelper {
 				return true;
 		}
 	}
+	/**
+	 * Packs the given bases into 2bit words
+	 * 
+	 * The first base is packed in the most significant bits of the first word.
+	 * Ambiguous bases are encoded as A and unused bits of the final word are zero.
+	 * @param bases ASCII bases
+	 * @param reverse pack bases in reverse order
+	 * @param complement pack the complement of each base
+	 * @return packed bases
+	 */
+	public static long[] picardBasesToPacked(byte[] bases, boolean reverse, boolean complement) {
+		long[] packed = new long[(bases.length + MAX_K - 1) / MAX_K];
+		for (int wordIndex = 0; wordIndex < packed.length; wordIndex++) {
+			int start = wordIndex * MAX_K;
+			int wordLength = Math.min(MAX_K, bases.length - start);
+			long word = 0;
+			if (reverse) {
+				int offset = bases.length - 1 - start;
+				for (int i = 0; i < wordLength; i++) {
+					word = (word << 2) | BYTE_TO_ENCODED[bases[offset - i] & 0xFF];
+				}
+			} else {
+				for (int i = 0; i < wordLength; i++) {
+					word = (word << 2) | BYTE_TO_ENCODED[bases[start + i] & 0xFF];
+				}
+			}
+			if (complement) {
+				word ^= complementBits[wordLength];
+			}
+			// final word is left-aligned
+			packed[wordIndex] = wordLength == MAX_K ? word : word << (2 * (MAX_K - wordLength));
+		}
+		return packed;
+	}
+	/**
+	 * Determines which kmers contain an ambiguous base
+	 * @param k kmer size
+	 * @param bases ASCII bases
+	 * @return offsets of kmers containing at least one ambiguous base, null if no such kmers exist
+	 */
+	public static BitSet ambiguousKmers(int k, byte[] bases) {
+		int kmerCount = bases.length - k + 1;
+		BitSet ambiguous = null;
+		// kmers before this offset have already been flagged
+		int flaggedEnd = 0;
+		for (int i = 0; i < bases.length; i++) {
+			if (IS_AMBIGUOUS_LOOKUP[bases[i] & 0xFF]) {
+				if (kmerCount <= 0) return null;
+				if (ambiguous == null) {
+					ambiguous = new BitSet(kmerCount);
+				}
+				int end = Math.min(i, kmerCount - 1) + 1;
+				ambiguous.set(Math.max(flaggedEnd, i - k + 1), end);
+				flaggedEnd = end;
+			}
+		}
+		return ambiguous;
+	}
 	public static long picardBaseToEncoded(int k, List<Byte> bases) {
 		if (bases == null) throw new NullPointerException("bases null");
 		if (k > bases.size()) throw new IllegalArgumentException("fewer bases than k");
@@ -37,6 +37,12 @@ public class PackedKmerList extends PackedSequence {
 	public long kmer(int offset) {
 		return getKmer(offset, k); 
 	}
+	/**
+	 * All kmers in offset order
+	 */
+	public long[] kmers() {
+		return getKmers(k);
+	}
 	public int weight(int offset) {
 		return weights[offset];
 	}
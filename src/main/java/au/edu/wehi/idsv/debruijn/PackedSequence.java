@@ -16,7 +16,6 @@ public class PackedSequence implements Serializable {
 	private static final int BASES_PER_WORD = Long.SIZE / BITS_PER_BASE;
 	private static final int ARRAY_SHIFT = Long.SIZE - 1 - Long.numberOfLeadingZeros(BASES_PER_WORD);
 	private static final int ARRAY_OFFSET_MASK = (1 << ARRAY_SHIFT) - 1;
-	private static final long BASE_MASK = (1 << BITS_PER_BASE) - 1;
 	/**
 	 * First base is packed in MSB of first word
 	 * Second base is packed in second MSB of first word
@@ -29,28 +28,8 @@ public class PackedSequence implements Serializable {
 		this.baseCount = baseCount;
 	}
 	public PackedSequence(byte[] bases, boolean reverse, boolean complement) {
-		packed = new long[IntMath.divide(bases.length, BASES_PER_WORD, RoundingMode.CEILING)];
+		packed = KmerEncodingHelper.picardBasesToPacked(bases, reverse, complement);
 		baseCount = bases.length;
-		int revMultiplier = 1;
-		int revOffset = 0;
-		if (reverse) {
-			revMultiplier = -1;
-			revOffset = bases.length - 1;
-		}
-		if (complement) { 
-			for (int i = 0; i < bases.length; i++) {
-				byte base = bases[i];
-				long encoded = KmerEncodingHelper.picardBaseToEncoded(base);
-				encoded = KmerEncodingHelper.complement(1, encoded);
-				setBaseEncoded(revOffset + i * revMultiplier, encoded);
-			}
-		} else {
-			for (int i = 0; i < bases.length; i++) {
-				byte base = bases[i];
-				long encoded = KmerEncodingHelper.picardBaseToEncoded(base);
-				setBaseEncoded(revOffset + i * revMultiplier, encoded);
-			}
-		}
 	}
 	/**
 	 * Subsequence of the given packed sequence
@@ -101,16 +80,6 @@ public class PackedSequence implements Serializable {
 			}
 		}
 	}
-	private void setBaseEncoded(final int offset, final long base) {
-		if (offset < 0 || offset >= baseCount) throw new IllegalArgumentException("offset must fall within sequence");
-		int wordIndex = offset >> ARRAY_SHIFT;
-		int wordOffset = BASES_PER_WORD - 1 - (offset & ARRAY_OFFSET_MASK);
-		//assert(wordIndex < packed.length);
-		long word = packed[wordIndex];
-		word &= ~(BASE_MASK << (BITS_PER_BASE * wordOffset));
-		word |= base << (BITS_PER_BASE * wordOffset);
-		packed[wordIndex] = word;
-	}
 	private long getBaseEncoded(final int offset) {
 		if (offset < 0 || offset >= baseCount) throw new IllegalArgumentException("offset must fall within sequence");
 		int wordIndex = offset >> ARRAY_SHIFT;
@@ -152,6 +121,49 @@ public class PackedSequence implements Serializable {
 			return kmer;
 		}
 	}
+	/**
+	 * Extracts every kmer of the sequence in a single pass over the packed words
+	 * @param k kmer size
+	 * @param kmers kmer at each offset. Must have space for all kmers.
+	 * @param reverseComplementKmers reverse complement of the kmer at each offset.
+	 * Reverse complements are not extracted if null.
+	 */
+	public void getKmers(final int k, final long[] kmers, final long[] reverseComplementKmers) {
+		if (k <= 0 || k > KmerEncodingHelper.MAX_K) throw new IllegalArgumentException("Invalid kmer size");
+		final long mask = k == KmerEncodingHelper.MAX_K ? -1L : (1L << (BITS_PER_BASE * k)) - 1;
+		final int firstBaseShift = BITS_PER_BASE * (k - 1);
+		long kmer = 0;
+		long rc = 0;
+		int offset = -k + 1;
+		for (int wordIndex = 0; wordIndex < packed.length; wordIndex++) {
+			long word = packed[wordIndex];
+			int wordLength = Math.min(BASES_PER_WORD, baseCount - wordIndex * BASES_PER_WORD);
+			for (int i = 0; i < wordLength; i++) {
+				long base = word >>> (Long.SIZE - BITS_PER_BASE);
+				word <<= BITS_PER_BASE;
+				kmer = ((kmer << BITS_PER_BASE) | base) & mask;
+				// complementing a 2bit base flips the high bit
+				rc = (rc >>> BITS_PER_BASE) | ((base ^ 2) << firstBaseShift);
+				if (offset >= 0) {
+					kmers[offset] = kmer;
+					if (reverseComplementKmers != null) {
+						reverseComplementKmers[offset] = rc;
+					}
+				}
+				offset++;
+			}
+		}
+	}
+	/**
+	 * Extracts every kmer of the sequence
+	 * @param k kmer size
+	 * @return kmer at each offset
+	 */
+	public long[] getKmers(final int k) {
+		long[] kmers = new long[Math.max(0, baseCount - k + 1)];
+		getKmers(k, kmers, null);
+		return kmers;
+	}
 	@Override
 	public String toString() {
 		return new String(getBytes(0, baseCount));
@@ -33,6 +33,7 @@ public abstract class ContigCaller {
 	}
 	public abstract boolean sanityCheck();
 	public abstract int memoizedNodeCount();
+	public abstract int memoizedPathCount();
 	public abstract int tracking_frontierSize();
 	public abstract MemoizationStats tracking_lastRemoval();
 }
\ No newline at end of file
@@ -3,15 +3,15 @@ package au.edu.wehi.idsv.debruijn.positional;
 import au.edu.wehi.idsv.Defaults;
 import au.edu.wehi.idsv.util.IntervalUtil;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
-import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
-import it.unimi.dsi.fastutil.longs.LongArrayList;
-import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet;
-import it.unimi.dsi.fastutil.longs.LongSortedSet;
-import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import it.unimi.dsi.fastutil.longs.*;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 import static au.edu.wehi.idsv.Defaults.SANITY_CHECK_EVIDENCE_TRACKER;
 
@@ -19,98 +19,182 @@ import static au.edu.wehi.idsv.Defaults.SANITY_CHECK_EVIDENCE_TRACKER;
  * Tracks evidence provided to a given graph by wrapping a source iterator
  * and tracking evidence emitted by the iterator 
  * 
+ * Tracking operations are synchronised as evidence can be tracked
+ * by a pipelined graph construction stage running on another thread.
+ * 
  * @author Daniel Cameron
  *
  */
 public class EvidenceTracker {
 	//public static EvidenceTracker TEMP_HACK_CURRENT_TRACKER = null;
-	private final Long2ObjectOpenHashMap<LinkedList<KmerSupportNode>> lookup = new Long2ObjectOpenHashMap<>();
-	private final Object2ObjectOpenHashMap<String, List<KmerEvidence>> id = new Object2ObjectOpenHashMap<>();
+	private static final int NONE = -1;
+	/**
+	 * Tracked evidence indexed by evidence handle.
+	 * Handles of removed evidence are reused. 
+	 */
+	private final ObjectArrayList<KmerEvidence> handleEvidence = new ObjectArrayList<>();
+	/**
+	 * Next handle with the same evidence ID. Read pairs have separate
+	 * KmerEvidence for the anchoring and non-reference reads.
+	 */
+	private final IntArrayList sibling = new IntArrayList();
+	private final IntArrayList freeHandles = new IntArrayList();
+	/**
+	 * First handle for each evidence ID
+	 */
+	private final Object2IntOpenHashMap<String> id = new Object2IntOpenHashMap<>();
+	/**
+	 * Kmer to support node multimap. Each kmer maps to the first
+	 * support node entry of a singly linked list of entries. 
+	 */
+	private final Long2IntOpenHashMap lookup = new Long2IntOpenHashMap();
+	/**
+	 * Support node entries encoded as (evidence handle, kmer offset)
+	 */
+	private final LongArrayList entryNode = new LongArrayList();
+	private final IntArrayList entryNext = new IntArrayList();
+	private int freeEntry = NONE;
+	private int entryCount = 0;
 	private long evidenceTotal = 0;
 	/**
 	 * Tracks evidence emitted from the given iterator
 	 */
 	public EvidenceTracker() {
+		id.defaultReturnValue(NONE);
+		lookup.defaultReturnValue(NONE);
+	}
+	private static long encode(int handle, int offset) {
+		return ((long)handle << 32) | (offset & 0xFFFFFFFFL);
+	}
+	private static int handle(long node) {
+		return (int)(node >>> 32);
+	}
+	private static int offset(long node) {
+		return (int)node;
 	}
 	/**
 	 * Tracks the given evidence
 	 * @param support
 	 */
-	public KmerSupportNode track(KmerSupportNode support) {
+	public synchronized KmerSupportNode track(KmerSupportNode support) {
+		int handle = getOrCreateHandle(support.evidence());
+		int entry = allocateEntry();
 		long kmer = support.lastKmer();
-		LinkedList<KmerSupportNode> list = lookup.get(kmer);
-		if (list == null) {
-			list = new LinkedList<KmerSupportNode>();
-			lookup.put(kmer, list);
-		}
-		list.add(support);
-		KmerEvidence ke = support.evidence();
+		entryNode.set(entry, encode(handle, support.offset()));
+		entryNext.set(entry, lookup.get(kmer));
+		lookup.put(kmer, entry);
+		return support;
+	}
+	private int getOrCreateHandle(KmerEvidence ke) {
 		String evidenceId = ke.evidence().getEvidenceID();
-		List<KmerEvidence> idvalue = id.get(evidenceId);
-		if (idvalue == null) {
+		int first = id.getInt(evidenceId);
+		int last = NONE;
+		for (int h = first; h != NONE; h = sibling.getInt(h)) {
+			if (handleEvidence.get(h).equals(ke)) {
+				return h;
+			}
+			last = h;
+		}
+		int handle;
+		if (freeHandles.isEmpty()) {
+			handle = handleEvidence.size();
+			handleEvidence.add(ke);
+			sibling.add(NONE);
+		} else {
+			handle = freeHandles.removeInt(freeHandles.size() - 1);
+			handleEvidence.set(handle, ke);
+			sibling.set(handle, NONE);
+		}
+		if (first == NONE) {
 			evidenceTotal++;
-			idvalue = new ArrayList<>();
-			id.put(evidenceId, idvalue);
+			id.put(evidenceId, handle);
+		} else {
+			sibling.set(last, handle);
 		}
-		if (!idvalue.contains(ke)) {
-			idvalue.add(ke);
+		return handle;
+	}
+	private int allocateEntry() {
+		entryCount++;
+		if (freeEntry == NONE) {
+			entryNode.add(0);
+			entryNext.add(NONE);
+			return entryNode.size() - 1;
 		}
-		return support;
+		int entry = freeEntry;
+		freeEntry = entryNext.getInt(entry);
+		return entry;
+	}
+	private void freeEntry(int entry) {
+		entryCount--;
+		entryNext.set(entry, freeEntry);
+		freeEntry = entry;
 	}
 	/**
 	 * Stops tracking all nodes associated with all of the given evidence
 	 * @param evidenceSet
 	 */
-	public Set<KmerEvidence> remove(Set<KmerEvidence> evidenceSet) {
+	public synchronized Set<KmerEvidence> remove(Set<KmerEvidence> evidenceSet) {
 		Set<KmerEvidence> evidenceToRemove = new ObjectOpenHashSet<>();
+		IntSet handlesToRemove = new IntOpenHashSet();
 		LongSortedSet kmersInSet = new LongLinkedOpenHashSet();
 		for (KmerEvidence evidence : evidenceSet) {
-			addToRemoveList(evidence, evidenceToRemove, kmersInSet);
+			addToRemoveList(evidence, evidenceToRemove, handlesToRemove, kmersInSet);
 		}
 		for (long kmer : kmersInSet) {
-			remove(kmer, evidenceToRemove);
+			remove(kmer, handlesToRemove);
+		}
+		for (int handle : handlesToRemove) {
+			handleEvidence.set(handle, null);
+			freeHandles.add(handle);
 		}
 		if (SANITY_CHECK_EVIDENCE_TRACKER) {
 			sanityCheck();
 		}
 		return evidenceToRemove;
 	}
-	private void addToRemoveList(KmerEvidence evidence, Set<KmerEvidence> removeSet, LongSortedSet kmersInSet) {
+	private void addToRemoveList(KmerEvidence ke, Set<KmerEvidence> removeSet, IntSet handleSet, LongSortedSet kmersInSet) {
 		// Need to remove all KmerEvidence associated with the evidence
 		// Read pairs can have two: one each of the anchored and unanchored reads
-		Collection<KmerEvidence> trackedKmerEvidenceForEvidence = id.remove(evidence.evidence().getEvidenceID());
-		if (trackedKmerEvidenceForEvidence == null) {
-			// Will happen when we attempt to remove the second KmerEvidence in a read pair
-			return;
-		}
-		removeSet.addAll(trackedKmerEvidenceForEvidence);
-		for (KmerEvidence e : trackedKmerEvidenceForEvidence) {
+		int first = id.removeInt(ke.evidence().getEvidenceID());
+		// Will be NONE when we attempt to remove the second KmerEvidence in a read pair
+		for (int h = first; h != NONE; h = sibling.getInt(h)) {
+			KmerEvidence e = handleEvidence.get(h);
+			handleSet.add(h);
+			removeSet.add(e);
 			for (int i = 0; i < e.length(); i++) {
-				KmerSupportNode node = e.node(i);
-				if (node != null) {
-					kmersInSet.add(node.firstKmer());
+				if (!e.isAmbiguous(i)) {
+					kmersInSet.add(e.kmer(i));
 				}
 			}
 		}
 	}
 	/**
-	 * Stops tracking all nodes associated with the given evidence 
-	 * @param evidence
+	 * Stops tracking all nodes of the given kmer associated with the given evidence 
 	 */
-	private void remove(long kmer, Collection<KmerEvidence> evidence) {
-		LinkedList<KmerSupportNode> list = lookup.get(kmer);
-		if (list != null) {
-			ListIterator<KmerSupportNode> it = list.listIterator();
-			while (it.hasNext()) {
-				KmerSupportNode n = it.next();
-				if (evidence.contains(n.evidence())) {
-					it.remove();
-				}
+	private void remove(long kmer, IntSet handles) {
+		int prev = NONE;
+		int entry = lookup.get(kmer);
+		while (entry != NONE) {
+			int next = entryNext.getInt(entry);
+			if (handles.contains(handle(entryNode.getLong(entry)))) {
+				unlink(kmer, prev, entry, next);
+			} else {
+				prev = entry;
 			}
-			if (list.size() == 0) {
+			entry = next;
+		}
+	}
+	private void unlink(long kmer, int prev, int entry, int next) {
+		if (prev == NONE) {
+			if (next == NONE) {
 				lookup.remove(kmer);
+			} else {
+				lookup.put(kmer, next);
 			}
+		} else {
+			entryNext.set(prev, next);
 		}
+		freeEntry(entry);
 	}
 	/**
 	 * Identifies evidence supporting the given path
@@ -128,7 +212,7 @@ public class EvidenceTracker {
 	public Set<KmerEvidence> untrack(Collection<KmerPathSubnode> contig) {
 		return traverse(contig, true);
 	}
-	public Set<KmerEvidence> traverse(Collection<KmerPathSubnode> contig, boolean remove) {
+	public synchronized Set<KmerEvidence> traverse(Collection<KmerPathSubnode> contig, boolean remove) {
 		Set<KmerEvidence> evidence = Defaults.USE_OPTIMISED_ASSEMBLY_DATA_STRUCTURES ? new ObjectOpenHashSet<>() : Collections.newSetFromMap(new IdentityHashMap<KmerEvidence, Boolean>());
 		for (KmerPathSubnode sn : contig) {
 			int start = sn.firstStart();
@@ -162,22 +246,27 @@ public class EvidenceTracker {
 	 * @param end
 	 */
 	private void toCollection(Collection<KmerEvidence> collection, long kmer, int start, int end, boolean remove) {
-		LinkedList<KmerSupportNode> list = lookup.get(kmer);
-		if (list != null) {
-			ListIterator<KmerSupportNode> it = list.listIterator();
-			while (it.hasNext()) {
-				KmerSupportNode n = it.next();
-				if (IntervalUtil.overlapsClosed(start, end, n.lastStart(), n.lastEnd())) {
-					if (remove) {
-						it.remove();
-					}
-					KmerEvidence e = n.evidence();
-					collection.add(e);
+		int prev = NONE;
+		int entry = lookup.get(kmer);
+		while (entry != NONE) {
+			int next = entryNext.getInt(entry);
+			long node = entryNode.getLong(entry);
+			KmerEvidence e = handleEvidence.get(handle(node));
+			int offset = offset(node);
+			if (IntervalUtil.overlapsClosed(start, end, e.startPosition() + offset, e.endPosition() + offset)) {
+				if (remove) {
+					unlink(kmer, prev, entry, next);
+				} else {
+					prev = entry;
 				}
+				collection.add(e);
+			} else {
+				prev = entry;
 			}
+			entry = next;
 		}
 	}
-	public boolean matchesExpected(KmerPathSubnode pn) {
+	public synchronized boolean matchesExpected(KmerPathSubnode pn) {
 		for (int i = 0; i < pn.length(); i++) {
 			LongArrayList kmers = new LongArrayList();
 			kmers.add(pn.kmer(i));
@@ -192,21 +281,21 @@ public class EvidenceTracker {
 		}
 		return true;
 	}
-	public boolean matchesExpected(int expectedWidthWeight, LongArrayList kmers, int start, int end) {
+	public synchronized boolean matchesExpected(int expectedWidthWeight, LongArrayList kmers, int start, int end) {
 		int evidenceWeight = 0;
 		for (long kmer : kmers) {
-			LinkedList<KmerSupportNode> list = lookup.get(kmer);
-			if (list != null) {
-				for (KmerSupportNode n : list) {
-					evidenceWeight += n.weight() * IntervalUtil.overlapsWidthClosed(start, end, n.lastStart(), n.lastEnd());
-				}
+			for (int entry = lookup.get(kmer); entry != NONE; entry = entryNext.getInt(entry)) {
+				long node = entryNode.getLong(entry);
+				KmerEvidence e = handleEvidence.get(handle(node));
+				int offset = offset(node);
+				evidenceWeight += e.weight(offset) * IntervalUtil.overlapsWidthClosed(start, end, e.startPosition() + offset, e.endPosition() + offset);
 			}
 		}
 		assert(evidenceWeight == expectedWidthWeight);
 		return evidenceWeight == expectedWidthWeight;
 	}
-	public boolean isTracked(String evidenceId) {
-		return id.keySet().contains(evidenceId);
+	public synchronized boolean isTracked(String evidenceId) {
+		return id.containsKey(evidenceId);
 	}
 	public class PathNodeAssertionInterceptor implements Iterator<KmerPathNode> {
 		private final Iterator<KmerPathNode> underlying;
@@ -246,60 +335,81 @@ public class EvidenceTracker {
 			return node;
 		}
 	}
-	public Set<KmerEvidence> getTrackedEvidence() {
-		return id.values().stream().flatMap(x -> x.stream()).collect(Collectors.toSet());
+	public synchronized Set<KmerEvidence> getTrackedEvidence() {
+		Set<KmerEvidence> result = new HashSet<>();
+		for (KmerEvidence e : handleEvidence) {
+			if (e != null) {
+				result.add(e);
+			}
+		}
+		return result;
 	}
-	public long tracking_evidenceTotal() {
+	public synchronized long tracking_evidenceTotal() {
 		return evidenceTotal;
 	}
-	public long tracking_evidenceActive() {
+	public synchronized long tracking_evidenceActive() {
 		return id.size();
 	}
-	public int tracking_kmerCount() {
+	public synchronized int tracking_kmerCount() {
 		return lookup.size();
 	}
-	public int tracking_supportNodeCount() {
-		return lookup.values().stream().mapToInt(x -> x.size()).sum();
+	public synchronized int tracking_supportNodeCount() {
+		return entryCount;
 	}
-	public int tracking_maxKmerSupportNodesCount() {
-		return lookup.values().stream().mapToInt(x -> x.size()).max().orElse(0);
+	public synchronized int tracking_maxKmerSupportNodesCount() {
+		int max = 0;
+		for (int head : lookup.values()) {
+			int count = 0;
+			for (int entry = head; entry != NONE; entry = entryNext.getInt(entry)) {
+				count++;
+			}
+			max = Math.max(max, count);
+		}
+		return max;
 	}
-	public void sanityCheck() {
-		Set<String> lookupEid = lookup.values()
-				.stream()
-				.flatMap(ll -> ll.stream())
-				.map(ksn -> ksn.evidence().evidence().getEvidenceID())
-				.collect(Collectors.toSet());
-		Set<String> idEid = id.keySet().stream().collect(Collectors.toSet());
-		Set<String> missingInLookup = new HashSet<>(idEid);
-		Set<String> missingInIds = new HashSet<>(lookupEid);
-		missingInIds.removeAll(idEid);
-		missingInLookup.removeAll(lookupEid);
-		Set<KmerEvidence> kes = lookup.values()
-				.stream()
-				.flatMap(ll -> ll.stream())
-				.map(ksn -> ksn.evidence())
-				.collect(Collectors.toSet());
-		List<KmerSupportNode> missingKsn = new ArrayList<>();
-		for (KmerEvidence ke : kes) {
-			for (int i = 0; i < ke.length(); i++) {
-				KmerSupportNode ksn = ke.node(i);
-				if (ksn != null) {
-					LinkedList<KmerSupportNode> list = lookup.get(ksn.firstKmer());
-					if (!list.contains(ksn)) {
-						missingKsn.add(ksn);
-					}
+	public synchronized void sanityCheck() {
+		IntSet handlesInLookup = new IntOpenHashSet();
+		LongSet nodesInLookup = new LongOpenHashSet();
+		for (Long2IntMap.Entry kvp : lookup.long2IntEntrySet()) {
+			for (int entry = kvp.getIntValue(); entry != NONE; entry = entryNext.getInt(entry)) {
+				long node = entryNode.getLong(entry);
+				KmerEvidence e = handleEvidence.get(handle(node));
+				if (e == null) {
+					throw new IllegalStateException("Support node references untracked evidence");
+				}
+				if (e.kmer(offset(node)) != kvp.getLongKey()) {
+					throw new IllegalStateException("Support node indexed under incorrect kmer");
+				}
+				handlesInLookup.add(handle(node));
+				nodesInLookup.add(node);
+			}
+		}
+		IntSet handlesInIds = new IntOpenHashSet();
+		for (Object2IntMap.Entry<String> kvp : id.object2IntEntrySet()) {
+			for (int h = kvp.getIntValue(); h != NONE; h = sibling.getInt(h)) {
+				if (handleEvidence.get(h) == null || !handleEvidence.get(h).evidence().getEvidenceID().equals(kvp.getKey())) {
+					throw new IllegalStateException("Evidence ID lookup references incorrect evidence");
 				}
+				handlesInIds.add(h);
 			}
 		}
+		IntSet missingInLookup = new IntOpenHashSet(handlesInIds);
+		missingInLookup.removeAll(handlesInLookup);
+		IntSet missingInIds = new IntOpenHashSet(handlesInLookup);
+		missingInIds.removeAll(handlesInIds);
 		if (missingInLookup.size() > 0) {
 			throw new IllegalStateException("Missing evidence in lookup");
 		}
 		if (missingInIds.size() > 0) {
 			throw new IllegalStateException("Missing all kmer evidence for evidence in lookup");
 		}
-		if (missingKsn.size() > 0) {
-			throw new IllegalStateException("Partially missing kmer support.");
+		for (int h : handlesInLookup) {
+			KmerEvidence e = handleEvidence.get(h);
+			for (int i = 0; i < e.length(); i++) {
+				if (!e.isAmbiguous(i) && !nodesInLookup.contains(encode(h, i))) {
+					throw new IllegalStateException("Partially missing kmer support.");
+				}
+			}
 		}
 	}
 }
@@ -46,11 +46,19 @@ public class KmerEvidence extends PackedKmerList {
 	private final float score;
 	private final boolean isReadPairAnchorRead;
 	public KmerSupportNode node(int offset) {
-		if (ambiguous != null && ambiguous.get(offset)) {
+		if (isAmbiguous(offset)) {
 			return null;
 		}
 		return new KmerSupportNode(this, offset);
 	}
+	/**
+	 * Determines whether the kmer at the given offset is excluded from the graph
+	 * @param offset kmer offset
+	 * @return true if no support node exists for the given kmer
+	 */
+	public boolean isAmbiguous(int offset) {
+		return ambiguous != null && ambiguous.get(offset);
+	}
 	public float evidenceQuality() { return score; }
 	public DirectedEvidence evidence() { return evidence; }
 	/**
@@ -74,19 +82,6 @@ public class KmerEvidence extends PackedKmerList {
 	public boolean isAnchored() {
 		return firstAnchorKmer < lastAnchorKmer;
 	}
-	private static BitSet ambiguousKmers(int k, byte[] bases) {
-		BitSet ambiguous = null;
-		for (int i = 0; i < bases.length; i++) {
-			if (KmerEncodingHelper.isAmbiguous(bases[i])) {
-				int kmerCount = bases.length - k + 1;
-				if (ambiguous == null) {
-					ambiguous = new BitSet(kmerCount);
-				}
-				ambiguous.set(Math.max(0, i - k + 1), Math.min(i, kmerCount - 1) + 1, true);
-			}
-		}
-		return ambiguous;
-	}
 	private KmerEvidence(
 			DirectedEvidence evidence,
 			int start,
@@ -104,7 +99,7 @@ public class KmerEvidence extends PackedKmerList {
 		this.firstAnchorKmer = firstAnchoredKmer;
 		this.lastAnchorKmer = lastAnchoredKmer;
 		this.score = evidenceQual;
-		this.ambiguous = ambiguousKmers(k, bases);
+		this.ambiguous = KmerEncodingHelper.ambiguousKmers(k, bases);
 		if (start != end && evidence.getEvidenceSource().getContext().getConfig().getAssembly().positional.trimSelfIntersectingReads) {
 			this.ambiguous = flagSelfIntersectingKmersAsAmbiguous(this.ambiguous);
 		}
@@ -119,11 +114,12 @@ public class KmerEvidence extends PackedKmerList {
 		// populate lookups
 		Long2ObjectOpenHashMap<List<KmerSupportNode>> lookup = new Long2ObjectOpenHashMap<List<KmerSupportNode>>();
 		KmerSupportNode[] nodes = new KmerSupportNode[length()];
+		long[] kmers = kmers();
 		for (int i = 0; i < length(); i++) {
 			KmerSupportNode n = node(i);
 			nodes[i] = n;
 			if (n != null) {
-				long kmer = n.firstKmer();
+				long kmer = kmers[i];
 				List<KmerSupportNode> kmerList = lookup.get(kmer);
 				if (kmerList == null) {
 					kmerList = new ArrayList<>(2);
@@ -137,7 +133,7 @@ public class KmerEvidence extends PackedKmerList {
 		for (int i = 0; i < length(); i++) {
 			KmerSupportNode n = nodes[i];
 			if (n != null) {
-				long currentkmer = n.firstKmer();
+				long currentkmer = kmers[i];
 				for (long kmer : KmerEncodingHelper.nextStates(k, currentkmer)) {
 					List<KmerSupportNode> kmerList = lookup.get(kmer);
 					if (kmerList != null) {
@@ -376,6 +376,10 @@ public class MemoizedContigCaller extends ContigCaller {
 		return frontier.memoizedNodeCount();
 	}
 	@Override
+	public int memoizedPathCount() {
+		return frontier.memoizedPathCount();
+	}
+	@Override
 	public int tracking_frontierSize() {
 		return frontier.tracking_frontierSize();
 	}
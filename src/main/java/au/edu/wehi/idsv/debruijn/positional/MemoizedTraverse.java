@@ -2,14 +2,13 @@ package au.edu.wehi.idsv.debruijn.positional;
 
 import au.edu.wehi.idsv.Defaults;
 import au.edu.wehi.idsv.debruijn.positional.optimiseddatastructures.TraversalNodeByLastEndKmerSortedSet;
+import au.edu.wehi.idsv.debruijn.positional.optimiseddatastructures.TraversalNodeIntervalList;
 import au.edu.wehi.idsv.util.IntervalUtil;
 import au.edu.wehi.idsv.util.MessageThrottler;
 import au.edu.wehi.idsv.visualisation.PositionalDeBruijnGraphTracker.MemoizationStats;
 import com.google.common.collect.ImmutableList;
 import com.google.common.io.Files;
 import htsjdk.samtools.util.Log;
-import it.unimi.dsi.fastutil.ints.AbstractInt2ObjectSortedMap;
-import it.unimi.dsi.fastutil.ints.Int2ObjectRBTreeMap;
 import it.unimi.dsi.fastutil.objects.ObjectOpenCustomHashSet;
 
 import java.io.File;
@@ -31,9 +30,15 @@ public class MemoizedTraverse {
 	 * (BFS in position space) of the graph, caching the best predecessor
 	 * of each node.
 	 *
-	 * Int2ObjectSortedMap is sorted by TraversalNode.firstEnd
+	 * Memoized paths of each node are sorted by TraversalNode.firstEnd
 	 */
-	private final IdentityHashMap<KmerPathNode, AbstractInt2ObjectSortedMap<TraversalNode>> memoized = new IdentityHashMap<>();
+	private final IdentityHashMap<KmerPathNode, TraversalNodeIntervalList> memoized = new IdentityHashMap<>();
+	/**
+	 * Number of memoized paths over all nodes. This is maintained where paths are
+	 * added to and removed from the memoization instead of in the onMemoize callbacks
+	 * since subclasses override those callbacks.
+	 */
+	private int memoizedPathCount = 0;
 	// TODO: track anchored and unanchored paths in different frontiers - only call unanchored when no anchored paths nearby
 	private final SortedSet<TraversalNode> frontier = Defaults.USE_OPTIMISED_ASSEMBLY_DATA_STRUCTURES ? new TraversalNodeByLastEndKmerSortedSet(16) : new TreeSet<>(TraversalNode.ByLastEndKmer);
 	private final MemoizationStats stats = new MemoizationStats();
@@ -53,7 +58,7 @@ public class MemoizedTraverse {
 				}
 				continue;
 			}
-			AbstractInt2ObjectSortedMap<TraversalNode> cache = memoized.remove(node);
+			TraversalNodeIntervalList cache = memoized.remove(node);
 			if (cache == null) {
 				if (!MessageThrottler.Current.shouldSupress(log, "removal of unmemoized nodes")) {
 					log.error(String.format("Sanity check failure: %s not memoized", node));
@@ -64,6 +69,7 @@ public class MemoizedTraverse {
 			}
 		}
 		children.removeAll(nodes);
+		memoizedPathCount -= tns.size();
 		onMemoizeRemove(tns);
 		frontier.removeAll(tns);
 		onFrontierRemove(tns);
@@ -71,6 +77,7 @@ public class MemoizedTraverse {
 		// bulk remove child paths
 		Collection<TraversalNode> childPaths = removeChildPaths(children, nodes);
 		int descendentCount = childPaths.size();
+		memoizedPathCount -= childPaths.size();
 		onMemoizeRemove(childPaths);
 		frontier.removeAll(childPaths);
 		onFrontierRemove(childPaths);
@@ -105,9 +112,9 @@ public class MemoizedTraverse {
 	private Collection<TraversalNode> removeChildPaths(Iterable<KmerPathNode> toCheck, Set<KmerPathNode> parents) {
 		Collection<TraversalNode> matches = new ArrayList<>();
 		for (KmerPathNode node : toCheck) {
-			AbstractInt2ObjectSortedMap<TraversalNode> cache = memoized.get(node);
+			TraversalNodeIntervalList cache = memoized.get(node);
 			if (cache == null || cache.isEmpty()) continue;
-			Iterator<TraversalNode> it = cache.values().iterator();
+			Iterator<TraversalNode> it = cache.iteratorFrom(Integer.MIN_VALUE);
 			while (it.hasNext()) {
 				TraversalNode tn = it.next();
 				if (tn.parent != null && parents.contains(tn.parent.node.node())) {
@@ -132,7 +139,7 @@ public class MemoizedTraverse {
 	 */
 	public void remove(KmerPathNode node) {
 		assert(node.isValid());
-		AbstractInt2ObjectSortedMap<TraversalNode> cache = memoized.get(node);
+		TraversalNodeIntervalList cache = memoized.get(node);
 		if (cache == null) return;
 		Stack<TraversalNode> callStack = new Stack<TraversalNode>();
 		callStack.addAll(cache.values());
@@ -161,6 +168,7 @@ public class MemoizedTraverse {
 				// already processed this TraversalNode
 				return 0;
 			}
+			memoizedPathCount--;
 			onMemoizeRemove(tn);
 			if (frontier.remove(tn)) {
 				onFrontierRemove(tn);
@@ -169,10 +177,10 @@ public class MemoizedTraverse {
 		int frontierResetCount = addAlternatePathsToFrontier(tn);
 		// check if this path continues on to any children
 		for (KmerPathNode child : tn.node.node().next()) {
-			AbstractInt2ObjectSortedMap<TraversalNode> cache = memoized.get(child);
+			TraversalNodeIntervalList cache = memoized.get(child);
 			if (cache != null) {
 				// skip values that end before we start
-				for (TraversalNode childtn : cache.tailMap(tn.node.lastStart() + 1).values()) {
+				for (TraversalNode childtn : cache.valuesFrom(tn.node.lastStart() + 1)) {
 					// can't use reference equality since
 					// the parent node could have been split
 					// on an unrelated path.
@@ -211,9 +219,9 @@ public class MemoizedTraverse {
 		for (KmerPathNode prev : tn.node.node().prev()) {
 			if (prev != parent) {
 				int parentLength = prev.length();
-				AbstractInt2ObjectSortedMap<TraversalNode> cache = memoized.get(prev);
+				TraversalNodeIntervalList cache = memoized.get(prev);
 				if (cache != null) {
-					for (TraversalNode altParent : cache.tailMap(tn.node.firstStart() - parentLength).values()) {
+					for (TraversalNode altParent : cache.valuesFrom(tn.node.firstStart() - parentLength)) {
 						if (altParent.node.lastStart() + 1 > tn.node.firstEnd()) {
 							break;
 						}
@@ -230,7 +238,7 @@ public class MemoizedTraverse {
 	 * @return Memoized best paths
 	 */
 	public Collection<TraversalNode> memoized(KmerPathNode node) {
-		AbstractInt2ObjectSortedMap<TraversalNode> cache = memoized.get(node);
+		TraversalNodeIntervalList cache = memoized.get(node);
 		if (cache == null) return Collections.emptyList();
 		return cache.values();
 	}
@@ -242,21 +250,21 @@ public class MemoizedTraverse {
 	public void memoize(TraversalNode node) {
 		KmerPathSubnode sn = node.node;
 		KmerPathNode pn = sn.node();
-		AbstractInt2ObjectSortedMap<TraversalNode> cache = memoized.get(pn);
+		TraversalNodeIntervalList cache = memoized.get(pn);
 		if (cache == null) {
-			cache = new Int2ObjectRBTreeMap<TraversalNode>();
+			cache = new TraversalNodeIntervalList();
 			memoized.put(pn, cache);
 		}
-		memoize_fastutil_sortedmap(node, cache);
+		memoize_intervallist(node, cache);
 		assert(!cache.isEmpty());
 		if (Defaults.SANITY_CHECK_MEMOIZATION) {
 			//sanityCheck();
 		}
 	}
-	private void memoize_fastutil_sortedmap(TraversalNode node, AbstractInt2ObjectSortedMap<TraversalNode> cache) {
+	private void memoize_intervallist(TraversalNode node, TraversalNodeIntervalList cache) {
 		KmerPathSubnode sn = node.node;
 		// skip cached values that end before we start
-		Iterator<TraversalNode> it = cache.tailMap(sn.firstStart()).values().iterator();
+		Iterator<TraversalNode> it = cache.iteratorFrom(sn.firstStart());
 		List<TraversalNode> addlist = null; // need to delay adding to cache until after our iterator is complete (so we don't invalidate the iterator midway)
 		while (it.hasNext()) {
 			TraversalNode existing = it.next();
@@ -272,6 +280,7 @@ public class MemoizedTraverse {
 			if (node.score > existing.score) {
 				// remove existing node in overlapping interval
 				it.remove();
+				memoizedPathCount--;
 				onMemoizeRemove(existing);
 				boolean inFrontier = frontier.remove(existing);
 				if (inFrontier) {
@@ -321,14 +330,14 @@ public class MemoizedTraverse {
 			}
 		}
 		if (node != null) {
-			cache.put(node.node.firstEnd(), node);
+			if (cache.put(node) == null) memoizedPathCount++;
 			onMemoizeAdd(node);
 			frontier.add(node);
 			onFrontierAdd(node);
 		}
 		if (addlist != null) {
 			for (TraversalNode n : addlist) {
-				cache.put(n.node.firstEnd(), n);
+				if (cache.put(n) == null) memoizedPathCount++;
 				onMemoizeAdd(n);
 			}
 		}
@@ -403,8 +412,8 @@ public class MemoizedTraverse {
 	 * @return predecessor node, null if no single predecessor is defined for the entire interval 
 	 */
 	public KmerPathNode getParent(KmerPathNode node, int start, int end) {
-		AbstractInt2ObjectSortedMap<TraversalNode> cache = memoized.get(node);
-		Iterator<TraversalNode> it = cache.tailMap(start).values().iterator();
+		TraversalNodeIntervalList cache = memoized.get(node);
+		Iterator<TraversalNode> it = cache.iteratorFrom(start);
 		if (it.hasNext()) {
 			TraversalNode existing = it.next();
 			if (existing.node.firstStart() <= start && existing.node.firstEnd() >= end) {
@@ -421,7 +430,7 @@ public class MemoizedTraverse {
 	 */
 	public void addFrontier(TraversalNode node) {
 		assert(memoized.containsKey(node.node.node()));
-		assert(memoized.get(node.node.node()).containsValue(node));
+		assert(memoized.get(node.node.node()).contains(node));
 		frontier.add(node);
 		onFrontierAdd(node);
 	}
@@ -432,6 +441,12 @@ public class MemoizedTraverse {
 	public int memoizedNodeCount() {
 		return memoized.size();
 	}
+	/**
+	 * Number of memoized paths over all nodes
+	 */
+	public int memoizedPathCount() {
+		return memoizedPathCount;
+	}
 	public int tracking_frontierSize() {
 		return frontier.size();
 	}
@@ -455,35 +470,38 @@ public class MemoizedTraverse {
 				tn.parent == null ? 0 : System.identityHashCode(tn.parent.node.node()),
 				tn.node.node().firstStart(),
 				tn.node.node().firstEnd(),
-				memoized.containsKey(tn.node.node()) && memoized.get(tn.node.node()).containsValue(tn),
+				memoized.containsKey(tn.node.node()) && memoized.get(tn.node.node()).contains(tn),
 				frontier.contains(tn)));
 		});
 		Files.write(sb.toString().getBytes(), file);
 	}
 	public boolean sanityCheck() {
-		for (Entry<KmerPathNode, AbstractInt2ObjectSortedMap<TraversalNode>> entry : memoized.entrySet()) {
+		assert(memoizedPathCount == memoized.values().stream().mapToInt(TraversalNodeIntervalList::size).sum());
+		for (Entry<KmerPathNode, TraversalNodeIntervalList> entry : memoized.entrySet()) {
 			KmerPathNode node = entry.getKey();
 			assert(node.isValid());
-			for (int position : entry.getValue().keySet()) {
+			int lastPosition = Integer.MIN_VALUE;
+			for (TraversalNode tn : entry.getValue().values()) {
+				int position = tn.node.firstEnd();
 				assert(position >= node.firstStart());
 				assert(position <= node.firstEnd());
-				TraversalNode tn = entry.getValue().get(position);
+				assert(tn.node.firstStart() > lastPosition);
 				assert(tn.sanityCheck());
 				assert(tn.node.node() == node);
-				assert(tn.node.firstEnd() == position);
+				assert(entry.getValue().get(position) == tn);
+				lastPosition = position;
 			}
 		}
 		for (TraversalNode tn : frontier) {
 			assert(memoized.containsKey(tn.node.node()));
 			assert(memoized.get(tn.node.node()).get(tn.node.firstEnd()) == tn);
-			assert(memoized.get(tn.node.node()).containsValue(tn));
+			assert(memoized.get(tn.node.node()).contains(tn));
 		}
 		return true;
 	}
 	public boolean sanityCheckAreRemoved(Collection<KmerPathNode> removed) {
-		for (Entry<KmerPathNode, AbstractInt2ObjectSortedMap<TraversalNode>> entry : memoized.entrySet()) {
-			for (int position : entry.getValue().keySet()) {
-				TraversalNode tn = entry.getValue().get(position);
+		for (Entry<KmerPathNode, TraversalNodeIntervalList> entry : memoized.entrySet()) {
+			for (TraversalNode tn : entry.getValue().values()) {
 				sanityCheckDoesNotContain(tn, removed);
 			}
 		}
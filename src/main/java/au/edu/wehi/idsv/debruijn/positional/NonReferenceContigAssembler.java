@@ -4,6 +4,8 @@ import au.edu.wehi.idsv.*;
 import au.edu.wehi.idsv.bed.IntervalBed;
 import au.edu.wehi.idsv.debruijn.DeBruijnGraphBase;
 import au.edu.wehi.idsv.debruijn.KmerEncodingHelper;
+import au.edu.wehi.idsv.debruijn.positional.optimiseddatastructures.KmerNodeByFirstStartEndKmerReferenceNavigablePartiallyOrderedSet;
+import au.edu.wehi.idsv.debruijn.positional.optimiseddatastructures.KmerPathNodeKmerIndex;
 import au.edu.wehi.idsv.graph.ScalingHelper;
 import au.edu.wehi.idsv.model.Models;
 import au.edu.wehi.idsv.util.FilenameUtil;
@@ -70,11 +72,11 @@ public class NonReferenceContigAssembler implements Iterator<SAMRecord> {
 	 * expensive approach overall
 	 */
 	private static final boolean SIMPLIFY_AFTER_REMOVAL = false;
-	// TODO: OPT: don't use ArrayList<>() as child structure
-	// sort by end position so we can do fast overlap calculations
-	private Long2ObjectMap<Collection<KmerPathNodeKmerNode>> graphByKmerNode = new Long2ObjectOpenHashMap<Collection<KmerPathNodeKmerNode>>();
-	private TreeSet<KmerPathNode> graphByPosition = new TreeSet<KmerPathNode>(KmerNodeUtil.ByFirstStartKmer); // TODO: OPT: replace data structure
-	private SortedSet<KmerPathNode> nonReferenceGraphByPosition = new TreeSet<KmerPathNode>(KmerNodeUtil.ByFirstStartKmer); // TODO: OPT: replace data structure
+	private final KmerPathNodeKmerIndex graphByKmerNode = new KmerPathNodeKmerIndex();
+	// Full ordering is required as flushing iterates in both directions and stops part-way through a position
+	private TreeSet<KmerPathNode> graphByPosition = new TreeSet<KmerPathNode>(KmerNodeUtil.ByFirstStartKmer);
+	// Only the first position is required
+	private SortedSet<KmerPathNode> nonReferenceGraphByPosition = Defaults.USE_OPTIMISED_ASSEMBLY_DATA_STRUCTURES ? new KmerNodeByFirstStartEndKmerReferenceNavigablePartiallyOrderedSet<>(16) : new TreeSet<KmerPathNode>(KmerNodeUtil.ByFirstStartKmer);
 	private final EvidenceTracker evidenceTracker;
 	private final AssemblyEvidenceSource aes;
 	private final AssemblyIdGenerator assemblyNameGenerator;
@@ -91,6 +93,11 @@ public class NonReferenceContigAssembler implements Iterator<SAMRecord> {
 	private int lastNextPosition = Integer.MIN_VALUE;
 	private RangeSet<Integer> toFlush = TreeRangeSet.create();
 	private MemoizedContigCaller bestContigCaller;
+	/**
+	 * Number of memoized paths when the memoization was first used after being recalculated
+	 * from scratch. -1 if the memoization has not been used since it was recalculated.
+	 */
+	private int memoizedPathsAfterRebuild = -1;
 	private int contigsCalled = 0;
 	private int contigsCalledInSafetyMode = 0;
 	private long consumed = 0;
@@ -187,6 +194,7 @@ public class NonReferenceContigAssembler implements Iterator<SAMRecord> {
 	}
 	private void initialiseBestCaller() {
 		this.bestContigCaller = new MemoizedContigCaller(ANCHORED_SCORE, maxEvidenceSupportIntervalWidth);
+		this.memoizedPathsAfterRebuild = -1;
 		for (KmerPathNode n : graphByPosition) {
 			bestContigCaller.add(n);
 		}
@@ -788,8 +796,18 @@ public class NonReferenceContigAssembler implements Iterator<SAMRecord> {
 			bestContigCaller = null;
 		}
 		if (bestContigCaller != null) {
+			if (memoizedPathsAfterRebuild < 0) {
+				memoizedPathsAfterRebuild = bestContigCaller.memoizedPathCount();
+			}
 			// removes all KmerPathNodes that need mutation from the memoization 
 			bestContigCaller.remove(toRemove.keySet());
+			int maxMemoizedPaths = aes.getContext().getAssemblyParameters().positional.maxMemoizedPaths;
+			// a graph that requires more paths than the limit when memoized from scratch
+			// would otherwise be recalculated after every removal
+			if (maxMemoizedPaths > 0 && bestContigCaller.memoizedPathCount() > Math.max(maxMemoizedPaths, 2L * memoizedPathsAfterRebuild)) {
+				// recalculating from scratch releases fragmented memoization state
+				bestContigCaller = null;
+			}
 		}
 		Set<KmerPathNode> simplifyCandidates = null;
 		if (SIMPLIFY_AFTER_REMOVAL) {
@@ -865,25 +883,15 @@ public class NonReferenceContigAssembler implements Iterator<SAMRecord> {
 		}
 	}
 	private void updateRemovalList(Map<KmerPathNode, List<List<KmerNode>>> toRemove, KmerSupportNode support) {
-		Collection<KmerPathNodeKmerNode> kpnknList = graphByKmerNode.get(support.lastKmer());
-		if (kpnknList != null) {
-			// TODO: secondary sort order on graphByKmerNode so we can subset this iterator to only
-			// the overlapping nodes
-			for (KmerPathNodeKmerNode n : kpnknList) {
-				if (IntervalUtil.overlapsClosed(support.lastStart(), support.lastEnd(), n.lastStart(), n.lastEnd())) {
-					updateRemovalList(toRemove, n, support);
-				}
-			}
-		}
+		graphByKmerNode.forEachOverlapping(support.lastKmer(), support.lastStart(), support.lastEnd(),
+				(pn, offset) -> updateRemovalList(toRemove, pn, offset, support));
 	}
-	private void updateRemovalList(Map<KmerPathNode, List<List<KmerNode>>> toRemove, KmerPathNodeKmerNode node, KmerSupportNode support) {
-		KmerPathNode pn = node.node();
+	private void updateRemovalList(Map<KmerPathNode, List<List<KmerNode>>> toRemove, KmerPathNode pn, int offset, KmerSupportNode support) {
 		List<List<KmerNode>> list = toRemove.get(pn);
 		if (list == null) {
 			list = new ArrayList<List<KmerNode>>(pn.length());
 			toRemove.put(pn, list);
 		}
-		int offset = node.offsetOfPrimaryKmer();
 		while (list.size() <= offset) {
 			list.add(null);
 		}
@@ -921,12 +929,7 @@ public class NonReferenceContigAssembler implements Iterator<SAMRecord> {
 		if (!node.isReference()) {
 			nonReferenceGraphByPosition.add(node);
 		}
-		for (int i = 0; i < node.length(); i++) {
-			addToGraph(new KmerPathNodeKmerNode(node, i));
-		}
-		for (int i = 0; i < node.collapsedKmers().size(); i++) {
-			addToGraph(new KmerPathNodeKmerNode(i, node));
-		}
+		graphByKmerNode.add(node);
 		if (bestContigCaller != null) {
 			bestContigCaller.add(node);
 		}
@@ -940,28 +943,7 @@ public class NonReferenceContigAssembler implements Iterator<SAMRecord> {
 		boolean removed = graphByPosition.remove(node);
 		nonReferenceGraphByPosition.remove(node);
 		assert(removed);
-		for (int i = 0; i < node.length(); i++) {
-			removeFromGraph(new KmerPathNodeKmerNode(node, i));
-		}
-		for (int i = 0; i < node.collapsedKmers().size(); i++) {
-			removeFromGraph(new KmerPathNodeKmerNode(i, node));
-		}
-	}
-	private void addToGraph(KmerPathNodeKmerNode node) {
-		Collection<KmerPathNodeKmerNode> list = graphByKmerNode.get(node.firstKmer());
-		if (list == null) {
-			list = new ArrayList<>();
-			graphByKmerNode.put(node.firstKmer(), list);
-		}
-		list.add(node);
-	}
-	private void removeFromGraph(KmerPathNodeKmerNode node) {
-		Collection<KmerPathNodeKmerNode> list = graphByKmerNode.get(node.firstKmer());
-		if (list == null) return;
-		list.remove(node);
-		if (list.size() == 0) {
-			graphByKmerNode.remove(node.firstKmer());
-		}
+		graphByKmerNode.remove(node);
 	}
 
 	/**
@@ -1096,9 +1078,9 @@ public class NonReferenceContigAssembler implements Iterator<SAMRecord> {
 		}
 	}
 	public boolean sanityCheck() {
-		graphByKmerNode.long2ObjectEntrySet().stream().flatMap(e -> e.getValue().stream()).forEach(kn -> { 
-			assert(kn.node().isValid());
-			assert(graphByPosition.contains(kn.node()));
+		graphByKmerNode.forEachNode(n -> {
+			assert(n.isValid());
+			assert(graphByPosition.contains(n));
 		});
 		for (KmerPathNode n : graphByPosition) {
 			assert(n.isValid());
@@ -1239,7 +1221,7 @@ public class NonReferenceContigAssembler implements Iterator<SAMRecord> {
 		return graphByPosition.size();
 	}
 	public int tracking_maxKmerActiveNodeCount() {
-		return graphByKmerNode.values().stream().mapToInt(x -> x.size()).max().orElse(0);
+		return graphByKmerNode.maxKmerCount();
 	}
 	public long tracking_underlyingConsumed() {
 		return consumed;
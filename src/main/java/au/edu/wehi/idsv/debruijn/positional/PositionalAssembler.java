@@ -7,6 +7,7 @@ import au.edu.wehi.idsv.configuration.AssemblyConfiguration;
 import au.edu.wehi.idsv.configuration.VisualisationConfiguration;
 import au.edu.wehi.idsv.picard.ReferenceLookup;
 import au.edu.wehi.idsv.sam.SamTags;
+import au.edu.wehi.idsv.util.AsyncBufferedIterator;
 import au.edu.wehi.idsv.util.FileHelper;
 import au.edu.wehi.idsv.util.FilenameUtil;
 import au.edu.wehi.idsv.visualisation.AssemblyTelemetry.AssemblyChunkTelemetry;
@@ -42,6 +43,10 @@ public class PositionalAssembler implements Iterator<SAMRecord> {
 	private final IntervalBed safetyRegions;
 	private EvidenceTracker evidenceTracker = null;
 	private boolean contigGeneratedSinceException = false;
+	/**
+	 * Background stages of the current assembler graph construction pipeline
+	 */
+	private final List<AsyncBufferedIterator<?>> pipelineStages = new ArrayList<>();
 	public PositionalAssembler(ProcessingContext context, AssemblyEvidenceSource source, AssemblyIdGenerator assemblyNameGenerator, Iterator<DirectedEvidence> backingIterator, BreakendDirection direction, IntervalBed excludedRegions, IntervalBed safetyRegions) {
 		this.context = context;
 		this.source = source;
@@ -79,6 +84,7 @@ public class PositionalAssembler implements Iterator<SAMRecord> {
 		}
 	}
 	private void closeCurrentAssembler() {
+		closeAssemblyPipeline();
 		if (currentAssembler != null && currentAssembler.getExportTracker() != null) {
 			try {
 				currentAssembler.getExportTracker().close();
@@ -88,6 +94,17 @@ public class PositionalAssembler implements Iterator<SAMRecord> {
 		}
 		currentAssembler = null;
 	}
+	/**
+	 * Stops all background pipeline stages of the current assembler.
+	 * This must be called before the underlying evidence iterator is accessed
+	 * from this thread as the first stage consumes evidence directly from it.
+	 */
+	private void closeAssemblyPipeline() {
+		for (int i = pipelineStages.size() - 1; i >= 0; i--) {
+			pipelineStages.get(i).close();
+		}
+		pipelineStages.clear();
+	}
 	private Set<DirectedEvidence> getEvidenceInCurrentAssembler() {
 		Set<DirectedEvidence> reloadRecoverySet = new HashSet<>();
 		if (currentAssembler != null) {
@@ -103,6 +120,7 @@ public class PositionalAssembler implements Iterator<SAMRecord> {
 		try {
 			ensureAssembler(preload);
 		} catch (AssertionError|Exception e) {
+			closeAssemblyPipeline();
 			if (contigGeneratedSinceException) {
 				contigGeneratedSinceException = false;
 				Set<DirectedEvidence> reloadRecoverySet = getEvidenceInCurrentAssembler();
@@ -271,8 +289,19 @@ public class PositionalAssembler implements Iterator<SAMRecord> {
 		ReferenceIndexIterator evidenceIt = new ReferenceIndexIterator(inputIterator, referenceIndex);
 		evidenceTracker = new EvidenceTracker();
 		SupportNodeIterator supportIt = new SupportNodeIterator(k, evidenceIt, Math.max(2 * source.getMaxReadLength(), source.getMaxConcordantFragmentSize()), evidenceTracker, ap.includePairAnchors, ap.pairAnchorMismatchIgnoreEndBases);
-		AggregateNodeIterator agIt = new AggregateNodeIterator(supportIt);
+		VisualisationConfiguration vis = context.getConfig().getVisualisation();
+		// graph stages share mutable path node state so only the stages emitting
+		// immutable nodes can be moved off the calling thread
+		boolean pipelined = ap.positional.pipelineStages && !Defaults.SANITY_CHECK_ASSEMBLY_GRAPH && !vis.assemblyProgress;
+		Iterator<KmerSupportNode> supportStageIt = supportIt;
+		if (pipelined) {
+			supportStageIt = startPipelineStage(supportIt, "support");
+		}
+		AggregateNodeIterator agIt = new AggregateNodeIterator(supportStageIt);
 		Iterator<KmerNode> knIt = agIt;
+		if (pipelined) {
+			knIt = startPipelineStage(agIt, "aggregate");
+		}
 		if (Defaults.SANITY_CHECK_ASSEMBLY_GRAPH) {
 			knIt = evidenceTracker.new AggregateNodeAssertionInterceptor(knIt);
 		}
@@ -301,7 +330,6 @@ public class PositionalAssembler implements Iterator<SAMRecord> {
 			}
 		}
 		currentAssembler = new NonReferenceContigAssembler(pnIt, referenceIndex, maxEvidenceSupportIntervalWidth, anchorAssemblyLength, k, source, assemblyNameGenerator, evidenceTracker, currentContig, BreakendDirection.Forward, excludedRegions, safetyRegions);
-		VisualisationConfiguration vis = context.getConfig().getVisualisation();
 		if (vis.assemblyProgress) {
 			String filename = String.format("positional-%s_%d-%s.csv", context.getDictionary().getSequence(referenceIndex).getSequenceName(), firstPosition, direction);
 			filename = FilenameUtil.stripInvalidFilenameCharacters(filename);
@@ -318,6 +346,11 @@ public class PositionalAssembler implements Iterator<SAMRecord> {
 		currentAssembler.setTelemetry(getTelemetry());
 		return currentAssembler;
 	}
+	private <T> Iterator<T> startPipelineStage(Iterator<T> stage, String name) {
+		AsyncBufferedIterator<T> async = new AsyncBufferedIterator<>(stage, String.format("%s-%s-%s", Thread.currentThread().getName(), currentContig, name));
+		pipelineStages.add(async);
+		return async;
+	}
 	public AssemblyChunkTelemetry getTelemetry() {
 		return telemetry;
 	}
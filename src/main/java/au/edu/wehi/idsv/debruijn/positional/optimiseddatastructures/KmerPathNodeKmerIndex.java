@@ -0,0 +1,181 @@
+package au.edu.wehi.idsv.debruijn.positional.optimiseddatastructures;
+
+import au.edu.wehi.idsv.debruijn.positional.KmerPathNode;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Lookup of the KmerPathNode kmers (including collapsed kmers) by kmer.
+ *
+ * Entries are stored as parallel primitive arrays indexed by an integer handle
+ * with each kmer having an intrusive singly-linked list of handles. This avoids
+ * allocating a KmerPathNodeKmerNode and list per kmer when nodes are added to or
+ * removed from the graph, and avoids dereferencing the KmerPathNode when
+ * testing kmer position overlap.
+ */
+public class KmerPathNodeKmerIndex {
+    private static final int NO_ENTRY = -1;
+    private static final int DEFAULT_SIZE = 64;
+    private final Long2IntOpenHashMap headByKmer = new Long2IntOpenHashMap();
+    private KmerPathNode[] node;
+    /**
+     * offset of the primary kmer within the KmerPathNode
+     */
+    private int[] offset;
+    private int[] start;
+    private int[] end;
+    private int[] next;
+    private int freeHead = NO_ENTRY;
+    private int highWaterMark = 0;
+    private int size = 0;
+
+    public KmerPathNodeKmerIndex() {
+        this(DEFAULT_SIZE);
+    }
+
+    public KmerPathNodeKmerIndex(int initialSize) {
+        initialSize = Math.max(1, initialSize);
+        headByKmer.defaultReturnValue(NO_ENTRY);
+        node = new KmerPathNode[initialSize];
+        offset = new int[initialSize];
+        start = new int[initialSize];
+        end = new int[initialSize];
+        next = new int[initialSize];
+    }
+
+    /**
+     * Adds all kmers of the given node to the index
+     */
+    public void add(KmerPathNode n) {
+        for (int i = 0; i < n.length(); i++) {
+            add(n.kmer(i), n, i);
+        }
+        LongArrayList collapsedKmers = n.collapsedKmers();
+        for (int i = 0; i < collapsedKmers.size(); i++) {
+            add(collapsedKmers.getLong(i), n, n.collapsedKmerOffsets().getInt(i));
+        }
+    }
+
+    private void add(long kmer, KmerPathNode n, int kmerOffset) {
+        int handle = allocate();
+        node[handle] = n;
+        offset[handle] = kmerOffset;
+        start[handle] = n.startPosition(kmerOffset);
+        end[handle] = n.endPosition(kmerOffset);
+        next[handle] = headByKmer.get(kmer);
+        headByKmer.put(kmer, handle);
+    }
+
+    /**
+     * Removes all kmers of the given node from the index
+     */
+    public void remove(KmerPathNode n) {
+        for (int i = 0; i < n.length(); i++) {
+            remove(n.kmer(i), n);
+        }
+        LongArrayList collapsedKmers = n.collapsedKmers();
+        for (int i = 0; i < collapsedKmers.size(); i++) {
+            remove(collapsedKmers.getLong(i), n);
+        }
+    }
+
+    private void remove(long kmer, KmerPathNode n) {
+        int prev = NO_ENTRY;
+        int handle = headByKmer.get(kmer);
+        while (handle != NO_ENTRY) {
+            int nextHandle = next[handle];
+            if (node[handle] == n) {
+                if (prev == NO_ENTRY) {
+                    if (nextHandle == NO_ENTRY) {
+                        headByKmer.remove(kmer);
+                    } else {
+                        headByKmer.put(kmer, nextHandle);
+                    }
+                } else {
+                    next[prev] = nextHandle;
+                }
+                release(handle);
+            } else {
+                prev = handle;
+            }
+            handle = nextHandle;
+        }
+    }
+
+    /**
+     * Calls the given consumer with the node and offset of the primary kmer
+     * of every indexed kmer overlapping the given closed position interval.
+     */
+    public void forEachOverlapping(long kmer, int overlapStart, int overlapEnd, ObjIntConsumer<KmerPathNode> consumer) {
+        for (int handle = headByKmer.get(kmer); handle != NO_ENTRY; handle = next[handle]) {
+            if (start[handle] <= overlapEnd && end[handle] >= overlapStart) {
+                consumer.accept(node[handle], offset[handle]);
+            }
+        }
+    }
+
+    /**
+     * Calls the given consumer for every indexed kmer.
+     * Nodes will be passed to the consumer once for each kmer.
+     */
+    public void forEachNode(Consumer<KmerPathNode> consumer) {
+        for (int i = 0; i < highWaterMark; i++) {
+            if (node[i] != null) {
+                consumer.accept(node[i]);
+            }
+        }
+    }
+
+    /**
+     * Number of kmers in the index
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Maximum number of indexed kmers sharing the same kmer sequence
+     */
+    public int maxKmerCount() {
+        int max = 0;
+        for (int head : headByKmer.values()) {
+            int count = 0;
+            for (int handle = head; handle != NO_ENTRY; handle = next[handle]) {
+                count++;
+            }
+            max = Math.max(max, count);
+        }
+        return max;
+    }
+
+    private int allocate() {
+        int handle;
+        if (freeHead != NO_ENTRY) {
+            handle = freeHead;
+            freeHead = next[handle];
+        } else {
+            if (highWaterMark == node.length) {
+                int newSize = 2 * node.length;
+                node = Arrays.copyOf(node, newSize);
+                offset = Arrays.copyOf(offset, newSize);
+                start = Arrays.copyOf(start, newSize);
+                end = Arrays.copyOf(end, newSize);
+                next = Arrays.copyOf(next, newSize);
+            }
+            handle = highWaterMark++;
+        }
+        size++;
+        return handle;
+    }
+
+    private void release(int handle) {
+        node[handle] = null;
+        next[handle] = freeHead;
+        freeHead = handle;
+        size--;
+    }
+}
@@ -0,0 +1,162 @@
+package au.edu.wehi.idsv.debruijn.positional.optimiseddatastructures;
+
+import au.edu.wehi.idsv.debruijn.positional.TraversalNode;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Array-backed list of the memoized paths of a single KmerPathNode.
+ *
+ * Paths are keyed and sorted by the end position of their first kmer. Since
+ * memoized paths of a node cover disjoint intervals, this is also the
+ * start position order. Most nodes memoize only a handful of paths, so
+ * binary search over a primitive key array is both smaller and faster
+ * than a tree map entry per path.
+ */
+public class TraversalNodeIntervalList {
+    private static final int DEFAULT_SIZE = 2;
+    private int[] firstEnd;
+    private TraversalNode[] nodes;
+    private int size = 0;
+    private final List<TraversalNode> values = new AbstractList<TraversalNode>() {
+        @Override
+        public TraversalNode get(int index) {
+            if (index >= size) throw new IndexOutOfBoundsException(Integer.toString(index));
+            return nodes[index];
+        }
+        @Override
+        public int size() {
+            return size;
+        }
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof TraversalNode && TraversalNodeIntervalList.this.contains((TraversalNode)o);
+        }
+    };
+    public TraversalNodeIntervalList() {
+        firstEnd = new int[DEFAULT_SIZE];
+        nodes = new TraversalNode[DEFAULT_SIZE];
+    }
+    public int size() {
+        return size;
+    }
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    /**
+     * Index of the first path with a first kmer end position at or after the given position
+     */
+    private int ceilingIndex(int position) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (firstEnd[mid] < position) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    /**
+     * Returns the path with the given first kmer end position
+     * @return path, null if no such path exists
+     */
+    public TraversalNode get(int position) {
+        int i = ceilingIndex(position);
+        if (i < size && firstEnd[i] == position) return nodes[i];
+        return null;
+    }
+    public boolean contains(TraversalNode tn) {
+        return get(tn.node.firstEnd()) == tn;
+    }
+    /**
+     * Adds the given path
+     * @return path previously associated with the first kmer end position of the given path
+     */
+    public TraversalNode put(TraversalNode tn) {
+        int position = tn.node.firstEnd();
+        int i = ceilingIndex(position);
+        if (i < size && firstEnd[i] == position) {
+            TraversalNode existing = nodes[i];
+            nodes[i] = tn;
+            return existing;
+        }
+        if (size == nodes.length) {
+            int[] newFirstEnd = new int[2 * size];
+            TraversalNode[] newNodes = new TraversalNode[2 * size];
+            System.arraycopy(firstEnd, 0, newFirstEnd, 0, size);
+            System.arraycopy(nodes, 0, newNodes, 0, size);
+            firstEnd = newFirstEnd;
+            nodes = newNodes;
+        }
+        System.arraycopy(firstEnd, i, firstEnd, i + 1, size - i);
+        System.arraycopy(nodes, i, nodes, i + 1, size - i);
+        firstEnd[i] = position;
+        nodes[i] = tn;
+        size++;
+        return null;
+    }
+    /**
+     * Removes the path with the given first kmer end position
+     * @return removed path, null if no such path exists
+     */
+    public TraversalNode remove(int position) {
+        int i = ceilingIndex(position);
+        if (i < size && firstEnd[i] == position) {
+            TraversalNode existing = nodes[i];
+            removeAt(i);
+            return existing;
+        }
+        return null;
+    }
+    private void removeAt(int i) {
+        System.arraycopy(firstEnd, i + 1, firstEnd, i, size - i - 1);
+        System.arraycopy(nodes, i + 1, nodes, i, size - i - 1);
+        size--;
+        nodes[size] = null;
+    }
+    /**
+     * Live read-only view of all paths in first kmer position order
+     */
+    public List<TraversalNode> values() {
+        return values;
+    }
+    /**
+     * All paths with a first kmer end position at or after the given position
+     */
+    public Iterable<TraversalNode> valuesFrom(int position) {
+        return () -> iteratorFrom(position);
+    }
+    /**
+     * Iterates over all paths with a first kmer end position at or after the given position.
+     *
+     * The returned iterator supports removal, but is invalidated by any other modification.
+     */
+    public Iterator<TraversalNode> iteratorFrom(int position) {
+        return new Iterator<TraversalNode>() {
+            private int next = ceilingIndex(position);
+            private boolean canRemove = false;
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+            @Override
+            public TraversalNode next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                canRemove = true;
+                return nodes[next++];
+            }
+            @Override
+            public void remove() {
+                if (!canRemove) throw new IllegalStateException();
+                canRemove = false;
+                removeAt(--next);
+            }
+        };
+    }
+}
@@ -0,0 +1,628 @@
+package au.edu.wehi.idsv.graph;
+
+import au.edu.wehi.idsv.Defaults;
+import au.edu.wehi.idsv.visualisation.TrackedState;
+import com.google.common.collect.ImmutableList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Calculates all maximal cliques of a rectangle graph.
+ *
+ * Produces the same cliques in the same order as {@link RectangleGraphMaximalCliqueCalculator}
+ * but stores the scanline in primitive arrays. Scanline intervals are held in an
+ * array-backed treap keyed by interval start with lazily propagated weight and
+ * clique start updates so splitting an interval, or updating the weight or clique
+ * status of a range of intervals, is O(log n) and does not allocate. Active
+ * rectangles are held in a primitive heap ordered by end X.
+ *
+ * Nodes sharing a start X (or end X) are processed as a single batch: all
+ * scanline splits and boundary counts are updated before range updates are applied.
+ *
+ * The treap only pays for itself when the scanline holds many long overlapping
+ * rectangles. On sparse input the list-based calculator is faster, so this
+ * calculator is only used when enabled with the clique.array system property.
+ */
+public class ArrayRectangleGraphMaximalCliqueCalculator implements RectangleGraphCliqueCalculator {
+	private static final int NIL = 0;
+	private static final int INITIAL_CAPACITY = 16;
+	private RectangleGraphNode lastNode = null;
+	private List<RectangleGraphNode> outBuffer;
+	private long scanlineX = Long.MIN_VALUE;
+	private int root = NIL;
+	private int rngState = 0x2545F491;
+	// Scanline intervals. Coordinates use half-open intervals.
+	private long[] intervalStartY;
+	private long[] intervalEndY;
+	private long[] intervalWeight;
+	/**
+	 * Long.MAX_VALUE indicates this interval is not maximal
+	 */
+	private long[] intervalStartX;
+	private int[] intervalStartHere;
+	private int[] intervalEndHere;
+	private int[] intervalLeft;
+	private int[] intervalRight;
+	private int[] intervalPriority;
+	/**
+	 * Minimum startX of any interval in the subtree
+	 */
+	private long[] subtreeMinStartX;
+	/**
+	 * Subtree contains an interval with both a node starting and ending at its boundaries
+	 */
+	private boolean[] subtreeAnyBounded;
+	private long[] pendingWeight;
+	private long[] pendingStartX;
+	private boolean[] hasPendingStartX;
+	private int[] freeIntervals = new int[INITIAL_CAPACITY];
+	private int freeIntervalCount = 0;
+	private int nextInterval = 1;
+	private int intervalCount = 0;
+	// Active rectangles
+	private long[] nodeStartX = new long[INITIAL_CAPACITY];
+	private long[] nodeEndX = new long[INITIAL_CAPACITY];
+	private long[] nodeStartY = new long[INITIAL_CAPACITY];
+	private long[] nodeEndY = new long[INITIAL_CAPACITY];
+	private long[] nodeWeight = new long[INITIAL_CAPACITY];
+	private int[] freeNodes = new int[INITIAL_CAPACITY];
+	private int freeNodeCount = 0;
+	private int nextNode = 0;
+	/**
+	 * Active nodes sorted by endX, startY, endY
+	 */
+	private int[] activeEndingX = new int[INITIAL_CAPACITY];
+	private int activeEndingXSize = 0;
+	/**
+	 * Nodes starting at the current scanline that have not yet been incorporated into the scanline
+	 */
+	private int[] startingCurrentScanline = new int[INITIAL_CAPACITY];
+	private int startingCurrentScanlineSize = 0;
+	private int[] endingCurrentScanline = new int[INITIAL_CAPACITY];
+	private int endingCurrentScanlineSize = 0;
+	private long[] rangeStartY = new long[INITIAL_CAPACITY];
+	private long[] rangeEndY = new long[INITIAL_CAPACITY];
+	private int rangeCount = 0;
+	// split() output
+	private int splitLeft;
+	private int splitRight;
+	public ArrayRectangleGraphMaximalCliqueCalculator() {
+		allocateIntervalArrays(INITIAL_CAPACITY);
+		subtreeMinStartX[NIL] = Long.MAX_VALUE;
+		int start = allocateInterval(Long.MIN_VALUE, Long.MAX_VALUE - 1, 0, 0);
+		int end = allocateInterval(Long.MAX_VALUE - 1, Long.MAX_VALUE, 0, 0);
+		root = merge(start, end);
+		assert(sanityCheck());
+	}
+	private void allocateIntervalArrays(int capacity) {
+		intervalStartY = new long[capacity];
+		intervalEndY = new long[capacity];
+		intervalWeight = new long[capacity];
+		intervalStartX = new long[capacity];
+		intervalStartHere = new int[capacity];
+		intervalEndHere = new int[capacity];
+		intervalLeft = new int[capacity];
+		intervalRight = new int[capacity];
+		intervalPriority = new int[capacity];
+		subtreeMinStartX = new long[capacity];
+		subtreeAnyBounded = new boolean[capacity];
+		pendingWeight = new long[capacity];
+		pendingStartX = new long[capacity];
+		hasPendingStartX = new boolean[capacity];
+	}
+	private void growIntervalArrays() {
+		int capacity = intervalStartY.length * 2;
+		intervalStartY = Arrays.copyOf(intervalStartY, capacity);
+		intervalEndY = Arrays.copyOf(intervalEndY, capacity);
+		intervalWeight = Arrays.copyOf(intervalWeight, capacity);
+		intervalStartX = Arrays.copyOf(intervalStartX, capacity);
+		intervalStartHere = Arrays.copyOf(intervalStartHere, capacity);
+		intervalEndHere = Arrays.copyOf(intervalEndHere, capacity);
+		intervalLeft = Arrays.copyOf(intervalLeft, capacity);
+		intervalRight = Arrays.copyOf(intervalRight, capacity);
+		intervalPriority = Arrays.copyOf(intervalPriority, capacity);
+		subtreeMinStartX = Arrays.copyOf(subtreeMinStartX, capacity);
+		subtreeAnyBounded = Arrays.copyOf(subtreeAnyBounded, capacity);
+		pendingWeight = Arrays.copyOf(pendingWeight, capacity);
+		pendingStartX = Arrays.copyOf(pendingStartX, capacity);
+		hasPendingStartX = Arrays.copyOf(hasPendingStartX, capacity);
+	}
+	private int allocateInterval(long startY, long endY, long weight, int endHere) {
+		int t;
+		if (freeIntervalCount > 0) {
+			t = freeIntervals[--freeIntervalCount];
+		} else {
+			if (nextInterval == intervalStartY.length) {
+				growIntervalArrays();
+			}
+			t = nextInterval++;
+		}
+		// xorshift
+		rngState ^= rngState << 13;
+		rngState ^= rngState >>> 17;
+		rngState ^= rngState << 5;
+		intervalStartY[t] = startY;
+		intervalEndY[t] = endY;
+		intervalWeight[t] = weight;
+		intervalStartX[t] = Long.MAX_VALUE;
+		intervalStartHere[t] = 0;
+		intervalEndHere[t] = endHere;
+		intervalLeft[t] = NIL;
+		intervalRight[t] = NIL;
+		intervalPriority[t] = rngState;
+		pendingWeight[t] = 0;
+		hasPendingStartX[t] = false;
+		pull(t);
+		intervalCount++;
+		return t;
+	}
+	private void freeInterval(int t) {
+		if (freeIntervalCount == freeIntervals.length) {
+			freeIntervals = Arrays.copyOf(freeIntervals, freeIntervals.length * 2);
+		}
+		freeIntervals[freeIntervalCount++] = t;
+		intervalCount--;
+	}
+	private boolean isBounded(int t) {
+		return intervalStartHere[t] > 0 && intervalEndHere[t] > 0;
+	}
+	private void applyWeight(int t, long weight) {
+		intervalWeight[t] += weight;
+		pendingWeight[t] += weight;
+	}
+	/**
+	 * Updates the maximal clique start position of every interval in the subtree
+	 * @param startX scanline position at which bounded intervals became maximal.
+	 * Long.MAX_VALUE clears the maximal clique status of all intervals
+	 */
+	private void applyStartX(int t, long startX) {
+		intervalStartX[t] = isBounded(t) ? startX : Long.MAX_VALUE;
+		subtreeMinStartX[t] = subtreeAnyBounded[t] ? startX : Long.MAX_VALUE;
+		pendingStartX[t] = startX;
+		hasPendingStartX[t] = true;
+	}
+	private void push(int t) {
+		int l = intervalLeft[t];
+		int r = intervalRight[t];
+		if (pendingWeight[t] != 0) {
+			if (l != NIL) applyWeight(l, pendingWeight[t]);
+			if (r != NIL) applyWeight(r, pendingWeight[t]);
+			pendingWeight[t] = 0;
+		}
+		if (hasPendingStartX[t]) {
+			if (l != NIL) applyStartX(l, pendingStartX[t]);
+			if (r != NIL) applyStartX(r, pendingStartX[t]);
+			hasPendingStartX[t] = false;
+		}
+	}
+	private void pull(int t) {
+		int l = intervalLeft[t];
+		int r = intervalRight[t];
+		subtreeAnyBounded[t] = isBounded(t) || subtreeAnyBounded[l] || subtreeAnyBounded[r];
+		subtreeMinStartX[t] = Math.min(intervalStartX[t], Math.min(subtreeMinStartX[l], subtreeMinStartX[r]));
+	}
+	/**
+	 * Splits the given subtree into intervals starting before the given position (splitLeft)
+	 * and intervals starting at or after the given position (splitRight)
+	 */
+	private void split(int t, long y) {
+		if (t == NIL) {
+			splitLeft = NIL;
+			splitRight = NIL;
+			return;
+		}
+		push(t);
+		if (intervalStartY[t] < y) {
+			split(intervalRight[t], y);
+			intervalRight[t] = splitLeft;
+			pull(t);
+			splitLeft = t;
+		} else {
+			split(intervalLeft[t], y);
+			intervalLeft[t] = splitRight;
+			pull(t);
+			splitRight = t;
+		}
+	}
+	/**
+	 * Joins two subtrees
+	 * @param a subtree with all intervals before those of b
+	 */
+	private int merge(int a, int b) {
+		if (a == NIL) return b;
+		if (b == NIL) return a;
+		if (intervalPriority[a] > intervalPriority[b]) {
+			push(a);
+			intervalRight[a] = merge(intervalRight[a], b);
+			pull(a);
+			return a;
+		} else {
+			push(b);
+			intervalLeft[b] = merge(a, intervalLeft[b]);
+			pull(b);
+			return b;
+		}
+	}
+	private int findIntervalContaining(long y) {
+		int t = root;
+		while (t != NIL) {
+			if (y < intervalStartY[t]) {
+				t = intervalLeft[t];
+			} else if (y >= intervalEndY[t]) {
+				t = intervalRight[t];
+			} else {
+				return t;
+			}
+		}
+		return NIL;
+	}
+	private int findIntervalEndingAt(long y) {
+		int t = root;
+		while (t != NIL && intervalEndY[t] != y) {
+			t = y < intervalEndY[t] ? intervalLeft[t] : intervalRight[t];
+		}
+		return t;
+	}
+	/**
+	 * Ensures an interval starts at the given position
+	 */
+	private void ensureIntervalStartsAt(long y) {
+		int existing = findIntervalContaining(y);
+		assert(existing != NIL);
+		if (intervalStartY[existing] == y) return;
+		int n = allocateInterval(y, intervalEndY[existing], 0, intervalEndHere[existing]);
+		splitInterval(root, y, n);
+		split(root, y);
+		root = merge(merge(splitLeft, n), splitRight);
+	}
+	private void splitInterval(int t, long y, int newInterval) {
+		push(t);
+		if (y < intervalStartY[t]) {
+			splitInterval(intervalLeft[t], y, newInterval);
+		} else if (y >= intervalEndY[t]) {
+			splitInterval(intervalRight[t], y, newInterval);
+		} else {
+			intervalWeight[newInterval] = intervalWeight[t];
+			intervalEndY[t] = y;
+			intervalEndHere[t] = 0;
+			intervalStartX[t] = Long.MAX_VALUE;
+		}
+		pull(t);
+	}
+	private void adjustStartHere(int t, long y, int delta) {
+		assert(t != NIL);
+		push(t);
+		if (y < intervalStartY[t]) {
+			adjustStartHere(intervalLeft[t], y, delta);
+		} else if (y > intervalStartY[t]) {
+			adjustStartHere(intervalRight[t], y, delta);
+		} else {
+			intervalStartHere[t] += delta;
+		}
+		pull(t);
+	}
+	private void adjustEndHere(int t, long y, int delta) {
+		assert(t != NIL);
+		push(t);
+		if (y < intervalEndY[t]) {
+			adjustEndHere(intervalLeft[t], y, delta);
+		} else if (y > intervalEndY[t]) {
+			adjustEndHere(intervalRight[t], y, delta);
+		} else {
+			intervalEndHere[t] += delta;
+		}
+		pull(t);
+	}
+	/**
+	 * Applies the given updates to all intervals in the given half-open range.
+	 * Range bounds must be interval boundaries.
+	 */
+	private void updateRange(long startY, long endY, long weight, boolean updateStartX, long startX) {
+		split(root, startY);
+		int left = splitLeft;
+		split(splitRight, endY);
+		int middle = splitLeft;
+		int right = splitRight;
+		assert(middle != NIL);
+		if (weight != 0) applyWeight(middle, weight);
+		if (updateStartX) applyStartX(middle, startX);
+		root = merge(merge(left, middle), right);
+	}
+	/**
+	 * Merges the interval starting at the given position into the preceding interval
+	 * if no node starts or ends at the boundary between them
+	 */
+	private void mergeIntervalsAt(long y) {
+		if (y == Long.MIN_VALUE || y == Long.MAX_VALUE - 1) return; // sentinels
+		int t = findIntervalContaining(y);
+		if (intervalStartY[t] != y || intervalStartHere[t] != 0) return;
+		if (intervalEndHere[findIntervalEndingAt(y)] != 0) return;
+		split(root, y);
+		int left = splitLeft;
+		split(splitRight, y + 1);
+		assert(splitLeft == t);
+		int right = splitRight;
+		extendIntervalEndingAt(left, t);
+		root = merge(left, right);
+		freeInterval(t);
+	}
+	private void extendIntervalEndingAt(int t, int next) {
+		assert(t != NIL);
+		push(t);
+		long y = intervalStartY[next];
+		if (y < intervalEndY[t]) {
+			extendIntervalEndingAt(intervalLeft[t], next);
+		} else if (y > intervalEndY[t]) {
+			extendIntervalEndingAt(intervalRight[t], next);
+		} else {
+			assert(intervalWeight[t] == intervalWeight[next]);
+			assert(intervalStartX[t] == Long.MAX_VALUE);
+			assert(intervalStartX[next] == Long.MAX_VALUE);
+			intervalEndY[t] = intervalEndY[next];
+			intervalEndHere[t] = intervalEndHere[next];
+		}
+		pull(t);
+	}
+	private int allocateNode(RectangleGraphNode node) {
+		int n;
+		if (freeNodeCount > 0) {
+			n = freeNodes[--freeNodeCount];
+		} else {
+			if (nextNode == nodeStartX.length) {
+				int capacity = nodeStartX.length * 2;
+				nodeStartX = Arrays.copyOf(nodeStartX, capacity);
+				nodeEndX = Arrays.copyOf(nodeEndX, capacity);
+				nodeStartY = Arrays.copyOf(nodeStartY, capacity);
+				nodeEndY = Arrays.copyOf(nodeEndY, capacity);
+				nodeWeight = Arrays.copyOf(nodeWeight, capacity);
+			}
+			n = nextNode++;
+		}
+		nodeStartX[n] = node.startX;
+		nodeEndX[n] = node.endX;
+		nodeStartY[n] = node.startY;
+		nodeEndY[n] = node.endY;
+		nodeWeight[n] = node.weight;
+		return n;
+	}
+	private void freeNode(int n) {
+		if (freeNodeCount == freeNodes.length) {
+			freeNodes = Arrays.copyOf(freeNodes, freeNodes.length * 2);
+		}
+		freeNodes[freeNodeCount++] = n;
+	}
+	private boolean endsBefore(int a, int b) {
+		if (nodeEndX[a] != nodeEndX[b]) return nodeEndX[a] < nodeEndX[b];
+		if (nodeStartY[a] != nodeStartY[b]) return nodeStartY[a] < nodeStartY[b];
+		return nodeEndY[a] < nodeEndY[b];
+	}
+	private void activeEndingXAdd(int n) {
+		if (activeEndingXSize == activeEndingX.length) {
+			activeEndingX = Arrays.copyOf(activeEndingX, activeEndingX.length * 2);
+		}
+		int i = activeEndingXSize++;
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (!endsBefore(n, activeEndingX[parent])) break;
+			activeEndingX[i] = activeEndingX[parent];
+			i = parent;
+		}
+		activeEndingX[i] = n;
+	}
+	private int activeEndingXPoll() {
+		int result = activeEndingX[0];
+		int n = activeEndingX[--activeEndingXSize];
+		int i = 0;
+		int half = activeEndingXSize >>> 1;
+		while (i < half) {
+			int child = 2 * i + 1;
+			if (child + 1 < activeEndingXSize && endsBefore(activeEndingX[child + 1], activeEndingX[child])) {
+				child++;
+			}
+			if (!endsBefore(activeEndingX[child], n)) break;
+			activeEndingX[i] = activeEndingX[child];
+			i = child;
+		}
+		if (activeEndingXSize > 0) {
+			activeEndingX[i] = n;
+		}
+		return result;
+	}
+	private static int[] append(int[] array, int size, int value) {
+		if (size == array.length) {
+			array = Arrays.copyOf(array, array.length * 2);
+		}
+		array[size] = value;
+		return array;
+	}
+	/**
+	 * Calculates the half-open Y ranges covered by the given nodes.
+	 * Adjacent ranges are merged.
+	 * @param nodes nodes sorted by startY
+	 */
+	private void calculateRanges(int[] nodes, int count) {
+		rangeCount = 0;
+		int i = 0;
+		while (i < count) {
+			long startY = nodeStartY[nodes[i]];
+			long endYexclusive = nodeEndY[nodes[i]] + 1;
+			i++;
+			while (i < count && nodeStartY[nodes[i]] <= endYexclusive) {
+				endYexclusive = Math.max(endYexclusive, nodeEndY[nodes[i]] + 1);
+				i++;
+			}
+			if (rangeCount == rangeStartY.length) {
+				rangeStartY = Arrays.copyOf(rangeStartY, rangeStartY.length * 2);
+				rangeEndY = Arrays.copyOf(rangeEndY, rangeEndY.length * 2);
+			}
+			rangeStartY[rangeCount] = startY;
+			rangeEndY[rangeCount] = endYexclusive;
+			rangeCount++;
+		}
+	}
+	private List<RectangleGraphNode> getCalledCliques() {
+		List<RectangleGraphNode> result = outBuffer == null ? ImmutableList.<RectangleGraphNode>of() : outBuffer;
+		outBuffer = null;
+		return result;
+	}
+	@Override
+	public List<RectangleGraphNode> next(RectangleGraphNode node) {
+		assert(node.startX <= node.endX);
+		assert(node.startY <= node.endY);
+		assert(node.weight > 0);
+		assert(node.startX >= scanlineX);
+		assert(lastNode == null || RectangleGraphNode.ByStartXY.compare(lastNode, node) <= 0);
+		lastNode = node;
+		if (node.startX != scanlineX) {
+			incorporateStartingCurrentScanline();
+			// advance scanline
+			processEndXBefore(node.startX);
+			scanlineX = node.startX;
+		}
+		int n = allocateNode(node);
+		startingCurrentScanline = append(startingCurrentScanline, startingCurrentScanlineSize++, n);
+		activeEndingXAdd(n);
+		return getCalledCliques();
+	}
+	/**
+	 * Adds the nodes starting at the current scanline position to the scanline
+	 */
+	private void incorporateStartingCurrentScanline() {
+		if (startingCurrentScanlineSize == 0) return;
+		for (int i = 0; i < startingCurrentScanlineSize; i++) {
+			int n = startingCurrentScanline[i];
+			long startY = nodeStartY[n];
+			long endYexclusive = nodeEndY[n] + 1;
+			ensureIntervalStartsAt(startY);
+			ensureIntervalStartsAt(endYexclusive);
+			adjustStartHere(root, startY, 1);
+			adjustEndHere(root, endYexclusive, 1);
+		}
+		// boundaries counts must be finalised before we can determine which intervals are maximal
+		for (int i = 0; i < startingCurrentScanlineSize; i++) {
+			int n = startingCurrentScanline[i];
+			updateRange(nodeStartY[n], nodeEndY[n] + 1, nodeWeight[n], false, 0);
+		}
+		calculateRanges(startingCurrentScanline, startingCurrentScanlineSize);
+		for (int i = 0; i < rangeCount; i++) {
+			updateRange(rangeStartY[i], rangeEndY[i], 0, true, scanlineX);
+		}
+		startingCurrentScanlineSize = 0;
+		assert(sanityCheck());
+	}
+	private void processEndXBefore(long endBeforeX) {
+		outBuffer = new ArrayList<RectangleGraphNode>();
+		while (activeEndingXSize > 0 && nodeEndX[activeEndingX[0]] < endBeforeX) {
+			scanlineX = nodeEndX[activeEndingX[0]];
+			processEndingXOnCurrentScanline();
+		}
+	}
+	private void processEndingXOnCurrentScanline() {
+		endingCurrentScanlineSize = 0;
+		while (activeEndingXSize > 0 && nodeEndX[activeEndingX[0]] == scanlineX) {
+			endingCurrentScanline = append(endingCurrentScanline, endingCurrentScanlineSize++, activeEndingXPoll());
+		}
+		calculateRanges(endingCurrentScanline, endingCurrentScanlineSize);
+		for (int i = 0; i < rangeCount; i++) {
+			callMaximumCliques(root, rangeStartY[i], rangeEndY[i]);
+		}
+		for (int i = 0; i < endingCurrentScanlineSize; i++) {
+			int n = endingCurrentScanline[i];
+			long startY = nodeStartY[n];
+			long endYexclusive = nodeEndY[n] + 1;
+			updateRange(startY, endYexclusive, -nodeWeight[n], false, 0);
+			adjustStartHere(root, startY, -1);
+			adjustEndHere(root, endYexclusive, -1);
+		}
+		// removing nodes means nothing they covered is maximal any more
+		for (int i = 0; i < rangeCount; i++) {
+			updateRange(rangeStartY[i], rangeEndY[i], 0, true, Long.MAX_VALUE);
+		}
+		for (int i = 0; i < endingCurrentScanlineSize; i++) {
+			int n = endingCurrentScanline[i];
+			mergeIntervalsAt(nodeStartY[n]);
+			mergeIntervalsAt(nodeEndY[n] + 1);
+			freeNode(n);
+		}
+		endingCurrentScanlineSize = 0;
+		assert(sanityCheck());
+	}
+	/**
+	 * Calls maximum cliques starting within the given half-open interval
+	 */
+	private void callMaximumCliques(int t, long startY, long endYexclusive) {
+		if (t == NIL || subtreeMinStartX[t] == Long.MAX_VALUE) return;
+		push(t);
+		long y = intervalStartY[t];
+		if (startY < y) {
+			callMaximumCliques(intervalLeft[t], startY, endYexclusive);
+		}
+		if (startY <= y && y < endYexclusive && intervalStartX[t] != Long.MAX_VALUE) {
+			outBuffer.add(new RectangleGraphNode(
+					intervalStartX[t], scanlineX,
+					y, intervalEndY[t] - 1, // convert back from half-open to close interval
+					intervalWeight[t]));
+		}
+		if (y < endYexclusive) {
+			callMaximumCliques(intervalRight[t], startY, endYexclusive);
+		}
+	}
+	@Override
+	public List<RectangleGraphNode> complete() {
+		incorporateStartingCurrentScanline();
+		processEndXBefore(Long.MAX_VALUE);
+		return outBuffer;
+	}
+	private boolean sanityCheck() {
+		if (!Defaults.SANITY_CHECK_CLIQUE) return true;
+		List<Integer> intervals = new ArrayList<>();
+		inorder(root, intervals);
+		assert(intervals.size() == intervalCount);
+		assert(intervalStartY[intervals.get(0)] == Long.MIN_VALUE);
+		assert(intervalEndY[intervals.get(intervals.size() - 1)] == Long.MAX_VALUE);
+		for (int i = 1; i < intervals.size(); i++) {
+			int prev = intervals.get(i - 1);
+			int t = intervals.get(i);
+			assert(intervalEndY[prev] == intervalStartY[t]);
+			assert(intervalStartY[t] < intervalEndY[t]);
+			if (i < intervals.size() - 1) {
+				// something should be splitting this interval from the previous one
+				assert(intervalEndHere[prev] > 0 || intervalStartHere[t] > 0);
+			}
+		}
+		return true;
+	}
+	private void inorder(int t, List<Integer> out) {
+		if (t == NIL) return;
+		push(t);
+		inorder(intervalLeft[t], out);
+		out.add(t);
+		inorder(intervalRight[t], out);
+	}
+
+	@Override
+	public String[] trackedNames() {
+		return new String[] {
+			"outBufferSize",
+			"activeEndingXSize",
+			"scanlineIntervalCount",
+		};
+	}
+
+	@Override
+	public Object[] trackedState() {
+		return new Object[] {
+				outBuffer == null ? 0 : outBuffer.size(),
+				activeEndingXSize,
+				intervalCount,
+		};
+	}
+
+	@Override
+	public Collection<TrackedState> trackedObjects() {
+		return ImmutableList.of(this);
+	}
+}
@@ -0,0 +1,23 @@
+package au.edu.wehi.idsv.graph;
+
+import au.edu.wehi.idsv.visualisation.TrackedState;
+
+import java.util.List;
+
+/**
+ * Streaming maximal clique caller for weighted rectangle graphs.
+ */
+public interface RectangleGraphCliqueCalculator extends TrackedState {
+	/**
+	 * Adds the given node to the graph.
+	 * Nodes must be added in ascending startX, startY order.
+	 * @param node node to add
+	 * @return maximal cliques that can no longer be extended by subsequent nodes
+	 */
+	List<RectangleGraphNode> next(RectangleGraphNode node);
+	/**
+	 * Calls all remaining maximal cliques
+	 * @return maximal cliques not returned by a previous call to next()
+	 */
+	List<RectangleGraphNode> complete();
+}
@@ -26,7 +26,7 @@ import java.util.PriorityQueue;
  * 
  * @author Daniel Cameron
  */
-public class RectangleGraphMaximalCliqueCalculator implements TrackedState {
+public class RectangleGraphMaximalCliqueCalculator implements RectangleGraphCliqueCalculator {
 	private RectangleGraphNode lastNode = null;
 	private List<RectangleGraphNode> outBuffer;
 	private final PriorityQueue<RectangleGraphNode> activeEndingX = new PriorityQueue<RectangleGraphNode>(11, RectangleGraphNode.ByEndXStartYEndY); // sorted by endX
@@ -148,6 +148,7 @@ public class RectangleGraphMaximalCliqueCalculator implements TrackedState {
 	 * @param node
 	 * @return
 	 */
+	@Override
 	public List<RectangleGraphNode> next(RectangleGraphNode node) {
 		assert(node.startX <= node.endX);
 		assert(node.startY <= node.endY);
@@ -377,6 +378,7 @@ public class RectangleGraphMaximalCliqueCalculator implements TrackedState {
 		}
 		scanlineCompleteProcessing(-1);
 	}
+	@Override
 	public List<RectangleGraphNode> complete() {
 		scanlineCompleteProcessing(1);
 		processEndXBefore(Long.MAX_VALUE);
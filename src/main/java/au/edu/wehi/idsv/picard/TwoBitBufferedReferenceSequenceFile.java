@@ -3,22 +3,38 @@ package au.edu.wehi.idsv.picard;
 import au.edu.wehi.idsv.debruijn.KmerEncodingHelper;
 import au.edu.wehi.idsv.debruijn.PackedSequence;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.io.CountingInputStream;
+import com.google.common.io.CountingOutputStream;
+import com.google.common.math.IntMath;
 import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
 import htsjdk.samtools.reference.ReferenceSequence;
 import htsjdk.samtools.reference.ReferenceSequenceFile;
 import htsjdk.samtools.util.Log;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 
 import java.io.*;
+import java.math.RoundingMode;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.util.BitSet;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 
 /**
- * 2bit encodes and buffers the entire reference to enable efficient random lookup of small subsequences
+ * 2bit encodes and buffers the entire reference to enable efficient random lookup of small subsequences.
+ * 
+ * When a cache file is used, the 2bit encoded reference is memory mapped from the cache file.
  * @author Daniel Cameron
  *
  */
 public class TwoBitBufferedReferenceSequenceFile implements ReferenceSequenceFile, ReferenceLookup {
 	private static final Log log = Log.getInstance(TwoBitBufferedReferenceSequenceFile.class);
+	private static final byte[] CACHE_MAGIC = "GRIDSS2B".getBytes(StandardCharsets.US_ASCII);
+	private static final int CACHE_FORMAT_VERSION = 1;
+	private static final int BASES_PER_WORD = Long.SIZE / 2;
 	private final ReferenceSequenceFile underlying;
 	private final PackedReferenceSequence[] referenceIndexLookup;
 	private File cacheFile;
@@ -42,25 +58,102 @@ public class TwoBitBufferedReferenceSequenceFile implements ReferenceSequenceFil
 		if (seq == null) {
 			seq = addToCache(underlying.getSequenceDictionary().getSequence(referenceIndex).getSequenceName());
 		}
-		if (seq.ambiguous.get(position - 1)) {
-			return 'N';
+		return seq.getBase(position - 1);
+	}
+	/**
+	 * Determines whether the given file is a cache file in the current on-disk format
+	 * @param file cache file
+	 * @return true if the file can be loaded by {@link #load(File)}, false otherwise
+	 */
+	public static boolean isValidCacheFile(File file) {
+		if (file == null || !file.isFile()) return false;
+		try (DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			return readHeaderVersion(dis) == CACHE_FORMAT_VERSION;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+	private static int readHeaderVersion(DataInputStream dis) throws IOException {
+		byte[] magic = new byte[CACHE_MAGIC.length];
+		dis.readFully(magic);
+		if (!Arrays.equals(CACHE_MAGIC, magic)) {
+			return -1;
 		}
-		return seq.get(position - 1);
+		return dis.readInt();
 	}
-	public synchronized void load(File file) {
+	/**
+	 * Loads the reference genome from the given cache file.
+	 * 
+	 * The 2bit encoded sequences are memory mapped directly from the file
+	 * so the bases are served from the OS page cache and are shared with any
+	 * other process using the same cache file.
+	 * @param file cache file
+	 * @return true if the cache file was successfully loaded
+	 */
+	public synchronized boolean load(File file) {
 		ImmutableMap.Builder<String, PackedReferenceSequence> builder = ImmutableMap.<String, PackedReferenceSequence>builder();
-		try(FileInputStream fis = new FileInputStream(file)) {
-			try(ObjectInputStream ois = new ObjectInputStream(fis)) {
-				for (int i =  0; i < referenceIndexLookup.length; i++) {
-					referenceIndexLookup[i] = (PackedReferenceSequence)ois.readObject();
-					builder.put(referenceIndexLookup[i].name, referenceIndexLookup[i]);
+		PackedReferenceSequence[] loaded = new PackedReferenceSequence[referenceIndexLookup.length];
+		try (CountingInputStream cis = new CountingInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			DataInputStream dis = new DataInputStream(cis);
+			int version = readHeaderVersion(dis);
+			if (version != CACHE_FORMAT_VERSION) {
+				log.warn(String.format("%s is not a version %d GRIDSS reference cache file.", file, CACHE_FORMAT_VERSION));
+				return false;
+			}
+			int contigCount = dis.readInt();
+			if (contigCount != referenceIndexLookup.length) {
+				log.warn(String.format("Reference genome cache %s has %d contigs but the reference genome has %d.", file, contigCount, referenceIndexLookup.length));
+				return false;
+			}
+			String[] names = new String[contigCount];
+			int[] lengths = new int[contigCount];
+			int[][] ambiguous = new int[contigCount][];
+			for (int i = 0; i < contigCount; i++) {
+				names[i] = dis.readUTF();
+				lengths[i] = dis.readInt();
+				ambiguous[i] = new int[2 * dis.readInt()];
+				for (int j = 0; j < ambiguous[i].length; j++) {
+					ambiguous[i][j] = dis.readInt();
+				}
+				SAMSequenceRecord ssr = underlying.getSequenceDictionary().getSequence(i);
+				if (!ssr.getSequenceName().equals(names[i]) || ssr.getSequenceLength() != lengths[i]) {
+					log.warn(String.format("Reference genome cache %s does not match reference genome sequence dictionary.", file));
+					return false;
+				}
+			}
+			long offset = alignToWord(cis.getCount());
+			try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+				for (int i = 0; i < contigCount; i++) {
+					long size = (long)wordCount(lengths[i]) * Long.BYTES;
+					LongBuffer packed = channel.map(FileChannel.MapMode.READ_ONLY, offset, size).asLongBuffer();
+					loaded[i] = new PackedReferenceSequence(names[i], i, lengths[i], packed, ambiguous[i]);
+					builder.put(names[i], loaded[i]);
+					offset += size;
 				}
 			}
-			cache = builder.build();
 		} catch (Exception e) {
-			log.error("Error loading reference genome from cache " + file, e);
+			log.error(e, "Error loading reference genome from cache " + file);
+			return false;
 		}
+		System.arraycopy(loaded, 0, referenceIndexLookup, 0, loaded.length);
+		cache = builder.build();
+		return true;
 	}
+	/**
+	 * Writes the reference genome to the given cache file.
+	 * 
+	 * File format (big-endian):
+	 * - magic "GRIDSS2B"
+	 * - int format version
+	 * - int contig count
+	 * - per contig: UTF-8 name, int length, int ambiguous interval count, ambiguous intervals as 0-based half-open (start, end) int pairs
+	 * - padding to an 8 byte boundary
+	 * - per contig: 2bit encoded bases packed into longs with the first base in the MSBs of the first long
+	 * 
+	 * The cache is written to a temporary file and atomically moved into place
+	 * so other processes never observe a partially written cache file.
+	 * @param file cache file
+	 */
 	public synchronized void save(File file) {
 		if (file.exists()) {
 			throw new IllegalArgumentException(file + " already exists");
@@ -71,54 +164,133 @@ public class TwoBitBufferedReferenceSequenceFile implements ReferenceSequenceFil
 				.stream()
 				.map(s -> s.getSequenceName())
 				.forEach(s -> cacheLoad(s));
-		try(FileOutputStream fos = new FileOutputStream(file)) {
-			try(ObjectOutputStream oos = new ObjectOutputStream(fos)) {
-				for (int i =  0; i < referenceIndexLookup.length; i++) {
-					oos.writeObject(referenceIndexLookup[i]);
+		File tmp = null;
+		try {
+			tmp = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+			try (CountingOutputStream cos = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+				DataOutputStream dos = new DataOutputStream(cos);
+				dos.write(CACHE_MAGIC);
+				dos.writeInt(CACHE_FORMAT_VERSION);
+				dos.writeInt(referenceIndexLookup.length);
+				for (PackedReferenceSequence seq : referenceIndexLookup) {
+					dos.writeUTF(seq.name);
+					dos.writeInt(seq.length);
+					dos.writeInt(seq.ambiguous.length / 2);
+					for (int x : seq.ambiguous) {
+						dos.writeInt(x);
+					}
+				}
+				dos.flush();
+				while (cos.getCount() % Long.BYTES != 0) {
+					dos.writeByte(0);
+				}
+				for (PackedReferenceSequence seq : referenceIndexLookup) {
+					for (int i = 0; i < seq.packed.limit(); i++) {
+						dos.writeLong(seq.packed.get(i));
+					}
 				}
 			}
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			tmp = null;
 		} catch (Exception e) {
-			log.error("Error saving reference genome to cache file " + file, e);
+			log.error(e, "Error saving reference genome to cache file " + file);
+		} finally {
 			try {
-				if (file.exists()) {
-					Files.delete(file.toPath());
+				if (tmp != null) {
+					Files.deleteIfExists(tmp.toPath());
 				}
 			} catch (IOException e1) {
 				// swallow recovery exception
 			}
 		}
 	}
-	private static class PackedReferenceSequence extends PackedSequence implements Serializable {
+	private static long alignToWord(long offset) {
+		return (offset + Long.BYTES - 1) / Long.BYTES * Long.BYTES;
+	}
+	private static int wordCount(int length) {
+		return IntMath.divide(length, BASES_PER_WORD, RoundingMode.CEILING);
+	}
+	/**
+	 * 2bit encoded reference contig.
+	 * 
+	 * The packed bases are backed by either a heap array or a memory mapped cache file.
+	 */
+	private static class PackedReferenceSequence {
 		private final String name;
-	    private final int contigIndex;
-	    private final long length;
-	    private final BitSet ambiguous;
+		private final int contigIndex;
+		private final int length;
+		private final LongBuffer packed;
+		/**
+		 * Sorted 0-based half-open intervals of ambiguous bases.
+		 * Even offsets contain interval starts, odd offsets contain interval ends.
+		 */
+		private final int[] ambiguous;
+		public PackedReferenceSequence(String name, int contigIndex, int length, LongBuffer packed, int[] ambiguous) {
+			this.name = name;
+			this.contigIndex = contigIndex;
+			this.length = length;
+			this.packed = packed;
+			this.ambiguous = ambiguous;
+		}
 		public PackedReferenceSequence(ReferenceSequence seq) {
-			super(seq.getBases(), false, false);
-			this.name = seq.getName();
-			this.contigIndex = seq.getContigIndex();
-			this.length = seq.length();
-			this.ambiguous = new BitSet(seq.length());
-			byte[] seqBases = seq.getBases();
-			for (int i = 0; i < length; i++) {
+			this(seq.getName(), seq.getContigIndex(), seq.length(),
+					LongBuffer.wrap(new PackedSequence(seq.getBases(), false, false).asLongArray()),
+					ambiguousIntervals(seq.getBases()));
+		}
+		private static int[] ambiguousIntervals(byte[] seqBases) {
+			IntArrayList intervals = new IntArrayList();
+			for (int i = 0; i < seqBases.length; i++) {
 				if (KmerEncodingHelper.isAmbiguous(seqBases[i])) {
-					ambiguous.set(i);
+					if (intervals.size() > 0 && intervals.getInt(intervals.size() - 1) == i) {
+						intervals.set(intervals.size() - 1, i + 1);
+					} else {
+						intervals.add(i);
+						intervals.add(i + 1);
+					}
 				}
 			}
+			return intervals.toIntArray();
+		}
+		/**
+		 * Index of the first interval boundary strictly after the given offset
+		 */
+		private int boundaryAfter(int offset) {
+			int index = Arrays.binarySearch(ambiguous, offset);
+			return index >= 0 ? index + 1 : -index - 1;
+		}
+		private boolean isAmbiguous(int offset) {
+			// odd boundaries are interval ends
+			return (boundaryAfter(offset) & 1) == 1;
+		}
+		private byte get(int offset) {
+			long word = packed.get(offset / BASES_PER_WORD);
+			return KmerEncodingHelper.encodedToPicardBase(word >>> (2 * (BASES_PER_WORD - 1 - offset % BASES_PER_WORD)));
+		}
+		public byte getBase(int offset) {
+			if (isAmbiguous(offset)) {
+				return 'N';
+			}
+			return get(offset);
 		}
 		public ReferenceSequence getSequence() {
 			return getSubsequenceAt(1, length);
 		}
 		public ReferenceSequence getSubsequenceAt(long start, long stop) {
+			int offset = (int)(start - 1);
 			int length = (int)(stop - start + 1);
-			ReferenceSequence seq = new ReferenceSequence(name, contigIndex, getBytes((int)(start - 1), length));
-			byte[] seqBases = seq.getBases();
+			byte[] seqBases = new byte[length];
 			for (int i = 0; i < length; i++) {
-				if (ambiguous.get((int)start - 1 + i)) {
-					seqBases[i] = 'N';
+				seqBases[i] = get(offset + i);
+			}
+			// start from the first interval ending after offset
+			for (int i = boundaryAfter(offset) & ~1; i < ambiguous.length && ambiguous[i] < offset + length; i += 2) {
+				int from = Math.max(ambiguous[i], offset);
+				int to = Math.min(ambiguous[i + 1], offset + length);
+				if (from < to) {
+					Arrays.fill(seqBases, from - offset, to - offset, (byte)'N');
 				}
 			}
-			return seq;
+			return new ReferenceSequence(name, contigIndex, seqBases);
 		}
 	}
 	@Override
@@ -143,17 +315,31 @@ public class TwoBitBufferedReferenceSequenceFile implements ReferenceSequenceFil
 	 */
 	private synchronized PackedReferenceSequence addToCache(String contig) {
 		if (cacheFile != null) {
+			boolean loaded = false;
 			if (cacheFile.exists()) {
 				log.info("Loading reference genome from cache " + cacheFile);
-				load(cacheFile);
+				loaded = load(cacheFile);
 				log.info("Loading reference genome complete");
-			} else {
-				if (!cacheFile.getParentFile().canWrite()) {
+			}
+			if (!loaded) {
+				if (!cacheFile.getAbsoluteFile().getParentFile().canWrite()) {
 					log.warn("Cannot write to " + cacheFile + " not persisting 2bit compressed reference genome cache");
 				} else {
+					if (cacheFile.exists()) {
+						log.info("Replacing invalid or obsolete reference genome cache " + cacheFile);
+						try {
+							Files.delete(cacheFile.toPath());
+						} catch (IOException e) {
+							log.warn(e, "Unable to delete " + cacheFile);
+						}
+					}
 					log.info("Saving reference genome cache to " + cacheFile);
 					save(cacheFile);
 					log.info("Saving reference genome cache complete");
+					// switch from the heap copy to the memory mapped copy
+					if (cacheFile.exists()) {
+						load(cacheFile);
+					}
 				}
 			}
 			// Only attempt load/save once
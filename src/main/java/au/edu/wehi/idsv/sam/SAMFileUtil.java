@@ -5,6 +5,7 @@ import au.edu.wehi.idsv.FileSystemContext;
 import au.edu.wehi.idsv.IntermediateFileUtil;
 import au.edu.wehi.idsv.util.AsyncBufferedIterator;
 import au.edu.wehi.idsv.util.FileHelper;
+import au.edu.wehi.idsv.util.OffHeapSortingCollection;
 import au.edu.wehi.idsv.validation.OrderAssertingIterator;
 import com.google.common.collect.PeekingIterator;
 import htsjdk.samtools.*;
@@ -17,6 +18,7 @@ import java.util.*;
 import java.util.Map.Entry;
 import java.util.concurrent.Callable;
 import java.util.function.Function;
+import java.util.function.ToLongFunction;
 
 public class SAMFileUtil {
 	private static final Log log = Log.getInstance(SAMFileUtil.class);
@@ -115,6 +117,7 @@ public class SAMFileUtil {
 			}
 			log.info("Sorting " + unsorted);
 			SortingCollection<SAMRecord> collection = null;
+			OffHeapSortingCollection<SAMRecord> offHeapCollection = null;
 			if (tmpFile != output && tmpFile.exists()) {
 				FileHelper.delete(tmpFile, true);
 			}
@@ -127,21 +130,40 @@ public class SAMFileUtil {
 						header = headerCallback.apply(header);
 					}
 					try (CloseableIterator<SAMRecord> rit = reader.iterator()) {
-						collection = SortingCollection.newInstance(
-								SAMRecord.class,
-								new BAMRecordCodec(header),
-								sortComparator,
-								fsc.getMaxBufferedRecordsPerFile(),
-								fsc.getTemporaryDirectory().toPath());
-						while (rit.hasNext()) {
-							collection.add(rit.next());
+						ToLongFunction<SAMRecord> sortKey = getSortKey(sortComparator);
+						if (Defaults.USE_OFF_HEAP_SORT && sortKey != null) {
+							offHeapCollection = new OffHeapSortingCollection<>(
+									new BAMRecordCodec(header),
+									sortComparator,
+									sortKey,
+									getSortKeySuffix(sortComparator),
+									fsc.getMaxBufferedRecordsPerFile(),
+									Defaults.OFF_HEAP_SORT_BUFFER_SIZE,
+									fsc.getTemporaryDirectory().toPath());
+							while (rit.hasNext()) {
+								offHeapCollection.add(rit.next());
+							}
+						} else {
+							collection = SortingCollection.newInstance(
+									SAMRecord.class,
+									new BAMRecordCodec(header),
+									sortComparator,
+									fsc.getMaxBufferedRecordsPerFile(),
+									fsc.getTemporaryDirectory().toPath());
+							while (rit.hasNext()) {
+								collection.add(rit.next());
+							}
 						}
 					}
 				}
-				collection.doneAdding();
+				if (offHeapCollection != null) {
+					offHeapCollection.doneAdding();
+				} else {
+					collection.doneAdding();
+				}
 				try (SAMFileWriter writer = writerFactory.makeSAMOrBAMWriter(header, true, tmpFile)) {
 					writer.setProgressLogger(new ProgressLogger(log, 10000000));
-					try (CloseableIterator<SAMRecord> wit = collection.iterator()) {
+					try (CloseableIterator<SAMRecord> wit = offHeapCollection != null ? offHeapCollection.iterator() : collection.iterator()) {
 						@SuppressWarnings("resource") // bad eclipse warning 
 						Iterator<SAMRecord> it = wit;
 				    	if (Defaults.SANITY_CHECK_ITERATORS) {
@@ -152,13 +174,19 @@ public class SAMFileUtil {
 						}
 					}
 				}
-				collection.cleanup();
-				collection = null;
+				if (offHeapCollection != null) {
+					offHeapCollection.cleanup();
+					offHeapCollection = null;
+				} else {
+					collection.cleanup();
+					collection = null;
+				}
 				if (tmpFile != output) {
 					FileHelper.move(tmpFile, output, true);
 				}
 			} finally {
 				if (collection != null) collection.cleanup();
+				if (offHeapCollection != null) offHeapCollection.cleanup();
 				if (tmpFile != output & tmpFile.exists()) {
 					FileHelper.delete(tmpFile, true);
 				}
@@ -166,6 +194,86 @@ public class SAMFileUtil {
 			return null;
 		}
 	}
+	/**
+	 * Primitive sort key consistent with the given comparator.
+	 * @return sort key, null if no such key is known for the comparator
+	 */
+	private static ToLongFunction<SAMRecord> getSortKey(SAMRecordComparator comparator) {
+		if (comparator.getClass() == SAMRecordCoordinateComparator.class) {
+			return SAMFileUtil::coordinateSortKey;
+		}
+		if (comparator.getClass() == SAMRecordQueryNameComparator.class) {
+			return SAMFileUtil::querynameSortKey;
+		}
+		return null;
+	}
+	private static Function<SAMRecord, byte[]> getSortKeySuffix(SAMRecordComparator comparator) {
+		if (comparator.getClass() == SAMRecordQueryNameComparator.class) {
+			return SAMFileUtil::querynameSortKeySuffix;
+		}
+		return null;
+	}
+	/**
+	 * Sort key consistent with {@link SAMRecordCoordinateComparator}.
+	 * Encodes the reference index, alignment start, and strand.
+	 */
+	public static long coordinateSortKey(SAMRecord r) {
+		long referenceIndex = r.getReferenceIndex();
+		if (referenceIndex == SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX) {
+			// unmapped reads sort last and are not ordered by alignment start
+			return (1L << 62) | (r.getReadNegativeStrandFlag() ? 1 : 0);
+		}
+		return (referenceIndex << 32) | ((long)r.getAlignmentStart() << 1) | (r.getReadNegativeStrandFlag() ? 1 : 0);
+	}
+	/**
+	 * Sort key consistent with {@link SAMRecordQueryNameComparator}.
+	 * Packs the first 8 bytes of the encoded read name.
+	 * The sign bit is flipped so signed comparison of the key
+	 * matches unsigned comparison of the encoded bytes.
+	 * @see #querynameSortKeySuffix(SAMRecord)
+	 */
+	public static long querynameSortKey(SAMRecord r) {
+		byte[] encoded = encodeReadName(r.getReadName());
+		long key = 0;
+		for (int i = 0; i < 8; i++) {
+			key = (key << 8) | (i < encoded.length ? encoded[i] & 0xFF : 0);
+		}
+		return key ^ Long.MIN_VALUE;
+	}
+	/**
+	 * Encoded read name beyond the bytes packed in {@link #querynameSortKey(SAMRecord)}.
+	 */
+	public static byte[] querynameSortKeySuffix(SAMRecord r) {
+		byte[] encoded = encodeReadName(r.getReadName());
+		if (encoded.length <= 8) return null;
+		return Arrays.copyOfRange(encoded, 8, encoded.length);
+	}
+	/**
+	 * Encodes the read name such that unsigned lexicographical ordering
+	 * of the encoding matches {@link String#compareTo(String)}.
+	 * Characters below 0xFF are encoded as a single byte, all other
+	 * characters as 0xFF followed by the two byte character value.
+	 */
+	private static byte[] encodeReadName(String name) {
+		if (name == null) return new byte[0];
+		int length = name.length();
+		for (int i = 0; i < name.length(); i++) {
+			if (name.charAt(i) >= 0xFF) length += 2;
+		}
+		byte[] encoded = new byte[length];
+		int offset = 0;
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			if (c < 0xFF) {
+				encoded[offset++] = (byte)c;
+			} else {
+				encoded[offset++] = (byte)0xFF;
+				encoded[offset++] = (byte)(c >>> 8);
+				encoded[offset++] = (byte)c;
+			}
+		}
+		return encoded;
+	}
 	private static SortOrder getSortOrder(SamReaderFactory readerFactory, File file) throws IOException {
 		try (SamReader reader = readerFactory.open(file)) {
 			return reader.getFileHeader().getSortOrder();
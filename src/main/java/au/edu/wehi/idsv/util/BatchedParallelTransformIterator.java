@@ -0,0 +1,223 @@
+package au.edu.wehi.idsv.util;
+
+import com.google.common.base.Throwables;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * Performs a given transformation operation over all elements of an iterator.
+ * The transform is applied to multiple iterator elements in parallel with
+ * the order of the resultant iteration unchanged.
+ *
+ * Unlike {@link ParallelTransformIterator}, elements are dispatched to the
+ * executor in batches. The batch size is adapted based on the measured
+ * per-element transform cost so each batch takes approximately the target
+ * batch time. This amortises the task submission overhead of cheap transforms
+ * whilst still spreading expensive transforms across all worker threads.
+ *
+ * Batches are held in a ring buffer indexed by batch ordinal so results are
+ * returned in order without any sorting of completed results.
+ *
+ * This class is not thread-safe and access from multiple threads should
+ * be synchronised.
+ */
+public class BatchedParallelTransformIterator<T, U> implements Iterator<U> {
+	public static final long DEFAULT_TARGET_BATCH_NANOS = 1000000;
+	public static final int DEFAULT_MAX_BATCH_SIZE = 4096;
+	/**
+	 * Weighting given to the most recent batch when estimating the per-element cost
+	 */
+	private static final double COST_SMOOTHING = 0.25;
+	private class Batch implements Runnable {
+		private final Object[] elements;
+		private final int size;
+		private long transformNanos;
+		private Throwable error;
+		private boolean done = false;
+		public Batch(Object[] elements, int size) {
+			this.elements = elements;
+			this.size = size;
+		}
+		@SuppressWarnings("unchecked")
+		@Override
+		public void run() {
+			long start = System.nanoTime();
+			Throwable error = null;
+			try {
+				for (int i = 0; i < size; i++) {
+					elements[i] = f.apply((T)elements[i]);
+				}
+			} catch (Throwable e) {
+				// errors must also be handed to the consumer otherwise await() never returns
+				error = e;
+			}
+			long elapsed = System.nanoTime() - start;
+			synchronized (this) {
+				this.transformNanos = elapsed;
+				this.error = error;
+				this.done = true;
+				notifyAll();
+			}
+		}
+		private synchronized void await() {
+			while (!done) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+			}
+			if (error != null) {
+				Throwables.throwIfUnchecked(error);
+				throw new RuntimeException(error);
+			}
+		}
+	}
+	private final Iterator<T> it;
+	private final Function<T, U> f;
+	private final Executor threadpool;
+	private final long targetBatchNanos;
+	private final int maxBatchSize;
+	/**
+	 * Dispatched batches. Batch n is stored at position n % ring.length
+	 */
+	private final Object[] ring;
+	/**
+	 * Ordinal of the batch currently being returned
+	 */
+	private long headBatch = 0;
+	/**
+	 * Ordinal of the next batch to dispatch
+	 */
+	private long nextBatch = 0;
+	private Batch current = null;
+	private int currentOffset = 0;
+	private int batchSize = 1;
+	private double nanosPerElement = -1;
+	private long elementCount = 0;
+	private long batchCount = 0;
+	private long transformNanos = 0;
+	/**
+	 * Instantiates a new iterator
+	 * @param it underlying iterator
+	 * @param f transform function
+	 * @param lookahead number of batches to process in parallel
+	 */
+	public BatchedParallelTransformIterator(final Iterator<T> it, final Function<T, U> f, final int lookahead, Executor threadpool) {
+		this(it, f, lookahead, threadpool, DEFAULT_TARGET_BATCH_NANOS, DEFAULT_MAX_BATCH_SIZE);
+	}
+	/**
+	 * Instantiates a new iterator
+	 * @param it underlying iterator
+	 * @param f transform function
+	 * @param lookahead number of batches to process in parallel
+	 * @param targetBatchNanos target time to transform each batch
+	 * @param maxBatchSize maximum number of elements in each batch
+	 */
+	public BatchedParallelTransformIterator(final Iterator<T> it, final Function<T, U> f, final int lookahead, Executor threadpool, long targetBatchNanos, int maxBatchSize) {
+		if (lookahead < 1) throw new IllegalArgumentException("lookahead must be positive");
+		if (maxBatchSize < 1) throw new IllegalArgumentException("maxBatchSize must be positive");
+		this.it = it;
+		this.f = f;
+		this.threadpool = threadpool;
+		this.targetBatchNanos = targetBatchNanos;
+		this.maxBatchSize = maxBatchSize;
+		this.ring = new Object[lookahead];
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (current != null && currentOffset < current.size) return true;
+		// the current batch is still held in the ring buffer
+		long pendingBatches = nextBatch - headBatch - (current == null ? 0 : 1);
+		return pendingBatches > 0 || it.hasNext();
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public U next() {
+		if (!hasNext()) throw new NoSuchElementException();
+		if (current == null || currentOffset >= current.size) {
+			advance();
+		}
+		U result = (U)current.elements[currentOffset];
+		current.elements[currentOffset] = null;
+		currentOffset++;
+		return result;
+	}
+	@SuppressWarnings("unchecked")
+	private void advance() {
+		if (current != null) {
+			ring[slot(headBatch)] = null;
+			headBatch++;
+			current = null;
+		}
+		dispatch();
+		Batch batch = (Batch)ring[slot(headBatch)];
+		batch.await();
+		updateStatistics(batch);
+		current = batch;
+		currentOffset = 0;
+	}
+	private int slot(long ordinal) {
+		return (int)(ordinal % ring.length);
+	}
+	/**
+	 * Dispatches batches until all ring buffer slots are in use
+	 */
+	private void dispatch() {
+		while (nextBatch - headBatch < ring.length && it.hasNext()) {
+			Object[] elements = new Object[batchSize];
+			int size = 0;
+			while (size < batchSize && it.hasNext()) {
+				elements[size++] = it.next();
+			}
+			Batch batch = new Batch(elements, size);
+			ring[slot(nextBatch)] = batch;
+			nextBatch++;
+			threadpool.execute(batch);
+		}
+	}
+	private void updateStatistics(Batch batch) {
+		elementCount += batch.size;
+		batchCount++;
+		transformNanos += batch.transformNanos;
+		double cost = (double)batch.transformNanos / batch.size;
+		nanosPerElement = nanosPerElement < 0 ? cost : COST_SMOOTHING * cost + (1 - COST_SMOOTHING) * nanosPerElement;
+		batchSize = (int)Math.max(1, Math.min(maxBatchSize, targetBatchNanos / Math.max(1, nanosPerElement)));
+	}
+	/**
+	 * Number of transformed elements returned from completed batches
+	 */
+	public long getElementCount() {
+		return elementCount;
+	}
+	/**
+	 * Number of completed batches
+	 */
+	public long getBatchCount() {
+		return batchCount;
+	}
+	/**
+	 * Total time spent by worker threads transforming completed batches
+	 */
+	public long getTransformNanos() {
+		return transformNanos;
+	}
+	/**
+	 * Number of elements that will be placed in the next dispatched batch
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+	/**
+	 * Transform throughput of a single worker thread in elements per second
+	 */
+	public double getElementsPerSecond() {
+		if (transformNanos == 0) return 0;
+		return elementCount * 1e9 / transformNanos;
+	}
+}
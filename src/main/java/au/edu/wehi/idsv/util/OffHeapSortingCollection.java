@@ -0,0 +1,486 @@
+package au.edu.wehi.idsv.util;
+
+import htsjdk.samtools.util.*;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+
+import java.io.*;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import java.util.zip.Deflater;
+
+/**
+ * External sort of records serialised into off-heap buffers.
+ *
+ * Unlike {@link SortingCollection}, records are not retained as java objects
+ * whilst buffered. Each record is encoded into a direct byte buffer and only
+ * a primitive sort key and the record location are retained on-heap. Records
+ * are sorted in parallel by sort key. Sort keys that do not fit in a long can
+ * be extended by a variable length suffix that is stored off-heap alongside
+ * the record and compared as unsigned bytes.
+ * When the buffer is full, the sorted records are spilled to a compressed run
+ * file and the final output is generated by a k-way merge of the runs.
+ *
+ * The sort key must be consistent with the comparator: if key(a) < key(b)
+ * then the comparator must order a before b. Runs of records with tied sort
+ * keys are decoded once each and ordered by the comparator, then by the order
+ * in which the records were added. Sort performance thus depends on the sort
+ * key being close to unique: comparators without such a key should use
+ * {@link SortingCollection} instead.
+ *
+ * @param <T> record type
+ */
+public class OffHeapSortingCollection<T> {
+	private static final Log log = Log.getInstance(OffHeapSortingCollection.class);
+	private static final int DEFAULT_BLOCK_SIZE = 16 * 1024 * 1024;
+	private static final int INITIAL_RECORD_CAPACITY = 1024;
+	private final SortingCollection.Codec<T> codec;
+	private final ThreadLocal<SortingCollection.Codec<T>> decodingCodec;
+	private final Comparator<T> comparator;
+	private final ToLongFunction<T> sortKey;
+	private final Function<T, byte[]> sortKeySuffix;
+	private final int maxRecordsInRam;
+	private final long maxBytesInRam;
+	private final int blockSize;
+	private final Path tmpDir;
+	private final ExposedByteArrayOutputStream staging = new ExposedByteArrayOutputStream();
+	private final List<ByteBuffer> blocks = new ArrayList<>();
+	private final List<File> runs = new ArrayList<>();
+	private final List<RunIterator> openRuns = new ArrayList<>();
+	private long[] key = new long[INITIAL_RECORD_CAPACITY];
+	private long[] location = new long[INITIAL_RECORD_CAPACITY];
+	private int[] length = new int[INITIAL_RECORD_CAPACITY];
+	private int[] suffixLength = new int[INITIAL_RECORD_CAPACITY];
+	private int size = 0;
+	private int currentBlock = 0;
+	private int currentOffset = 0;
+	private long bytesInRam = 0;
+	private boolean doneAdding = false;
+	private boolean iterated = false;
+
+	/**
+	 * @param codec record serialiser
+	 * @param comparator record sort order
+	 * @param sortKey primitive sort key consistent with the comparator
+	 * @param maxRecordsInRam maximum number of records to buffer before spilling to disk
+	 * @param maxBytesInRam maximum size of the off-heap record buffer
+	 * @param tmpDir directory to write spilled runs to
+	 */
+	public OffHeapSortingCollection(
+			SortingCollection.Codec<T> codec,
+			Comparator<T> comparator,
+			ToLongFunction<T> sortKey,
+			int maxRecordsInRam,
+			long maxBytesInRam,
+			Path tmpDir) {
+		this(codec, comparator, sortKey, null, maxRecordsInRam, maxBytesInRam, tmpDir);
+	}
+
+	/**
+	 * @param codec record serialiser
+	 * @param comparator record sort order
+	 * @param sortKey primitive sort key consistent with the comparator
+	 * @param sortKeySuffix bytes compared when the primitive sort key is tied. Can be null.
+	 * @param maxRecordsInRam maximum number of records to buffer before spilling to disk
+	 * @param maxBytesInRam maximum size of the off-heap record buffer
+	 * @param tmpDir directory to write spilled runs to
+	 */
+	public OffHeapSortingCollection(
+			SortingCollection.Codec<T> codec,
+			Comparator<T> comparator,
+			ToLongFunction<T> sortKey,
+			Function<T, byte[]> sortKeySuffix,
+			int maxRecordsInRam,
+			long maxBytesInRam,
+			Path tmpDir) {
+		if (maxRecordsInRam <= 0) throw new IllegalArgumentException("maxRecordsInRam must be positive");
+		if (maxBytesInRam <= 0) throw new IllegalArgumentException("maxBytesInRam must be positive");
+		this.codec = codec;
+		this.decodingCodec = ThreadLocal.withInitial(codec::clone);
+		this.comparator = comparator;
+		this.sortKey = sortKey;
+		this.sortKeySuffix = sortKeySuffix;
+		this.maxRecordsInRam = maxRecordsInRam;
+		this.maxBytesInRam = maxBytesInRam;
+		this.blockSize = (int)Math.min(DEFAULT_BLOCK_SIZE, maxBytesInRam);
+		this.tmpDir = tmpDir;
+		this.codec.setOutputStream(staging);
+	}
+
+	public void add(T record) {
+		if (doneAdding) throw new IllegalStateException("Cannot add after calling doneAdding()");
+		staging.reset();
+		byte[] suffix = sortKeySuffix == null ? null : sortKeySuffix.apply(record);
+		int recordSuffixLength = suffix == null ? 0 : suffix.length;
+		if (recordSuffixLength > 0) {
+			staging.write(suffix, 0, recordSuffixLength);
+		}
+		codec.encode(record);
+		int recordLength = staging.size() - recordSuffixLength;
+		if (size == maxRecordsInRam || (bytesInRam + staging.size() > maxBytesInRam && size > 0)) {
+			spill();
+		}
+		ensureRecordCapacity(size + 1);
+		key[size] = sortKey.applyAsLong(record);
+		location[size] = write(staging.buffer(), staging.size());
+		length[size] = recordLength;
+		suffixLength[size] = recordSuffixLength;
+		size++;
+	}
+
+	/**
+	 * Copies the sort key suffix and encoded record into the off-heap buffer
+	 * @return location of the sort key suffix in the buffer
+	 */
+	private long write(byte[] buffer, int entryLength) {
+		if (currentBlock < blocks.size() && blocks.get(currentBlock).capacity() - currentOffset < entryLength) {
+			currentBlock++;
+			currentOffset = 0;
+		}
+		if (currentBlock == blocks.size()) {
+			blocks.add(ByteBuffer.allocateDirect(Math.max(blockSize, entryLength)));
+		} else if (blocks.get(currentBlock).capacity() < entryLength) {
+			blocks.set(currentBlock, ByteBuffer.allocateDirect(entryLength));
+		}
+		ByteBuffer block = blocks.get(currentBlock);
+		// cast required for binary compatibility with Java 8
+		((Buffer)block).position(currentOffset);
+		block.put(buffer, 0, entryLength);
+		long entryLocation = ((long)currentBlock << 32) | currentOffset;
+		currentOffset += entryLength;
+		bytesInRam += entryLength;
+		return entryLocation;
+	}
+
+	private void ensureRecordCapacity(int capacity) {
+		if (capacity > key.length) {
+			int newCapacity = (int)Math.min(Math.max(capacity, 2L * key.length), Integer.MAX_VALUE - 8);
+			key = Arrays.copyOf(key, newCapacity);
+			location = Arrays.copyOf(location, newCapacity);
+			length = Arrays.copyOf(length, newCapacity);
+			suffixLength = Arrays.copyOf(suffixLength, newCapacity);
+		}
+	}
+
+	private T decode(int index) {
+		ByteBuffer buffer = blocks.get((int)(location[index] >>> 32)).duplicate();
+		int offset = (int)location[index] + suffixLength[index];
+		((Buffer)buffer).limit(offset + length[index]);
+		((Buffer)buffer).position(offset);
+		SortingCollection.Codec<T> c = decodingCodec.get();
+		c.setInputStream(new ByteBufferInputStream(buffer));
+		return c.decode();
+	}
+
+	/**
+	 * Compares the full sort key of the given records
+	 */
+	private int compareKey(int i, int j) {
+		int cmp = Long.compare(key[i], key[j]);
+		if (cmp == 0 && (suffixLength[i] != 0 || suffixLength[j] != 0)) {
+			ByteBuffer bi = blocks.get((int)(location[i] >>> 32));
+			ByteBuffer bj = blocks.get((int)(location[j] >>> 32));
+			int oi = (int)location[i];
+			int oj = (int)location[j];
+			int n = Math.min(suffixLength[i], suffixLength[j]);
+			for (int k = 0; k < n && cmp == 0; k++) {
+				cmp = Integer.compare(bi.get(oi + k) & 0xFF, bj.get(oj + k) & 0xFF);
+			}
+			if (cmp == 0) {
+				cmp = Integer.compare(suffixLength[i], suffixLength[j]);
+			}
+		}
+		return cmp;
+	}
+
+	/**
+	 * @return record indices in sort order
+	 */
+	private int[] sortBuffer() {
+		int[] order = new int[size];
+		for (int i = 0; i < size; i++) {
+			order[i] = i;
+		}
+		IntArrays.parallelQuickSort(order, 0, size, (i, j) -> {
+			int cmp = compareKey(i, j);
+			if (cmp == 0) {
+				cmp = Integer.compare(i, j);
+			}
+			return cmp;
+		});
+		// order runs of tied sort keys by the comparator, decoding each record only once
+		List<T> tied = new ArrayList<>();
+		List<Integer> tiedOrder = new ArrayList<>();
+		int start = 0;
+		while (start < size) {
+			int end = start + 1;
+			while (end < size && compareKey(order[start], order[end]) == 0) {
+				end++;
+			}
+			if (end - start > 1) {
+				tied.clear();
+				tiedOrder.clear();
+				for (int i = start; i < end; i++) {
+					tied.add(decode(order[i]));
+					tiedOrder.add(i - start);
+				}
+				// stable sort retains insertion order of records the comparator considers equal
+				tiedOrder.sort((a, b) -> comparator.compare(tied.get(a), tied.get(b)));
+				int[] runOrder = Arrays.copyOfRange(order, start, end);
+				for (int i = start; i < end; i++) {
+					order[i] = runOrder[tiedOrder.get(i - start)];
+				}
+			}
+			start = end;
+		}
+		return order;
+	}
+
+	private void spill() {
+		int[] order = sortBuffer();
+		File file;
+		try {
+			file = Files.createTempFile(tmpDir, "gridss.tmp.sort.", ".run").toFile();
+		} catch (IOException e) {
+			throw new RuntimeIOException(e);
+		}
+		runs.add(file);
+		byte[] buffer = new byte[4096];
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new BlockCompressedOutputStream(file, Deflater.BEST_SPEED)))) {
+			for (int i : order) {
+				int entryLength = suffixLength[i] + length[i];
+				if (entryLength > buffer.length) {
+					buffer = new byte[entryLength];
+				}
+				ByteBuffer block = blocks.get((int)(location[i] >>> 32)).duplicate();
+				((Buffer)block).position((int)location[i]);
+				block.get(buffer, 0, entryLength);
+				out.writeLong(key[i]);
+				out.writeInt(suffixLength[i]);
+				out.write(buffer, 0, suffixLength[i]);
+				out.writeInt(length[i]);
+				out.write(buffer, suffixLength[i], length[i]);
+			}
+		} catch (IOException e) {
+			throw new RuntimeIOException(e);
+		}
+		log.debug(String.format("Spilled %d records to %s", size, file));
+		size = 0;
+		currentBlock = 0;
+		currentOffset = 0;
+		bytesInRam = 0;
+	}
+
+	public void doneAdding() {
+		if (doneAdding) return;
+		doneAdding = true;
+		if (!runs.isEmpty()) {
+			if (size > 0) {
+				spill();
+			}
+			blocks.clear();
+		}
+	}
+
+	/**
+	 * Returns the records in sort order. Can only be called once.
+	 */
+	public CloseableIterator<T> iterator() {
+		if (!doneAdding) throw new IllegalStateException("Call doneAdding() before iterating");
+		if (iterated) throw new IllegalStateException("iterator() can only be called once");
+		iterated = true;
+		if (runs.isEmpty()) {
+			return new InMemoryIterator(sortBuffer());
+		}
+		return new MergingIterator();
+	}
+
+	/**
+	 * Releases the off-heap buffer and deletes all spilled runs
+	 */
+	public void cleanup() {
+		for (RunIterator it : openRuns) {
+			it.close();
+		}
+		openRuns.clear();
+		for (File f : runs) {
+			try {
+				FileHelper.delete(f, true);
+			} catch (IOException e) {
+				log.warn(e, "Unable to delete " + f);
+			}
+		}
+		runs.clear();
+		blocks.clear();
+		key = new long[0];
+		location = new long[0];
+		length = new int[0];
+		suffixLength = new int[0];
+		size = 0;
+	}
+
+	private class InMemoryIterator implements CloseableIterator<T> {
+		private final int[] order;
+		private int offset = 0;
+		private InMemoryIterator(int[] order) {
+			this.order = order;
+		}
+		@Override
+		public boolean hasNext() {
+			return offset < order.length;
+		}
+		@Override
+		public T next() {
+			if (!hasNext()) throw new NoSuchElementException();
+			return decode(order[offset++]);
+		}
+		@Override
+		public void close() {
+			offset = order.length;
+		}
+	}
+
+	private class RunIterator implements Closeable {
+		private final int runIndex;
+		private final DataInputStream in;
+		private final SortingCollection.Codec<T> runCodec = codec.clone();
+		private byte[] buffer = new byte[4096];
+		private long currentKey;
+		private byte[] currentSuffix = new byte[0];
+		private T current;
+		private RunIterator(int runIndex, File file) throws IOException {
+			this.runIndex = runIndex;
+			this.in = new DataInputStream(new BlockCompressedInputStream(file));
+			advance();
+		}
+		private void advance() throws IOException {
+			try {
+				currentKey = in.readLong();
+			} catch (EOFException e) {
+				current = null;
+				return;
+			}
+			int currentSuffixLength = in.readInt();
+			if (currentSuffixLength != currentSuffix.length) {
+				currentSuffix = new byte[currentSuffixLength];
+			}
+			in.readFully(currentSuffix);
+			int recordLength = in.readInt();
+			if (recordLength > buffer.length) {
+				buffer = new byte[recordLength];
+			}
+			in.readFully(buffer, 0, recordLength);
+			runCodec.setInputStream(new ByteArrayInputStream(buffer, 0, recordLength));
+			current = runCodec.decode();
+		}
+		@Override
+		public void close() {
+			CloserUtil.close(in);
+		}
+	}
+
+	private class MergingIterator implements CloseableIterator<T> {
+		private final PriorityQueue<RunIterator> queue = new PriorityQueue<>(Math.max(1, runs.size()), (a, b) -> {
+			int cmp = Long.compare(a.currentKey, b.currentKey);
+			if (cmp == 0) {
+				cmp = compareUnsigned(a.currentSuffix, b.currentSuffix);
+			}
+			if (cmp == 0) {
+				cmp = comparator.compare(a.current, b.current);
+				if (cmp == 0) {
+					cmp = Integer.compare(a.runIndex, b.runIndex);
+				}
+			}
+			return cmp;
+		});
+		private MergingIterator() {
+			try {
+				for (int i = 0; i < runs.size(); i++) {
+					RunIterator it = new RunIterator(i, runs.get(i));
+					openRuns.add(it);
+					if (it.current != null) {
+						queue.add(it);
+					}
+				}
+			} catch (IOException e) {
+				throw new RuntimeIOException(e);
+			}
+		}
+		@Override
+		public boolean hasNext() {
+			return !queue.isEmpty();
+		}
+		@Override
+		public T next() {
+			if (!hasNext()) throw new NoSuchElementException();
+			RunIterator it = queue.poll();
+			T result = it.current;
+			try {
+				it.advance();
+			} catch (IOException e) {
+				throw new RuntimeIOException(e);
+			}
+			if (it.current != null) {
+				queue.add(it);
+			}
+			return result;
+		}
+		@Override
+		public void close() {
+			queue.clear();
+			for (RunIterator it : openRuns) {
+				it.close();
+			}
+		}
+	}
+
+	private static int compareUnsigned(byte[] a, byte[] b) {
+		int n = Math.min(a.length, b.length);
+		for (int i = 0; i < n; i++) {
+			int cmp = Integer.compare(a[i] & 0xFF, b[i] & 0xFF);
+			if (cmp != 0) return cmp;
+		}
+		return Integer.compare(a.length, b.length);
+	}
+
+	private static class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+		public ExposedByteArrayOutputStream() {
+			super(4096);
+		}
+		public byte[] buffer() {
+			return buf;
+		}
+	}
+
+	private static class ByteBufferInputStream extends InputStream {
+		private final ByteBuffer buffer;
+		public ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+		}
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (len == 0) return 0;
+			if (!buffer.hasRemaining()) return -1;
+			int n = Math.min(len, buffer.remaining());
+			buffer.get(b, off, n);
+			return n;
+		}
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+	}
+}
@@ -1,14 +1,19 @@
 package au.edu.wehi.idsv.vcf;
 
+import au.edu.wehi.idsv.alignment.MinimizerIndex;
 import au.edu.wehi.idsv.alignment.StreamingAligner;
 import au.edu.wehi.idsv.alignment.StreamingAlignerIterator;
+import au.edu.wehi.idsv.picard.ReferenceLookup;
 import au.edu.wehi.idsv.util.AutoClosingIterator;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.PeekingIterator;
+import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMTag;
 import htsjdk.samtools.fastq.FastqRecord;
 import htsjdk.samtools.util.CloseableIterator;
 import htsjdk.samtools.util.Log;
+import htsjdk.samtools.util.SequenceUtil;
 import htsjdk.variant.variantcontext.Allele;
 import htsjdk.variant.variantcontext.VariantContext;
 import htsjdk.variant.variantcontext.VariantContextBuilder;
@@ -22,11 +27,19 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class InsertedSequenceAnnotator implements CloseableIterator<VariantContext> {
 	public static final byte DEFAULT_QUAL_SCORE = 20;
+	/**
+	 * Maximum number of reference positions of each minimizer to check when looking for exact matches
+	 */
+	private static final int MAX_EXACT_MATCH_CANDIDATES = 64;
 	private static final Log log = Log.getInstance(InsertedSequenceAnnotator.class);
 	private static final Pattern breakendRegex = Pattern.compile("^(.(?<leftins>.*))?[\\[\\]].*[\\[\\]]((?<rightins>.*).)?$");
 	private final File vcf;
@@ -37,8 +50,34 @@ public class InsertedSequenceAnnotator implements CloseableIterator<VariantConte
 	private PeekingIterator<SAMRecord> alignerStream;
 	private Thread feedingAligner;
 	private VariantContext nextRecord = null;
+	private final MinimizerIndex exactMatchIndex;
+	private final ReferenceLookup reference;
+	private final SAMFileHeader exactMatchHeader;
+	/**
+	 * Exact match of each alignable record, in VCF order. Exact matches are determined
+	 * by the aligner feeding thread as it decides which records need to be aligned.
+	 */
+	private final BlockingQueue<Optional<SAMRecord>> exactMatches = new LinkedBlockingQueue<>();
 	public InsertedSequenceAnnotator(File vcf, StreamingAligner aligner, int minRealignmentLength, boolean stripExistingBEALN, boolean skipExistingBEALN) {
+		this(vcf, aligner, minRealignmentLength, stripExistingBEALN, skipExistingBEALN, null, null);
+	}
+	/**
+	 * @param exactMatchIndex reference genome minimizer index. Sequences with a unique exact match to the
+	 *                        reference and no alternate alignment that bwa would report are annotated
+	 *                        directly without being sent to the aligner.
+	 *                        Exact matching is not performed if null.
+	 * @param reference reference genome of the minimizer index
+	 */
+	public InsertedSequenceAnnotator(File vcf, StreamingAligner aligner, int minRealignmentLength, boolean stripExistingBEALN, boolean skipExistingBEALN, MinimizerIndex exactMatchIndex, ReferenceLookup reference) {
 		this.vcf = vcf;
+		this.exactMatchIndex = exactMatchIndex;
+		this.reference = reference;
+		if (exactMatchIndex != null) {
+			this.exactMatchHeader = new SAMFileHeader();
+			this.exactMatchHeader.setSequenceDictionary(reference.getSequenceDictionary());
+		} else {
+			this.exactMatchHeader = null;
+		}
 		this.minRealignmentLength = minRealignmentLength;
 		this.stripExistingBEALN = stripExistingBEALN;
 		this.skipExistingBEALN = skipExistingBEALN;
@@ -85,6 +124,35 @@ public class InsertedSequenceAnnotator implements CloseableIterator<VariantConte
 	private boolean shouldSkipRecord(VariantContext vc) {
 		return skipExistingBEALN && vc.hasAttribute(VcfInfoAttributes.BREAKEND_ALIGNMENTS.attribute());
 	}
+	private byte[] getAlignableSequence(VariantContext vc) {
+		String seqstr = getBreakendSequence(vc);
+		if (!Strings.isNullOrEmpty(seqstr) && seqstr.length() >= minRealignmentLength) {
+			return seqstr.getBytes(StandardCharsets.UTF_8);
+		}
+		return null;
+	}
+	/**
+	 * Gets the alignment of the given sequence if it has a unique exact match to the reference.
+	 * @return exact match alignment, null if the sequence needs to be aligned by the aligner
+	 */
+	private SAMRecord getExactMatch(VariantContext vc, byte[] seq) {
+		MinimizerIndex.UniqueExactMatch match = exactMatchIndex.findUniqueExactMatch(reference, seq, MAX_EXACT_MATCH_CANDIDATES);
+		if (match == null) return null;
+		SAMRecord r = new SAMRecord(exactMatchHeader);
+		r.setReadName(vc.getID());
+		byte[] bases = Arrays.copyOf(seq, seq.length);
+		if (match.negativeStrand) {
+			SequenceUtil.reverseComplement(bases);
+			r.setReadNegativeStrandFlag(true);
+		}
+		r.setReadBases(bases);
+		r.setReferenceIndex(match.referenceIndex);
+		r.setAlignmentStart(match.start);
+		r.setCigarString(seq.length + "M");
+		r.setMappingQuality(match.mapq);
+		r.setAttribute(SAMTag.NM.name(), 0);
+		return r;
+	}
 	private void feedStreamingAligner(StreamingAlignerIterator wrapper, StreamingAligner aligner) {
 		try {
 			try (CloseableIterator<VariantContext> it = getVcf()) {
@@ -93,9 +161,13 @@ public class InsertedSequenceAnnotator implements CloseableIterator<VariantConte
 					if (shouldSkipRecord(vc)) {
 						// skip this record
 					} else {
-						String seqstr = getBreakendSequence(vc);
-						if (!Strings.isNullOrEmpty(seqstr) && seqstr.length() >= minRealignmentLength) {
-							byte[] seq = seqstr.getBytes(StandardCharsets.UTF_8);
+						byte[] seq = getAlignableSequence(vc);
+						SAMRecord exactMatch = null;
+						if (seq != null && exactMatchIndex != null) {
+							exactMatch = getExactMatch(vc, seq);
+							exactMatches.add(Optional.ofNullable(exactMatch));
+						}
+						if (seq != null && exactMatch == null) {
 							byte[] qual = new byte[seq.length];
 							Arrays.fill(qual, DEFAULT_QUAL_SCORE);
 							FastqRecord fq = new FastqRecord(vc.getID(), seq, null, qual);
@@ -156,10 +228,16 @@ public class InsertedSequenceAnnotator implements CloseableIterator<VariantConte
 	private void annotateNextRecord() {
 		String readName = nextRecord.getID();
 		List<SAMRecord> alignments = new ArrayList<>();
-		while (alignerStream.hasNext() && alignerStream.peek().getReadName().equals(readName)) {
-			SAMRecord r = alignerStream.next();
-			if (!r.getReadUnmappedFlag()) {
-				alignments.add(r);
+		byte[] seq = getAlignableSequence(nextRecord);
+		SAMRecord exactMatch = seq == null || exactMatchIndex == null ? null : takeExactMatch();
+		if (exactMatch != null) {
+			alignments.add(exactMatch);
+		} else {
+			while (alignerStream.hasNext() && alignerStream.peek().getReadName().equals(readName)) {
+				SAMRecord r = alignerStream.next();
+				if (!r.getReadUnmappedFlag()) {
+					alignments.add(r);
+				}
 			}
 		}
 		VariantContextBuilder builder = new VariantContextBuilder(nextRecord);
@@ -177,6 +255,20 @@ public class InsertedSequenceAnnotator implements CloseableIterator<VariantConte
 		}
 		nextRecord = builder.make();
 	}
+	private SAMRecord takeExactMatch() {
+		try {
+			while (true) {
+				Optional<SAMRecord> match = exactMatches.poll(1, TimeUnit.SECONDS);
+				if (match != null) return match.orElse(null);
+				if (!feedingAligner.isAlive() && exactMatches.isEmpty()) {
+					throw new IllegalStateException("Aligner feeder thread terminated before all records were processed.");
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+	}
 	public static List<String> writeAlignmentAnnotation(List<SAMRecord> alignments) {
 		List<String> aln = new ArrayList<>(alignments.size());
 		for (SAMRecord r : alignments) {
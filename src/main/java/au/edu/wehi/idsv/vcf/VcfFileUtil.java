@@ -1,11 +1,13 @@
 package au.edu.wehi.idsv.vcf;
 
+import au.edu.wehi.idsv.Defaults;
 import au.edu.wehi.idsv.FileSystemContext;
 import au.edu.wehi.idsv.IdsvVariantContext;
 import au.edu.wehi.idsv.IntermediateFileUtil;
 import au.edu.wehi.idsv.ProcessingContext;
 import au.edu.wehi.idsv.util.AsyncBufferedIterator;
 import au.edu.wehi.idsv.util.FileHelper;
+import au.edu.wehi.idsv.util.OffHeapSortingCollection;
 import htsjdk.samtools.SAMSequenceDictionary;
 import htsjdk.samtools.util.CloseableIterator;
 import htsjdk.samtools.util.Log;
@@ -23,6 +25,7 @@ import java.io.IOException;
 import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.function.ToLongFunction;
 
 public class VcfFileUtil {
 	private static final Log log = Log.getInstance(VcfFileUtil.class);
@@ -59,18 +62,20 @@ public class VcfFileUtil {
 		private final File input;
 		private final File output;
 		private final Comparator<VariantContext> sortComparator;
+		private final ToLongFunction<VariantContext> sortKey;
 		private final boolean indexed;
 		public SortCallable(ProcessingContext processContext, File input, File output) {
-			this(processContext, input, output, IdsvVariantContext.VariantContextByLocationStart(processContext.getDictionary()));
+			this(processContext, input, output, IdsvVariantContext.VariantContextByLocationStart(processContext.getDictionary()), locationSortKey(processContext.getDictionary()), false);
 		}
 		public SortCallable(ProcessingContext processContext, File input, File output, Comparator<VariantContext> sortComparator) {
-			this(processContext, input, output, sortComparator, false);
+			this(processContext, input, output, sortComparator, null, false);
 		}
-		private SortCallable(ProcessingContext processContext, File input, File output, Comparator<VariantContext> sortComparator, boolean writeIndex) {
+		private SortCallable(ProcessingContext processContext, File input, File output, Comparator<VariantContext> sortComparator, ToLongFunction<VariantContext> sortKey, boolean writeIndex) {
 			this.processContext = processContext;
 			this.input = input;
 			this.output = output;
 			this.sortComparator = sortComparator;
+			this.sortKey = sortKey;
 			this.indexed = writeIndex;
 		}
 		@Override
@@ -81,6 +86,7 @@ public class VcfFileUtil {
 			}
 			log.info("Sorting to " + output);
 			SortingCollection<VariantContext> collection = null;
+			OffHeapSortingCollection<VariantContext> offHeapCollection = null;
 			File tmpout = gridss.Defaults.OUTPUT_TO_TEMP_FILE ? FileSystemContext.getWorkingFileFor(output, "gridss.tmp.sorting.") : output;
 			if (tmpout != output && tmpout.exists()) {
 				FileHelper.delete(tmpout, true);
@@ -89,32 +95,55 @@ public class VcfFileUtil {
 				try (VCFFileReader reader = new VCFFileReader(input, false)) {
 					VCFHeader header = reader.getFileHeader();
 					try (CloseableIterator<VariantContext> rit = reader.iterator()) {
-						collection = SortingCollection.newInstance(
-								VariantContext.class,
-								new VCFRecordCodec(header),
-								sortComparator,
-								processContext.getFileSystemContext().getMaxBufferedRecordsPerFile(),
-								processContext.getFileSystemContext().getTemporaryDirectory().toPath());
-						while (rit.hasNext()) {
-							collection.add(rit.next());
+						if (Defaults.USE_OFF_HEAP_SORT && sortKey != null) {
+							offHeapCollection = new OffHeapSortingCollection<>(
+									new VCFRecordCodec(header),
+									sortComparator,
+									sortKey,
+									processContext.getFileSystemContext().getMaxBufferedRecordsPerFile(),
+									Defaults.OFF_HEAP_SORT_BUFFER_SIZE,
+									processContext.getFileSystemContext().getTemporaryDirectory().toPath());
+							while (rit.hasNext()) {
+								offHeapCollection.add(rit.next());
+							}
+						} else {
+							collection = SortingCollection.newInstance(
+									VariantContext.class,
+									new VCFRecordCodec(header),
+									sortComparator,
+									processContext.getFileSystemContext().getMaxBufferedRecordsPerFile(),
+									processContext.getFileSystemContext().getTemporaryDirectory().toPath());
+							while (rit.hasNext()) {
+								collection.add(rit.next());
+							}
 						}
 					}
 				}
-				collection.doneAdding();
+				if (offHeapCollection != null) {
+					offHeapCollection.doneAdding();
+				} else {
+					collection.doneAdding();
+				}
 				try (VariantContextWriter writer = processContext.getVariantContextWriter(tmpout, indexed)) {
-			    	try (CloseableIterator<VariantContext> wit = collection.iterator()) {
+			    	try (CloseableIterator<VariantContext> wit = offHeapCollection != null ? offHeapCollection.iterator() : collection.iterator()) {
 						while (wit.hasNext()) {
 							writer.add(wit.next());
 						}
 			    	}
 				}
-				collection.cleanup();
-				collection = null;
+				if (offHeapCollection != null) {
+					offHeapCollection.cleanup();
+					offHeapCollection = null;
+				} else {
+					collection.cleanup();
+					collection = null;
+				}
 				if (tmpout != output) {
 					FileHelper.move(tmpout, output, true);
 				}
 			} finally {
 				if (collection != null) collection.cleanup();
+				if (offHeapCollection != null) offHeapCollection.cleanup();
 				if (tmpout != output & tmpout.exists()) {
 					FileHelper.delete(tmpout, true);
 				}
@@ -122,6 +151,12 @@ public class VcfFileUtil {
 			return null;
 		}
 	}
+	/**
+	 * Sort key consistent with {@link IdsvVariantContext#VariantContextByLocationStart(SAMSequenceDictionary)}
+	 */
+	private static ToLongFunction<VariantContext> locationSortKey(SAMSequenceDictionary dictionary) {
+		return vc -> ((long)(dictionary.getSequenceIndex(vc.getContig()) + 1) << 32) | ((long)vc.getEnd() - Integer.MIN_VALUE);
+	}
 	/**
 	 * Concatenates the input files in order.
 	 * @param input input files.
@@ -12,6 +12,7 @@ import au.edu.wehi.idsv.validation.PairedEvidenceTracker;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterators;
 import gridss.cmdline.VcfTransformCommandLineProgram;
+import htsjdk.samtools.QueryInterval;
 import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.SAMRecordCoordinateComparator;
 import htsjdk.samtools.SAMRecordIterator;
@@ -72,19 +73,50 @@ public class AllocateEvidence extends VcfTransformCommandLineProgram {
 		}
 		return evidenceIt;
 	}
+	/**
+	 * Read evidence overlapping the given intervals
+	 */
+	public CloseableIterator<DirectedEvidence> getReadIterator(QueryInterval[] intervals) {
+		List<SAMEvidenceSource> sources = getSamEvidenceSources();
+		return SAMEvidenceSource.mergedIterator(ImmutableList.<SAMEvidenceSource>builder().addAll(sources).build(), intervals, SAMEvidenceSource.EvidenceSortOrder.EvidenceStartPosition);
+	}
+	/**
+	 * Assembly evidence overlapping the given intervals
+	 */
+	public CloseableIterator<DirectedEvidence> getAssemblyIterator(QueryInterval[] intervals) {
+		return new AggregateEvidenceSource(getContext(), getAssemblySource(), null, SAMEvidenceSource.EvidenceSortOrder.EvidenceStartPosition).iterator(intervals);
+	}
 	@Override
 	public CloseableIterator<VariantContextDirectedEvidence> iterator(CloseableIterator<VariantContextDirectedEvidence> calls, ExecutorService threadpool) {
 		log.info("Allocating evidence"); 
+		int maxCallWindowSize = SAMEvidenceSource.maximumWindowSize(getContext(), getSamEvidenceSources(), getAssemblySource());
+		if (Defaults.PARALLEL_EVIDENCE_ALLOCATION && threadpool != null && !Defaults.SANITY_CHECK_ITERATORS) {
+			getSamEvidenceSources().stream().forEach(ses -> ses.assertPreprocessingComplete());
+			List<QueryInterval[]> windows = getContext().getReference().getIntervals(getContext().getConfig().chunkSize, getContext().getConfig().chunkSequenceChangePenalty);
+			WindowedEvidenceAllocator annotator = new WindowedEvidenceAllocator(getContext(), calls, windows,
+					intervals -> annotateAssembly(getReadIterator(intervals), intervals),
+					intervals -> getAssemblyIterator(intervals),
+					maxCallWindowSize, true, threadpool, getContext().getWorkerThreadCount() + 1);
+			Iterator<VariantContextDirectedEvidence> it = Iterators.transform(annotator, bp -> annotate(bp));
+			it = Iterators.filter(it, v -> v != null);
+			return new AutoClosingIterator<>(it, calls, annotator);
+		}
 		CloseableIterator<DirectedEvidence> rawReads = new AsyncBufferedIterator<>(getReadIterator(), "mergedReads-allocation");
-		CloseableIterator<DirectedEvidence> reads = new AsyncBufferedIterator<>(annotateAssembly(rawReads), "annotate-associated-assembly");
+		CloseableIterator<DirectedEvidence> reads = new AsyncBufferedIterator<>(annotateAssembly(rawReads, null), "annotate-associated-assembly");
 		CloseableIterator<DirectedEvidence> assemblies = new AsyncBufferedIterator<>(getAssemblyIterator(), "assembly-allocation");
-		Iterator<VariantEvidenceSupport> annotator = new SequentialEvidenceAllocator(getContext(), calls, reads, assemblies, SAMEvidenceSource.maximumWindowSize(getContext(), getSamEvidenceSources(), getAssemblySource()), true);
+		Iterator<VariantEvidenceSupport> annotator = new SequentialEvidenceAllocator(getContext(), calls, reads, assemblies, maxCallWindowSize, true);
 		CloseableIterator<VariantEvidenceSupport> bufferedAnnotator = new AsyncBufferedIterator<>(annotator, "annotator", 2, 8);
 		Iterator<VariantContextDirectedEvidence> it = Iterators.transform(bufferedAnnotator, bp -> annotate(bp));
 		it = Iterators.filter(it, v -> v != null);
 		return new AutoClosingIterator<>(it, calls, rawReads, reads, assemblies, bufferedAnnotator);
 	}
-	private CloseableIterator<DirectedEvidence> annotateAssembly(CloseableIterator<DirectedEvidence> it) {
+	/**
+	 * Annotates reads with the assemblies they were assembled into
+	 * @param it read evidence
+	 * @param intervals intervals the read evidence was extracted from. null if the
+	 * read evidence is from the entire genome.
+	 */
+	private CloseableIterator<DirectedEvidence> annotateAssembly(CloseableIterator<DirectedEvidence> it, QueryInterval[] intervals) {
 		List<Closeable> assToClose = new ArrayList<>();
 		List<Iterator<SAMRecord>> rawAssemblies = new ArrayList<>();
 		int windowSize = 0;
@@ -103,12 +135,25 @@ public class AllocateEvidence extends VcfTransformCommandLineProgram {
 			// defensive over-eager loading
 			windowSize *= 2;
 			SamReader reader = getContext().getSamReader(assemblyFile);
-			SAMRecordIterator assit = reader.iterator();
+			Iterator<SAMRecord> assit;
+			if (intervals == null) {
+				SAMRecordIterator samit = reader.iterator();
+				assToClose.add(samit);
+				assit = samit;
+			} else {
+				QueryInterval[] assemblyIntervals = QueryIntervalUtil.padIntervals(getContext().getDictionary(), intervals, windowSize);
+				SAMRecordIterator samit = reader.hasIndex() ? reader.queryOverlapping(assemblyIntervals) : reader.iterator();
+				assToClose.add(samit);
+				assit = Iterators.filter(samit, r -> r.getReferenceIndex() != SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX
+						&& QueryIntervalUtil.overlaps(assemblyIntervals, r.getReferenceIndex(), r.getAlignmentStart(), Math.max(r.getAlignmentStart(), r.getAlignmentEnd())));
+			}
 			rawAssemblies.add(assit);
-			assToClose.add(assit);
 			assToClose.add(reader);
 		}
 		AutoClosingMergedIterator mergedAssemblies = new AutoClosingMergedIterator(rawAssemblies, new SAMRecordCoordinateOnlyComparator());
+		if (intervals != null) {
+			assToClose.add(it);
+		}
 		return new AutoClosingIterator<>(new AssemblyAssociator(it, mergedAssemblies, windowSize), assToClose.toArray(new Closeable[0]));
 	}
 	private VariantContextDirectedEvidence annotate(VariantEvidenceSupport ves) {
@@ -1,25 +1,31 @@
 package gridss;
 
-import au.edu.wehi.idsv.VariantContextDirectedBreakpoint;
 import au.edu.wehi.idsv.VariantContextDirectedEvidence;
 import au.edu.wehi.idsv.alignment.BreakpointHomology;
 import au.edu.wehi.idsv.util.AutoClosingIterator;
+import au.edu.wehi.idsv.util.BatchingIterator;
+import au.edu.wehi.idsv.util.FlatMapIterator;
 import au.edu.wehi.idsv.util.ParallelTransformIterator;
 import gridss.cmdline.VcfTransformCommandLineProgram;
 import htsjdk.samtools.util.CloseableIterator;
 
 import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 
 public class AnnotateInexactHomology extends VcfTransformCommandLineProgram {
+	/**
+	 * Number of calls aligned by each homology annotation task
+	 */
+	private static final int BATCH_SIZE = 64;
 	@Override
 	public CloseableIterator<VariantContextDirectedEvidence> iterator(CloseableIterator<VariantContextDirectedEvidence> calls, ExecutorService threadpool) {
-		Iterator<VariantContextDirectedEvidence> it = new ParallelTransformIterator<VariantContextDirectedEvidence, VariantContextDirectedEvidence>(
-				calls,
-				call -> (call instanceof VariantContextDirectedBreakpoint) ? BreakpointHomology.annotate(getContext(), (VariantContextDirectedBreakpoint)call) : call,
+		Iterator<List<VariantContextDirectedEvidence>> it = new ParallelTransformIterator<List<VariantContextDirectedEvidence>, List<VariantContextDirectedEvidence>>(
+				new BatchingIterator<>(calls, BATCH_SIZE),
+				batch -> BreakpointHomology.annotate(getContext(), batch),
 				WORKER_THREADS + 1,
 				threadpool);
-		return new AutoClosingIterator<>(it, calls);
+		return new AutoClosingIterator<>(new FlatMapIterator<>(it), calls);
 	}
 	public static void main(String[] argv) {
         System.exit(new AnnotateInexactHomology().instanceMain(argv));
@@ -5,7 +5,7 @@ import au.edu.wehi.idsv.alignment.BreakpointHomology;
 import au.edu.wehi.idsv.bed.BedpeIterator;
 import au.edu.wehi.idsv.bed.BedpeRecord;
 import au.edu.wehi.idsv.bed.BedpeWriter;
-import au.edu.wehi.idsv.util.ParallelTransformIterator;
+import au.edu.wehi.idsv.util.BatchedParallelTransformIterator;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import gridss.cmdline.ReferenceCommandLineProgram;
 import htsjdk.samtools.SAMSequenceDictionary;
@@ -72,7 +72,7 @@ public class AnnotateInexactHomologyBedpe extends ReferenceCommandLineProgram {
 		SAMSequenceDictionary dict = getReference().getSequenceDictionary();
 		try (BedpeIterator bit = new BedpeIterator(INPUT, dict)) {
 			try (BedpeWriter writer = new BedpeWriter(dict, OUTPUT)) {
-				ParallelTransformIterator<BedpeRecord, InexactHomologyBedpeRecord> asyncit = new ParallelTransformIterator<BedpeRecord, InexactHomologyBedpeRecord>(
+				BatchedParallelTransformIterator<BedpeRecord, InexactHomologyBedpeRecord> asyncit = new BatchedParallelTransformIterator<BedpeRecord, InexactHomologyBedpeRecord>(
 						bit, rec -> new InexactHomologyBedpeRecord(rec), WORKER_THREADS + 1, threadpool);
 				while (asyncit.hasNext()) {
 					InexactHomologyBedpeRecord rec = asyncit.next();
@@ -86,6 +86,8 @@ public class AnnotateInexactHomologyBedpe extends ReferenceCommandLineProgram {
 							}
 							);//Arrays.copyOfRange(rec.record, 10, rec.record.length));
 				}
+				log.debug(String.format("Annotated %d breakpoints in %d batches (%.0f breakpoints/s per thread)",
+						asyncit.getElementCount(), asyncit.getBatchCount(), asyncit.getElementsPerSecond()));
 			}
 		}
 	}
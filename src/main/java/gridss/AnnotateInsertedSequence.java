@@ -4,6 +4,7 @@ import au.edu.wehi.idsv.FileSystemContext;
 import au.edu.wehi.idsv.VariantContextRepeatMaskerAnnotator;
 import au.edu.wehi.idsv.alignment.BwaStreamingAligner;
 import au.edu.wehi.idsv.alignment.ExternalProcessStreamingAligner;
+import au.edu.wehi.idsv.alignment.MinimizerIndex;
 import au.edu.wehi.idsv.alignment.StreamingAligner;
 import au.edu.wehi.idsv.util.FileHelper;
 import au.edu.wehi.idsv.vcf.InsertedSequenceAnnotator;
@@ -61,6 +62,11 @@ public class AnnotateInsertedSequence extends ReferenceCommandLineProgram {
     public AlignmentStatus ALIGNMENT = AlignmentStatus.REPLACE;
     @Argument(doc = "Annotate inserted sequences with RepeatMasker annotations. Use bedops rmsk2bed to generate the bed file from the RepeatMasker .fa.out file.", optional = true)
     public File REPEAT_MASKER_BED = null;
+    @Argument(doc = "Annotate inserted sequences with a unique exact match to REFERENCE_GENOME without invoking the aligner. "
+            + "Requires the minimizer index created by PrepareReference. "
+            + "Sequences with an alternate alignment that bwa would report are still aligned. "
+            + "The reported mapping quality is a lower bound of the bwa mapping quality.", optional = true)
+    public boolean USE_EXACT_MATCH_INDEX = false;
 
     public static void main(String[] argv) {
         System.exit(new AnnotateInsertedSequence().instanceMain(argv));
@@ -111,12 +117,24 @@ public class AnnotateInsertedSequence extends ReferenceCommandLineProgram {
                     log.info("Using external process alignment");
                     sa = new ExternalProcessStreamingAligner(SamReaderFactory.make(), ALIGNER_COMMAND_LINE, REFERENCE_SEQUENCE, WORKER_THREADS, dict);
                 }
+                MinimizerIndex exactMatchIndex = null;
+                File exactMatchIndexFile = MinimizerIndex.getIndexFileFor(REFERENCE_SEQUENCE);
+                if (USE_EXACT_MATCH_INDEX && exactMatchIndexFile.exists()) {
+                    log.info("Loading minimizer index from " + exactMatchIndexFile);
+                    exactMatchIndex = MinimizerIndex.load(exactMatchIndexFile);
+                    if (!exactMatchIndex.matchesReference(dict)) {
+                        log.warn(exactMatchIndexFile + " does not match reference genome. Ignoring.");
+                        exactMatchIndex = null;
+                    }
+                }
                 InsertedSequenceAnnotator ann = new InsertedSequenceAnnotator(
                         INPUT,
                         sa,
                         MIN_SEQUENCE_LENGTH,
                         ALIGNMENT == AlignmentStatus.REPLACE,
-                        ALIGNMENT == AlignmentStatus.ADD_MISSING);
+                        ALIGNMENT == AlignmentStatus.ADD_MISSING,
+                        exactMatchIndex,
+                        getReference());
                 it = ann;
             } else {
                 VCFFileReader vcfReader = new VCFFileReader(INPUT, false);
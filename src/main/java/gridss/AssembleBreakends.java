@@ -1,6 +1,7 @@
 package gridss;
 
 import au.edu.wehi.idsv.AssemblyEvidenceSource;
+import au.edu.wehi.idsv.ChunkWorkQueue;
 import au.edu.wehi.idsv.ProcessingContext;
 import au.edu.wehi.idsv.SAMEvidenceSource;
 import com.google.common.collect.ImmutableList;
@@ -31,6 +32,14 @@ public class AssembleBreakends extends MultipleSamFileCommandLineProgram {
 			"Work will be allocated across all jobs based on an even distribution of genomic regions to process. " +
 			"After all jobs have completed, output should be gathered by rerunning AssembleBreakends with JOB_NODES=1.", optional=true)
 	public int JOB_NODES = 1;
+	@Argument(doc="Used for scaling assembly across multiple jobs. " +
+			"Dynamically allocate work to jobs through a work queue in the working directory shared by all jobs. " +
+			"Any number of jobs can be run concurrently and jobs can be started or killed at any time. " +
+			"Output is gathered by the first job to complete once all work is done. " +
+			"Requires the working directory to be on a shared file system visible to all jobs.", optional=true)
+	public boolean WORK_QUEUE = false;
+	@Argument(doc="Number of seconds after which work allocated to a job that has not reported progress is reallocated to another job.", optional=true)
+	public int WORK_QUEUE_LEASE_TIMEOUT = 600;
 	public static void main(String[] argv) {
         System.exit(new AssembleBreakends().instanceMain(argv));
     }
@@ -40,7 +49,13 @@ public class AssembleBreakends extends MultipleSamFileCommandLineProgram {
 		ProcessingContext pc = getContext();
 		List<SAMEvidenceSource> sources = getSamEvidenceSources();
     	AssemblyEvidenceSource assembler = new AssemblyEvidenceSource(pc, sources, OUTPUT);
-    	assembler.assembleBreakends(threadpool, JOB_INDEX, JOB_NODES);
+    	if (WORK_QUEUE) {
+    		try (ChunkWorkQueue queue = new ChunkWorkQueue(pc.getFileSystemContext().getWorkQueueDirectory(OUTPUT), assembler.getAssemblyFingerprint(), WORK_QUEUE_LEASE_TIMEOUT * 1000L)) {
+    			assembler.assembleBreakends(threadpool, JOB_INDEX, JOB_NODES, queue);
+    		}
+    	} else {
+    		assembler.assembleBreakends(threadpool, JOB_INDEX, JOB_NODES);
+    	}
     	return 0;
 	}
 	@Override
@@ -60,6 +75,9 @@ public class AssembleBreakends extends MultipleSamFileCommandLineProgram {
 		if (JOB_INDEX >= JOB_NODES) {
 			return new String[] { "JOB_INDEX is zero-based: JOB_INDEX must be less than JOB_NODES."};
 		}
+		if (WORK_QUEUE_LEASE_TIMEOUT < 1) {
+			return new String[] { "WORK_QUEUE_LEASE_TIMEOUT must be at least 1 second."};
+		}
 		return super.customCommandLineValidation();
 	}
 }
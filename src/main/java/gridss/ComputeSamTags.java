@@ -4,14 +4,17 @@ import au.edu.wehi.idsv.FileSystemContext;
 import au.edu.wehi.idsv.picard.ReferenceLookup;
 import au.edu.wehi.idsv.sam.SAMRecordUtil;
 import au.edu.wehi.idsv.sam.TemplateTagsIterator;
+import au.edu.wehi.idsv.util.AsyncBufferedIterator;
+import au.edu.wehi.idsv.util.AutoClosingIterator;
+import au.edu.wehi.idsv.util.BatchedParallelTransformIterator;
 import au.edu.wehi.idsv.util.FileHelper;
-import au.edu.wehi.idsv.util.ParallelTransformIterator;
 import au.edu.wehi.idsv.util.UngroupingIterator;
 import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import gridss.cmdline.ReferenceCommandLineProgram;
 import htsjdk.samtools.*;
 import htsjdk.samtools.SAMFileHeader.SortOrder;
+import htsjdk.samtools.util.CloseableIterator;
 import htsjdk.samtools.util.IOUtil;
 import htsjdk.samtools.util.Log;
 import htsjdk.samtools.util.ProgressLogger;
@@ -74,13 +77,18 @@ public class ComputeSamTags extends ReferenceCommandLineProgram {
 			+ " Note that I/O threads are not included in this worker thread count so CPU usage can be higher than the number of worker thread.",
 			shortName = "THREADS")
 	public int WORKER_THREADS = Runtime.getRuntime().availableProcessors();
+	/**
+	 * Number of template batches in flight per worker thread
+	 */
+	public static final int BATCHES_PER_WORKER_THREAD = 4;
 	@Override
 	protected int doWork() {
 		log.debug("Setting language-neutral locale");
     	java.util.Locale.setDefault(Locale.ROOT);
     	validateParameters();
     	SamReaderFactory readerFactory = SamReaderFactory.makeDefault().referenceSequence(REFERENCE_SEQUENCE);
-    	SAMFileWriterFactory writerFactory = new SAMFileWriterFactory();
+    	// ordered writer stage: BAM compression and output is performed on a background thread
+    	SAMFileWriterFactory writerFactory = new SAMFileWriterFactory().setUseAsyncIo(true);
     	try {
     		try (SamReader reader = readerFactory.open(INPUT)) {
     			SAMFileHeader header = reader.getFileHeader();
@@ -99,9 +107,9 @@ public class ComputeSamTags extends ReferenceCommandLineProgram {
 				ProgressLogger progress = new ProgressLogger(log);
 				ExecutorService threadpool = Executors.newFixedThreadPool(WORKER_THREADS, new ThreadFactoryBuilder().setDaemon(false).setNameFormat("ComputeSamTags-%d").build());
     			try (SAMRecordIterator it = reader.iterator()) {
-					Iterator<SAMRecord> asyncIt = transform(threadpool, Defaults.ASYNC_BUFFER_SIZE, it);
     				File tmpoutput = gridss.Defaults.OUTPUT_TO_TEMP_FILE ? FileSystemContext.getWorkingFileFor(OUTPUT, "gridss.tmp.ComputeSamTags.") : OUTPUT;
-    				try (SAMFileWriter writer = writerFactory.makeSAMOrBAMWriter(header, true, tmpoutput)) {
+    				try (CloseableIterator<SAMRecord> asyncIt = transform(threadpool, BATCHES_PER_WORKER_THREAD * WORKER_THREADS, it);
+    						SAMFileWriter writer = writerFactory.makeSAMOrBAMWriter(header, true, tmpoutput)) {
 						while (asyncIt.hasNext()) {
 							SAMRecord r = asyncIt.next();
 							writer.addAlignment(r);
@@ -111,6 +119,8 @@ public class ComputeSamTags extends ReferenceCommandLineProgram {
     				if (tmpoutput != OUTPUT) {
     					FileHelper.move(tmpoutput, OUTPUT, true);
     				}
+    			} finally {
+    				threadpool.shutdown();
     			}
     		}
 		} catch (IOException e) {
@@ -119,7 +129,18 @@ public class ComputeSamTags extends ReferenceCommandLineProgram {
 		}
     	return 0;
 	}
-	public Iterator<SAMRecord> transform(Executor threadpool, int batchSize, Iterator<SAMRecord> it) {
+	/**
+	 * Computes tags for all records in the given read name grouped iterator.
+	 * 
+	 * Records are grouped by template on a background reader thread, tags are
+	 * calculated in parallel over batches of templates, and the tagged records
+	 * are returned in the same order as the input. 
+	 * @param threadpool worker thread pool
+	 * @param lookahead maximum number of template batches to process in parallel
+	 * @param it input records
+	 * @return records with updated tags. Closing the returned iterator stops the background reader thread.
+	 */
+	public CloseableIterator<SAMRecord> transform(Executor threadpool, int lookahead, Iterator<SAMRecord> it) {
 		final Set<String> tags = TAGS;
 		final boolean softenHardClips = SOFTEN_HARD_CLIPS;
 		final boolean fixMates = FIX_MATE_INFORMATION;
@@ -128,8 +149,8 @@ public class ComputeSamTags extends ReferenceCommandLineProgram {
 		final boolean fixTruncated = FIX_MISSING_HARD_CLIP;
 		final boolean recalculateSupplementary = RECALCULATE_SA_SUPPLEMENTARY;
 		final ReferenceLookup reference = isReferenceRequired() ? getReference() : null;
-		Iterator<List<SAMRecord>> groupByFragment = TemplateTagsIterator.withGrouping(it);
-		ParallelTransformIterator<List<SAMRecord>, List<SAMRecord>> parallelIt = new ParallelTransformIterator<>(
+		AsyncBufferedIterator<List<SAMRecord>> groupByFragment = new AsyncBufferedIterator<>(TemplateTagsIterator.withGrouping(it), "ComputeSamTags-templates");
+		BatchedParallelTransformIterator<List<SAMRecord>, List<SAMRecord>> parallelIt = new BatchedParallelTransformIterator<>(
 				groupByFragment,
 				r -> transform(
 					r,
@@ -141,9 +162,9 @@ public class ComputeSamTags extends ReferenceCommandLineProgram {
 					fixTruncated,
 					recalculateSupplementary,
 					reference),
-				batchSize,
+				lookahead,
 				threadpool);
-		return new UngroupingIterator(parallelIt);
+		return new AutoClosingIterator<>(new UngroupingIterator<>(parallelIt), groupByFragment);
 	}
 	private static List<SAMRecord> transform(
 			List<SAMRecord> records,
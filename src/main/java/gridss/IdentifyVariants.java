@@ -1,5 +1,6 @@
 package gridss;
 
+import au.edu.wehi.idsv.ChunkWorkQueue;
 import au.edu.wehi.idsv.VariantCaller;
 import gridss.cmdline.FullEvidenceCommandLineProgram;
 import htsjdk.samtools.util.IOUtil;
@@ -22,6 +23,14 @@ public class IdentifyVariants extends FullEvidenceCommandLineProgram {
 	private static final Log log = Log.getInstance(IdentifyVariants.class);
 	@Argument(shortName=StandardOptionDefinitions.OUTPUT_SHORT_NAME, doc="VCF structural variation calls.")
     public File OUTPUT_VCF;
+	@Argument(doc="Used for scaling variant calling across multiple jobs. " +
+			"Dynamically allocate work to jobs through a work queue in the working directory shared by all jobs. " +
+			"Any number of jobs can be run concurrently and jobs can be started or killed at any time. " +
+			"Output is gathered by the first job to complete once all work is done. " +
+			"Requires the working directory to be on a shared file system visible to all jobs.", optional=true)
+	public boolean WORK_QUEUE = false;
+	@Argument(doc="Number of seconds after which work allocated to a job that has not reported progress is reallocated to another job.", optional=true)
+	public int WORK_QUEUE_LEASE_TIMEOUT = 600;
 	public static void main(String[] argv) {
         System.exit(new IdentifyVariants().instanceMain(argv));
     }
@@ -29,8 +38,16 @@ public class IdentifyVariants extends FullEvidenceCommandLineProgram {
 	public int doWork(ExecutorService threadpool) throws IOException, InterruptedException, ExecutionException {
 		IOUtil.assertFileIsWritable(OUTPUT_VCF);
 		VariantCaller caller = new VariantCaller(getContext(), getSamEvidenceSources(), getAssemblySource());
-		caller.callBreakends(OUTPUT_VCF, threadpool);
-		log.info("Raw variant calls written to " + OUTPUT_VCF);
+		if (WORK_QUEUE) {
+			try (ChunkWorkQueue queue = new ChunkWorkQueue(getContext().getFileSystemContext().getWorkQueueDirectory(OUTPUT_VCF), caller.getFingerprint(), WORK_QUEUE_LEASE_TIMEOUT * 1000L)) {
+				caller.callBreakends(OUTPUT_VCF, threadpool, queue);
+			}
+		} else {
+			caller.callBreakends(OUTPUT_VCF, threadpool);
+		}
+		if (OUTPUT_VCF.exists()) {
+			log.info("Raw variant calls written to " + OUTPUT_VCF);
+		}
 		return 0;
 	}
 }
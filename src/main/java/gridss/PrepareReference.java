@@ -2,6 +2,7 @@ package gridss;
 
 import au.edu.wehi.idsv.GenomicProcessingContext;
 import au.edu.wehi.idsv.alignment.BwaAligner;
+import au.edu.wehi.idsv.alignment.MinimizerIndex;
 import au.edu.wehi.idsv.picard.TwoBitBufferedReferenceSequenceFile;
 import gridss.cmdline.ReferenceCommandLineProgram;
 import htsjdk.samtools.reference.IndexedFastaSequenceFile;
@@ -28,6 +29,10 @@ public class PrepareReference extends CommandLineProgram {
 	public boolean CREATE_GRIDSS_REFERENCE_CACHE = true;
 	@Argument(doc="Creates bwa index file used by the in-process bwa aligner.", optional=true)
 	public boolean CREATE_BWA_INDEX_IMAGE = true;
+	@Argument(doc="Creates the minimizer index used by AnnotateInsertedSequence to resolve exact matches without alignment. "
+			+ "The index requires approximately 3.5GB of disk and memory per gigabase of reference genome. "
+			+ "Index creation additionally holds the largest contig in memory.", optional=true)
+	public boolean CREATE_EXACT_MATCH_INDEX = false;
     @Override
 	protected int doWork() {
 		log.debug("Setting language-neutral locale");
@@ -41,6 +46,10 @@ public class PrepareReference extends CommandLineProgram {
 			}
 			File cache = GenomicProcessingContext.getGridssCacheFileForReference(REFERENCE_SEQUENCE);
 			if (CREATE_GRIDSS_REFERENCE_CACHE) {
+				if (cache.exists() && !TwoBitBufferedReferenceSequenceFile.isValidCacheFile(cache)) {
+					log.info("Removing obsolete GRIDSS reference cache file " + cache);
+					cache.delete();
+				}
 				if (!cache.exists()) {
 					log.info("Creating GRIDSS reference cache file " + cache);
 					ReferenceSequenceFile ref = new IndexedFastaSequenceFile(REFERENCE_SEQUENCE);
@@ -63,6 +72,18 @@ public class PrepareReference extends CommandLineProgram {
 					log.info("Found " + bwaImage);
 				}
 			}
+			File minimizerIndex = MinimizerIndex.getIndexFileFor(REFERENCE_SEQUENCE);
+			if (CREATE_EXACT_MATCH_INDEX) {
+				if (!minimizerIndex.exists()) {
+					log.info("Creating minimizer index " + minimizerIndex);
+					try (ReferenceSequenceFile ref = new IndexedFastaSequenceFile(REFERENCE_SEQUENCE)) {
+						MinimizerIndex index = MinimizerIndex.create(ref, MinimizerIndex.DEFAULT_K, MinimizerIndex.DEFAULT_W);
+						index.save(minimizerIndex);
+					}
+				} else {
+					log.info("Found " + minimizerIndex);
+				}
+			}
 		} catch (Exception e) {
 			log.error(e);
 			return -1;
@@ -20,7 +20,6 @@ import picard.cmdline.StandardOptionDefinitions;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Iterator;
 import java.util.Locale;
 import java.util.Set;
 
@@ -43,6 +42,9 @@ public class PreprocessForBreakendAssembly extends ReferenceCommandLineProgram {
 	public SoftClipsToSplitReads.Aligner ALIGNER = SoftClipsToSplitReads.Aligner.BWAMEM;
 	@Argument(doc="Number of records to buffer when performing in-process or streaming alignment. Not applicable when performing external alignment.", optional=true)
 	public int ALIGNER_BATCH_SIZE = 100000;
+	@Argument(doc="Number of concurrent in-process aligners. In-process aligners share a single copy of the reference index"
+			+ " and split WORKER_THREADS evenly between them.", optional=true)
+	public int ALIGNER_LANES = new SoftClipsToSplitReads().ALIGNER_LANES;
 	@Argument(shortName= StandardOptionDefinitions.INPUT_SHORT_NAME, doc="Input BAM file grouped by read name.")
 	public File INPUT;
 	@Argument(shortName=StandardOptionDefinitions.OUTPUT_SHORT_NAME, doc="Unsorted BAM file with tags corrected and split reads identified.")
@@ -83,6 +85,9 @@ public class PreprocessForBreakendAssembly extends ReferenceCommandLineProgram {
 		if (WORKER_THREADS < 1) {
 			return new String[]{"WORKER_THREADS must be at least 1."};
 		}
+		if (ALIGNER_LANES < 1) {
+			return new String[]{"ALIGNER_LANES must be at least 1."};
+		}
 		for (SAMTag tag : new SAMTag[] { SAMTag.R2, SAMTag.NM, SAMTag.SA, SAMTag.MC, SAMTag.MQ}) {
 			if (!TAGS.contains(tag.name())) {
 				return new String[]{"TAGS must contain " + tag.name()};
@@ -110,7 +115,7 @@ public class PreprocessForBreakendAssembly extends ReferenceCommandLineProgram {
 				// which will halve our throughput.
 				// 25bp per read ensures we're unlikely to be forced to flush.
 				int bwaBufferSizeInBases = ALIGNER_BATCH_SIZE * 25;
-				sa = new BwaStreamingAligner(REFERENCE_SEQUENCE, getReference().getSequenceDictionary(), WORKER_THREADS, bwaBufferSizeInBases);
+				sa = new BwaStreamingAligner(REFERENCE_SEQUENCE, getReference().getSequenceDictionary(), WORKER_THREADS, bwaBufferSizeInBases, ALIGNER_LANES);
 				break;
 			case EXTERNAL:
 			default:
@@ -156,10 +161,10 @@ public class PreprocessForBreakendAssembly extends ReferenceCommandLineProgram {
 
 				try (SAMRecordIterator it = reader.iterator()) {
 					File tmpOutput = gridss.Defaults.OUTPUT_TO_TEMP_FILE ? FileSystemContext.getWorkingFileFor(OUTPUT, "gridss.tmp.PreprocessForBReakendAssembly.") : OUTPUT;
-					try (SAMFileWriter writer = writerFactory.makeSAMOrBAMWriter(header, true, tmpOutput)) {
-						CloseableIterator<SAMRecord> asyncIn = new AsyncBufferedIterator<>(it, threadPrefix + "raw");
-						// We can reuse the non-block task thread pool since the transforms aren't blocking operations
-						Iterator<SAMRecord> tagFixedIt = tags.transform(AsyncReadTaskRunner.getNonBlockingThreadpool(), Defaults.ASYNC_BUFFER_SIZE, asyncIn);
+					try (SAMFileWriter writer = writerFactory.makeSAMOrBAMWriter(header, true, tmpOutput);
+							CloseableIterator<SAMRecord> asyncIn = new AsyncBufferedIterator<>(it, threadPrefix + "raw");
+							// We can reuse the non-block task thread pool since the transforms aren't blocking operations
+							CloseableIterator<SAMRecord> tagFixedIt = tags.transform(AsyncReadTaskRunner.getNonBlockingThreadpool(), ComputeSamTags.BATCHES_PER_WORKER_THREAD * WORKER_THREADS, asyncIn)) {
 						realigner.process(tagFixedIt, writer, writer);
 					}
 					if (tmpOutput != OUTPUT) {
@@ -67,6 +67,9 @@ public class SoftClipsToSplitReads extends ReferenceCommandLineProgram {
 	public Aligner ALIGNER = Aligner.EXTERNAL;
 	@Argument(doc="Number of records to buffer when performing in-process or streaming alignment. Not applicable when performing external alignment.", optional=true)
 	public int ALIGNER_BATCH_SIZE = MAX_RECORDS_IN_RAM;
+	@Argument(doc="Number of concurrent in-process aligners. In-process aligners share a single copy of the reference index"
+			+ " and split WORKER_THREADS evenly between them. Only applicable to in-process alignment.", optional=true)
+	public int ALIGNER_LANES = 2;
     @Argument(doc="Directly pipe the input and output of the aligner instead of writing to intermediate files."
 			+ " The aligner must support using \"-\" as the input filename when reading from stdin."
 			+ " The sort order of the input file will not be retained.", optional=true)
@@ -100,7 +103,7 @@ public class SoftClipsToSplitReads extends ReferenceCommandLineProgram {
         	SAMFileWriterFactory writerFactory = new SAMFileWriterFactory();
         	switch (ALIGNER) {
 				case BWAMEM:
-					BwaStreamingAligner bwaAligner = new BwaStreamingAligner(REFERENCE_SEQUENCE, getReference().getSequenceDictionary(), WORKER_THREADS, ALIGNER_BATCH_SIZE * 150);
+					BwaStreamingAligner bwaAligner = new BwaStreamingAligner(REFERENCE_SEQUENCE, getReference().getSequenceDictionary(), WORKER_THREADS, ALIGNER_BATCH_SIZE * 150, ALIGNER_LANES);
 					realigner = new StreamingSplitReadRealigner(pc, bwaAligner, ALIGNER_BATCH_SIZE);
 					toClose.add(bwaAligner);
 					break;
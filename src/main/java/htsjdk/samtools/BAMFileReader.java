@@ -33,6 +33,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.function.Predicate;
 
 /**
  * Class for reading and querying BAM files.
@@ -84,6 +85,11 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
      */
     private SamReader mReader = null;
 
+    /**
+     * If non-null, records rejected by this filter are skipped without being decoded.
+     */
+    private Predicate<BAMRecordView> mRecordFilter = null;
+
     /**
      * Prepare to read BAM from a stream (not seekable)
      * @param stream source of bytes.
@@ -450,6 +456,28 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
 
     public void setEagerDecode(final boolean desired) { this.eagerDecode = desired; }
 
+    /**
+     * Sets a filter applied to the raw BAM encoding of each record before a SAMRecord is constructed.
+     * Records not matching the filter are skipped by all subsequently created iterators.
+     * @param filter records for which the filter returns false are skipped. null disables filtering.
+     */
+    public void setRecordFilter(final Predicate<BAMRecordView> filter) { this.mRecordFilter = filter; }
+
+    /**
+     * Sets a pre-decoding record filter on the given reader if it is backed by a BAM file.
+     * @return true if the filter was set, false if the reader does not support pre-decoding filters
+     */
+    public static boolean setRecordFilter(final SamReader reader, final Predicate<BAMRecordView> filter) {
+        if (reader instanceof SamReader.PrimitiveSamReaderToSamReaderAdapter) {
+            final SamReader.PrimitiveSamReader underlying = ((SamReader.PrimitiveSamReaderToSamReaderAdapter)reader).underlyingReader();
+            if (underlying instanceof BAMFileReader) {
+                ((BAMFileReader)underlying).setRecordFilter(filter);
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     public void close() {
         if (mCompressedInputStream != null) {
@@ -805,6 +833,9 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
         private BamRecordDecodingInfo mNextRecord = null;
         private final BAMRecordCodec streamCodec;
         private final AsyncBamDecoder mAsync;
+        private final Predicate<BAMRecordView> recordFilter = mRecordFilter;
+        private final BAMRecordView recordView = new BAMRecordView();
+        private byte[] filterBuffer = null; // reused across rejected records
         private long streamSamRecordIndex = 0; // Records at what position (counted in records) we are at in the file
 
         BAMFileIterator() {
@@ -877,14 +908,8 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
                 // this is the earliest time we can find the stop position
                 info.stop = mCompressedInputStream.getFilePointer();
             } else { // decode from the buffer supplied
-                BAMRecordCodec codec = streamCodec.clone();
-                ByteArrayInputStream is = new ByteArrayInputStream(info.buffer);
-                if (mStream == null) {
-                    codec.setInputStream(is);
-                } else {
-                    codec.setInputStream(is, mStream.getInputFileName());
-                }
-                info.record = codec.decode(info.recordLength);
+                // decoding from a buffer does not touch the codec stream so is safe to perform concurrently
+                info.record = streamCodec.decode(new BAMRecordView(info.buffer, 0, info.recordLength));
                 info.buffer = null;
             }
             if (mReader != null) {
@@ -949,23 +974,28 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
          */
         private BamRecordDecodingInfo readNextRecord() {
             try {
-                if (!advanceToNextRecordStart()) {
-                    // effectively end of stream
-                    return null;
-                }
-                final long startCoordinate = mCompressedInputStream.getFilePointer();
-                Integer readLength = streamCodec.decodeRecordLength();
-                if (readLength == null) {
-                    // EOF returns null read length
-                    return null;
-                } else {
-                    if (useAsynchronousIO) {
-                        byte[] buffer = new byte[readLength];
-                        mCompressedInputStream.read(buffer);
+                while (true) {
+                    if (!advanceToNextRecordStart()) {
+                        // effectively end of stream
+                        return null;
+                    }
+                    final long startCoordinate = mCompressedInputStream.getFilePointer();
+                    Integer readLength = streamCodec.decodeRecordLength();
+                    if (readLength == null) {
+                        // EOF returns null read length
+                        return null;
+                    }
+                    if (recordFilter == null) {
+                        return readRecord(startCoordinate, readLength);
+                    }
+                    if (filterBuffer == null || filterBuffer.length < readLength) {
+                        filterBuffer = new byte[Math.max(readLength, filterBuffer == null ? 0 : 2 * filterBuffer.length)];
+                    }
+                    mCompressedInputStream.read(filterBuffer, 0, readLength);
+                    ++streamSamRecordIndex;
+                    if (recordFilter.test(recordView.wrap(filterBuffer, 0, readLength))) {
                         long stopCoordinate = mCompressedInputStream.getFilePointer();
-                        return new BamRecordDecodingInfo(++streamSamRecordIndex, readLength, startCoordinate, stopCoordinate, buffer);
-                    } else {
-                        return new BamRecordDecodingInfo(++streamSamRecordIndex, readLength, startCoordinate);
+                        return new BamRecordDecodingInfo(streamSamRecordIndex, readLength, startCoordinate, stopCoordinate, Arrays.copyOf(filterBuffer, readLength));
                     }
                 }
             } catch (IOException e) {
@@ -973,6 +1003,17 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
             }
         }
 
+        private BamRecordDecodingInfo readRecord(long startCoordinate, int readLength) throws IOException {
+            if (useAsynchronousIO) {
+                byte[] buffer = new byte[readLength];
+                mCompressedInputStream.read(buffer);
+                long stopCoordinate = mCompressedInputStream.getFilePointer();
+                return new BamRecordDecodingInfo(++streamSamRecordIndex, readLength, startCoordinate, stopCoordinate, buffer);
+            } else {
+                return new BamRecordDecodingInfo(++streamSamRecordIndex, readLength, startCoordinate);
+            }
+        }
+
         /**
          * Moves mCompressedInputStream to the next record start location
          * @return true if the seek was successful, false otherwise
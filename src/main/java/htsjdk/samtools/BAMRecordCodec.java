@@ -301,4 +301,23 @@ public class BAMRecordCodec implements SortingCollection.Codec<SAMRecord> {
         }
         return ret;
     }
+
+    /**
+     * Decodes a record from a view over an in-memory copy of its BAM encoding.
+     * Unlike {@link #decode(int)}, this does not read from the input stream
+     * so can safely be called concurrently from multiple threads.
+     */
+    public SAMRecord decode(final BAMRecordView view) {
+        final byte[] restOfRecord = Arrays.copyOfRange(view.getBuffer(),
+                view.getOffset() + BAMFileConstants.FIXED_BLOCK_SIZE,
+                view.getOffset() + view.getRecordLength());
+        final BAMRecord ret = this.samRecordFactory.createBAMRecord(
+                header, view.getReferenceIndex(), view.getAlignmentStart(), (short)view.getReadNameLength(), (short)view.getMappingQuality(),
+                view.getIndexingBin(), view.getCigarLength(), view.getFlags(), view.getReadLength(),
+                view.getMateReferenceIndex(), view.getMateAlignmentStart(), view.getInferredInsertSize(), restOfRecord);
+        if (null != header) {
+            ret.setHeader(header);
+        }
+        return ret;
+    }
 }
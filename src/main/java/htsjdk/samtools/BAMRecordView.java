@@ -0,0 +1,279 @@
+package htsjdk.samtools;
+
+/**
+ * Allocation-free read-only view over the BAM encoding of a single record.
+ *
+ * The view wraps the record bytes following the block_size field and decodes
+ * fields on demand directly from the underlying buffer. This allows records
+ * to be inspected, and rejected, before the cost of constructing a
+ * {@link SAMRecord} is incurred. A single view instance can be repositioned
+ * over successive records using {@link #wrap(byte[], int, int)}.
+ *
+ * Views are not thread-safe and the wrapped buffer must not be modified
+ * whilst the view is in use.
+ */
+public class BAMRecordView {
+    private static final int REFERENCE_INDEX_OFFSET = 0;
+    private static final int POSITION_OFFSET = 4;
+    private static final int READ_NAME_LENGTH_OFFSET = 8;
+    private static final int MAPPING_QUALITY_OFFSET = 9;
+    private static final int BIN_OFFSET = 10;
+    private static final int CIGAR_LENGTH_OFFSET = 12;
+    private static final int FLAGS_OFFSET = 14;
+    private static final int READ_LENGTH_OFFSET = 16;
+    private static final int MATE_REFERENCE_INDEX_OFFSET = 20;
+    private static final int MATE_POSITION_OFFSET = 24;
+    private static final int INSERT_SIZE_OFFSET = 28;
+    private byte[] buffer;
+    private int offset;
+    private int length;
+
+    public BAMRecordView() {
+    }
+
+    public BAMRecordView(final byte[] buffer, final int offset, final int length) {
+        wrap(buffer, offset, length);
+    }
+
+    /**
+     * Repositions this view over the given record
+     * @param buffer buffer containing the BAM record
+     * @param offset offset of the record in the buffer. This is the offset of the refID field.
+     * @param length record length as encoded in the BAM block_size field
+     * @return this view
+     */
+    public BAMRecordView wrap(final byte[] buffer, final int offset, final int length) {
+        if (length < BAMFileConstants.FIXED_BLOCK_SIZE) {
+            throw new SAMFormatException("Invalid record length: " + length);
+        }
+        if (offset < 0 || offset + length > buffer.length) {
+            throw new IllegalArgumentException("Record extends beyond buffer");
+        }
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+        return this;
+    }
+
+    public byte[] getBuffer() {
+        return buffer;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getRecordLength() {
+        return length;
+    }
+
+    public int getReferenceIndex() {
+        return readInt(REFERENCE_INDEX_OFFSET);
+    }
+
+    /**
+     * @return 1-based alignment start
+     */
+    public int getAlignmentStart() {
+        return readInt(POSITION_OFFSET) + 1;
+    }
+
+    public int getReadNameLength() {
+        return readUByte(READ_NAME_LENGTH_OFFSET);
+    }
+
+    public int getMappingQuality() {
+        return readUByte(MAPPING_QUALITY_OFFSET);
+    }
+
+    public int getIndexingBin() {
+        return readUShort(BIN_OFFSET);
+    }
+
+    public int getCigarLength() {
+        return readUShort(CIGAR_LENGTH_OFFSET);
+    }
+
+    public int getFlags() {
+        return readUShort(FLAGS_OFFSET);
+    }
+
+    public int getReadLength() {
+        return readInt(READ_LENGTH_OFFSET);
+    }
+
+    public int getMateReferenceIndex() {
+        return readInt(MATE_REFERENCE_INDEX_OFFSET);
+    }
+
+    /**
+     * @return 1-based mate alignment start
+     */
+    public int getMateAlignmentStart() {
+        return readInt(MATE_POSITION_OFFSET) + 1;
+    }
+
+    public int getInferredInsertSize() {
+        return readInt(INSERT_SIZE_OFFSET);
+    }
+
+    public boolean getReadPairedFlag() {
+        return (getFlags() & SAMFlag.READ_PAIRED.intValue()) != 0;
+    }
+
+    public boolean getReadUnmappedFlag() {
+        return (getFlags() & SAMFlag.READ_UNMAPPED.intValue()) != 0;
+    }
+
+    public boolean getMateUnmappedFlag() {
+        return (getFlags() & SAMFlag.MATE_UNMAPPED.intValue()) != 0;
+    }
+
+    public boolean getReadNegativeStrandFlag() {
+        return (getFlags() & SAMFlag.READ_REVERSE_STRAND.intValue()) != 0;
+    }
+
+    public boolean isSecondaryAlignment() {
+        return (getFlags() & SAMFlag.NOT_PRIMARY_ALIGNMENT.intValue()) != 0;
+    }
+
+    public boolean isSupplementaryAlignment() {
+        return (getFlags() & SAMFlag.SUPPLEMENTARY_ALIGNMENT.intValue()) != 0;
+    }
+
+    public boolean getDuplicateReadFlag() {
+        return (getFlags() & SAMFlag.DUPLICATE_READ.intValue()) != 0;
+    }
+
+    public boolean getReadFailsVendorQualityCheckFlag() {
+        return (getFlags() & SAMFlag.READ_FAILS_VENDOR_QUALITY_CHECK.intValue()) != 0;
+    }
+
+    private int cigarOffset() {
+        return BAMFileConstants.FIXED_BLOCK_SIZE + getReadNameLength();
+    }
+
+    private int attributeOffset() {
+        final int readLength = getReadLength();
+        return cigarOffset() + 4 * getCigarLength() + (readLength + 1) / 2 + readLength;
+    }
+
+    /**
+     * @param i CIGAR element index
+     * @return operator of the given CIGAR element
+     */
+    public CigarOperator getCigarOperator(final int i) {
+        return CigarOperator.binaryToEnum(readInt(cigarOffset() + 4 * i) & 0xF);
+    }
+
+    /**
+     * @param i CIGAR element index
+     * @return length of the given CIGAR element
+     */
+    public int getCigarOperatorLength(final int i) {
+        return readInt(cigarOffset() + 4 * i) >>> 4;
+    }
+
+    /**
+     * Determines whether the alignment contains any of the given CIGAR operators
+     */
+    public boolean hasCigarOperator(final CigarOperator... operators) {
+        final int n = getCigarLength();
+        final int cigarOffset = cigarOffset();
+        for (int i = 0; i < n; i++) {
+            final int binaryOp = readInt(cigarOffset + 4 * i) & 0xF;
+            for (final CigarOperator op : operators) {
+                if (CigarOperator.enumToBinary(op) == binaryOp) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Determines whether the record contains the given tag without decoding any attribute values.
+     * @param tag two character SAM tag
+     */
+    public boolean hasAttribute(final String tag) {
+        if (tag.length() != 2) {
+            throw new IllegalArgumentException("Invalid tag " + tag);
+        }
+        final byte c0 = (byte)tag.charAt(0);
+        final byte c1 = (byte)tag.charAt(1);
+        int pos = attributeOffset();
+        while (pos + 3 <= length) {
+            if (buffer[offset + pos] == c0 && buffer[offset + pos + 1] == c1) {
+                return true;
+            }
+            pos = skipAttributeValue(pos + 3, buffer[offset + pos + 2]);
+        }
+        return false;
+    }
+
+    /**
+     * @param pos position of the attribute value
+     * @param type attribute value type
+     * @return position of the next attribute
+     */
+    private int skipAttributeValue(int pos, final byte type) {
+        switch (type) {
+            case 'A':
+            case 'c':
+            case 'C':
+                return pos + 1;
+            case 's':
+            case 'S':
+                return pos + 2;
+            case 'i':
+            case 'I':
+            case 'f':
+                return pos + 4;
+            case 'Z':
+            case 'H':
+                while (pos < length && buffer[offset + pos] != 0) {
+                    pos++;
+                }
+                return pos + 1;
+            case 'B':
+                final byte subtype = buffer[offset + pos];
+                final int count = readInt(pos + 1);
+                return pos + 5 + count * arrayElementSize(subtype);
+            default:
+                throw new SAMFormatException("Unrecognised tag type " + (char)type);
+        }
+    }
+
+    private static int arrayElementSize(final byte subtype) {
+        switch (subtype) {
+            case 'c':
+            case 'C':
+                return 1;
+            case 's':
+            case 'S':
+                return 2;
+            case 'i':
+            case 'I':
+            case 'f':
+                return 4;
+            default:
+                throw new SAMFormatException("Unrecognised array tag type " + (char)subtype);
+        }
+    }
+
+    private int readUByte(final int pos) {
+        return buffer[offset + pos] & 0xFF;
+    }
+
+    private int readUShort(final int pos) {
+        return (buffer[offset + pos] & 0xFF) | ((buffer[offset + pos + 1] & 0xFF) << 8);
+    }
+
+    private int readInt(final int pos) {
+        final int i = offset + pos;
+        return (buffer[i] & 0xFF)
+                | ((buffer[i + 1] & 0xFF) << 8)
+                | ((buffer[i + 2] & 0xFF) << 16)
+                | ((buffer[i + 3] & 0xFF) << 24);
+    }
+}
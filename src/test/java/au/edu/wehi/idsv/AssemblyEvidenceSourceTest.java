@@ -4,12 +4,15 @@ import au.edu.wehi.idsv.picard.InMemoryReferenceSequenceFile;
 import au.edu.wehi.idsv.sam.SAMRecordUtil;
 import au.edu.wehi.idsv.util.FileHelper;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMFileHeader.SortOrder;
 import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.SamReader;
 import htsjdk.samtools.SamReaderFactory;
+import org.apache.commons.configuration.CompositeConfiguration;
+import org.apache.commons.configuration.MapConfiguration;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Ignore;
@@ -17,7 +20,9 @@ import org.junit.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -41,6 +46,23 @@ public class AssemblyEvidenceSourceTest extends IntermediateFilesTest {
 		assertTrue(assemblyFile.exists());
 	}
 	@Test
+	public void should_reassemble_chunk_without_valid_checkpoint() throws IOException {
+		createInput(
+				withSequence("AATTAATCGCAAGAGCGGGTTGTATTCGACGCCAAGTCAGCTGAAGCACCATTACCCGATCAAAACATATCAGAAATGATTGACGTATCACAAGCCGGA", Read(0, 1, "41M58S")),
+				withSequence("AATTAATCGCAAGAGCGGGTTGTATTCGACGCCAAGTCAGCTGAAGCACCATTACCCGATCAAAACATATCAGAAATGATTGACGTATCACAAGCCGGAT", Read(0, 1, "41M59S"))
+				);
+		ProcessingContext pc = getCommandlineContext();
+		pc.getConfig().getAssembly().minReads = 1;
+		SAMEvidenceSource ses = new SAMEvidenceSource(pc, input, null, 0);
+		FileHelper.copy(ses.getFile(), ses.getSVFile(), true);
+		AssemblyEvidenceSource aes = new AssemblyEvidenceSource(pc, ImmutableList.of(ses), assemblyFile);
+		// partially written chunk from a killed process
+		File chunk = pc.getFileSystemContext().getAssemblyChunkBam(assemblyFile, 0);
+		Files.write(chunk.toPath(), new byte[] { 1, 2, 3 });
+		aes.assembleBreakends(null);
+		assertEquals(1, getRecords(assemblyFile).size());
+	}
+	@Test
 	public void breakend_bam_should_be_coordinate_sorted() throws IOException {
 		createInput(RP(0, 1, 2, 1));
 		SAMEvidenceSource ses = new SAMEvidenceSource(getCommandlineContext(), input, null, 0);
@@ -92,6 +114,42 @@ public class AssemblyEvidenceSourceTest extends IntermediateFilesTest {
 			assertEquals(i, list.get(i).getBreakendSummary().referenceIndex);
 		}
 	}
+	private List<String> assembleContigs(ProcessingContext pc, File assembly) throws IOException {
+		pc.getConfig().getAssembly().minReads = 1;
+		SAMEvidenceSource ses = new SAMEvidenceSource(pc, input, null, 0);
+		FileHelper.copy(ses.getFile(), ses.getSVFile(), true);
+		AssemblyEvidenceSource aes = new AssemblyEvidenceSource(pc, ImmutableList.of(ses), assembly);
+		aes.assembleBreakends(null);
+		List<String> contigs = new ArrayList<>();
+		for (SAMRecord r : getRecords(assembly)) {
+			contigs.add(String.format("%d:%d %s %s", r.getReferenceIndex(), r.getAlignmentStart(), r.getCigarString(), S(r.getReadBases())));
+		}
+		Collections.sort(contigs);
+		return contigs;
+	}
+	@Test
+	public void partitioned_assembly_should_match_serial_assembly() throws IOException {
+		String seq = "AATTAATCGCAAGAGCGGGTTGTATTCGACGCCAAGTCAGCTGAAGCACCATTACCCGATCAAAACATATCAGAAATGATTGACGTATCACAAGCCGGAT";
+		List<SAMRecord> reads = new ArrayList<>();
+		for (int referenceIndex = 0; referenceIndex < 4; referenceIndex++) {
+			reads.add(withSequence(seq.substring(0, 99), Read(referenceIndex, 93 + referenceIndex, "41M58S"))[0]);
+			reads.add(withSequence(seq, Read(referenceIndex, 93 + referenceIndex, "41M59S"))[0]);
+			reads.add(withSequence(seq.substring(0, 99), Read(referenceIndex, 5000, "58S41M"))[0]);
+			reads.add(withSequence(seq, Read(referenceIndex, 5000, "59S41M"))[0]);
+		}
+		createInput(reads);
+		List<String> serial = assembleContigs(getCommandlineContext(), assemblyFile);
+		CompositeConfiguration config = new CompositeConfiguration();
+		config.addConfiguration(new MapConfiguration(ImmutableMap.of(
+				"assembly.positional.partitionThreads", "2",
+				"assembly.positional.partitionMinEvidence", "1")));
+		config.addConfiguration(getDefaultConfig());
+		ProcessingContext pc = getCommandlineContext(ImmutableList.of("Normal", "Tumour"), getConfig(testFolder.getRoot(), config));
+		assertEquals(2, pc.getAssemblyParameters().positional.partitionThreads);
+		List<String> partitioned = assembleContigs(pc, new File(testFolder.getRoot(), "partitioned.bam"));
+		assertFalse(serial.isEmpty());
+		assertEquals(serial, partitioned);
+	}
 	@Test
 	public void should_not_write_filtered_assemblies() throws IOException {
 		createInput(
@@ -297,6 +355,27 @@ public class AssemblyEvidenceSourceTest extends IntermediateFilesTest {
 		assertEquals(100, list.size());
 	}
 	@Test
+	public void work_queue_assembly_should_not_affect_assembly_results() throws IOException {
+		List<SAMRecord> in = new ArrayList<>();
+		for (int i = 50; i < 150; i++) {
+			in.add(withSequence("AATTAATCGCAAGAGCGGGTTGTATTCGACGCCAAGTCAGCTGAAGCACCATTACCCGATCAAAACATATCAGAAATGATTGACGTATCACAAGCCGGA", Read(0, i, "41M58S"))[0]);
+		}
+		createInput(in);
+		ProcessingContext pc = getCommandlineContext();
+		pc.getConfig().getAssembly().minReads = 1;
+		pc.getConfig().chunkSize = 100;
+		SAMEvidenceSource ses = new SAMEvidenceSource(pc, input, null, 0);
+		FileHelper.copy(ses.getFile(), ses.getSVFile(), true);
+		AssemblyEvidenceSource aes = new AssemblyEvidenceSource(pc, ImmutableList.of(ses), assemblyFile);
+		ExecutorService threadpool = Executors.newFixedThreadPool(4);
+		try (ChunkWorkQueue queue = new ChunkWorkQueue(pc.getFileSystemContext().getWorkQueueDirectory(assemblyFile), 60000)) {
+			aes.assembleBreakends(threadpool, 0, 1, queue);
+		}
+		threadpool.shutdown();
+		List<DirectedEvidence> list = Lists.newArrayList(aes.iterator(SAMEvidenceSource.EvidenceSortOrder.EvidenceStartPosition));
+		assertEquals(100, list.size());
+	}
+	@Test
 	public void bounds_check_should_apply_to_final_assembly_SAMRecord() throws IOException {
 		// TODO: how do we check
 		List<SAMRecord> in = new ArrayList<>();
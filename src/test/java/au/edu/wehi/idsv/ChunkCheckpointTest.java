@@ -0,0 +1,71 @@
+package au.edu.wehi.idsv;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Files;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class ChunkCheckpointTest extends IntermediateFilesTest {
+	private File write(String name, String content) throws IOException {
+		File f = new File(testFolder.getRoot(), name);
+		Files.asCharSink(f, StandardCharsets.UTF_8).write(content);
+		return f;
+	}
+	@Test
+	public void should_not_be_complete_until_marked() throws IOException {
+		ChunkCheckpoint cp = new ChunkCheckpoint(write("chunk.bam", "content"), "fp");
+		assertFalse(cp.isComplete());
+		cp.markComplete();
+		assertTrue(cp.isComplete());
+		assertTrue(cp.getCheckpointFile().exists());
+	}
+	@Test
+	public void should_require_matching_fingerprint() throws IOException {
+		File f = write("chunk.bam", "content");
+		new ChunkCheckpoint(f, "fp").markComplete();
+		assertTrue(new ChunkCheckpoint(f, "fp").isComplete());
+		assertFalse(new ChunkCheckpoint(f, "fp2").isComplete());
+	}
+	@Test
+	public void should_not_be_complete_if_output_modified() throws IOException {
+		File f = write("chunk.bam", "content");
+		new ChunkCheckpoint(f, "fp").markComplete();
+		write("chunk.bam", "contenT");
+		assertFalse(new ChunkCheckpoint(f, "fp").isComplete());
+		write("chunk.bam", "content truncated");
+		assertFalse(new ChunkCheckpoint(f, "fp").isComplete());
+		f.delete();
+		assertFalse(new ChunkCheckpoint(f, "fp").isComplete());
+	}
+	@Test
+	public void should_round_trip_attributes() throws IOException {
+		ChunkCheckpoint cp = new ChunkCheckpoint(write("chunk.bam", "content"), "fp");
+		cp.markComplete(ImmutableMap.of("lastContigId", "17"));
+		assertEquals("17", new ChunkCheckpoint(cp.getOutput(), "fp").getAttribute("lastContigId"));
+		assertNull(new ChunkCheckpoint(cp.getOutput(), "fp2").getAttribute("lastContigId"));
+	}
+	@Test
+	public void invalidate_should_remove_output_and_checkpoint() throws IOException {
+		ChunkCheckpoint cp = new ChunkCheckpoint(write("chunk.bam", "content"), "fp");
+		cp.markComplete();
+		cp.invalidate();
+		assertFalse(cp.getOutput().exists());
+		assertFalse(cp.getCheckpointFile().exists());
+	}
+	@Test
+	public void fingerprint_should_depend_on_configuration_values() {
+		ProcessingContext pc = getContext();
+		String fp = ChunkCheckpoint.fingerprint(pc.getConfig().getAssembly());
+		assertEquals(fp, ChunkCheckpoint.fingerprint(pc.getConfig().getAssembly()));
+		pc.getConfig().getAssembly().k++;
+		assertNotEquals(fp, ChunkCheckpoint.fingerprint(pc.getConfig().getAssembly()));
+		pc.getConfig().getAssembly().k--;
+		pc.getConfig().getAssembly().positional.maxPathLengthMultiple++;
+		assertNotEquals(fp, ChunkCheckpoint.fingerprint(pc.getConfig().getAssembly()));
+	}
+}
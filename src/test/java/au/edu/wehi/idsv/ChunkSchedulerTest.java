@@ -0,0 +1,53 @@
+package au.edu.wehi.idsv;
+
+import com.google.common.collect.ImmutableList;
+import htsjdk.samtools.QueryInterval;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class ChunkSchedulerTest extends TestHelper {
+	@Test
+	public void should_process_most_expensive_chunks_first() {
+		ChunkScheduler cs = new ChunkScheduler(new long[] { 1, 10, 5, 10, 0 });
+		assertEquals(ImmutableList.of(1, 3, 2, 0, 4), cs.getProcessingOrder());
+	}
+	@Test
+	public void single_node_should_process_all_chunks() {
+		ChunkScheduler cs = new ChunkScheduler(new long[] { 1, 10, 5 });
+		assertEquals(cs.getProcessingOrder(), cs.getProcessingOrder(0, 1));
+	}
+	@Test
+	public void should_partition_chunks_across_nodes() {
+		long[] cost = new long[] { 100, 1, 1, 1, 50, 50, 0, 0, 3 };
+		ChunkScheduler cs = new ChunkScheduler(cost);
+		Set<Integer> seen = new HashSet<>();
+		List<Integer> all = new ArrayList<>();
+		for (int node = 0; node < 3; node++) {
+			List<Integer> assigned = cs.getProcessingOrder(node, 3);
+			all.addAll(assigned);
+			seen.addAll(assigned);
+		}
+		assertEquals(cost.length, all.size());
+		assertEquals(cost.length, seen.size());
+	}
+	@Test
+	public void should_balance_cost_across_nodes() {
+		ChunkScheduler cs = new ChunkScheduler(new long[] { 100, 1, 1, 1, 50, 50 });
+		assertEquals(ImmutableList.of(0, 1, 3), cs.getProcessingOrder(0, 2));
+		assertEquals(ImmutableList.of(4, 5, 2), cs.getProcessingOrder(1, 2));
+	}
+	@Test
+	public void should_fall_back_to_chunk_size_when_no_index() {
+		List<QueryInterval[]> chunks = ImmutableList.of(
+				new QueryInterval[] { new QueryInterval(0, 1, 10) },
+				new QueryInterval[] { new QueryInterval(0, 11, 12), new QueryInterval(1, 1, 100) });
+		assertArrayEquals(new long[] { 10, 102 }, ChunkScheduler.estimateCost(getContext(), chunks, ImmutableList.of()));
+	}
+}
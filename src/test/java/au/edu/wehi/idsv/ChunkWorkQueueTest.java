@@ -0,0 +1,144 @@
+package au.edu.wehi.idsv;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+public class ChunkWorkQueueTest extends IntermediateFilesTest {
+	private File queueDir() {
+		return new File(testFolder.getRoot(), "queue");
+	}
+	@Test
+	public void lease_should_be_exclusive() throws IOException {
+		try (ChunkWorkQueue q1 = new ChunkWorkQueue(queueDir(), 60000)) {
+			try (ChunkWorkQueue q2 = new ChunkWorkQueue(queueDir(), 60000)) {
+				ChunkWorkQueue.Lease lease = q1.tryAcquire("task");
+				assertNotNull(lease);
+				assertTrue(lease.isValid());
+				assertNull(q1.tryAcquire("task"));
+				assertNull(q2.tryAcquire("task"));
+				lease.close();
+				assertNotNull(q2.tryAcquire("task"));
+			}
+		}
+	}
+	@Test
+	public void completed_task_should_not_be_leased() throws IOException {
+		try (ChunkWorkQueue q = new ChunkWorkQueue(queueDir(), 60000)) {
+			try (ChunkWorkQueue.Lease lease = q.tryAcquire("task")) {
+				lease.complete();
+			}
+			assertTrue(q.isComplete("task"));
+			assertNull(q.tryAcquire("task"));
+		}
+	}
+	@Test
+	public void task_completed_with_different_fingerprint_should_not_be_complete() throws IOException {
+		try (ChunkWorkQueue q = new ChunkWorkQueue(queueDir(), "a", 60000)) {
+			try (ChunkWorkQueue.Lease lease = q.tryAcquire("task")) {
+				lease.complete();
+			}
+			assertTrue(q.isComplete("task"));
+		}
+		try (ChunkWorkQueue q = new ChunkWorkQueue(queueDir(), "b", 60000)) {
+			assertFalse(q.isComplete("task"));
+			try (ChunkWorkQueue.Lease lease = q.tryAcquire("task")) {
+				assertNotNull(lease);
+				lease.complete();
+			}
+			assertTrue(q.isComplete("task"));
+		}
+	}
+	@Test
+	public void should_recover_abandoned_lease() throws IOException, InterruptedException {
+		ChunkWorkQueue abandoned = new ChunkWorkQueue(queueDir(), 100);
+		ChunkWorkQueue.Lease lease = abandoned.tryAcquire("task");
+		assertNotNull(lease);
+		// simulate process death: lease is no longer renewed but the lease file remains
+		abandoned.close();
+		new File(queueDir(), "task.lease.0").createNewFile();
+		new File(queueDir(), "task.lease.0").setLastModified(System.currentTimeMillis() - 1000);
+		try (ChunkWorkQueue q = new ChunkWorkQueue(queueDir(), 100)) {
+			ChunkWorkQueue.Lease recovered = q.tryAcquire("task");
+			assertNotNull(recovered);
+			assertTrue(recovered.isValid());
+			assertFalse(lease.isValid());
+			recovered.close();
+		}
+	}
+	@Test
+	public void active_lease_should_be_renewed() throws IOException, InterruptedException {
+		try (ChunkWorkQueue q1 = new ChunkWorkQueue(queueDir(), 200)) {
+			try (ChunkWorkQueue q2 = new ChunkWorkQueue(queueDir(), 200)) {
+				ChunkWorkQueue.Lease lease = q1.tryAcquire("task");
+				Thread.sleep(500);
+				assertNull(q2.tryAcquire("task"));
+				assertTrue(lease.isValid());
+				lease.close();
+			}
+		}
+	}
+	@Test
+	public void process_should_complete_all_tasks() throws IOException {
+		ExecutorService threadpool = Executors.newFixedThreadPool(4);
+		try (ChunkWorkQueue q = new ChunkWorkQueue(queueDir(), 60000, 10)) {
+			List<String> tasks = IntStream.range(0, 16).mapToObj(i -> "chunk" + i).collect(Collectors.toList());
+			ConcurrentMap<String, AtomicInteger> processed = new ConcurrentHashMap<>();
+			q.process(tasks, threadpool, task -> processed.computeIfAbsent(task, k -> new AtomicInteger()).incrementAndGet());
+			assertEquals(16, processed.size());
+			for (String task : tasks) {
+				assertTrue(q.isComplete(task));
+				assertEquals(1, processed.get(task).get());
+			}
+		} finally {
+			threadpool.shutdown();
+		}
+	}
+	@Test
+	public void shared_queue_should_process_each_task_once() throws Exception {
+		ExecutorService threadpool = Executors.newFixedThreadPool(4);
+		ExecutorService nodes = Executors.newFixedThreadPool(3);
+		List<String> tasks = IntStream.range(0, 32).mapToObj(i -> "chunk" + i).collect(Collectors.toList());
+		ConcurrentMap<String, AtomicInteger> processed = new ConcurrentHashMap<>();
+		try {
+			List<Future<?>> jobs = IntStream.range(0, 3).mapToObj(i -> nodes.submit(() -> {
+				try (ChunkWorkQueue q = new ChunkWorkQueue(queueDir(), 60000, 10)) {
+					q.process(tasks, threadpool, task -> {
+						processed.computeIfAbsent(task, k -> new AtomicInteger()).incrementAndGet();
+						Thread.sleep(5);
+					});
+				}
+				return null;
+			})).collect(Collectors.toList());
+			for (Future<?> f : jobs) {
+				f.get();
+			}
+		} finally {
+			nodes.shutdown();
+			threadpool.shutdown();
+		}
+		assertEquals(32, processed.size());
+		for (String task : tasks) {
+			assertEquals(1, processed.get(task).get());
+		}
+	}
+	@Test(expected = RuntimeException.class)
+	public void process_should_fail_on_task_error() throws IOException {
+		ExecutorService threadpool = Executors.newFixedThreadPool(2);
+		try (ChunkWorkQueue q = new ChunkWorkQueue(queueDir(), 60000, 10)) {
+			q.process(IntStream.range(0, 4).mapToObj(i -> "chunk" + i).collect(Collectors.toList()), threadpool, task -> {
+				if (task.equals("chunk2")) throw new IOException("test");
+			});
+		} finally {
+			threadpool.shutdown();
+		}
+	}
+}
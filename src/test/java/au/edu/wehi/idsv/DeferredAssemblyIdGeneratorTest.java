@@ -0,0 +1,24 @@
+package au.edu.wehi.idsv;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+
+public class DeferredAssemblyIdGeneratorTest extends TestHelper {
+	@Test
+	public void should_resolve_in_request_order() {
+		DeferredAssemblyIdGenerator a = new DeferredAssemblyIdGenerator();
+		DeferredAssemblyIdGenerator b = new DeferredAssemblyIdGenerator();
+		String b1 = b.generate(new BreakendSummary(0, FWD, 1), B("A"), 1, 0);
+		String a1 = a.generate(new BreakendSummary(0, FWD, 1), B("A"), 1, 0);
+		String a2 = a.generate(new BreakendSummary(0, FWD, 1), B("A"), 1, 0);
+		SequentialIdGenerator gen = new SequentialIdGenerator("asm");
+		a.resolve(gen);
+		b.resolve(gen);
+		assertEquals("asm1", a.getResolvedId(a1));
+		assertEquals("asm2", a.getResolvedId(a2));
+		assertEquals("asm3", b.getResolvedId(b1));
+		assertEquals(3, gen.getLastId());
+	}
+}
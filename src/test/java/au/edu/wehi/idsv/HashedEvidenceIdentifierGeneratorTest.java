@@ -1,9 +1,12 @@
 package au.edu.wehi.idsv;
 
+import com.google.common.hash.Hashing;
 import htsjdk.samtools.SAMRecord;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 import java.util.regex.Pattern;
 
 public class HashedEvidenceIdentifierGeneratorTest extends EvidenceIdentifierGeneratorTest {
@@ -29,4 +32,23 @@ public class HashedEvidenceIdentifierGeneratorTest extends EvidenceIdentifierGen
 			Assert.assertTrue(Pattern.matches("^[0-9a-zA-Z_-]{32}$", hash));
 		}
 	}
+	private static String hashString(String s, int bytes) {
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(Hashing.murmur3_128().hashString(s, StandardCharsets.US_ASCII).asBytes()).substring(0, bytes);
+	}
+	@Test
+	public void should_match_hash_of_string_evidenceID() {
+		StringEvidenceIdentifierGenerator sgen = new StringEvidenceIdentifierGenerator();
+		HashedEvidenceIdentifierGenerator gen = new HashedEvidenceIdentifierGenerator();
+		for (int i = 0; i < 64; i++) {
+			SAMRecord r = Read(0, 1 + i, "10M10S");
+			r.setReadName(String.format("read%d", i));
+			SoftClipEvidence sc = SCE(FWD, r);
+			String expected = hashString(sgen.getSegmentUniqueName(r), 20)
+					+ hashString(sgen.getAlignmentUniqueName(r), 6)
+					+ hashString(sgen.getEvidenceID(sc), 6);
+			Assert.assertEquals(expected, gen.getEvidenceID(sc));
+			Assert.assertEquals(expected.substring(0, 26), gen.getAlignmentUniqueName(r));
+			Assert.assertEquals(expected.substring(0, 20), gen.getSegmentUniqueName(r));
+		}
+	}
 }
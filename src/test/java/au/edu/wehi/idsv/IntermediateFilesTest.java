@@ -1,5 +1,6 @@
 package au.edu.wehi.idsv;
 
+import au.edu.wehi.idsv.configuration.GridssConfiguration;
 import au.edu.wehi.idsv.sam.SAMFileUtil;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
@@ -59,17 +60,20 @@ public class IntermediateFilesTest extends TestHelper {
 		return getCommandlineContext(ImmutableList.of("Normal", "Tumour"));
 	}
 	public ProcessingContext getCommandlineContext(List<String> categories) {
+		return getCommandlineContext(categories, getConfig(testFolder.getRoot()));
+	}
+	public ProcessingContext getCommandlineContext(List<String> categories, GridssConfiguration config) {
 		List<Header> headers = Lists.newArrayList();
 		headers.add(new StringHeader("TestHeader"));
 		ProcessingContext pc;
 		if (reference.equals(SMALL_FA_FILE)) {
 			pc = new ProcessingContext(
 					new FileSystemContext(testFolder.getRoot(), 500000), reference, SMALL_FA, headers,
-					getConfig(testFolder.getRoot()));
+					config);
 		} else {
 			pc = new ProcessingContext(
 					new FileSystemContext(testFolder.getRoot(), 500000), reference, null, headers,
-					getConfig(testFolder.getRoot()));
+					config);
 		}
 		for (String c : categories) {
 			pc.registerCategory(c);
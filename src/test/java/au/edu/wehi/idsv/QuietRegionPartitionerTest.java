@@ -0,0 +1,89 @@
+package au.edu.wehi.idsv;
+
+import htsjdk.samtools.QueryInterval;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+
+public class QuietRegionPartitionerTest {
+	private static void assertInterval(int referenceIndex, int start, int end, QueryInterval qi) {
+		assertEquals(referenceIndex, qi.referenceIndex);
+		assertEquals(start, qi.start);
+		assertEquals(end, qi.end);
+	}
+	@Test
+	public void should_split_at_midpoint_of_gap_larger_than_margin() {
+		QuietRegionPartitioner p = new QuietRegionPartitioner(100);
+		p.add(0, 10, 20);
+		p.add(0, 15, 50);
+		p.add(0, 251, 260);
+		List<QueryInterval[]> result = p.partition(new QueryInterval[] { new QueryInterval(0, 1, 1000) }, 1);
+		assertEquals(2, result.size());
+		assertInterval(0, 1, 150, result.get(0)[0]);
+		assertInterval(0, 151, 1000, result.get(1)[0]);
+	}
+	@Test
+	public void should_not_split_within_margin() {
+		QuietRegionPartitioner p = new QuietRegionPartitioner(100);
+		p.add(0, 10, 20);
+		p.add(0, 120, 130);
+		p.add(0, 230, 240);
+		assertEquals(0, p.getCandidateCutCount());
+		assertEquals(1, p.partition(new QueryInterval[] { new QueryInterval(0, 1, 1000) }, 1).size());
+	}
+	@Test
+	public void should_use_maximum_end_position_of_prior_evidence() {
+		QuietRegionPartitioner p = new QuietRegionPartitioner(100);
+		p.add(0, 10, 500);
+		p.add(0, 200, 210);
+		p.add(0, 400, 410);
+		assertEquals(0, p.getCandidateCutCount());
+	}
+	@Test
+	public void should_split_between_reference_sequences() {
+		QuietRegionPartitioner p = new QuietRegionPartitioner(100);
+		p.add(0, 990, 1000);
+		p.add(1, 1, 10);
+		List<QueryInterval[]> result = p.partition(new QueryInterval[] { new QueryInterval(0, 1, 1000), new QueryInterval(1, 1, 1000) }, 1);
+		assertEquals(2, result.size());
+		assertEquals(1, result.get(0).length);
+		assertInterval(0, 1, 1000, result.get(0)[0]);
+		assertInterval(1, 1, 1000, result.get(1)[0]);
+	}
+	@Test
+	public void should_merge_partitions_smaller_than_minimum_size() {
+		QuietRegionPartitioner p = new QuietRegionPartitioner(10);
+		for (int i = 0; i < 10; i++) {
+			p.add(0, 100 * i + 1, 100 * i + 1);
+		}
+		assertEquals(9, p.getCandidateCutCount());
+		assertEquals(10, p.partition(new QueryInterval[] { new QueryInterval(0, 1, 1000) }, 1).size());
+		List<QueryInterval[]> result = p.partition(new QueryInterval[] { new QueryInterval(0, 1, 1000) }, 3);
+		assertEquals(3, result.size());
+		assertInterval(0, 1, 251, result.get(0)[0]);
+		assertInterval(0, 252, 551, result.get(1)[0]);
+		assertInterval(0, 552, 1000, result.get(2)[0]);
+	}
+	@Test
+	public void should_retain_intervals_between_cuts() {
+		QuietRegionPartitioner p = new QuietRegionPartitioner(10);
+		p.add(0, 100, 100);
+		p.add(0, 600, 600);
+		List<QueryInterval[]> result = p.partition(new QueryInterval[] { new QueryInterval(0, 1, 200), new QueryInterval(0, 300, 400), new QueryInterval(0, 500, 700) }, 1);
+		assertEquals(2, result.size());
+		assertEquals(2, result.get(0).length);
+		assertInterval(0, 1, 200, result.get(0)[0]);
+		assertInterval(0, 300, 350, result.get(0)[1]);
+		assertInterval(0, 351, 400, result.get(1)[0]);
+		assertInterval(0, 500, 700, result.get(1)[1]);
+	}
+	@Test(expected = IllegalArgumentException.class)
+	public void should_require_coordinate_order() {
+		QuietRegionPartitioner p = new QuietRegionPartitioner(10);
+		p.add(0, 100, 100);
+		p.add(0, 50, 50);
+	}
+}
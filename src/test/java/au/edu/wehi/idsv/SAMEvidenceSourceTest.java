@@ -3,6 +3,8 @@ package au.edu.wehi.idsv;
 import au.edu.wehi.idsv.alignment.StubFastqAligner;
 import au.edu.wehi.idsv.bed.IntervalBed;
 import au.edu.wehi.idsv.picard.SynchronousReferenceLookupAdapter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Ordering;
 import com.google.common.io.Files;
@@ -101,6 +103,25 @@ public class SAMEvidenceSourceTest extends IntermediateFilesTest {
 			e.getBreakendSummary().overlaps(new BreakendSummary(1, BWD, 20, 20, 30))));
 	}
 	@Test
+	public void parallel_iterator_should_match_serial_iterator() {
+		List<SAMRecord> in = new ArrayList<>();
+		for (int i = 1; i < 1000; i++) {
+			in.add(Read(1, i, "5S5M"));
+			in.add(Read(1, i, "5M2I5M"));
+			in.add(Read(1, i, "5M5S"));
+			Collections.addAll(in, OEA(1, i, "5M", true));
+			Collections.addAll(in, DP(1, i, "5M", true, 0, 1, "5M", false));
+		}
+		createInput(in);
+		SAMEvidenceSource source = new SAMEvidenceSource(getCommandlineContext(), input, null, 0);
+		for (SAMEvidenceSource.EvidenceSortOrder eso : SAMEvidenceSource.EvidenceSortOrder.values()) {
+			List<String> serial = Lists.newArrayList(Iterators.transform(SAMEvidenceSource.mergedIterator(ImmutableList.of(source, source), false, eso), e -> e.getEvidenceID()));
+			List<String> parallel = Lists.newArrayList(Iterators.transform(SAMEvidenceSource.mergedIterator(ImmutableList.of(source, source), true, eso), e -> e.getEvidenceID()));
+			assertFalse(serial.isEmpty());
+			assertEquals(serial, parallel);
+		}
+	}
+	@Test
 	public void should_set_evidence_source_to_self() {
 		createInput(Read(0, 1, "50M50S"));
 		SAMEvidenceSource source = new SAMEvidenceSource(getCommandlineContext(), input, null, 0);
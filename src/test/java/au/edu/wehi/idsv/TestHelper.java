@@ -314,8 +314,11 @@ public class TestHelper {
 		return defaultConfig;
 	}
 	public static GridssConfiguration getConfig(File workingDirectory) {
+		return getConfig(workingDirectory, getDefaultConfig());
+	}
+	public static GridssConfiguration getConfig(File workingDirectory, Configuration configuration) {
 		GridssConfiguration config;
-		config = new GridssConfiguration(getDefaultConfig(), workingDirectory);
+		config = new GridssConfiguration(configuration, workingDirectory);
 		config.minAnchorShannonEntropy = 0;
 		config.minMapq = 10;
 		config.getAssembly().minReads = 2;
@@ -939,7 +942,7 @@ public class TestHelper {
 		@Override
 		public IdsvSamFileMetrics getMetrics() { return metrics; }
 		@Override
-		public CloseableIterator<DirectedEvidence> iterator(SAMEvidenceSource.EvidenceSortOrder eso) {
+		public CloseableIterator<DirectedEvidence> iterator(SAMEvidenceSource.EvidenceSortOrder eso, boolean parallel) {
 			return new AutoClosingIterator<>(evidence.iterator());
 		}
 		@Override
@@ -973,7 +976,7 @@ public class TestHelper {
 		@Override
 		public int getMaxConcordantFragmentSize() { return fragSize; }
 		@Override
-		public CloseableIterator<DirectedEvidence> iterator(SAMEvidenceSource.EvidenceSortOrder eso) {
+		public CloseableIterator<DirectedEvidence> iterator(SAMEvidenceSource.EvidenceSortOrder eso, boolean parallel) {
 			return new AutoClosingIterator<>(assemblies.iterator());
 		}
 		@Override
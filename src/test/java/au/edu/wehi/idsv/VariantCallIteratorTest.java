@@ -78,6 +78,26 @@ public class VariantCallIteratorTest extends IntermediateFilesTest {
 		assertEquals(4 * 2, result.size());
 	}
 	@Test
+	public void should_merge_orientations_in_deterministic_order() {
+		List<DirectedEvidence> list = new ArrayList<DirectedEvidence>();
+		for (int i = 1; i < 1000; i += 2) {
+			list.add(new MockDirectedBreakpoint(new BreakpointSummary(0, FWD, i, 1, FWD, i)));
+			list.add(new MockDirectedBreakpoint(new BreakpointSummary(0, FWD, i, 1, BWD, i)));
+			list.add(new MockDirectedBreakpoint(new BreakpointSummary(0, BWD, i, 1, FWD, i)));
+			list.add(new MockDirectedBreakpoint(new BreakpointSummary(0, BWD, i, 1, BWD, i)));
+		}
+		List<String> expected = null;
+		for (int i = 0; i < 8; i++) {
+			List<String> ids = new ArrayList<>();
+			new VariantCallIterator(getContext(), list.iterator()).forEachRemaining(v -> ids.add(v.getID()));
+			assertEquals(4 * 2 * 500, ids.size());
+			if (expected == null) {
+				expected = ids;
+			}
+			assertEquals(expected, ids);
+		}
+	}
+	@Test
 	public void interval_caller_should_filter_calls_in_which_neither_breakend_starts_in_interval()  {
 		createInput(
 				RP(0, 1, 2, 1),
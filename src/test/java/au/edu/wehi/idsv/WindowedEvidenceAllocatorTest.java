@@ -0,0 +1,92 @@
+package au.edu.wehi.idsv;
+
+import au.edu.wehi.idsv.SequentialEvidenceAllocator.VariantEvidenceSupport;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.MoreExecutors;
+import htsjdk.samtools.QueryInterval;
+import htsjdk.samtools.SAMRecord;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+public class WindowedEvidenceAllocatorTest extends TestHelper {
+	private List<DirectedEvidence> overlapping(List<DirectedEvidence> evidence, QueryInterval[] intervals) {
+		return evidence.stream()
+				.filter(e -> QueryIntervalUtil.overlaps(intervals, e.getBreakendSummary()))
+				.collect(Collectors.toList());
+	}
+	private void assertSameAllocation(List<VariantEvidenceSupport> expected, List<VariantEvidenceSupport> actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			Assert.assertSame(expected.get(i).variant, actual.get(i).variant);
+			assertEquals(
+					expected.get(i).support.stream().map(e -> e.getEvidenceID()).sorted().collect(Collectors.toList()),
+					actual.get(i).support.stream().map(e -> e.getEvidenceID()).sorted().collect(Collectors.toList()));
+		}
+	}
+	@Test
+	public void should_match_sequential_allocation() {
+		final int fragSize = 4;
+		final int testSize = 24;
+		final ProcessingContext pc = getContext();
+		pc.getVariantCallingParameters().writeFiltered = true;
+		pc.getVariantCallingParameters().minScore = 0;
+		pc.getVariantCallingParameters().breakendMargin = 0;
+		StubSAMEvidenceSource ses = new StubSAMEvidenceSource(pc, null, 0, 0, fragSize);
+		for (int i = 1; i < testSize; i++) {
+			for (int j = 1; j < testSize; j++) {
+				SAMRecord[] dp = withReadName(String.format("read-%d-%d", i, j), DP(0, 17 * i, "1M", true, 0, 23 * j, "1M", false));
+				ses.evidence.add(NonReferenceReadPair.create(dp[0], dp[1], ses));
+				ses.evidence.add(NonReferenceReadPair.create(dp[1], dp[0], ses));
+			}
+		}
+		ses.evidence.removeIf(e -> e == null);
+		ses.evidence.sort(DirectedEvidenceOrder.ByNatural);
+		AggregateEvidenceSource es = new AggregateEvidenceSource(pc, ImmutableList.of(ses), null, SAMEvidenceSource.EvidenceSortOrder.EvidenceStartPosition);
+		ArrayList<VariantContextDirectedEvidence> calls = Lists.newArrayList(new VariantCallIterator(es));
+		calls.sort(VariantContextDirectedEvidence.ByBreakendStartEnd);
+		List<VariantEvidenceSupport> expected = Lists.newArrayList(new SequentialEvidenceAllocator(pc, calls.iterator(), ses.evidence.iterator(), Collections.<DirectedEvidence>emptyIterator(), 4, true));
+		assertEquals(ses.evidence.size(), expected.stream().mapToInt(ves -> ves.support.size()).sum());
+		for (int windowSize : new int[] { 50, 100, 1000, 100000 }) {
+			List<QueryInterval[]> windows = pc.getReference().getIntervals(windowSize, 0);
+			ExecutorService threadpool = Executors.newFixedThreadPool(4);
+			try (WindowedEvidenceAllocator allocator = new WindowedEvidenceAllocator(pc, calls.iterator(), windows,
+					intervals -> overlapping(ses.evidence, intervals).iterator(),
+					intervals -> Collections.<DirectedEvidence>emptyIterator(),
+					4, true, threadpool, 3)) {
+				assertSameAllocation(expected, Lists.newArrayList(allocator));
+			} finally {
+				threadpool.shutdown();
+			}
+		}
+	}
+	@Test
+	public void should_return_calls_in_window_order() {
+		final ProcessingContext pc = getContext();
+		List<VariantContextDirectedEvidence> calls = new ArrayList<>();
+		for (int i = 1; i < 100; i++) {
+			calls.add((VariantContextDirectedEvidence)minimalBreakend()
+					.breakend(new BreakendSummary(0, BWD, 10 * i), "")
+					.id("call" + i)
+					.phredScore(10).make());
+		}
+		List<QueryInterval[]> windows = pc.getReference().getIntervals(64, 0);
+		try (WindowedEvidenceAllocator allocator = new WindowedEvidenceAllocator(pc, calls.iterator(), windows,
+				intervals -> Collections.<DirectedEvidence>emptyIterator(),
+				intervals -> Collections.<DirectedEvidence>emptyIterator(),
+				10, true, MoreExecutors.newDirectExecutorService(), 1)) {
+			List<VariantEvidenceSupport> result = Lists.newArrayList(allocator);
+			assertEquals(calls.size(), result.size());
+			for (int i = 0; i < calls.size(); i++) {
+				Assert.assertSame(calls.get(i), result.get(i).variant);
+			}
+		}
+	}
+}
@@ -15,6 +15,8 @@ import org.junit.Test;
 import org.junit.experimental.categories.Category;
 
 import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.junit.Assert.assertEquals;
 
@@ -221,4 +223,24 @@ public class BreakpointHomologyTest extends TestHelper {
 		assertEquals(10, bh.getLocalHomologyLength());
 		assertEquals(10, bh.getRemoteHomologyLength());
 	}
+	@Test
+	public void batch_should_match_individual_calculation() {
+		List<BreakpointSummary> bps = new ArrayList<>();
+		List<String> inserted = new ArrayList<>();
+		for (int pos = 100; pos < 200; pos += 7) {
+			for (BreakendDirection dir1 : BreakendDirection.values()) {
+				for (BreakendDirection dir2 : BreakendDirection.values()) {
+					bps.add(new BreakpointSummary(0, dir1, pos, 0, dir2, pos + 300));
+					inserted.add(pos % 2 == 0 ? "" : "AAAAA");
+				}
+			}
+		}
+		List<BreakpointHomology> batch = BreakpointHomology.calculate(SMALL_FA, bps, inserted, 10, 50);
+		assertEquals(bps.size(), batch.size());
+		for (int i = 0; i < bps.size(); i++) {
+			BreakpointHomology bh = BreakpointHomology.calculate(SMALL_FA, bps.get(i), inserted.get(i), 10, 50);
+			assertEquals(bh.getLocalHomologyLength(), batch.get(i).getLocalHomologyLength());
+			assertEquals(bh.getRemoteHomologyLength(), batch.get(i).getRemoteHomologyLength());
+		}
+	}
 }
@@ -0,0 +1,50 @@
+package au.edu.wehi.idsv.alignment;
+
+import au.edu.wehi.idsv.TestHelper;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class BwaIndexRegistryTest extends TestHelper {
+    private static final File REFERENCE = new File("src/test/resources/small.fa");
+    @Test
+    public void should_share_index() {
+        int initial = BwaIndexRegistry.loadedIndexCount();
+        try (BwaIndexRegistry.Handle h1 = BwaIndexRegistry.acquire(REFERENCE)) {
+            try (BwaIndexRegistry.Handle h2 = BwaIndexRegistry.acquire(new File("src/test/../test/resources/small.fa"))) {
+                assertSame(h1.getIndex(), h2.getIndex());
+                assertEquals(initial + 1, BwaIndexRegistry.loadedIndexCount());
+            }
+            assertEquals(initial + 1, BwaIndexRegistry.loadedIndexCount());
+        }
+        assertEquals(initial, BwaIndexRegistry.loadedIndexCount());
+    }
+    @Test
+    public void should_ignore_repeated_close() {
+        int initial = BwaIndexRegistry.loadedIndexCount();
+        try (BwaIndexRegistry.Handle h1 = BwaIndexRegistry.acquire(REFERENCE)) {
+            BwaIndexRegistry.Handle h2 = BwaIndexRegistry.acquire(REFERENCE);
+            h2.close();
+            h2.close();
+            assertEquals(initial + 1, BwaIndexRegistry.loadedIndexCount());
+        }
+        assertEquals(initial, BwaIndexRegistry.loadedIndexCount());
+    }
+    @Test
+    public void should_share_index_across_aligners() {
+        try (BwaAligner ba1 = new BwaAligner(REFERENCE, SMALL_FA.getSequenceDictionary(), 1)) {
+            try (BwaAligner ba2 = new BwaAligner(REFERENCE, SMALL_FA.getSequenceDictionary(), 1)) {
+                assertSame(ba1.getIndex(), ba2.getIndex());
+            }
+        }
+    }
+    @Test(expected = IllegalStateException.class)
+    public void should_not_return_index_after_close() {
+        BwaIndexRegistry.Handle h = BwaIndexRegistry.acquire(REFERENCE);
+        h.close();
+        h.getIndex();
+    }
+}
@@ -2,6 +2,7 @@ package au.edu.wehi.idsv.alignment;
 
 import au.edu.wehi.idsv.TestHelper;
 import com.google.common.collect.ImmutableList;
+import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.fastq.FastqRecord;
 import org.junit.Test;
 
@@ -74,4 +75,22 @@ public class BwaStreamingAlignerTest extends TestHelper {
         assertEquals(0, bwamem.outstandingAlignmentRecord());
         assertEquals(0, bwamem.processedAlignmentRecords());
     }
-}
\ No newline at end of file
+    @Test
+    public void multiple_lanes_should_return_records_in_input_order() throws IOException {
+        BwaStreamingAligner bwamem = new BwaStreamingAligner(SMALL_FA_FILE, SMALL_FA.getSequenceDictionary(), 4, 200, 3);
+        for (int i = 0; i < 100; i++) {
+            bwamem.asyncAlign(new FastqRecord(Integer.toString(i), S(RANDOM).substring(i, i + 50), "", S(getPolyA(50))));
+        }
+        bwamem.flush();
+        assertEquals(0, bwamem.outstandingAlignmentRecord());
+        int lastRead = -1;
+        while (bwamem.processedAlignmentRecords() > 0) {
+            SAMRecord r = bwamem.getAlignment();
+            int read = Integer.parseInt(r.getReadName());
+            assertTrue(read == lastRead || read == lastRead + 1);
+            lastRead = read;
+        }
+        assertEquals(99, lastRead);
+        bwamem.close();
+    }
+}
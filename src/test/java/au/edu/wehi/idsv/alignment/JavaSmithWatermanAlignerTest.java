@@ -0,0 +1,43 @@
+package au.edu.wehi.idsv.alignment;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class JavaSmithWatermanAlignerTest extends SmithWatermanAlignerTest {
+    @Override
+    protected Aligner create(int match, int mismatch, int ambiguous, int gapOpen, int gapExtend) {
+        return new JavaSmithWatermanAligner(match, mismatch, ambiguous, gapOpen, gapExtend);
+    }
+    @Test
+    public void should_align_insertion() {
+        Alignment a = create().align_smith_waterman(
+                B("AAACCCCCCCCCCCCCGTTAATTAATTAATTTT"),
+                B("AAACCCCCCCCCCCCCTTAATTAATTAATTTT"));
+        assertEquals("16M1I16M", a.getCigar());
+        assertEquals(0, a.getStartPosition());
+    }
+    @Test
+    public void should_extend_gap() {
+        Alignment a = create().align_smith_waterman(
+                B("AAACCCCCCCCCCCCCTTAATTAATTAATTTT"),
+                B("AAACCCCCCCCCCCCCGGGTTAATTAATTAATTTT"));
+        assertEquals("16M3D16M", a.getCigar());
+    }
+    @Test
+    public void batch_should_match_individual_alignment() {
+        Aligner aligner = create();
+        List<byte[]> seqs = ImmutableList.of(B("AACCCTTTTTT"), B("GGGGGGTTTTTT"), B("AAACCCCCCCCCCCCCTTAATTAATTAATTTT"));
+        List<byte[]> refs = ImmutableList.of(B("AAACCCTTTTTT"), B("AAACCCTTTTTT"), B("AAACCCCCCCCCCCCCGTTAATTAATTAATTTT"));
+        List<Alignment> result = aligner.align_smith_waterman(seqs, refs);
+        assertEquals(3, result.size());
+        for (int i = 0; i < seqs.size(); i++) {
+            Alignment expected = aligner.align_smith_waterman(seqs.get(i), refs.get(i));
+            assertEquals(expected.getCigar(), result.get(i).getCigar());
+            assertEquals(expected.getStartPosition(), result.get(i).getStartPosition());
+        }
+    }
+}
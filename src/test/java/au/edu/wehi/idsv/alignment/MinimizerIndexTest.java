@@ -0,0 +1,122 @@
+package au.edu.wehi.idsv.alignment;
+
+import au.edu.wehi.idsv.TestHelper;
+import au.edu.wehi.idsv.picard.InMemoryReferenceSequenceFile;
+import htsjdk.samtools.util.SequenceUtil;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class MinimizerIndexTest extends TestHelper {
+	@Rule
+	public TemporaryFolder testFolder = new TemporaryFolder();
+	private static boolean contains(List<MinimizerIndex.ExactMatch> matches, int referenceIndex, int start, boolean negativeStrand) {
+		return matches.stream().anyMatch(m -> m.referenceIndex == referenceIndex && m.start == start && m.negativeStrand == negativeStrand);
+	}
+	@Test
+	public void should_find_all_exact_matches() {
+		MinimizerIndex index = MinimizerIndex.create(SMALL_FA, 12, 5);
+		byte[] random = SMALL_FA.getSequence("random").getBases();
+		int randomIndex = SMALL_FA.getSequenceDictionary().getSequence("random").getSequenceIndex();
+		for (int start = 0; start < 1000; start += 37) {
+			byte[] seq = Arrays.copyOfRange(random, start, start + 50);
+			List<MinimizerIndex.ExactMatch> matches = index.findExactMatches(SMALL_FA, seq, 1000);
+			assertTrue(contains(matches, randomIndex, start + 1, false));
+			SequenceUtil.reverseComplement(seq);
+			matches = index.findExactMatches(SMALL_FA, seq, 1000);
+			assertTrue(contains(matches, randomIndex, start + 1, true));
+		}
+	}
+	@Test
+	public void should_not_find_inexact_match() {
+		MinimizerIndex index = MinimizerIndex.create(SMALL_FA, 12, 5);
+		byte[] seq = Arrays.copyOfRange(SMALL_FA.getSequence("random").getBases(), 100, 150);
+		seq[25] = (byte)(seq[25] == 'A' ? 'C' : 'A');
+		assertEquals(0, index.findExactMatches(SMALL_FA, seq, 1000).size());
+	}
+	@Test
+	public void should_not_resolve_short_or_ambiguous_sequences() {
+		MinimizerIndex index = MinimizerIndex.create(SMALL_FA, 12, 5);
+		assertNull(index.findExactMatches(SMALL_FA, B("ACGTACGTACGTACG"), 1000));
+		assertNull(index.findExactMatches(SMALL_FA, B("ACGTACGTACGTACGNACGTACGTACGTACGT"), 1000));
+	}
+	@Test
+	public void should_not_resolve_repetitive_sequences() {
+		MinimizerIndex index = MinimizerIndex.create(SMALL_FA, 12, 5);
+		assertNull(index.findExactMatches(SMALL_FA, getPolyA(50), 1));
+	}
+	@Test
+	public void should_round_trip_index_file() throws IOException {
+		MinimizerIndex index = MinimizerIndex.create(SMALL_FA, 12, 5);
+		File file = new File(testFolder.getRoot(), "small.fa.gridssminimizer");
+		index.save(file);
+		MinimizerIndex loaded = MinimizerIndex.load(file);
+		assertEquals(index.getK(), loaded.getK());
+		assertEquals(index.getW(), loaded.getW());
+		assertTrue(loaded.matchesReference(SMALL_FA.getSequenceDictionary()));
+		byte[] seq = Arrays.copyOfRange(SMALL_FA.getSequence("random").getBases(), 200, 250);
+		assertEquals(index.findExactMatches(SMALL_FA, seq, 1000).toString(), loaded.findExactMatches(SMALL_FA, seq, 1000).toString());
+		assertEquals(index.findUniqueExactMatch(SMALL_FA, seq, 1000).toString(), loaded.findUniqueExactMatch(SMALL_FA, seq, 1000).toString());
+		assertEquals(index.findUniqueExactMatch(SMALL_FA, seq, 1000).mapq, loaded.findUniqueExactMatch(SMALL_FA, seq, 1000).mapq);
+	}
+	private static byte[] randomBases(Random rng, int length) {
+		byte[] b = new byte[length];
+		for (int i = 0; i < length; i++) {
+			b[i] = (byte)"ACGT".charAt(rng.nextInt(4));
+		}
+		return b;
+	}
+	/**
+	 * Contig 0 is random sequence, contig 1 is random sequence containing a copy of
+	 * bases 1000-1099 of contig 0 with a mismatch at offset 50
+	 */
+	private static InMemoryReferenceSequenceFile nearDuplicateReference() {
+		Random rng = new Random(0);
+		byte[] a = randomBases(rng, 2000);
+		byte[] b = randomBases(rng, 2000);
+		System.arraycopy(a, 1000, b, 500, 100);
+		b[550] = (byte)(b[550] == 'A' ? 'C' : 'A');
+		return new InMemoryReferenceSequenceFile(new String[] { "a", "b" }, new byte[][] { a, b });
+	}
+	@Test
+	public void findUniqueExactMatch_should_resolve_unique_sequence() {
+		InMemoryReferenceSequenceFile ref = nearDuplicateReference();
+		MinimizerIndex index = MinimizerIndex.create(ref, 12, 5);
+		byte[] seq = Arrays.copyOfRange(ref.getSequence("a").getBases(), 200, 300);
+		MinimizerIndex.UniqueExactMatch match = index.findUniqueExactMatch(ref, seq, 1000);
+		assertNotNull(match);
+		assertEquals(0, match.referenceIndex);
+		assertEquals(201, match.start);
+		assertFalse(match.negativeStrand);
+		assertEquals(60, match.mapq);
+		SequenceUtil.reverseComplement(seq);
+		match = index.findUniqueExactMatch(ref, seq, 1000);
+		assertEquals(201, match.start);
+		assertTrue(match.negativeStrand);
+	}
+	@Test
+	public void findUniqueExactMatch_should_not_resolve_sequence_with_near_match() {
+		InMemoryReferenceSequenceFile ref = nearDuplicateReference();
+		MinimizerIndex index = MinimizerIndex.create(ref, 12, 5);
+		byte[] seq = Arrays.copyOfRange(ref.getSequence("a").getBases(), 1020, 1080);
+		assertEquals(1, index.findExactMatches(ref, seq, 1000).size());
+		assertNull(index.findUniqueExactMatch(ref, seq, 1000));
+	}
+	@Test
+	public void findUniqueExactMatch_should_not_report_full_mapq_for_short_sequences() {
+		InMemoryReferenceSequenceFile ref = nearDuplicateReference();
+		MinimizerIndex index = MinimizerIndex.create(ref, 12, 5);
+		byte[] seq = Arrays.copyOfRange(ref.getSequence("a").getBases(), 200, 225);
+		MinimizerIndex.UniqueExactMatch match = index.findUniqueExactMatch(ref, seq, 1000);
+		assertNotNull(match);
+		assertTrue(match.mapq < 60);
+	}
+}
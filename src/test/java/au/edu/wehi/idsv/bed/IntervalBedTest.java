@@ -1,6 +1,7 @@
 package au.edu.wehi.idsv.bed;
 
 import au.edu.wehi.idsv.TestHelper;
+import com.google.common.collect.ImmutableList;
 import htsjdk.samtools.QueryInterval;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
@@ -8,6 +9,7 @@ import org.junit.rules.TemporaryFolder;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.util.Random;
 
 import static org.junit.Assert.*;
 
@@ -116,4 +118,76 @@ public class IntervalBedTest extends TestHelper {
 			assertEquals(qi[i].end, result[i].end);
 		}
 	}
+	@Test
+	public void should_merge_overlapping_and_adjacent_intervals() {
+		IntervalBed bed = new IntervalBed(getContext().getLinear());
+		bed.addInterval(0, 5, 10);
+		bed.addInterval(0, 1, 2);
+		bed.addInterval(0, 8, 12);
+		bed.addInterval(0, 13, 15);
+		bed.addInterval(0, 20, 20);
+		QueryInterval[] qi = bed.asQueryInterval();
+		assertEquals(3, qi.length);
+		assertEquals(1, qi[0].start);
+		assertEquals(2, qi[0].end);
+		assertEquals(5, qi[1].start);
+		assertEquals(15, qi[1].end);
+		assertEquals(20, qi[2].start);
+		assertEquals(20, qi[2].end);
+		assertEquals(3, bed.size());
+	}
+	@Test
+	public void should_include_intervals_added_after_lookup() {
+		IntervalBed bed = new IntervalBed(getContext().getLinear());
+		bed.addInterval(0, 5, 10);
+		assertFalse(bed.overlaps(0, 20, 20));
+		bed.addInterval(0, 20, 20);
+		assertTrue(bed.overlaps(0, 20, 20));
+		assertTrue(bed.overlaps(0, 5, 5));
+	}
+	@Test
+	public void merge_should_union_intervals() {
+		IntervalBed a = new IntervalBed(getContext().getLinear());
+		a.addInterval(0, 1, 5);
+		IntervalBed b = new IntervalBed(getContext().getLinear());
+		b.addInterval(0, 4, 8);
+		b.addInterval(1, 1, 1);
+		IntervalBed merged = IntervalBed.merge(getContext().getLinear(), ImmutableList.of(a, b));
+		assertEquals(2, merged.size());
+		assertTrue(merged.overlaps(0, 8, 8));
+		assertTrue(merged.overlaps(1, 1, 1));
+		assertFalse(merged.overlaps(0, 9, 9));
+	}
+	@Test
+	public void cursor_should_match_lookup() {
+		Random rng = new Random(0);
+		IntervalBed bed = new IntervalBed(getContext().getLinear());
+		for (int i = 0; i < 1000; i++) {
+			int start = rng.nextInt(9000) + 1;
+			bed.addInterval(0, start, start + rng.nextInt(10));
+		}
+		IntervalBed.Cursor cursor = bed.cursor();
+		// mostly sequential lookups with occasional backwards jumps
+		int position = 1;
+		for (int i = 0; i < 10000; i++) {
+			position = Math.max(1, Math.min(9900, position + rng.nextInt(20) - (rng.nextInt(50) == 0 ? 500 : 2)));
+			int end = position + rng.nextInt(5);
+			assertEquals(bed.overlaps(0, position, end), cursor.overlaps(0, position, end));
+		}
+		// large jumps
+		for (int i = 0; i < 1000; i++) {
+			int start = rng.nextInt(9900) + 1;
+			assertEquals(bed.overlaps(0, start, start), cursor.overlaps(0, start, start));
+		}
+	}
+	@Test
+	public void cursor_should_reflect_added_intervals() {
+		IntervalBed bed = new IntervalBed(getContext().getLinear());
+		bed.addInterval(0, 5, 10);
+		IntervalBed.Cursor cursor = bed.cursor();
+		assertFalse(cursor.overlaps(0, 20, 20));
+		bed.addInterval(0, 20, 20);
+		assertTrue(cursor.overlaps(0, 20, 20));
+		assertTrue(cursor.overlaps(0, 5, 5));
+	}
 }
@@ -6,6 +6,7 @@ import it.unimi.dsi.fastutil.longs.LongArrayList;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 
 import static org.junit.Assert.*;
@@ -374,4 +375,33 @@ public class KmerEncodingHelperTest extends TestHelper {
 		LongArrayList seq = KPN(k,   "AATAACCATGC", 1, 1, true).pathKmers();
 		assertEquals(1, KmerEncodingHelper.partialSequenceBasesDifferent(k, ref, seq, 1, true));
 	}
+	@Test
+	public void picardBasesToPacked_should_match_PackedSequence_encoding() {
+		byte[] bases = B("ACGTNacgtRAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAGGGGCCCCTTTTAAAA");
+		for (boolean reverse : new boolean[] { false, true }) {
+			for (boolean complement : new boolean[] { false, true }) {
+				long[] packed = KmerEncodingHelper.picardBasesToPacked(bases, reverse, complement);
+				assertEquals(2, packed.length);
+				assertEquals(0, packed[1] & ((1L << (2 * (64 - bases.length))) - 1));
+				for (int i = 0; i < bases.length; i++) {
+					int offset = reverse ? bases.length - 1 - i : i;
+					long expected = KmerEncodingHelper.picardBaseToEncoded(bases[offset]);
+					if (complement) expected = KmerEncodingHelper.complement(1, expected);
+					assertEquals(expected, (packed[i / 32] >>> (2 * (31 - i % 32))) & 3);
+				}
+			}
+		}
+	}
+	@Test
+	public void ambiguousKmers_should_flag_kmers_containing_ambiguous_bases() {
+		assertNull(KmerEncodingHelper.ambiguousKmers(3, B("ACGTACGT")));
+		assertNull(KmerEncodingHelper.ambiguousKmers(5, B("ANGT")));
+		BitSet bs = KmerEncodingHelper.ambiguousKmers(3, B("ACNNTACGTAN"));
+		// kmers: ACN CNN NNT NTA TAC ACG CGT GTA TAN
+		assertEquals(9, bs.length());
+		assertEquals(5, bs.cardinality());
+		for (int i : new int[] { 0, 1, 2, 3, 8 }) {
+			assertTrue(bs.get(i));
+		}
+	}
 }
@@ -159,4 +159,27 @@ public class PackedSequenceTest extends TestHelper {
 		assertEquals(70, PackedSequence.overlapLength(seq1, seq3, 30));
 		assertEquals(70, PackedSequence.overlapMatches(seq1, seq3, 30));
 	}
+	@Test
+	public void getKmers_should_match_getKmer() {
+		String seq = S(RANDOM).substring(0, 100);
+		for (boolean reverse : new boolean[] { false, true }) {
+			for (boolean complement : new boolean[] { false, true }) {
+				PackedSequence ps = new PackedSequence(B(seq), reverse, complement);
+				for (int k = 1; k <= 32; k++) {
+					long[] kmers = new long[seq.length() - k + 1];
+					long[] rc = new long[seq.length() - k + 1];
+					ps.getKmers(k, kmers, rc);
+					for (int i = 0; i < kmers.length; i++) {
+						assertEquals(ps.getKmer(i, k), kmers[i]);
+						assertEquals(KmerEncodingHelper.reverseComplement(k, kmers[i]), rc[i]);
+					}
+				}
+			}
+		}
+	}
+	@Test
+	public void getKmers_should_return_no_kmers_for_short_sequence() {
+		assertEquals(0, new PackedSequence(B("ACGT"), false, false).getKmers(5).length);
+		assertEquals(1, new PackedSequence(B("ACGT"), false, false).getKmers(4).length);
+	}
 }
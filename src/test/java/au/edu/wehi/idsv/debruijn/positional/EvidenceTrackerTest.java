@@ -146,4 +146,25 @@ public class EvidenceTrackerTest extends TestHelper {
 				.forEach(ksn -> tracker.track(ksn));
 		tracker.remove(ImmutableSet.of(e, e2));
 	}
+	@Test
+	public void should_reuse_storage_of_removed_evidence() {
+		int k = 4;
+		KmerEvidence e1 = KmerEvidence.create(k, SCE(FWD, withReadName("read1", Read(0, 1, "4M1S"))));
+		KmerEvidence e2 = KmerEvidence.create(k, SCE(FWD, withReadName("read2", Read(0, 1, "4M1S"))));
+		EvidenceTracker tracker = new EvidenceTracker();
+		tracker.track(e1.node(0));
+		tracker.track(e1.node(1));
+		assertEquals(2, tracker.tracking_supportNodeCount());
+		tracker.remove(Collections.singleton(e1));
+		assertEquals(0, tracker.tracking_supportNodeCount());
+		assertEquals(0, tracker.tracking_kmerCount());
+		tracker.track(e2.node(0));
+		tracker.sanityCheck();
+		assertFalse(tracker.isTracked(e1.evidence().getEvidenceID()));
+		assertTrue(tracker.isTracked(e2.evidence().getEvidenceID()));
+		Set<KmerEvidence> result = tracker.untrack(ImmutableList.of(new KmerPathSubnode(KPN(k, "AAAA", 1, 1, true))));
+		assertEquals(ImmutableSet.of(e2), result);
+		assertEquals(2, tracker.tracking_evidenceTotal());
+		assertEquals(0, tracker.tracking_evidenceActive());
+	}
 }
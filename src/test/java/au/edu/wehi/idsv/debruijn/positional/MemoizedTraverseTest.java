@@ -2,6 +2,7 @@ package au.edu.wehi.idsv.debruijn.positional;
 
 import au.edu.wehi.idsv.TestHelper;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import org.junit.Test;
 
 import java.util.ArrayList;
@@ -58,6 +59,33 @@ public class MemoizedTraverseTest extends TestHelper {
 		assertEquals(5, mt.pollFrontier().node.firstStart());
 		assertTrue(mt.isEmptyFrontier());
 	}
+	@Test
+	public void memoizedPathCount_should_count_paths_over_all_nodes() {
+		KmerPathNode n = N(1, 20, 1);
+		KmerPathNode n2 = N(1, 20, 1);
+		MemoizedTraverse mt = new MemoizedTraverse();
+		mt.memoize(new TraversalNode(new KmerPathSubnode(n, 1, 8), 0));
+		mt.memoize(new TraversalNode(new KmerPathSubnode(n, 3, 4), 1));
+		mt.memoize(new TraversalNode(new KmerPathSubnode(n2, 1, 8), 0));
+		assertEquals(2, mt.memoizedNodeCount());
+		assertEquals(4, mt.memoizedPathCount());
+		mt.remove(n);
+		assertEquals(1, mt.memoizedPathCount());
+	}
+	@Test
+	public void memoizedPathCount_should_exclude_bulk_removed_child_paths() {
+		KmerPathNode parent = N(1, 10, 1);
+		KmerPathNode child = N(2, 11, 1);
+		KmerPathNode.addEdge(parent, child);
+		MemoizedTraverse mt = new MemoizedTraverse();
+		TraversalNode ptn = new TraversalNode(new KmerPathSubnode(parent), 0);
+		mt.memoize(ptn);
+		mt.memoize(new TraversalNode(ptn, new KmerPathSubnode(child)));
+		assertEquals(2, mt.memoizedPathCount());
+		mt.remove(Sets.newHashSet(parent));
+		assertEquals(0, mt.memoizedPathCount());
+		assertTrue(mt.sanityCheck());
+	}
 	private void assertNodeIs(int start, int end, int score, TraversalNode n) {
 		assertEquals(start, n.node.firstStart());
 		assertEquals(end, n.node.firstEnd());
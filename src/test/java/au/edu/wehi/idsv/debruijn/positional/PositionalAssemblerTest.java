@@ -29,6 +29,26 @@ public class PositionalAssemblerTest extends TestHelper {
 		assertEquals(4, r.size());
 	}
 	@Test
+	public void pipelined_assembly_should_match_single_threaded_assembly() {
+		ProcessingContext pc = getContext();
+		AssemblyEvidenceSource aes = AES(pc);
+		pc.getAssemblyParameters().k = 4;
+		List<DirectedEvidence> input = new ArrayList<DirectedEvidence>();
+		for (int i = 1; i < 1000; i += 7) {
+			input.add(SCE(BWD, Read(0, i, "5S5M")));
+			input.add(SCE(FWD, Read(0, i, "5M5S")));
+			input.add(SCE(FWD, Read(1, i, "5M5S")));
+		}
+		input.sort(DirectedEvidenceOrder.ByStartEnd);
+		ArrayList<SAMRecord> expected = Lists.newArrayList(new PositionalAssembler(pc, aes, new SequentialIdGenerator("asm"), input.iterator(), null, null));
+		pc.getAssemblyParameters().positional.pipelineStages = true;
+		ArrayList<SAMRecord> actual = Lists.newArrayList(new PositionalAssembler(pc, aes, new SequentialIdGenerator("asm"), input.iterator(), null, null));
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).getSAMString(), actual.get(i).getSAMString());
+		}
+	}
+	@Test
 	public void should_assemble_simple_forward_soft_clips() {
 		ProcessingContext pc = getContext();
 		pc.getAssemblyParameters().anchorLength = 1;
@@ -0,0 +1,70 @@
+package au.edu.wehi.idsv.debruijn.positional.optimiseddatastructures;
+
+import au.edu.wehi.idsv.TestHelper;
+import au.edu.wehi.idsv.debruijn.positional.KmerPathNode;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class KmerPathNodeKmerIndexTest extends TestHelper {
+    private static List<Pair<KmerPathNode, Integer>> overlapping(KmerPathNodeKmerIndex index, long kmer, int start, int end) {
+        List<Pair<KmerPathNode, Integer>> result = new ArrayList<>();
+        index.forEachOverlapping(kmer, start, end, (n, offset) -> result.add(Pair.of(n, offset)));
+        return result;
+    }
+    @Test
+    public void should_lookup_by_kmer_and_position() {
+        KmerPathNodeKmerIndex index = new KmerPathNodeKmerIndex(1);
+        KmerPathNode n1 = KPN(new long[] { 1, 2, 3 }, 10, 20, false);
+        KmerPathNode n2 = KPN(new long[] { 2, 4 }, 100, 100, false);
+        index.add(n1);
+        index.add(n2);
+        assertEquals(5, index.size());
+        assertEquals(2, index.maxKmerCount());
+        // kmer 2 at offset 1 of n1 covers [11, 21]
+        assertEquals(0, overlapping(index, 2, 0, 10).size());
+        assertEquals(1, overlapping(index, 2, 0, 11).size());
+        assertEquals(Pair.of(n1, 1), overlapping(index, 2, 21, 21).get(0));
+        assertEquals(0, overlapping(index, 2, 22, 99).size());
+        assertEquals(Pair.of(n2, 0), overlapping(index, 2, 50, 100).get(0));
+        assertEquals(2, overlapping(index, 2, 0, 1000).size());
+        assertEquals(0, overlapping(index, 5, 0, 1000).size());
+    }
+    @Test
+    public void should_remove_all_node_kmers() {
+        KmerPathNodeKmerIndex index = new KmerPathNodeKmerIndex(1);
+        KmerPathNode n1 = KPN(new long[] { 1, 2, 1 }, 10, 20, false);
+        KmerPathNode n2 = KPN(new long[] { 1, 4 }, 100, 100, false);
+        index.add(n1);
+        index.add(n2);
+        index.remove(n1);
+        assertEquals(2, index.size());
+        assertEquals(0, overlapping(index, 2, 0, 1000).size());
+        assertEquals(Pair.of(n2, 0), overlapping(index, 1, 0, 1000).get(0));
+        assertEquals(1, overlapping(index, 1, 0, 1000).size());
+        index.remove(n2);
+        assertEquals(0, index.size());
+        assertEquals(0, index.maxKmerCount());
+    }
+    @Test
+    public void should_reuse_released_entries() {
+        KmerPathNodeKmerIndex index = new KmerPathNodeKmerIndex(1);
+        for (int i = 0; i < 1000; i++) {
+            KmerPathNode n = KPN(new long[] { i % 7, i % 5 }, i, i, false);
+            index.add(n);
+            if (i % 2 == 0) {
+                index.remove(n);
+            }
+        }
+        assertEquals(1000, index.size());
+        List<KmerPathNode> all = new ArrayList<>();
+        index.forEachNode(all::add);
+        assertEquals(1000, all.size());
+        assertTrue(all.stream().allMatch(n -> n.firstStart() % 2 == 1));
+    }
+}
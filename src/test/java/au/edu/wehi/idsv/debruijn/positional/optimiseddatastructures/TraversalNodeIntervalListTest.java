@@ -0,0 +1,94 @@
+package au.edu.wehi.idsv.debruijn.positional.optimiseddatastructures;
+
+import au.edu.wehi.idsv.TestHelper;
+import au.edu.wehi.idsv.debruijn.positional.KmerPathNode;
+import au.edu.wehi.idsv.debruijn.positional.KmerPathSubnode;
+import au.edu.wehi.idsv.debruijn.positional.TraversalNode;
+import com.google.common.collect.Lists;
+import org.junit.Test;
+
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TraversalNodeIntervalListTest extends TestHelper {
+    private static final KmerPathNode NODE = KPN(1, "A", 1, 100, false, 1);
+    private static TraversalNode TN(int start, int end) {
+        return new TraversalNode(new KmerPathSubnode(NODE, start, end), 0);
+    }
+    @Test
+    public void should_sort_by_first_end() {
+        TraversalNodeIntervalList list = new TraversalNodeIntervalList();
+        TraversalNode a = TN(10, 19);
+        TraversalNode b = TN(1, 2);
+        TraversalNode c = TN(3, 5);
+        TraversalNode d = TN(30, 30);
+        list.put(a);
+        list.put(b);
+        list.put(c);
+        list.put(d);
+        assertEquals(4, list.size());
+        assertEquals(Lists.newArrayList(b, c, a, d), Lists.newArrayList(list.values()));
+        assertSame(c, list.get(5));
+        assertNull(list.get(4));
+        assertTrue(list.contains(a));
+        assertFalse(list.contains(TN(10, 19)));
+    }
+    @Test
+    public void put_should_replace_path_with_same_first_end() {
+        TraversalNodeIntervalList list = new TraversalNodeIntervalList();
+        TraversalNode a = TN(1, 5);
+        TraversalNode b = TN(3, 5);
+        list.put(a);
+        assertSame(a, list.put(b));
+        assertEquals(1, list.size());
+        assertSame(b, list.get(5));
+    }
+    @Test
+    public void remove_should_return_removed_path() {
+        TraversalNodeIntervalList list = new TraversalNodeIntervalList();
+        TraversalNode a = TN(1, 2);
+        TraversalNode b = TN(3, 4);
+        list.put(a);
+        list.put(b);
+        assertNull(list.remove(3));
+        assertSame(a, list.remove(2));
+        assertEquals(1, list.size());
+        assertSame(b, list.values().get(0));
+        assertSame(b, list.remove(4));
+        assertTrue(list.isEmpty());
+    }
+    @Test
+    public void iteratorFrom_should_start_at_first_path_ending_at_or_after_position() {
+        TraversalNodeIntervalList list = new TraversalNodeIntervalList();
+        for (int i = 0; i < 10; i++) {
+            list.put(TN(10 * i + 1, 10 * i + 5));
+        }
+        List<TraversalNode> result = Lists.newArrayList(list.valuesFrom(25));
+        assertEquals(8, result.size());
+        assertEquals(25, result.get(0).node.firstEnd());
+        result = Lists.newArrayList(list.valuesFrom(26));
+        assertEquals(7, result.size());
+        assertEquals(35, result.get(0).node.firstEnd());
+        assertFalse(list.iteratorFrom(96).hasNext());
+    }
+    @Test
+    public void iterator_should_support_removal() {
+        TraversalNodeIntervalList list = new TraversalNodeIntervalList();
+        for (int i = 0; i < 10; i++) {
+            list.put(TN(10 * i + 1, 10 * i + 5));
+        }
+        Iterator<TraversalNode> it = list.iteratorFrom(Integer.MIN_VALUE);
+        while (it.hasNext()) {
+            if (it.next().node.firstEnd() % 20 == 5) {
+                it.remove();
+            }
+        }
+        assertEquals(5, list.size());
+        for (TraversalNode tn : list.values()) {
+            assertEquals(15, tn.node.firstEnd() % 20);
+            assertSame(tn, list.get(tn.node.firstEnd()));
+        }
+    }
+}
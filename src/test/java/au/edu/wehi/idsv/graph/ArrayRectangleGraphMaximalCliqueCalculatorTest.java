@@ -0,0 +1,42 @@
+package au.edu.wehi.idsv.graph;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class ArrayRectangleGraphMaximalCliqueCalculatorTest extends RectangleGraphMaximalCliqueCalculatorTest {
+	@Override
+	protected RectangleGraphCliqueCalculator createCalculator() {
+		return new ArrayRectangleGraphMaximalCliqueCalculator();
+	}
+	private static List<RectangleGraphNode> call(RectangleGraphCliqueCalculator calc, List<RectangleGraphNode> nodes) {
+		List<RectangleGraphNode> result = new ArrayList<>();
+		for (RectangleGraphNode n : nodes) {
+			result.addAll(calc.next(n));
+		}
+		result.addAll(calc.complete());
+		return result;
+	}
+	@Test
+	public void should_match_linked_list_scanline_calls_and_ordering() {
+		Random rng = new Random(0);
+		for (int i = 0; i < 1000; i++) {
+			int range = 2 + rng.nextInt(30);
+			int maxWidth = 1 + rng.nextInt(15);
+			List<RectangleGraphNode> nodes = new ArrayList<>();
+			for (int j = rng.nextInt(60); j >= 0; j--) {
+				long startX = rng.nextInt(range);
+				long startY = rng.nextInt(range) - 5;
+				nodes.add(new RectangleGraphNode(startX, startX + rng.nextInt(maxWidth), startY, startY + rng.nextInt(maxWidth), 1 + rng.nextInt(3)));
+			}
+			nodes.sort(RectangleGraphNode.ByStartXYEndXY);
+			assertEquals(
+					call(new RectangleGraphMaximalCliqueCalculator(), nodes).toString(),
+					call(new ArrayRectangleGraphMaximalCliqueCalculator(), nodes).toString());
+		}
+	}
+}
@@ -7,6 +7,7 @@ import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.stream.Collectors;
 
 import static org.junit.Assert.*;
@@ -80,4 +81,38 @@ public class TwoBitBufferedReferenceSequenceFileTest extends TestHelper {
 		file.delete();
 		testFolder.delete();
 	}
+	@Test
+	public void should_round_trip_ambiguous_bases_through_cache() throws IOException {
+		TemporaryFolder testFolder = new TemporaryFolder();
+		testFolder.create();
+		File file = new File(testFolder.getRoot(), "ambiguous.gridsscache");
+		InMemoryReferenceSequenceFile ref = new InMemoryReferenceSequenceFile(new String[] { "a", "b" }, new byte[][] { B("NNACGTRYACGTACGTACGTACGTACGTACGTACGTACGTN"), B("acgtN") });
+		TwoBitBufferedReferenceSequenceFile a = new TwoBitBufferedReferenceSequenceFile(ref, file);
+		assertEquals('N', a.getBase(0, 1));
+		assertTrue(TwoBitBufferedReferenceSequenceFile.isValidCacheFile(file));
+		TwoBitBufferedReferenceSequenceFile b = new TwoBitBufferedReferenceSequenceFile(ref, file);
+		assertEquals("NNACGTNNACGTACGTACGTACGTACGTACGTACGTACGTN", S(b.getSequence("a").getBases()));
+		assertEquals("ACGTN", S(b.getSequence("b").getBases()));
+		assertEquals("GTNNA", S(b.getSubsequenceAt("a", 5, 9).getBases()));
+		assertEquals('A', b.getBase(0, 3));
+		assertEquals('N', b.getBase(0, 7));
+		assertEquals('N', b.getBase(0, 8));
+		assertEquals('A', b.getBase(0, 9));
+		assertEquals('N', b.getBase(0, 41));
+		assertEquals('N', b.getBase(1, 5));
+		testFolder.delete();
+	}
+	@Test
+	public void should_replace_obsolete_cache() throws IOException {
+		TemporaryFolder testFolder = new TemporaryFolder();
+		testFolder.create();
+		File file = new File(testFolder.getRoot(), "obsolete.gridsscache");
+		Files.write(file.toPath(), B("not a 2bit reference cache"));
+		assertFalse(TwoBitBufferedReferenceSequenceFile.isValidCacheFile(file));
+		TwoBitBufferedReferenceSequenceFile a = new TwoBitBufferedReferenceSequenceFile(SMALL_FA, file);
+		String contig = SMALL_FA.getSequenceDictionary().getSequence(0).getSequenceName();
+		assertEquals(S(SMALL_FA.getSequence(contig).getBases()).toUpperCase(), S(a.getSequence(contig).getBases()));
+		assertTrue(TwoBitBufferedReferenceSequenceFile.isValidCacheFile(file));
+		testFolder.delete();
+	}
 }
@@ -0,0 +1,95 @@
+package au.edu.wehi.idsv.util;
+
+import au.edu.wehi.idsv.util.AsyncBufferedIteratorTest.CIT;
+import com.google.common.collect.Lists;
+import com.google.common.primitives.Ints;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+public class BatchedParallelTransformIteratorTest {
+	@Test
+	public void should_apply_transform() {
+		for (int i = 1; i < 4; i++) {
+			List<Integer> list = Ints.asList(0, 1, 2, 3);
+			Function<Integer, Integer> f = n -> n + 1;
+			BatchedParallelTransformIterator<Integer, Integer> it = new BatchedParallelTransformIterator<Integer, Integer>(list.iterator(), f, i, Runnable::run);
+			List<Integer> results = Lists.newArrayList(it);
+			assertEquals(results, Ints.asList(1, 2, 3, 4));
+		}
+	}
+	@Test
+	public void should_not_start_iteration_until_next_is_called() {
+		CIT cit = new CIT(16);
+		BatchedParallelTransformIterator<Integer, Integer> it = new BatchedParallelTransformIterator<Integer, Integer>(cit, n -> n, 4, Runnable::run);
+		assertEquals(16, cit.recordsleft);
+		for (int i = 0; i < 16; i++) it.next();
+		assertEquals(0, cit.recordsleft);
+	}
+	@Test
+	public void should_retain_iteration_order() {
+		ExecutorService threadpool = Executors.newFixedThreadPool(4);
+		CIT cit = new CIT(32);
+		BatchedParallelTransformIterator<Integer, Integer> it = new BatchedParallelTransformIterator<Integer, Integer>(cit, n -> {
+			try {
+				Thread.sleep(4 * n);
+			} catch (InterruptedException e) {
+			}
+			return n;
+		}, 4, threadpool);
+		for (int i = 32; i > 0; i--) assertEquals(i, (int)it.next());
+		threadpool.shutdown();
+	}
+	@Test
+	public void should_increase_batch_size_for_cheap_transforms() {
+		ExecutorService threadpool = Executors.newFixedThreadPool(4);
+		List<Integer> list = new ArrayList<>();
+		for (int i = 0; i < 100000; i++) list.add(i);
+		BatchedParallelTransformIterator<Integer, Integer> it = new BatchedParallelTransformIterator<Integer, Integer>(list.iterator(), n -> n, 4, threadpool);
+		for (int i = 0; i < list.size(); i++) assertEquals(i, (int)it.next());
+		assertEquals(list.size(), it.getElementCount());
+		assertTrue(it.getBatchCount() < list.size() / 10);
+		assertTrue(it.getBatchSize() > 1);
+		threadpool.shutdown();
+	}
+	@Test
+	public void should_use_single_element_batches_for_expensive_transforms() {
+		ExecutorService threadpool = Executors.newFixedThreadPool(4);
+		BatchedParallelTransformIterator<Integer, Integer> it = new BatchedParallelTransformIterator<Integer, Integer>(new CIT(16), n -> {
+			try {
+				Thread.sleep(5);
+			} catch (InterruptedException e) {
+			}
+			return n;
+		}, 4, threadpool, TimeUnit.MILLISECONDS.toNanos(1), 1024);
+		Lists.newArrayList(it);
+		assertEquals(1, it.getBatchSize());
+		assertEquals(16, it.getBatchCount());
+		threadpool.shutdown();
+	}
+	@Test(expected = IllegalStateException.class)
+	public void should_rethrow_transform_exception() {
+		BatchedParallelTransformIterator<Integer, Integer> it = new BatchedParallelTransformIterator<Integer, Integer>(new CIT(16), n -> {
+			if (n == 8) throw new IllegalStateException();
+			return n;
+		}, 4, Runnable::run);
+		Lists.newArrayList(it);
+	}
+	@Test(expected = AssertionError.class)
+	public void should_rethrow_transform_error() {
+		BatchedParallelTransformIterator<Integer, Integer> it = new BatchedParallelTransformIterator<Integer, Integer>(new CIT(16), n -> {
+			if (n == 8) throw new AssertionError();
+			return n;
+		}, 4, Runnable::run);
+		Lists.newArrayList(it);
+	}
+}
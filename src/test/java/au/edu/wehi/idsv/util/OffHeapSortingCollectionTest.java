@@ -0,0 +1,136 @@
+package au.edu.wehi.idsv.util;
+
+import au.edu.wehi.idsv.IntermediateFilesTest;
+import au.edu.wehi.idsv.sam.SAMFileUtil;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Ordering;
+import com.google.common.primitives.UnsignedBytes;
+import htsjdk.samtools.BAMRecordCodec;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordComparator;
+import htsjdk.samtools.SAMRecordCoordinateComparator;
+import htsjdk.samtools.SAMRecordQueryNameComparator;
+import htsjdk.samtools.util.CloseableIterator;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OffHeapSortingCollectionTest extends IntermediateFilesTest {
+	private List<SAMRecord> randomReads(int n) {
+		Random rng = new Random(0);
+		List<SAMRecord> list = new ArrayList<>();
+		for (int i = 0; i < n; i++) {
+			SAMRecord r = rng.nextInt(10) == 0 ? Unmapped(10) : Read(rng.nextInt(3), 1 + rng.nextInt(20), "10M");
+			r.setReadName("r" + rng.nextInt(n / 2));
+			r.setReadNegativeStrandFlag(rng.nextBoolean());
+			list.add(r);
+		}
+		return list;
+	}
+	private List<SAMRecord> sort(List<SAMRecord> list, SAMRecordComparator comparator, ToLongFunction<SAMRecord> sortKey, int maxRecordsInRam, long maxBytesInRam) {
+		return sort(list, comparator, sortKey, null, maxRecordsInRam, maxBytesInRam);
+	}
+	private List<SAMRecord> sort(List<SAMRecord> list, SAMRecordComparator comparator, ToLongFunction<SAMRecord> sortKey, Function<SAMRecord, byte[]> sortKeySuffix, int maxRecordsInRam, long maxBytesInRam) {
+		OffHeapSortingCollection<SAMRecord> collection = new OffHeapSortingCollection<>(
+				new BAMRecordCodec(getHeader()),
+				comparator,
+				sortKey,
+				sortKeySuffix,
+				maxRecordsInRam,
+				maxBytesInRam,
+				testFolder.getRoot().toPath());
+		try {
+			for (SAMRecord r : list) {
+				collection.add(r);
+			}
+			collection.doneAdding();
+			try (CloseableIterator<SAMRecord> it = collection.iterator()) {
+				return Lists.newArrayList(it);
+			}
+		} finally {
+			collection.cleanup();
+		}
+	}
+	private static List<String> asSam(List<SAMRecord> list) {
+		List<String> result = new ArrayList<>();
+		for (SAMRecord r : list) {
+			result.add(r.getSAMString());
+		}
+		return result;
+	}
+	@Test
+	public void should_sort_in_memory() {
+		List<SAMRecord> in = randomReads(1000);
+		List<SAMRecord> out = sort(in, new SAMRecordCoordinateComparator(), SAMFileUtil::coordinateSortKey, 10000, 1 << 20);
+		assertEquals(in.size(), out.size());
+		assertTrue(Ordering.from(new SAMRecordCoordinateComparator()).isOrdered(out));
+	}
+	@Test
+	public void should_merge_spilled_runs() {
+		List<SAMRecord> in = randomReads(1000);
+		List<SAMRecord> expected = sort(in, new SAMRecordCoordinateComparator(), SAMFileUtil::coordinateSortKey, 10000, 1 << 20);
+		assertEquals(asSam(expected), asSam(sort(in, new SAMRecordCoordinateComparator(), SAMFileUtil::coordinateSortKey, 37, 1 << 20)));
+		assertEquals(asSam(expected), asSam(sort(in, new SAMRecordCoordinateComparator(), SAMFileUtil::coordinateSortKey, 10000, 1000)));
+	}
+	@Test
+	public void should_fall_back_to_comparator_for_tied_sort_key() {
+		List<SAMRecord> in = randomReads(1000);
+		List<SAMRecord> expected = sort(in, new SAMRecordCoordinateComparator(), SAMFileUtil::coordinateSortKey, 10000, 1 << 20);
+		assertEquals(asSam(expected), asSam(sort(in, new SAMRecordCoordinateComparator(), r -> r.getReferenceIndex() & 0xFFFFFFFFL, 10000, 1 << 20)));
+		assertEquals(asSam(expected), asSam(sort(in, new SAMRecordCoordinateComparator(), r -> r.getReferenceIndex() & 0xFFFFFFFFL, 100, 1 << 20)));
+	}
+	@Test
+	public void should_sort_by_sort_key_suffix() {
+		List<SAMRecord> in = randomReads(1000);
+		for (SAMRecord r : in) {
+			r.setReadName("long_common_read_name_prefix_" + r.getReadName());
+		}
+		List<SAMRecord> out = sort(in, new SAMRecordQueryNameComparator(), SAMFileUtil::querynameSortKey, SAMFileUtil::querynameSortKeySuffix, 10000, 1 << 20);
+		assertTrue(Ordering.from(new SAMRecordQueryNameComparator()).isOrdered(out));
+		assertEquals(asSam(out), asSam(sort(in, new SAMRecordQueryNameComparator(), SAMFileUtil::querynameSortKey, SAMFileUtil::querynameSortKeySuffix, 100, 1 << 20)));
+	}
+	@Test
+	public void should_retain_insertion_order_for_equal_records() {
+		List<SAMRecord> in = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			SAMRecord r = Read(0, 1, "10M");
+			r.setReadName("r");
+			r.setAttribute("XI", i);
+			in.add(r);
+		}
+		List<SAMRecord> out = sort(in, new SAMRecordCoordinateComparator(), SAMFileUtil::coordinateSortKey, 7, 1 << 20);
+		for (int i = 0; i < 100; i++) {
+			assertEquals(i, (int)out.get(i).getIntegerAttribute("XI"));
+		}
+	}
+	@Test
+	public void querynameSortKey_should_be_consistent_with_comparator() {
+		String[] names = { "", "a", "aĀ", "aÿ", "aÿb", "ab", "abcdefg", "abcdefgh", "abcdefghÿ", "abcdefghĀ", "abcdefghi", "abcdefghij", "abcdefgi", "abcdefgÿ", "b", "ā", "āa", "ÿ" };
+		SAMRecordQueryNameComparator comparator = new SAMRecordQueryNameComparator();
+		for (String a : names) {
+			for (String b : names) {
+				SAMRecord ra = Read(0, 1, "1M");
+				SAMRecord rb = Read(0, 1, "1M");
+				ra.setReadName(a);
+				rb.setReadName(b);
+				int cmp = Long.compare(SAMFileUtil.querynameSortKey(ra), SAMFileUtil.querynameSortKey(rb));
+				if (cmp == 0) {
+					byte[] sa = SAMFileUtil.querynameSortKeySuffix(ra);
+					byte[] sb = SAMFileUtil.querynameSortKeySuffix(rb);
+					cmp = UnsignedBytes.lexicographicalComparator().compare(sa == null ? new byte[0] : sa, sb == null ? new byte[0] : sb);
+				}
+				assertEquals(Integer.signum(a.compareTo(b)), Integer.signum(cmp));
+				if (cmp < 0) {
+					assertTrue(comparator.compare(ra, rb) < 0);
+				}
+			}
+		}
+	}
+}
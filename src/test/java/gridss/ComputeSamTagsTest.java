@@ -10,6 +10,7 @@ import gridss.cmdline.CommandLineProgramHelper;
 import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.SAMRecordQueryNameComparator;
+import htsjdk.samtools.util.CloseableIterator;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -17,6 +18,8 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 
 public class ComputeSamTagsTest extends IntermediateFilesTest {
@@ -53,4 +56,29 @@ public class ComputeSamTagsTest extends IntermediateFilesTest {
         Assert.assertEquals("AACCGGTTCTA", out.get(0).getStringAttribute("R2"));
 
     }
-}
\ No newline at end of file
+    @Test
+    public void parallel_transform_should_retain_input_order() {
+        List<SAMRecord> in = new ArrayList<>();
+        for (int i = 1; i <= 2000; i++) {
+            SAMRecord[] rp = RP(0, i, i + 100, 10);
+            for (SAMRecord r : rp) {
+                r.setReadName(String.format("read%05d", i));
+                in.add(r);
+            }
+        }
+        ComputeSamTags cst = new ComputeSamTags();
+        cst.TAGS.clear();
+        cst.TAGS.add("MC");
+        ExecutorService threadpool = Executors.newFixedThreadPool(4);
+        List<SAMRecord> out;
+        try (CloseableIterator<SAMRecord> it = cst.transform(threadpool, 8, in.iterator())) {
+            out = Lists.newArrayList(it);
+        }
+        threadpool.shutdown();
+        Assert.assertEquals(in.size(), out.size());
+        for (int i = 0; i < in.size(); i++) {
+            Assert.assertSame(in.get(i), out.get(i));
+            Assert.assertEquals("10M", out.get(i).getStringAttribute("MC"));
+        }
+    }
+}
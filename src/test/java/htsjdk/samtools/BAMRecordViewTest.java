@@ -0,0 +1,150 @@
+package htsjdk.samtools;
+
+import htsjdk.samtools.util.CloseableIterator;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BAMRecordViewTest {
+    @Rule
+    public TemporaryFolder testFolder = new TemporaryFolder();
+
+    private static SAMFileHeader getHeader() {
+        SAMFileHeader header = new SAMFileHeader();
+        header.setSortOrder(SAMFileHeader.SortOrder.coordinate);
+        header.getSequenceDictionary().addSequence(new SAMSequenceRecord("chr1", 10000));
+        header.getSequenceDictionary().addSequence(new SAMSequenceRecord("chr2", 10000));
+        return header;
+    }
+
+    private static SAMRecord createRecord(SAMFileHeader header, String name, int start, String cigar, int flags) {
+        SAMRecord r = new SAMRecord(header);
+        r.setReadName(name);
+        r.setReferenceIndex(0);
+        r.setAlignmentStart(start);
+        r.setCigarString(cigar);
+        r.setFlags(flags);
+        r.setMappingQuality(37);
+        int length = new TextCigarCodec().decode(cigar).getReadLength();
+        byte[] bases = new byte[length];
+        byte[] quals = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bases[i] = (byte)"ACGT".charAt(i % 4);
+            quals[i] = (byte)(i % 40);
+        }
+        r.setReadBases(bases);
+        r.setBaseQualities(quals);
+        return r;
+    }
+
+    private static BAMRecordView encode(SAMRecord r) {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        BAMRecordCodec codec = new BAMRecordCodec(r.getHeader());
+        codec.setOutputStream(os);
+        codec.encode(r);
+        byte[] bytes = os.toByteArray();
+        // skip block_size
+        return new BAMRecordView(bytes, 4, bytes.length - 4);
+    }
+
+    @Test
+    public void should_decode_fixed_fields() {
+        SAMFileHeader header = getHeader();
+        SAMRecord r = createRecord(header, "read1", 100, "5S10M2D5M", 0x1 | 0x20 | 0x40 | 0x400);
+        r.setMateReferenceIndex(1);
+        r.setMateAlignmentStart(500);
+        r.setInferredInsertSize(-7);
+        BAMRecordView view = encode(r);
+        assertEquals(0, view.getReferenceIndex());
+        assertEquals(100, view.getAlignmentStart());
+        assertEquals(37, view.getMappingQuality());
+        assertEquals(r.getFlags(), view.getFlags());
+        assertEquals(20, view.getReadLength());
+        assertEquals(1, view.getMateReferenceIndex());
+        assertEquals(500, view.getMateAlignmentStart());
+        assertEquals(-7, view.getInferredInsertSize());
+        assertTrue(view.getReadPairedFlag());
+        assertTrue(view.getDuplicateReadFlag());
+        assertFalse(view.getReadUnmappedFlag());
+        assertFalse(view.isSecondaryAlignment());
+    }
+
+    @Test
+    public void should_decode_cigar() {
+        SAMRecord r = createRecord(getHeader(), "read1", 100, "5S10M2D5M", 0);
+        BAMRecordView view = encode(r);
+        assertEquals(4, view.getCigarLength());
+        for (int i = 0; i < r.getCigar().numCigarElements(); i++) {
+            assertEquals(r.getCigar().getCigarElement(i).getOperator(), view.getCigarOperator(i));
+            assertEquals(r.getCigar().getCigarElement(i).getLength(), view.getCigarOperatorLength(i));
+        }
+        assertTrue(view.hasCigarOperator(CigarOperator.D));
+        assertTrue(view.hasCigarOperator(CigarOperator.I, CigarOperator.S));
+        assertFalse(view.hasCigarOperator(CigarOperator.I, CigarOperator.N));
+    }
+
+    @Test
+    public void should_find_attributes() {
+        SAMRecord r = createRecord(getHeader(), "read1", 100, "10M", 0);
+        r.setAttribute("XA", 'c');
+        r.setAttribute("XB", (byte)1);
+        r.setAttribute("XC", (short)1000);
+        r.setAttribute("XD", 100000);
+        r.setAttribute("XE", 1.5f);
+        r.setAttribute("XF", "string");
+        r.setAttribute("XG", new int[] { 1, 2, 3 });
+        r.setAttribute("XH", new short[] { 1, 2 });
+        r.setAttribute("SA", "chr1,1,+,10M,0,0;");
+        BAMRecordView view = encode(r);
+        for (String tag : new String[] { "XA", "XB", "XC", "XD", "XE", "XF", "XG", "XH", "SA" }) {
+            assertTrue(tag, view.hasAttribute(tag));
+        }
+        assertFalse(view.hasAttribute("NM"));
+    }
+
+    @Test
+    public void codec_should_decode_from_view() {
+        SAMRecord r = createRecord(getHeader(), "read1", 100, "5S10M", 0x10);
+        r.setAttribute("NM", 1);
+        BAMRecordView view = encode(r);
+        SAMRecord decoded = new BAMRecordCodec(r.getHeader()).decode(view);
+        assertEquals(r.getReadName(), decoded.getReadName());
+        assertEquals(r.getCigarString(), decoded.getCigarString());
+        assertArrayEquals(r.getReadBases(), decoded.getReadBases());
+        assertArrayEquals(r.getBaseQualities(), decoded.getBaseQualities());
+        assertEquals(1, decoded.getAttribute("NM"));
+        assertEquals(r.getFlags(), decoded.getFlags());
+    }
+
+    @Test
+    public void reader_should_skip_filtered_records() {
+        SAMFileHeader header = getHeader();
+        File bam = new File(testFolder.getRoot(), "filter.bam");
+        try (SAMFileWriter writer = new SAMFileWriterFactory().makeBAMWriter(header, true, bam)) {
+            for (int i = 1; i <= 100; i++) {
+                writer.addAlignment(createRecord(header, "read" + i, i, i % 3 == 0 ? "5S5M" : "10M", 0));
+            }
+        }
+        for (boolean async : new boolean[] { false, true }) {
+            BAMFileReader reader = new BAMFileReader(bam, null, false, async, ValidationStringency.STRICT, new DefaultSAMRecordFactory());
+            reader.setRecordFilter(v -> v.hasCigarOperator(CigarOperator.S));
+            List<SAMRecord> result = new ArrayList<>();
+            try (CloseableIterator<SAMRecord> it = reader.getIterator()) {
+                it.forEachRemaining(result::add);
+            }
+            reader.close();
+            assertEquals(33, result.size());
+            for (int i = 0; i < result.size(); i++) {
+                assertEquals(3 * (i + 1), result.get(i).getAlignmentStart());
+                assertEquals("5S5M", result.get(i).getCigarString());
+            }
+        }
+    }
+}